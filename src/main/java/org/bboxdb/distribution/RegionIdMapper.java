@@ -17,23 +17,28 @@
  *******************************************************************************/
 package org.bboxdb.distribution;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.bboxdb.misc.Const;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class RegionIdMapper {
 
 	/**
-	 * The mappings
+	 * The mappings and the spatial index of the mappings. The snapshot is immutable, 
+	 * readers don't need a lock. Modifications build and publish a new snapshot.
 	 */
-	protected final List<RegionTablenameEntry> regions = new CopyOnWriteArrayList<RegionTablenameEntry>();
+	protected volatile RegionIndex regions = new RegionIndex(new ArrayList<>());
 	
 	/**
 	 * The Logger
@@ -44,11 +49,7 @@ public class RegionIdMapper {
 	 * Search the region ids that are overlapped by the bounding box
 	 */
 	public Collection<Integer> getRegionIdsForRegion(final BoundingBox region) {
-		return regions
-			.stream()
-			.filter(r -> r.getBoundingBox().overlaps(region))
-			.map(r -> r.getRegionId())
-			.collect(Collectors.toList());
+		return regions.getRegionIdsForRegion(region);
 	}
 	
 	/**
@@ -56,7 +57,7 @@ public class RegionIdMapper {
 	 * @return
 	 */
 	public Collection<Integer> getAllRegionIds() {
-		return regions
+		return regions.getEntries()
 			.stream()
 			.map(r -> r.getRegionId())
 			.collect(Collectors.toList());
@@ -110,6 +111,19 @@ public class RegionIdMapper {
 		
 		return convertRegionIdToTableNames(ssTableName, namprefixes);		
 	}
+	
+	/**
+	 * Get all SSTables that are stored local and overlapped by the bounding box. 
+	 * Unlike getLocalTablesForRegion(), an empty result is not retried.
+	 * 
+	 * @param ssTableName
+	 * @param region
+	 * @return
+	 */
+	public List<SSTableName> getAllLocalTables(final SSTableName ssTableName, final BoundingBox region) {
+		final Collection<Integer> namprefixes = getRegionIdsForRegion(region);
+		return convertRegionIdToTableNames(ssTableName, namprefixes);
+	}
 
 	/**
 	 * Prefix all entries of the given list with the name of the sstable
@@ -131,12 +145,13 @@ public class RegionIdMapper {
 	 * @param tablename
 	 * @param boundingBox
 	 */
-	public boolean addMapping(final DistributionRegion region) {
+	public synchronized boolean addMapping(final DistributionRegion region) {
 				
 		final int regionId = region.getRegionId();
 		final BoundingBox converingBox = region.getConveringBox();	
 		
-		final boolean known = regions.stream().anyMatch(r -> r.getRegionId() == regionId);
+		final List<RegionTablenameEntry> entries = regions.getEntries();
+		final boolean known = entries.stream().anyMatch(r -> r.getRegionId() == regionId);
 		
 		if(known) {
 			logger.debug("Mapping for region {} already exists, ignoring", regionId);
@@ -144,7 +159,10 @@ public class RegionIdMapper {
 		}
 		
 		logger.info("Add local mapping for: {}", region.getIdentifier());
-		regions.add(new RegionTablenameEntry(converingBox, regionId));
+		
+		final List<RegionTablenameEntry> newEntries = new ArrayList<>(entries);
+		newEntries.add(new RegionTablenameEntry(converingBox, regionId));
+		regions = new RegionIndex(newEntries);
 		
 		return true;
 	}
@@ -153,23 +171,101 @@ public class RegionIdMapper {
 	 * Remove a mapping
 	 * @return
 	 */
-	public boolean removeMapping(final int regionId) {
-		// Removal is supported by COW array list
-		final boolean removed = regions.removeIf(r -> r.getRegionId() == regionId);
+	public synchronized boolean removeMapping(final int regionId) {
+		final Predicate<RegionTablenameEntry> regionFilter = r -> r.getRegionId() == regionId;
+		final List<RegionTablenameEntry> entries = regions.getEntries();
 		
-		if(removed) {
-			logger.info("Mapping for region id {} removed", regionId);
+		if(! entries.stream().anyMatch(regionFilter)) {
+			return false;
 		}
 		
-		return removed;
+		final List<RegionTablenameEntry> newEntries = new ArrayList<>(entries);
+		newEntries.removeIf(regionFilter);
+		regions = new RegionIndex(newEntries);
+
+		logger.info("Mapping for region id {} removed", regionId);
+		
+		return true;
 	}
 	
 	/**
 	 * Remove all mappings
 	 */
-	public void clear() {
+	public synchronized void clear() {
 		logger.info("Clear all local mappings");
-		regions.clear();
+		regions = new RegionIndex(new ArrayList<>());
+	}
+}
+
+class RegionIndex {
+	
+	/**
+	 * The entries
+	 */
+	protected final List<RegionTablenameEntry> entries;
+	
+	/**
+	 * The spatial index over the covering boxes of the entries
+	 */
+	protected final RTreeBuilder spatialIndex;
+	
+	/**
+	 * The entries that can not be stored in the spatial index (e.g., the empty box)
+	 */
+	protected final List<RegionTablenameEntry> unindexedEntries;
+
+	public RegionIndex(final List<RegionTablenameEntry> entries) {
+		this.entries = Collections.unmodifiableList(entries);
+		this.spatialIndex = new RTreeBuilder();
+		
+		final Predicate<RegionTablenameEntry> indexable = e -> e.getBoundingBox() != null 
+				&& e.getBoundingBox() != BoundingBox.EMPTY_BOX;
+		
+		final List<SpatialIndexEntry> indexEntries = entries
+				.stream()
+				.filter(indexable)
+				.map(e -> new SpatialIndexEntry(e.getBoundingBox(), e.getRegionId()))
+				.collect(Collectors.toList());
+		
+		this.unindexedEntries = entries
+				.stream()
+				.filter(indexable.negate())
+				.collect(Collectors.toList());
+		
+		spatialIndex.bulkInsert(indexEntries);
+	}
+	
+	/**
+	 * Search the region ids that are overlapped by the bounding box
+	 * @param region
+	 * @return
+	 */
+	public List<Integer> getRegionIdsForRegion(final BoundingBox region) {
+		
+		if(region == null) {
+			return new ArrayList<>();
+		}
+		
+		final List<Integer> result = spatialIndex.getEntriesForRegion(region)
+				.stream()
+				.map(e -> (int) e.getValue())
+				.collect(Collectors.toList());
+		
+		for(final RegionTablenameEntry entry : unindexedEntries) {
+			if(entry.getBoundingBox() != null && entry.getBoundingBox().overlaps(region)) {
+				result.add(entry.getRegionId());
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Get the entries
+	 * @return
+	 */
+	public List<RegionTablenameEntry> getEntries() {
+		return entries;
 	}
 }
 
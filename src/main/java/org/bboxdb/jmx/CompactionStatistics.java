@@ -0,0 +1,65 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.jmx;
+
+import org.bboxdb.storage.sstable.compact.CompactionMetrics;
+import org.bboxdb.storage.sstable.compact.CompactionRateLimiter;
+
+public class CompactionStatistics implements CompactionStatisticsMBean {
+
+	@Override
+	public String getName() {
+		return "BBoxDB compaction MBean";
+	}
+
+	@Override
+	public long getFlushedBytes() {
+		return CompactionMetrics.getFlushedBytes();
+	}
+
+	@Override
+	public long getCompactionReadBytes() {
+		return CompactionMetrics.getCompactionReadBytes();
+	}
+
+	@Override
+	public long getCompactionWrittenBytes() {
+		return CompactionMetrics.getCompactionWrittenBytes();
+	}
+
+	@Override
+	public double getWriteAmplification() {
+		return CompactionMetrics.getWriteAmplification();
+	}
+
+	@Override
+	public double getReadAmplification() {
+		return CompactionMetrics.getReadAmplification();
+	}
+
+	@Override
+	public long getPendingCompactionBytes() {
+		return CompactionMetrics.getPendingCompactionBytes();
+	}
+
+	@Override
+	public long getThrottleTime() {
+		return CompactionRateLimiter.getInstance().getThrottleTime();
+	}
+
+}
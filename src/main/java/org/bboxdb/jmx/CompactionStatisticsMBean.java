@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.jmx;
+
+public interface CompactionStatisticsMBean {
+
+	/**
+	 * Get the name of the service
+	 * @return
+	 */
+	public String getName();
+	
+	/**
+	 * Get the bytes written by memtable flushes
+	 * @return
+	 */
+	public long getFlushedBytes();
+	
+	/**
+	 * Get the bytes read by compactions
+	 * @return
+	 */
+	public long getCompactionReadBytes();
+	
+	/**
+	 * Get the bytes written by compactions
+	 * @return
+	 */
+	public long getCompactionWrittenBytes();
+	
+	/**
+	 * Get the write amplification
+	 * @return
+	 */
+	public double getWriteAmplification();
+	
+	/**
+	 * Get the read amplification (average sstables per region)
+	 * @return
+	 */
+	public double getReadAmplification();
+	
+	/**
+	 * Get the bytes of the pending compactions
+	 * @return
+	 */
+	public long getPendingCompactionBytes();
+	
+	/**
+	 * Get the time the compactions were throttled in milliseconds
+	 * @return
+	 */
+	public long getThrottleTime();
+}
@@ -33,6 +33,26 @@ public class JMXService implements BBoxDBService {
 	 * The name of the lifecycle mbean
 	 */
 	public static final String MBEAN_LIFECYCLE = "org.bboxdb:type=LifecycleManager";
+	
+	/**
+	 * The name of the memtable slabs mbean
+	 */
+	public static final String MBEAN_MEMTABLE_SLABS = "org.bboxdb:type=MemtableSlabs";
+	
+	/**
+	 * The name of the sstable cache mbean
+	 */
+	public static final String MBEAN_SSTABLE_CACHE = "org.bboxdb:type=SSTableCache";
+	
+	/**
+	 * The name of the query processor mbean
+	 */
+	public static final String MBEAN_QUERY_PROCESSOR = "org.bboxdb:type=QueryProcessor";
+	
+	/**
+	 * The name of the compaction mbean
+	 */
+	public static final String MBEAN_COMPACTION = "org.bboxdb:type=Compaction";
 
 	/**
 	 * The instance of the application
@@ -58,6 +78,22 @@ public class JMXService implements BBoxDBService {
 			final ObjectName name = new ObjectName(MBEAN_LIFECYCLE);
 
 			server.registerMBean(monitor, name);
+			
+			// Register off heap memtable mbean
+			final MemtableSlabsMBean memtableSlabs = new MemtableSlabs();
+			server.registerMBean(memtableSlabs, new ObjectName(MBEAN_MEMTABLE_SLABS));
+			
+			// Register sstable cache mbean
+			final SSTableCacheStatisticsMBean sstableCache = new SSTableCacheStatistics();
+			server.registerMBean(sstableCache, new ObjectName(MBEAN_SSTABLE_CACHE));
+			
+			// Register query processor mbean
+			final QueryProcessorStatisticsMBean queryProcessor = new QueryProcessorStatistics();
+			server.registerMBean(queryProcessor, new ObjectName(MBEAN_QUERY_PROCESSOR));
+			
+			// Register compaction mbean
+			final CompactionStatisticsMBean compaction = new CompactionStatistics();
+			server.registerMBean(compaction, new ObjectName(MBEAN_COMPACTION));
 		} catch (Exception e) {
 			logger.warn("Got exception while creating mbean", e);
 		}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.jmx;
+
+import org.bboxdb.storage.memtable.OffHeapSlabAllocator;
+
+public class MemtableSlabs implements MemtableSlabsMBean {
+
+	@Override
+	public String getName() {
+		return "BBoxDB off heap memtable MBean";
+	}
+
+	@Override
+	public long getAllocatedSlabs() {
+		return OffHeapSlabAllocator.getTotalAllocatedSlabs();
+	}
+
+	@Override
+	public long getAllocatedBytes() {
+		return OffHeapSlabAllocator.getTotalAllocatedBytes();
+	}
+
+	@Override
+	public long getUsedBytes() {
+		return OffHeapSlabAllocator.getTotalUsedBytes();
+	}
+
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.jmx;
+
+import org.bboxdb.storage.queryprocessor.QueryProcessor;
+
+public class QueryProcessorStatistics implements QueryProcessorStatisticsMBean {
+
+	@Override
+	public String getName() {
+		return "BBoxDB query processor MBean";
+	}
+
+	@Override
+	public long getPrunedStorages() {
+		return QueryProcessor.getTotalPrunedStorages();
+	}
+
+	@Override
+	public long getQueriedStorages() {
+		return QueryProcessor.getTotalQueriedStorages();
+	}
+
+}
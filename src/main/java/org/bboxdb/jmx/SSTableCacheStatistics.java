@@ -0,0 +1,54 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.jmx;
+
+import org.bboxdb.storage.sstable.reader.SSTableCache;
+
+public class SSTableCacheStatistics implements SSTableCacheStatisticsMBean {
+
+	@Override
+	public String getName() {
+		return "BBoxDB SSTable cache MBean";
+	}
+
+	@Override
+	public long getHitCount() {
+		return SSTableCache.getInstance().getHitCount();
+	}
+
+	@Override
+	public long getMissCount() {
+		return SSTableCache.getInstance().getMissCount();
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return SSTableCache.getInstance().getEvictionCount();
+	}
+
+	@Override
+	public long getNumberOfElements() {
+		return SSTableCache.getInstance().getNumberOfElements();
+	}
+
+	@Override
+	public long getMaxSize() {
+		return SSTableCache.getInstance().getMaxSize();
+	}
+
+}
@@ -20,7 +20,9 @@ package org.bboxdb.misc;
 import java.net.SocketException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bboxdb.util.InterfaceHelper;
 import org.slf4j.Logger;
@@ -53,6 +55,11 @@ public class BBoxDBConfiguration {
 	 */
 	protected int memtableFlushThreadsPerStorage = 2;
 	
+	/**
+	 * The classname of the memtable implementation
+	 */
+	protected String storageMemtable = "org.bboxdb.storage.memtable.ArrayMemtable";
+	
 	/**
 	 * The classname of the spatial index builder
 	 */
@@ -63,6 +70,65 @@ public class BBoxDBConfiguration {
 	 */
 	protected String storageSpatialIndexReader = "org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader";
 	
+	/**
+	 * The classname of the block compression codec for new SSTables, 
+	 * 'none' writes SSTables in the row format
+	 */
+	protected String storageSSTableBlockCodec = "none";
+	
+	/**
+	 * The size of an uncompressed SSTable block in bytes
+	 */
+	protected int storageSSTableBlockSize = 64 * 1024;
+	
+	/**
+	 * The size of the node wide cache for decoded tuples, keys 
+	 * and blocks of the SSTables in bytes, 0 disables the cache
+	 */
+	protected long storageSSTableCacheSize = 64 * 1024 * 1024;
+	
+	/**
+	 * The number of threads that merge the key ranges of a compaction
+	 */
+	protected int storageCompactionThreads = 2;
+	
+	/**
+	 * The classname of the merge strategy for the compaction of the SSTables
+	 */
+	protected String storageMergeStrategy = "org.bboxdb.storage.sstable.compact.SimpleMergeStrategy";
+	
+	/**
+	 * The classname of the merge strategy for single distribution groups 
+	 * (distribution group -> classname)
+	 */
+	protected Map<String, String> storageMergeStrategyDistributionGroups = new HashMap<>();
+	
+	/**
+	 * The max amount of bytes per second written by the compactions, 0 = unlimited
+	 */
+	protected long storageCompactionWriteRate = 0;
+	
+	/**
+	 * Write all tuples into a commit log before they are stored in the memtable
+	 */
+	protected boolean storageCommitLogEnabled = false;
+	
+	/**
+	 * The group commit interval of the commit log in milliseconds, 
+	 * 0 syncs every record
+	 */
+	protected int storageCommitLogSyncInterval = 10;
+	
+	/**
+	 * The amount of unsynced bytes that trigger a sync of the commit log
+	 */
+	protected long storageCommitLogSyncBytes = 1024 * 1024;
+	
+	/**
+	 * The size of a commit log segment in bytes
+	 */
+	protected long storageCommitLogSegmentSize = 64 * 1024 * 1024;
+	
 	/**
 	 * The checkpoint interval
 	 */
@@ -78,6 +144,51 @@ public class BBoxDBConfiguration {
 	 */
 	protected int networkConnectionThreads = 10;
 	
+	/**
+	 * The amount of threads to execute the regions of a query in parallel (0 = sequential execution)
+	 */
+	protected int networkQueryThreads = 4;
+	
+	/**
+	 * Use the non blocking (selector based) network transport
+	 */
+	protected boolean networkNonBlockingIO = true;
+	
+	/**
+	 * The amount of selector threads of the non blocking transport
+	 */
+	protected int networkIOThreads = 2;
+	
+	/**
+	 * The amount of threads to process the requests of the non blocking transport
+	 */
+	protected int networkRequestThreads = 16;
+	
+	/**
+	 * The amount of threads to route the writes of the non blocking transport to the replicas
+	 */
+	protected int networkRoutingThreads = 16;
+	
+	/**
+	 * The compression codecs for the client connections, in the order of preference
+	 */
+	protected List<String> networkCompressionCodecs = Arrays.asList("lz4", "zstd", "gzip");
+	
+	/**
+	 * Send the writes to all replicas in parallel (true) or from replica to replica (false)
+	 */
+	protected boolean replicaFanOutWrites = true;
+	
+	/**
+	 * The number of replicas that have to acknowledge a write (one, quorum or all)
+	 */
+	protected String replicaWriteAcknowledge = "all";
+	
+	/**
+	 * The max number of pending writes for unreachable replicas
+	 */
+	protected int replicaMaxHints = 10000;
+	
 	/**
 	 * The name of the cluster
 	 */
@@ -235,4 +346,173 @@ public class BBoxDBConfiguration {
 	public void setStorageSpatialIndexReader(final String storageSpatialIndexReader) {
 		this.storageSpatialIndexReader = storageSpatialIndexReader;
 	}
+
+	public String getStorageMemtable() {
+		return storageMemtable;
+	}
+
+	public void setStorageMemtable(final String storageMemtable) {
+		this.storageMemtable = storageMemtable;
+	}
+
+	public String getStorageSSTableBlockCodec() {
+		return storageSSTableBlockCodec;
+	}
+
+	public void setStorageSSTableBlockCodec(final String storageSSTableBlockCodec) {
+		this.storageSSTableBlockCodec = storageSSTableBlockCodec;
+	}
+
+	public int getStorageSSTableBlockSize() {
+		return storageSSTableBlockSize;
+	}
+
+	public void setStorageSSTableBlockSize(final int storageSSTableBlockSize) {
+		this.storageSSTableBlockSize = storageSSTableBlockSize;
+	}
+
+	public long getStorageSSTableCacheSize() {
+		return storageSSTableCacheSize;
+	}
+
+	public void setStorageSSTableCacheSize(final long storageSSTableCacheSize) {
+		this.storageSSTableCacheSize = storageSSTableCacheSize;
+	}
+
+	public int getStorageCompactionThreads() {
+		return storageCompactionThreads;
+	}
+
+	public void setStorageCompactionThreads(final int storageCompactionThreads) {
+		this.storageCompactionThreads = storageCompactionThreads;
+	}
+
+	public String getStorageMergeStrategy() {
+		return storageMergeStrategy;
+	}
+
+	public void setStorageMergeStrategy(final String storageMergeStrategy) {
+		this.storageMergeStrategy = storageMergeStrategy;
+	}
+
+	public Map<String, String> getStorageMergeStrategyDistributionGroups() {
+		return storageMergeStrategyDistributionGroups;
+	}
+
+	public void setStorageMergeStrategyDistributionGroups(
+			final Map<String, String> storageMergeStrategyDistributionGroups) {
+		this.storageMergeStrategyDistributionGroups = storageMergeStrategyDistributionGroups;
+	}
+
+	public long getStorageCompactionWriteRate() {
+		return storageCompactionWriteRate;
+	}
+
+	public void setStorageCompactionWriteRate(final long storageCompactionWriteRate) {
+		this.storageCompactionWriteRate = storageCompactionWriteRate;
+	}
+
+	public boolean isStorageCommitLogEnabled() {
+		return storageCommitLogEnabled;
+	}
+
+	public void setStorageCommitLogEnabled(final boolean storageCommitLogEnabled) {
+		this.storageCommitLogEnabled = storageCommitLogEnabled;
+	}
+
+	public int getStorageCommitLogSyncInterval() {
+		return storageCommitLogSyncInterval;
+	}
+
+	public void setStorageCommitLogSyncInterval(final int storageCommitLogSyncInterval) {
+		this.storageCommitLogSyncInterval = storageCommitLogSyncInterval;
+	}
+
+	public long getStorageCommitLogSyncBytes() {
+		return storageCommitLogSyncBytes;
+	}
+
+	public void setStorageCommitLogSyncBytes(final long storageCommitLogSyncBytes) {
+		this.storageCommitLogSyncBytes = storageCommitLogSyncBytes;
+	}
+
+	public long getStorageCommitLogSegmentSize() {
+		return storageCommitLogSegmentSize;
+	}
+
+	public void setStorageCommitLogSegmentSize(final long storageCommitLogSegmentSize) {
+		this.storageCommitLogSegmentSize = storageCommitLogSegmentSize;
+	}
+
+	public int getNetworkQueryThreads() {
+		return networkQueryThreads;
+	}
+
+	public void setNetworkQueryThreads(final int networkQueryThreads) {
+		this.networkQueryThreads = networkQueryThreads;
+	}
+
+	public boolean isNetworkNonBlockingIO() {
+		return networkNonBlockingIO;
+	}
+
+	public void setNetworkNonBlockingIO(final boolean networkNonBlockingIO) {
+		this.networkNonBlockingIO = networkNonBlockingIO;
+	}
+
+	public int getNetworkIOThreads() {
+		return networkIOThreads;
+	}
+
+	public void setNetworkIOThreads(final int networkIOThreads) {
+		this.networkIOThreads = networkIOThreads;
+	}
+
+	public int getNetworkRequestThreads() {
+		return networkRequestThreads;
+	}
+
+	public void setNetworkRequestThreads(final int networkRequestThreads) {
+		this.networkRequestThreads = networkRequestThreads;
+	}
+
+	public int getNetworkRoutingThreads() {
+		return networkRoutingThreads;
+	}
+
+	public void setNetworkRoutingThreads(final int networkRoutingThreads) {
+		this.networkRoutingThreads = networkRoutingThreads;
+	}
+
+	public List<String> getNetworkCompressionCodecs() {
+		return networkCompressionCodecs;
+	}
+
+	public void setNetworkCompressionCodecs(final List<String> networkCompressionCodecs) {
+		this.networkCompressionCodecs = networkCompressionCodecs;
+	}
+
+	public boolean isReplicaFanOutWrites() {
+		return replicaFanOutWrites;
+	}
+
+	public void setReplicaFanOutWrites(final boolean replicaFanOutWrites) {
+		this.replicaFanOutWrites = replicaFanOutWrites;
+	}
+
+	public String getReplicaWriteAcknowledge() {
+		return replicaWriteAcknowledge;
+	}
+
+	public void setReplicaWriteAcknowledge(final String replicaWriteAcknowledge) {
+		this.replicaWriteAcknowledge = replicaWriteAcknowledge;
+	}
+
+	public int getReplicaMaxHints() {
+		return replicaMaxHints;
+	}
+
+	public void setReplicaMaxHints(final int replicaMaxHints) {
+		this.replicaMaxHints = replicaMaxHints;
+	}
 }
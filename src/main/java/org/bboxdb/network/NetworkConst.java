@@ -94,6 +94,11 @@ public class NetworkConst {
 	 */
 	public static final short REQUEST_TYPE_CANCEL_QUERY = 0x12;
 	
+	/**
+	 * Request type insert multiple tuples
+	 */
+	public static final short REQUEST_TYPE_INSERT_TUPLES_BATCH = 0x13;
+	
 	
 	
 	/**
@@ -173,11 +178,44 @@ public class NetworkConst {
 	 */
 	public final static byte COMPRESSION_TYPE_GZIP = 0x00;
 	
+	/**
+	 * The lz4 compression type
+	 */
+	public final static byte COMPRESSION_TYPE_LZ4 = 0x01;
+	
+	/**
+	 * The zstd compression type
+	 */
+	public final static byte COMPRESSION_TYPE_ZSTD = 0x02;
+	
+	/**
+	 * No compression is used on the connection
+	 */
+	public final static byte COMPRESSION_TYPE_NONE = -1;
 
 	/**
-	 * The thread wakeup time (100 ms) to flush the pending compression packages
-	 * to the server
+	 * The max time (100 ms) a package waits in the compression batch 
+	 * before the batch is flushed
 	 */
 	public final static long MAX_COMPRESSION_DELAY_MS = 100;
 	
+	/**
+	 * The min time (5 ms) a package waits in the compression batch. Also
+	 * the wakeup time of the threads that flush the pending batches.
+	 */
+	public final static long MIN_COMPRESSION_DELAY_MS = 5;
+	
+	/**
+	 * The compression batch is flushed as soon as the encoded packages 
+	 * reach this size (256 KB)
+	 */
+	public final static int MAX_COMPRESSION_BATCH_BYTES = 256 * 1024;
+	
+	/**
+	 * The batch size (16 KB) that is worth waiting for. When the packages arrive 
+	 * too slowly to reach this size within the max delay, the batch is flushed 
+	 * after the min delay.
+	 */
+	public final static int MIN_COMPRESSION_BATCH_BYTES = 16 * 1024;
+	
 }
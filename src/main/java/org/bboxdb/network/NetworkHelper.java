@@ -17,11 +17,11 @@
  *******************************************************************************/
 package org.bboxdb.network;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
+import java.nio.ByteBuffer;
 
+import org.bboxdb.network.compression.NetworkCompressionCodec;
+import org.bboxdb.network.compression.NetworkCompressionCodecFactory;
 import org.bboxdb.network.packages.PackageEncodeException;
 
 public class NetworkHelper {
@@ -36,20 +36,31 @@ public class NetworkHelper {
 	public static byte[] uncompressBytes(final byte compressionType, 
 			final byte[] compressedBytes) throws PackageEncodeException {
 		
+		return uncompressBytes(compressionType, ByteBuffer.wrap(compressedBytes));
+	}
+	
+	/**
+	 * Uncompress the remaining data of the byte buffer
+	 * @param compressionType 
+	 * @param compressedData
+	 * @return
+	 * @throws PackageEncodeException
+	 */
+	public static byte[] uncompressBytes(final byte compressionType, 
+			final ByteBuffer compressedData) throws PackageEncodeException {
+		
+		final NetworkCompressionCodec codec 
+			= NetworkCompressionCodecFactory.getCodecForType(compressionType);
+		
 		try {
-			final ByteArrayInputStream bais = new ByteArrayInputStream(compressedBytes);
-			final GZIPInputStream inputStream = new GZIPInputStream(bais);
-			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-			final byte[] buffer = new byte[10240];
-			for (int length = 0; (length = inputStream.read(buffer)) > 0; ) {
-				baos.write(buffer, 0, length);
+			if(compressedData.hasArray()) {
+				final int offset = compressedData.arrayOffset() + compressedData.position();
+				return codec.decompress(compressedData.array(), offset, compressedData.remaining());
 			}
-
-			inputStream.close();
-			baos.close();
 			
-			return baos.toByteArray();
+			final byte[] compressedBytes = new byte[compressedData.remaining()];
+			compressedData.duplicate().get(compressedBytes);
+			return codec.decompress(compressedBytes, 0, compressedBytes.length);
 		} catch (IOException e) {
 			throw new PackageEncodeException(e);
 		}
@@ -176,6 +176,33 @@ public class NetworkPackageDecoder {
 		return bb.getLong();
 	}
 	
+	/**
+	 * The size of the request header (package header and routing header without the routing list)
+	 */
+	public final static int REQUEST_HEADER_SIZE = 18;
+	
+	/**
+	 * Get the total length of the request package that starts at the position of the buffer. 
+	 * The position of the buffer is not changed.
+	 * 
+	 * @param bb
+	 * @return the length of the package or -1 if the buffer does not contain the complete header
+	 */
+	public static long getRequestPackageLength(final ByteBuffer bb) {
+		
+		if(bb.remaining() < REQUEST_HEADER_SIZE) {
+			return -1;
+		}
+		
+		final int start = bb.position();
+		
+		// Body length and routing list length
+		final long bodyLength = bb.getLong(start + 4);
+		final short routingListLength = bb.getShort(start + 16);
+		
+		return REQUEST_HEADER_SIZE + routingListLength + bodyLength;
+	}
+	
 	/**
 	 * Get the query type from a request package
 	 * @param bb
@@ -28,6 +28,16 @@ public class PeerCapabilities {
 	 */
 	public final static short CAPABILITY_COMPRESSION_GZIP = 0;
 	
+	/**
+	 * The lz4 compression flag
+	 */
+	public final static short CAPABILITY_COMPRESSION_LZ4 = 1;
+	
+	/**
+	 * The zstd compression flag
+	 */
+	public final static short CAPABILITY_COMPRESSION_ZSTD = 2;
+	
 	/**
 	 * The readonly flag
 	 */
@@ -83,6 +93,52 @@ public class PeerCapabilities {
 		clearBit(CAPABILITY_COMPRESSION_GZIP);
 	}
 
+	/**
+	 * Is the lz4 compression bit set?
+	 * 
+	 * @return
+	 */
+	public boolean hasLZ4Compression() {
+		return getBit(CAPABILITY_COMPRESSION_LZ4);
+	}
+
+	/**
+	 * Set the lz4 compression bit
+	 */
+	public void setLZ4Compression() {
+		setBit(CAPABILITY_COMPRESSION_LZ4);
+	}
+
+	/**
+	 * Clear the lz4 compression bit
+	 */
+	public void clearLZ4Compression() {
+		clearBit(CAPABILITY_COMPRESSION_LZ4);
+	}
+	
+	/**
+	 * Is the zstd compression bit set?
+	 * 
+	 * @return
+	 */
+	public boolean hasZstdCompression() {
+		return getBit(CAPABILITY_COMPRESSION_ZSTD);
+	}
+
+	/**
+	 * Set the zstd compression bit
+	 */
+	public void setZstdCompression() {
+		setBit(CAPABILITY_COMPRESSION_ZSTD);
+	}
+
+	/**
+	 * Clear the zstd compression bit
+	 */
+	public void clearZstdCompression() {
+		clearBit(CAPABILITY_COMPRESSION_ZSTD);
+	}
+
 	/**
 	 * Set the bit
 	 * 
@@ -17,6 +17,8 @@
  *******************************************************************************/
 package org.bboxdb.network.client;
 
+import java.util.Collection;
+
 import org.bboxdb.network.NetworkConnectionState;
 import org.bboxdb.network.client.future.EmptyResultFuture;
 import org.bboxdb.network.client.future.SSTableNameListFuture;
@@ -58,6 +60,15 @@ public interface BBoxDB {
 	 */
 	public EmptyResultFuture insertTuple(final String table, final Tuple tuple) throws BBoxDBException;
 
+	/**
+	 * Insert multiple tuples into the given table. The tuples are 
+	 * transferred and acknowledged together.
+	 * @param table
+	 * @param tuples
+	 * @return
+	 */
+	public EmptyResultFuture insertTuples(final String table, final Collection<Tuple> tuples) throws BBoxDBException;
+
 	/**
 	 * Delete the given key from a table
 	 * @param table
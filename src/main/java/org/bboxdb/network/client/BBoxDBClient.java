@@ -25,17 +25,19 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
-import org.bboxdb.misc.Const;
 import org.bboxdb.network.NetworkConnectionState;
 import org.bboxdb.network.NetworkConst;
 import org.bboxdb.network.NetworkPackageDecoder;
 import org.bboxdb.network.capabilities.PeerCapabilities;
+import org.bboxdb.network.compression.CompressionBatch;
+import org.bboxdb.network.compression.NetworkCompressionCodecFactory;
 import org.bboxdb.network.client.future.EmptyResultFuture;
 import org.bboxdb.network.client.future.HelloFuture;
 import org.bboxdb.network.client.future.OperationFuture;
@@ -62,6 +64,7 @@ import org.bboxdb.network.packages.request.DeleteTupleRequest;
 import org.bboxdb.network.packages.request.DisconnectRequest;
 import org.bboxdb.network.packages.request.HelloRequest;
 import org.bboxdb.network.packages.request.InsertTupleRequest;
+import org.bboxdb.network.packages.request.InsertTuplesBatchRequest;
 import org.bboxdb.network.packages.request.KeepAliveRequest;
 import org.bboxdb.network.packages.request.ListTablesRequest;
 import org.bboxdb.network.packages.request.NextPageRequest;
@@ -173,7 +176,12 @@ public class BBoxDBClient implements BBoxDB {
 	/**
 	 * The pending packages for compression
 	 */
-	protected final List<NetworkRequestPackage> pendingCompressionPackages;
+	protected final CompressionBatch compressionBatch;
+	
+	/**
+	 * The negotiated compression type of the connection
+	 */
+	protected volatile byte compressionType = NetworkConst.COMPRESSION_TYPE_NONE;
 
 	/**
 	 * The Server response handler
@@ -195,12 +203,12 @@ public class BBoxDBClient implements BBoxDB {
 		this.sequenceNumberGenerator = new SequenceNumberGenerator();
 		this.connectionState = NetworkConnectionState.NETWORK_CONNECTION_CLOSED;
 		
-		// Default: Enable gzip compression
-		clientCapabilities.setGZipCompression();
+		// Default: Enable all compression codecs, the server selects one
+		NetworkCompressionCodecFactory.setSupportedCodecs(clientCapabilities);
 		
 		pagingEnabled = true;
 		tuplesPerPage = 50;
-		pendingCompressionPackages = new ArrayList<>();
+		compressionBatch = new CompressionBatch();
 		serverResponseHandler = new HashMap<>();
 		initResponseHandler();
 	}
@@ -305,6 +313,7 @@ public class BBoxDBClient implements BBoxDB {
 		
 		final HelloResponse helloResponse = operationFuture.get(0);
 		connectionCapabilities = helloResponse.getPeerCapabilities();
+		compressionType = NetworkCompressionCodecFactory.getCompressionType(connectionCapabilities);
 
 		connectionState = NetworkConnectionState.NETWORK_CONNECTION_OPEN;
 		logger.debug("Handshaking with {} done", getConnectionName());
@@ -507,6 +516,48 @@ public class BBoxDBClient implements BBoxDB {
 
 		return clientOperationFuture;
 	}
+	
+	/* (non-Javadoc)
+	 * @see org.bboxdb.network.client.BBoxDB#insertTuples(java.lang.String, java.util.Collection)
+	 */
+	@Override
+	public EmptyResultFuture insertTuples(final String table, final Collection<Tuple> tuples) 
+			throws BBoxDBException {
+		
+		final RoutingHeader routingHeader = new RoutingHeader(false);
+
+		return insertTuples(table, tuples, routingHeader);
+	}
+	
+	/**
+	 * Insert multiple tuples with one request
+	 * @param table
+	 * @param tuples
+	 * @param routingHeader
+	 * @return
+	 */
+	public EmptyResultFuture insertTuples(final String table, final Collection<Tuple> tuples, 
+			final RoutingHeader routingHeader) {
+		
+		if(connectionState != NetworkConnectionState.NETWORK_CONNECTION_OPEN) {
+			return createFailedFuture("insertTuples called, but connection not ready: " + this);
+		}
+		
+		final EmptyResultFuture clientOperationFuture = new EmptyResultFuture(1);
+		final SSTableName ssTableName = new SSTableName(table);
+		final short sequenceNumber = getNextSequenceNumber();
+		
+		final InsertTuplesBatchRequest requestPackage = new InsertTuplesBatchRequest(
+				sequenceNumber, 
+				routingHeader, 
+				ssTableName, 
+				new ArrayList<>(tuples));
+		
+		registerPackageCallback(requestPackage, clientOperationFuture);
+		sendPackageToServer(requestPackage, clientOperationFuture);
+
+		return clientOperationFuture;
+	}
 
 	/* (non-Javadoc)
 	 * @see org.bboxdb.network.client.BBoxDB#deleteTuple(java.lang.String, java.lang.String)
@@ -763,10 +814,17 @@ public class BBoxDBClient implements BBoxDB {
 	public EmptyResultFuture cancelQuery(final short queryPackageId) {
 		final EmptyResultFuture clientOperationFuture = new EmptyResultFuture(1);
 		
+		// Don't collect further tuples of the query
+		getResultBuffer().remove(queryPackageId);
+		
 		final CancelQueryRequest requestPackage = new CancelQueryRequest(getNextSequenceNumber(), queryPackageId);
 		
+		registerPackageCallback(requestPackage, clientOperationFuture);
 		sendPackageToServer(requestPackage, clientOperationFuture);
 		
+		// Send cancel request immediately
+		flushPendingCompressionPackages();
+		
 		return clientOperationFuture;
 	}
 	
@@ -840,7 +898,7 @@ public class BBoxDBClient implements BBoxDB {
 			return;
 		}
 		
-		if(connectionCapabilities.hasGZipCompression()) {
+		if(compressionType != NetworkConst.COMPRESSION_TYPE_NONE) {
 			writePackageWithCompression(requestPackage, future);
 		} else {
 			writePackageUncompressed(requestPackage, future);
@@ -871,15 +929,16 @@ public class BBoxDBClient implements BBoxDB {
 	 */
 	protected void writePackageWithCompression(NetworkRequestPackage requestPackage, OperationFuture future) {
 		
-		boolean queueFull = false;
-		
-		synchronized (pendingCompressionPackages) {
-			pendingCompressionPackages.add(requestPackage);
-			queueFull = pendingCompressionPackages.size() >= Const.MAX_UNCOMPRESSED_QUEUE_SIZE;
-		}
-		
-		if(queueFull) {
-			flushPendingCompressionPackages();
+		try {
+			final boolean batchFull = compressionBatch.addPackage(requestPackage);
+			
+			if(batchFull) {
+				flushPendingCompressionPackages();
+			}
+		} catch (PackageEncodeException e) {
+			logger.warn("Got an exception while sending package to server", e);
+			future.setFailedState();
+			future.fireCompleteEvent();
 		}
 	}
 	
@@ -889,28 +948,26 @@ public class BBoxDBClient implements BBoxDB {
 	 */
 	protected void flushPendingCompressionPackages() {
 		
-		final List<NetworkRequestPackage> packagesToWrite = new ArrayList<>();
-		
-		synchronized (pendingCompressionPackages) {
-			if(pendingCompressionPackages.isEmpty()) {
+		synchronized (compressionBatch) {
+			if(compressionBatch.isEmpty()) {
 				return;
 			}
 			
-			packagesToWrite.addAll(pendingCompressionPackages);
-			pendingCompressionPackages.clear();
-		}
+			if(logger.isDebugEnabled()) {
+				logger.debug("Chunk size is: {} packages / {} bytes", 
+						compressionBatch.getPackageCount(), compressionBatch.getPendingBytes());
+			}
 			
-		if(logger.isDebugEnabled()) {
-			logger.debug("Chunk size is: {}", packagesToWrite.size());
-		}
-		
-		final NetworkRequestPackage compressionEnvelopeRequest 
-			= new CompressionEnvelopeRequest(NetworkConst.COMPRESSION_TYPE_GZIP, packagesToWrite);
-		
-		try {
-			writePackageToSocket(compressionEnvelopeRequest);
-		} catch (PackageEncodeException | IOException e) {
-			logger.error("Got an exception while write pending compression packages to server", e);
+			final NetworkRequestPackage compressionEnvelopeRequest 
+				= new CompressionEnvelopeRequest(compressionType, compressionBatch);
+			
+			try {
+				writePackageToSocket(compressionEnvelopeRequest);
+			} catch (PackageEncodeException | IOException e) {
+				logger.error("Got an exception while write pending compression packages to server", e);
+			} finally {
+				compressionBatch.reset();
+			}
 		}
 	}
 	
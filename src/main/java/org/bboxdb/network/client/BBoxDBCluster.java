@@ -17,9 +17,13 @@
  *******************************************************************************/
 package org.bboxdb.network.client;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 
 import org.bboxdb.distribution.DistributionGroupCache;
@@ -170,6 +174,64 @@ public class BBoxDBCluster implements BBoxDB {
 		return FutureHelper.getFailedEmptyResultFuture();
 	}
 
+	@Override
+	public EmptyResultFuture insertTuples(final String table, final Collection<Tuple> tuples) 
+			throws BBoxDBException {
+		
+		try {
+			final SSTableName ssTableName = new SSTableName(table);
+			
+			final KDtreeZookeeperAdapter distributionAdapter = DistributionGroupCache.getGroupForTableName(
+					ssTableName, zookeeperClient);
+
+			final DistributionRegion distributionRegion = distributionAdapter.getRootNode();
+			
+			// Group the tuples by their routing list, each group is send with one request
+			final Map<List<RoutingHop>, List<Tuple>> tuplesForHops = new LinkedHashMap<>();
+			
+			for(final Tuple tuple : tuples) {
+				final List<RoutingHop> hops = RoutingHopHelper.getRoutingHopsForWrite(tuple, distributionRegion);
+				
+				if(hops.isEmpty()) {
+					logger.error("Insert tuples called, but hop list for bounding box is empty: {}", 
+							tuple.getBoundingBox());
+					return FutureHelper.getFailedEmptyResultFuture();
+				}
+				
+				tuplesForHops.computeIfAbsent(hops, h -> new ArrayList<>()).add(tuple);
+			}
+			
+			final EmptyResultFuture future = new EmptyResultFuture();
+
+			for(final Entry<List<RoutingHop>, List<Tuple>> entry : tuplesForHops.entrySet()) {
+				final List<RoutingHop> hops = entry.getKey();
+				
+				// Determine the first system, it will route the request to the remaining systems
+				final DistributedInstance system = hops.iterator().next().getDistributedInstance();
+				final BBoxDBClient connection = membershipConnectionService.getConnectionForInstance(system);
+				
+				if(connection == null) {
+					logger.warn("Unable to insert tuples, no connection to system: {}", system);
+					future.merge(FutureHelper.getFailedEmptyResultFuture());
+					continue;
+				}
+				
+				final RoutingHeader routingHeader = new RoutingHeader((short) 0, hops);
+				future.merge(connection.insertTuples(table, entry.getValue(), routingHeader));
+			}
+			
+			return future;
+		} catch (ZookeeperException e) {
+			throw new BBoxDBException(e);
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted while waiting for systems list");
+			Thread.currentThread().interrupt();
+		}
+		
+		// Return after exception
+		return FutureHelper.getFailedEmptyResultFuture();
+	}
+
 	@Override
 	public EmptyResultFuture deleteTuple(final String table, final String key) throws BBoxDBException {
 		final long timestamp = MicroSecondTimestampProvider.getNewTimestamp();
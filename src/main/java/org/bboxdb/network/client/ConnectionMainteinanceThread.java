@@ -79,7 +79,8 @@ public class ConnectionMainteinanceThread extends ExceptionSafeThread {
 			}
 			
 			try {
-				Thread.sleep(NetworkConst.MAX_COMPRESSION_DELAY_MS);
+				// Wait until the pending compression packages should be written
+				bboxDBClient.compressionBatch.awaitFlush(NetworkConst.MAX_COMPRESSION_DELAY_MS);
 			} catch (InterruptedException e) {
 				// Handle InterruptedException directly
 				return;
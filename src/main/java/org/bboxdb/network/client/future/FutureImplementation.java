@@ -17,6 +17,8 @@
  *******************************************************************************/
 package org.bboxdb.network.client.future;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -68,6 +70,11 @@ public class FutureImplementation<T> {
 	 */
 	protected String connectionName;
 	
+	/**
+	 * The callbacks, executed when the future is complete
+	 */
+	protected final List<Runnable> completeCallbacks = new ArrayList<>();
+	
 	/**
 	 * Empty constructor
 	 */
@@ -196,9 +203,33 @@ public class FutureImplementation<T> {
 		done = true;
 		completionTime = System.nanoTime();
 		
+		final List<Runnable> callbacks;
+		
 		synchronized (mutex) {
 			mutex.notifyAll();
+			callbacks = new ArrayList<>(completeCallbacks);
+			completeCallbacks.clear();
 		}
+		
+		callbacks.forEach(c -> c.run());
+	}
+	
+	/**
+	 * Add a callback, that is executed when the future is complete. The callback
+	 * is executed by the thread that completes the future, so it should not block. 
+	 * If the future is already complete, the callback is executed immediately.
+	 * 
+	 * @param callback
+	 */
+	public void addCompleteCallback(final Runnable callback) {
+		synchronized (mutex) {
+			if(! done) {
+				completeCallbacks.add(callback);
+				return;
+			}
+		}
+		
+		callback.run();
 	}
 
 	/**
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class OperationFutureImpl<T> implements OperationFuture {
@@ -219,6 +220,28 @@ public class OperationFutureImpl<T> implements OperationFuture {
 		}
 	}
 
+	/**
+	 * Add a callback, that is executed when all futures are complete
+	 * @param callback
+	 */
+	public void addCompleteCallback(final Runnable callback) {
+		
+		if(futures.isEmpty()) {
+			callback.run();
+			return;
+		}
+		
+		final AtomicInteger pendingFutures = new AtomicInteger(futures.size());
+		
+		for(final FutureImplementation<T> future : futures) {
+			future.addCompleteCallback(() -> {
+				if(pendingFutures.decrementAndGet() == 0) {
+					callback.run();
+				}
+			});
+		}
+	}
+
 	/**
 	 * Merge future lists
 	 * @param result
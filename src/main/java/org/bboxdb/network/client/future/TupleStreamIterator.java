@@ -0,0 +1,328 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.client.future;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.bboxdb.network.client.BBoxDBClient;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.queryprocessor.CloseableIterator;
+import org.bboxdb.util.KeyFingerprintSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pull based iterator for the results of a TupleListFuture. The next page of a 
+ * paged result is requested when the consumer has drained the current page, so at 
+ * most one page per result is kept in memory. The results are consumed page by page 
+ * in a round robin manner; while the next page of a result is transferred, the 
+ * pages of the other results are consumed. No threads are used.
+ * 
+ * Duplicates (e.g., delivered by replicas or contained multiple times in one result) 
+ * are removed by the key of the tuple. Only fingerprints of the keys are stored, the 
+ * fingerprints of all results are kept until the iteration is finished.
+ * 
+ * Closing the iterator cancels the unfinished queries on the servers.
+ */
+public class TupleStreamIterator implements CloseableIterator<Tuple> {
+	
+	/**
+	 * The active results (results with buffered tuples or pending pages)
+	 */
+	protected final List<ResultStream> activeResults;
+	
+	/**
+	 * The position of the result that is consumed
+	 */
+	protected int currentResult;
+	
+	/**
+	 * The keys of the returned tuples
+	 */
+	protected KeyFingerprintSet seenKeys;
+	
+	/**
+	 * The next tuple for the next operation
+	 */
+	protected Tuple nextTuple;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(TupleStreamIterator.class);
+
+	public TupleStreamIterator(final TupleListFuture tupleListFuture) throws InterruptedException {
+		this.activeResults = new ArrayList<>();
+		this.currentResult = 0;
+		this.nextTuple = null;
+		
+		final int numberOfResults = tupleListFuture.getNumberOfResultObjets();
+		
+		for(int resultId = 0; resultId < numberOfResults; resultId++) {
+			final ResultStream resultStream = new ResultStream(tupleListFuture, resultId);
+			
+			if(! resultStream.isExhausted()) {
+				activeResults.add(resultStream);
+			}
+		}
+		
+		this.seenKeys = new KeyFingerprintSet();
+	}
+
+	@Override
+	public boolean hasNext() {
+		
+		try {
+			while(nextTuple == null) {
+				
+				// All results are consumed
+				if(activeResults.isEmpty()) {
+					seenKeys = null;
+					return false;
+				}
+				
+				final ResultStream resultStream = getNextReadyResult();
+				final Tuple tuple = resultStream.nextTuple();
+				
+				if(resultStream.isExhausted()) {
+					activeResults.remove(resultStream);
+				}
+				
+				if(tuple != null && isNewKey(tuple)) {
+					nextTuple = tuple;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		
+		return true;
+	}
+
+	@Override
+	public Tuple next() {
+		if(! hasNext()) {
+			throw new NoSuchElementException("All tuples are consumed");
+		}
+		
+		final Tuple resultTuple = nextTuple;
+		nextTuple = null;
+		return resultTuple;
+	}
+	
+	/**
+	 * Get the next result with a buffered tuple or a received page. The current 
+	 * result is preferred, so the results are consumed page by page. 
+	 * 
+	 * @return
+	 */
+	protected ResultStream getNextReadyResult() {
+		final int results = activeResults.size();
+		
+		for(int i = 0; i < results; i++) {
+			final int position = (currentResult + i) % results;
+			final ResultStream resultStream = activeResults.get(position);
+			
+			if(resultStream.isReady()) {
+				currentResult = position;
+				return resultStream;
+			}
+		}
+		
+		// No page is received yet, wait for the page of the current result
+		currentResult = currentResult % results;
+		return activeResults.get(currentResult);
+	}
+	
+	/**
+	 * Is the key of the tuple not returned before? The key is recorded, a 
+	 * duplicate can follow in any result, including the result of the tuple.
+	 * 
+	 * @param tuple
+	 * @return
+	 */
+	protected boolean isNewKey(final Tuple tuple) {
+		return seenKeys.add(tuple.getKey());
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		logger.trace("Close called on iterator");
+		
+		for(final ResultStream resultStream : activeResults) {
+			resultStream.cancel();
+		}
+		
+		activeResults.clear();
+		seenKeys = null;
+		nextTuple = null;
+	}
+	
+	/**
+	 * The state of a single result
+	 */
+	protected static class ResultStream {
+		
+		/**
+		 * The tuples of the current page
+		 */
+		protected Iterator<Tuple> page;
+		
+		/**
+		 * Is the last page received?
+		 */
+		protected boolean complete;
+		
+		/**
+		 * The requested next page
+		 */
+		protected TupleListFuture pendingPage;
+		
+		/**
+		 * The connection for the paging
+		 */
+		protected final BBoxDBClient connection;
+		
+		/**
+		 * The id of the query
+		 */
+		protected final short queryRequestId;
+		
+		public ResultStream(final TupleListFuture tupleListFuture, final int resultId) 
+				throws InterruptedException {
+			
+			final List<Tuple> tupleList = tupleListFuture.get(resultId);
+			this.page = (tupleList == null) ? Collections.emptyIterator() : tupleList.iterator();
+			this.complete = ! tupleListFuture.hasMorePages(resultId);
+			this.queryRequestId = tupleListFuture.getRequestId(resultId);
+			this.connection = complete ? null : tupleListFuture.getConnectionForResult(resultId);
+			
+			if(! complete && connection == null) {
+				logger.error("Unable to get connection for paging: {}", resultId);
+				complete = true;
+			}
+			
+			requestNextPageIfDrained();
+		}
+		
+		/**
+		 * Are buffered tuples available or is the next page received?
+		 * @return
+		 */
+		public boolean isReady() {
+			return page.hasNext() || (pendingPage != null && pendingPage.isDone());
+		}
+		
+		/**
+		 * Are all tuples consumed?
+		 * @return
+		 */
+		public boolean isExhausted() {
+			return complete && pendingPage == null && ! page.hasNext();
+		}
+		
+		/**
+		 * Get the next tuple, wait for the next page if needed
+		 * @return the tuple or null, if the result is exhausted
+		 * @throws InterruptedException 
+		 */
+		public Tuple nextTuple() throws InterruptedException {
+			
+			if(! page.hasNext() && pendingPage != null) {
+				receiveNextPage();
+			}
+			
+			if(! page.hasNext()) {
+				return null;
+			}
+			
+			final Tuple tuple = page.next();
+			requestNextPageIfDrained();
+			return tuple;
+		}
+		
+		/**
+		 * Request the next page, when the current page is consumed 
+		 */
+		protected void requestNextPageIfDrained() {
+			if(complete || pendingPage != null || page.hasNext()) {
+				return;
+			}
+			
+			pendingPage = (TupleListFuture) connection.getNextPage(queryRequestId);
+		}
+		
+		/**
+		 * Wait for the requested page
+		 * @throws InterruptedException
+		 */
+		protected void receiveNextPage() throws InterruptedException {
+			final TupleListFuture nextPage = pendingPage;
+			pendingPage = null;
+			
+			nextPage.waitForAll();
+			
+			if(nextPage.isFailed()) {
+				logger.error("Requesting next page failed! Query result is incomplete: {}", 
+						nextPage.getAllMessages());
+				complete = true;
+				return;
+			}
+			
+			// Query is send to one server, so the number of
+			// result objects should be 1
+			if(nextPage.getNumberOfResultObjets() != 1) {
+				logger.error("Got a non expected number of result objects {}", 
+						nextPage.getNumberOfResultObjets());
+			}
+			
+			page = nextPage.get(0).iterator();
+			complete = ! nextPage.hasMorePages(0);
+			requestNextPageIfDrained();
+		}
+		
+		/**
+		 * Cancel the query on the server, if the result is not complete
+		 * @throws InterruptedException 
+		 */
+		public void cancel() throws InterruptedException {
+			
+			// The page in transfer is received before the query is canceled
+			if(pendingPage != null) {
+				final TupleListFuture nextPage = pendingPage;
+				pendingPage = null;
+				nextPage.waitForAll();
+				complete = nextPage.isFailed() || ! nextPage.hasMorePages(0);
+			}
+			
+			page = Collections.emptyIterator();
+			
+			if(complete) {
+				return;
+			}
+			
+			complete = true;
+			connection.cancelQuery(queryRequestId);
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.compression;
+
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.packages.NetworkPackage;
+import org.bboxdb.network.packages.PackageEncodeException;
+import org.bboxdb.util.io.ReusableByteArrayOutputStream;
+
+/**
+ * The packages of a connection that are waiting for the compression. The packages 
+ * are encoded when they are added, so the batch is flushed by the encoded bytes. The 
+ * time a package waits for the flush is adapted to the data rate of the connection: 
+ * when the rate is high enough to collect a reasonable batch within the max delay, 
+ * the batch waits for it. Otherwise waiting only adds latency and the batch is 
+ * flushed after the min delay.
+ * 
+ * All methods synchronize on the batch.
+ */
+public class CompressionBatch {
+	
+	/**
+	 * The encoded packages
+	 */
+	protected final ReusableByteArrayOutputStream buffer;
+	
+	/**
+	 * The number of packages in the batch
+	 */
+	protected int packages;
+	
+	/**
+	 * The time when the first package was added to the batch
+	 */
+	protected long firstPackageTimestamp;
+	
+	/**
+	 * The estimated data rate of the connection in bytes per millisecond
+	 */
+	protected double byteRate;
+	
+	/**
+	 * The max number of packages in a batch, the count is encoded as a short
+	 */
+	protected final static int MAX_PACKAGES = Short.MAX_VALUE;
+	
+	/**
+	 * The weight of the last batch in the data rate estimation
+	 */
+	protected final static double RATE_WEIGHT = 0.5;
+
+	public CompressionBatch() {
+		this.buffer = new ReusableByteArrayOutputStream(NetworkConst.MIN_COMPRESSION_BATCH_BYTES, 
+				2 * NetworkConst.MAX_COMPRESSION_BATCH_BYTES);
+		this.packages = 0;
+		this.byteRate = 0;
+	}
+	
+	/**
+	 * Encode the package and add it to the batch
+	 * 
+	 * @param networkPackage
+	 * @return true if the batch is full and should be flushed
+	 * @throws PackageEncodeException
+	 */
+	public synchronized boolean addPackage(final NetworkPackage networkPackage) 
+			throws PackageEncodeException {
+		
+		final int bufferSize = buffer.size();
+		
+		try {
+			networkPackage.writeToOutputStream(buffer);
+		} catch(PackageEncodeException e) {
+			// Remove the partial encoded package
+			buffer.truncate(bufferSize);
+			throw e;
+		}
+		
+		packages++;
+		
+		if(packages == 1) {
+			firstPackageTimestamp = System.currentTimeMillis();
+			
+			// Wake up the threads waiting in awaitFlush()
+			notifyAll();
+		}
+		
+		return isFull();
+	}
+
+	/**
+	 * Is the batch full?
+	 * 
+	 * @return
+	 */
+	protected boolean isFull() {
+		return buffer.size() >= NetworkConst.MAX_COMPRESSION_BATCH_BYTES 
+				|| packages >= MAX_PACKAGES;
+	}
+	
+	/**
+	 * The time a package waits in the batch for more packages
+	 * 
+	 * @return
+	 */
+	public synchronized long getFlushDelay() {
+		
+		if(byteRate <= 0) {
+			return NetworkConst.MIN_COMPRESSION_DELAY_MS;
+		}
+		
+		final double fillTime = NetworkConst.MIN_COMPRESSION_BATCH_BYTES / byteRate;
+		
+		if(fillTime > NetworkConst.MAX_COMPRESSION_DELAY_MS) {
+			return NetworkConst.MIN_COMPRESSION_DELAY_MS;
+		}
+		
+		return Math.max(NetworkConst.MIN_COMPRESSION_DELAY_MS, (long) Math.ceil(fillTime));
+	}
+	
+	/**
+	 * Should the batch be flushed?
+	 * 
+	 * @return
+	 */
+	public synchronized boolean isFlushNeeded() {
+		
+		if(packages == 0) {
+			return false;
+		}
+		
+		return isFull() || getTimeUntilFlush() <= 0;
+	}
+	
+	/**
+	 * The time until the batch should be flushed
+	 * 
+	 * @return
+	 */
+	protected long getTimeUntilFlush() {
+		return firstPackageTimestamp + getFlushDelay() - System.currentTimeMillis();
+	}
+	
+	/**
+	 * Wait until the batch should be flushed. An empty batch waits at most 
+	 * for the given time.
+	 * 
+	 * @param maxWaitTime
+	 * @return true if the batch should be flushed
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean awaitFlush(final long maxWaitTime) throws InterruptedException {
+		
+		final long deadline = System.currentTimeMillis() + maxWaitTime;
+		
+		while(true) {
+			final long waitTime;
+			
+			if(packages > 0) {
+				if(isFull()) {
+					return true;
+				}
+				
+				waitTime = getTimeUntilFlush();
+			} else {
+				waitTime = deadline - System.currentTimeMillis();
+			}
+			
+			if(waitTime <= 0) {
+				return packages > 0;
+			}
+			
+			wait(waitTime);
+		}
+	}
+	
+	/**
+	 * Remove all packages from the batch, called after the batch is written
+	 */
+	public synchronized void reset() {
+		
+		if(packages == 0) {
+			return;
+		}
+		
+		final long batchTime = Math.max(1, System.currentTimeMillis() - firstPackageTimestamp);
+		final double batchRate = buffer.size() / (double) batchTime;
+		byteRate = RATE_WEIGHT * batchRate + (1 - RATE_WEIGHT) * byteRate;
+		
+		buffer.reset();
+		packages = 0;
+	}
+
+	/**
+	 * Is the batch empty?
+	 * 
+	 * @return
+	 */
+	public synchronized boolean isEmpty() {
+		return packages == 0;
+	}
+	
+	/**
+	 * Get the number of packages in the batch
+	 * 
+	 * @return
+	 */
+	public synchronized int getPackageCount() {
+		return packages;
+	}
+	
+	/**
+	 * Get the size of the encoded packages
+	 * 
+	 * @return
+	 */
+	public synchronized int getPendingBytes() {
+		return buffer.size();
+	}
+	
+	/**
+	 * Get the buffer with the encoded packages. Only the first 
+	 * getPendingBytes() bytes are valid.
+	 * 
+	 * @return
+	 */
+	public synchronized byte[] getBuffer() {
+		return buffer.getBuffer();
+	}
+}
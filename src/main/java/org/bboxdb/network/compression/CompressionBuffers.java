@@ -0,0 +1,78 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.compression;
+
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.util.io.ReusableByteArrayOutputStream;
+
+public class CompressionBuffers {
+	
+	/**
+	 * The max size of the buffers that are kept by a thread. Larger buffers
+	 * are allocated for a single envelope.
+	 */
+	protected final static int MAX_RETAINED_SIZE = 4 * NetworkConst.MAX_COMPRESSION_BATCH_BYTES;
+	
+	/**
+	 * The buffer for the compressed data
+	 */
+	protected final static ThreadLocal<byte[]> COMPRESSION_BUFFER = new ThreadLocal<>();
+	
+	/**
+	 * The buffer for the uncompressed packages
+	 */
+	protected final static ThreadLocal<ReusableByteArrayOutputStream> PACKAGE_BUFFER 
+		= ThreadLocal.withInitial(() -> new ReusableByteArrayOutputStream(
+				NetworkConst.MIN_COMPRESSION_BATCH_BYTES, MAX_RETAINED_SIZE));
+
+	/**
+	 * Get a buffer of at least the given size for the compressed data. The 
+	 * buffer is reused by the next call of the thread.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	public static byte[] getCompressionBuffer(final int size) {
+		
+		if(size > MAX_RETAINED_SIZE) {
+			return new byte[size];
+		}
+		
+		final byte[] buffer = COMPRESSION_BUFFER.get();
+		
+		if(buffer != null && buffer.length >= size) {
+			return buffer;
+		}
+		
+		final byte[] newBuffer = new byte[size];
+		COMPRESSION_BUFFER.set(newBuffer);
+		return newBuffer;
+	}
+	
+	/**
+	 * Get an empty buffer for the uncompressed packages. The buffer is 
+	 * reused by the next call of the thread.
+	 * 
+	 * @return
+	 */
+	public static ReusableByteArrayOutputStream getPackageBuffer() {
+		final ReusableByteArrayOutputStream buffer = PACKAGE_BUFFER.get();
+		buffer.reset();
+		return buffer;
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.capabilities.PeerCapabilities;
+
+public class GZipNetworkCompressionCodec implements NetworkCompressionCodec {
+
+	/**
+	 * The name of the codec
+	 */
+	public final static String NAME = "gzip";
+	
+	/**
+	 * The gzip header (magic number, deflate, no flags, no mtime, no extra flags, os)
+	 */
+	protected final static byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+	
+	/**
+	 * The size of the gzip trailer (crc32 and input size)
+	 */
+	protected final static int GZIP_TRAILER_SIZE = 8;
+	
+	/**
+	 * The deflater of the thread, reused for all envelopes
+	 */
+	protected final static ThreadLocal<Deflater> DEFLATER 
+		= ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	
+	/**
+	 * The crc of the thread, reused for all envelopes
+	 */
+	protected final static ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(() -> new CRC32());
+
+	@Override
+	public byte getCompressionType() {
+		return NetworkConst.COMPRESSION_TYPE_GZIP;
+	}
+	
+	@Override
+	public String getName() {
+		return NAME;
+	}
+	
+	@Override
+	public boolean isSupported(final PeerCapabilities peerCapabilities) {
+		return peerCapabilities.hasGZipCompression();
+	}
+	
+	@Override
+	public void setSupported(final PeerCapabilities peerCapabilities) {
+		peerCapabilities.setGZipCompression();
+	}
+
+	@Override
+	public int getMaxCompressedLength(final int length) {
+		// The deflate bound of zlib
+		final int deflateBound = length + ((length + 7) >> 3) + ((length + 63) >> 6) + 5;
+		return GZIP_HEADER.length + deflateBound + GZIP_TRAILER_SIZE;
+	}
+
+	@Override
+	public int compress(final byte[] data, final int length, final byte[] target) 
+			throws IOException {
+		
+		final Deflater deflater = DEFLATER.get();
+		final CRC32 crc = CRC.get();
+		
+		try {
+			System.arraycopy(GZIP_HEADER, 0, target, 0, GZIP_HEADER.length);
+			int position = GZIP_HEADER.length;
+			
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			
+			final int trailerStart = target.length - GZIP_TRAILER_SIZE;
+			
+			while(! deflater.finished()) {
+				if(position >= trailerStart) {
+					throw new IOException("Compression buffer is too small: " + target.length);
+				}
+				
+				position += deflater.deflate(target, position, trailerStart - position);
+			}
+			
+			crc.update(data, 0, length);
+			writeIntLittleEndian(target, position, (int) crc.getValue());
+			writeIntLittleEndian(target, position + 4, length);
+			
+			return position + GZIP_TRAILER_SIZE;
+		} finally {
+			deflater.reset();
+			crc.reset();
+		}
+	}
+
+	/**
+	 * Write the int in the byte order of the gzip format
+	 * 
+	 * @param target
+	 * @param position
+	 * @param value
+	 */
+	protected void writeIntLittleEndian(final byte[] target, final int position, final int value) {
+		target[position] = (byte) value;
+		target[position + 1] = (byte) (value >>> 8);
+		target[position + 2] = (byte) (value >>> 16);
+		target[position + 3] = (byte) (value >>> 24);
+	}
+
+	@Override
+	public byte[] decompress(final byte[] compressedData, final int offset, final int length) 
+			throws IOException {
+		
+		final ByteArrayInputStream bais = new ByteArrayInputStream(compressedData, offset, length);
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(length * 4);
+
+		try (final GZIPInputStream inputStream = new GZIPInputStream(bais)) {
+			final byte[] buffer = new byte[10240];
+			for (int readBytes = 0; (readBytes = inputStream.read(buffer)) > 0; ) {
+				baos.write(buffer, 0, readBytes);
+			}
+		}
+		
+		return baos.toByteArray();
+	}
+
+}
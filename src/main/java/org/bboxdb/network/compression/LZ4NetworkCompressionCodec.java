@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.capabilities.PeerCapabilities;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+public class LZ4NetworkCompressionCodec implements NetworkCompressionCodec {
+
+	/**
+	 * The name of the codec
+	 */
+	public final static String NAME = "lz4";
+	
+	/**
+	 * The size of the uncompressed length, written in front of the compressed block
+	 */
+	protected final static int LENGTH_PREFIX_SIZE = 4;
+	
+	/**
+	 * The compressor (thread safe)
+	 */
+	protected final LZ4Compressor compressor;
+	
+	/**
+	 * The decompressor (thread safe)
+	 */
+	protected final LZ4SafeDecompressor decompressor;
+
+	public LZ4NetworkCompressionCodec() {
+		final LZ4Factory factory = LZ4Factory.fastestInstance();
+		this.compressor = factory.fastCompressor();
+		this.decompressor = factory.safeDecompressor();
+	}
+	
+	@Override
+	public byte getCompressionType() {
+		return NetworkConst.COMPRESSION_TYPE_LZ4;
+	}
+	
+	@Override
+	public String getName() {
+		return NAME;
+	}
+	
+	@Override
+	public boolean isSupported(final PeerCapabilities peerCapabilities) {
+		return peerCapabilities.hasLZ4Compression();
+	}
+	
+	@Override
+	public void setSupported(final PeerCapabilities peerCapabilities) {
+		peerCapabilities.setLZ4Compression();
+	}
+
+	@Override
+	public int getMaxCompressedLength(final int length) {
+		return LENGTH_PREFIX_SIZE + compressor.maxCompressedLength(length);
+	}
+
+	@Override
+	public int compress(final byte[] data, final int length, final byte[] target) 
+			throws IOException {
+		
+		try {
+			final ByteBuffer header = ByteBuffer.wrap(target);
+			header.order(Const.APPLICATION_BYTE_ORDER);
+			header.putInt(0, length);
+			
+			final int compressedLength = compressor.compress(data, 0, length, target, 
+					LENGTH_PREFIX_SIZE, target.length - LENGTH_PREFIX_SIZE);
+			
+			return LENGTH_PREFIX_SIZE + compressedLength;
+		} catch(LZ4Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public byte[] decompress(final byte[] compressedData, final int offset, final int length) 
+			throws IOException {
+		
+		if(length < LENGTH_PREFIX_SIZE) {
+			throw new IOException("Compressed data is too short: " + length);
+		}
+		
+		final ByteBuffer header = ByteBuffer.wrap(compressedData, offset, length);
+		header.order(Const.APPLICATION_BYTE_ORDER);
+		final int uncompressedLength = header.getInt();
+		
+		if(uncompressedLength < 0) {
+			throw new IOException("Invalid uncompressed length: " + uncompressedLength);
+		}
+		
+		try {
+			final byte[] uncompressedData = new byte[uncompressedLength];
+			
+			final int decompressedLength = decompressor.decompress(compressedData, 
+					offset + LENGTH_PREFIX_SIZE, length - LENGTH_PREFIX_SIZE, 
+					uncompressedData, 0, uncompressedLength);
+			
+			if(decompressedLength != uncompressedLength) {
+				throw new IOException("Uncompressed data has wrong length " + decompressedLength 
+						+ " expected " + uncompressedLength);
+			}
+			
+			return uncompressedData;
+		} catch(LZ4Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+}
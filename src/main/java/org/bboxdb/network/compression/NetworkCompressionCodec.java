@@ -0,0 +1,89 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.compression;
+
+import java.io.IOException;
+
+import org.bboxdb.network.capabilities.PeerCapabilities;
+
+public interface NetworkCompressionCodec {
+	
+	/**
+	 * Get the compression type of the codec. The type is stored in the header 
+	 * of every compression envelope and used to find the codec for decompression.
+	 * 
+	 * @return
+	 */
+	public byte getCompressionType();
+	
+	/**
+	 * Get the name of the codec, used in the configuration
+	 * 
+	 * @return
+	 */
+	public String getName();
+	
+	/**
+	 * Is the codec supported by the peer?
+	 * 
+	 * @param peerCapabilities
+	 * @return
+	 */
+	public boolean isSupported(final PeerCapabilities peerCapabilities);
+	
+	/**
+	 * Announce the codec in the capabilities
+	 * 
+	 * @param peerCapabilities
+	 */
+	public void setSupported(final PeerCapabilities peerCapabilities);
+	
+	/**
+	 * Get the max size of the compressed data for the given input length
+	 * 
+	 * @param length
+	 * @return
+	 */
+	public int getMaxCompressedLength(final int length);
+	
+	/**
+	 * Compress the first length bytes of the data into the target array. The 
+	 * target has at least the size returned by getMaxCompressedLength().
+	 * 
+	 * @param data
+	 * @param length
+	 * @param target
+	 * @return the number of compressed bytes
+	 * @throws IOException
+	 */
+	public int compress(final byte[] data, final int length, final byte[] target) 
+			throws IOException;
+	
+	/**
+	 * Decompress the given range of the compressed data
+	 * 
+	 * @param compressedData
+	 * @param offset
+	 * @param length
+	 * @return the uncompressed bytes
+	 * @throws IOException
+	 */
+	public byte[] decompress(final byte[] compressedData, final int offset, final int length) 
+			throws IOException;
+
+}
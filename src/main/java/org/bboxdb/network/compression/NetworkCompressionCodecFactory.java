@@ -0,0 +1,148 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.compression;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.capabilities.PeerCapabilities;
+import org.bboxdb.network.packages.PackageEncodeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.luben.zstd.Zstd;
+
+public class NetworkCompressionCodecFactory {
+	
+	/**
+	 * The codecs in the default order of preference, the fastest codec first
+	 */
+	public final static List<String> DEFAULT_CODEC_PREFERENCE = Arrays.asList(
+			LZ4NetworkCompressionCodec.NAME, ZstdNetworkCompressionCodec.NAME, 
+			GZipNetworkCompressionCodec.NAME);
+	
+	/**
+	 * The known codecs, accessed by compression type
+	 */
+	protected final static Map<Byte, NetworkCompressionCodec> codecs = new ConcurrentHashMap<>();
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(NetworkCompressionCodecFactory.class);
+	
+	static {
+		registerCodec(new GZipNetworkCompressionCodec());
+		registerCodec(new LZ4NetworkCompressionCodec());
+		
+		// Zstd needs a native library, which is not available on all platforms
+		try {
+			Zstd.compressBound(0);
+			registerCodec(new ZstdNetworkCompressionCodec());
+		} catch(Throwable e) {
+			logger.warn("Unable to load the zstd library, zstd compression is disabled", e);
+		}
+	}
+	
+	/**
+	 * Register a codec, the codec can be negotiated with the peers afterwards
+	 * @param codec
+	 */
+	public static void registerCodec(final NetworkCompressionCodec codec) {
+		codecs.putIfAbsent(codec.getCompressionType(), codec);
+	}
+	
+	/**
+	 * Get the codec for the given compression type
+	 * @param compressionType
+	 * @return
+	 * @throws PackageEncodeException
+	 */
+	public static NetworkCompressionCodec getCodecForType(final byte compressionType) 
+			throws PackageEncodeException {
+		
+		final NetworkCompressionCodec codec = codecs.get(compressionType);
+		
+		if(codec == null) {
+			throw new PackageEncodeException("Unknown compression type: " + compressionType);
+		}
+		
+		return codec;
+	}
+	
+	/**
+	 * Get the codec for the given name
+	 * @param name
+	 * @return the codec or null
+	 */
+	public static NetworkCompressionCodec getCodecForName(final String name) {
+		return codecs.values()
+				.stream()
+				.filter(c -> c.getName().equalsIgnoreCase(name))
+				.findAny()
+				.orElse(null);
+	}
+	
+	/**
+	 * Announce all known codecs in the capabilities
+	 * @param peerCapabilities
+	 */
+	public static void setSupportedCodecs(final PeerCapabilities peerCapabilities) {
+		codecs.values().forEach(c -> c.setSupported(peerCapabilities));
+	}
+	
+	/**
+	 * Select the first codec of the preference list that is supported by the peer
+	 * 
+	 * @param peerCapabilities
+	 * @param codecPreference
+	 * @return the compression type or COMPRESSION_TYPE_NONE
+	 */
+	public static byte selectCompressionType(final PeerCapabilities peerCapabilities, 
+			final List<String> codecPreference) {
+		
+		for(final String codecName : codecPreference) {
+			final NetworkCompressionCodec codec = getCodecForName(codecName);
+			
+			if(codec == null) {
+				logger.warn("Unknown compression codec: {}", codecName);
+				continue;
+			}
+			
+			if(codec.isSupported(peerCapabilities)) {
+				return codec.getCompressionType();
+			}
+		}
+		
+		return NetworkConst.COMPRESSION_TYPE_NONE;
+	}
+	
+	/**
+	 * Get the compression type of a negotiated connection
+	 * 
+	 * @param connectionCapabilities
+	 * @return the compression type or COMPRESSION_TYPE_NONE
+	 */
+	public static byte getCompressionType(final PeerCapabilities connectionCapabilities) {
+		return selectCompressionType(connectionCapabilities, DEFAULT_CODEC_PREFERENCE);
+	}
+	
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.capabilities.PeerCapabilities;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+
+public class ZstdNetworkCompressionCodec implements NetworkCompressionCodec {
+
+	/**
+	 * The name of the codec
+	 */
+	public final static String NAME = "zstd";
+	
+	/**
+	 * The compression level. The packages are compressed on the fly, 
+	 * so a fast level is used.
+	 */
+	protected final static int COMPRESSION_LEVEL = 1;
+	
+	/**
+	 * The size of the uncompressed length, written in front of the compressed frame
+	 */
+	protected final static int LENGTH_PREFIX_SIZE = 4;
+	
+	/**
+	 * The compression context of the thread, reused for all envelopes
+	 */
+	protected final static ThreadLocal<ZstdCompressCtx> COMPRESS_CONTEXT 
+		= ThreadLocal.withInitial(() -> new ZstdCompressCtx().setLevel(COMPRESSION_LEVEL));
+	
+	/**
+	 * The decompression context of the thread, reused for all envelopes
+	 */
+	protected final static ThreadLocal<ZstdDecompressCtx> DECOMPRESS_CONTEXT 
+		= ThreadLocal.withInitial(() -> new ZstdDecompressCtx());
+	
+	@Override
+	public byte getCompressionType() {
+		return NetworkConst.COMPRESSION_TYPE_ZSTD;
+	}
+	
+	@Override
+	public String getName() {
+		return NAME;
+	}
+	
+	@Override
+	public boolean isSupported(final PeerCapabilities peerCapabilities) {
+		return peerCapabilities.hasZstdCompression();
+	}
+	
+	@Override
+	public void setSupported(final PeerCapabilities peerCapabilities) {
+		peerCapabilities.setZstdCompression();
+	}
+
+	@Override
+	public int getMaxCompressedLength(final int length) {
+		return LENGTH_PREFIX_SIZE + (int) Zstd.compressBound(length);
+	}
+
+	@Override
+	public int compress(final byte[] data, final int length, final byte[] target) 
+			throws IOException {
+		
+		try {
+			final ByteBuffer header = ByteBuffer.wrap(target);
+			header.order(Const.APPLICATION_BYTE_ORDER);
+			header.putInt(0, length);
+			
+			final int compressedLength = COMPRESS_CONTEXT.get().compressByteArray(target, 
+					LENGTH_PREFIX_SIZE, target.length - LENGTH_PREFIX_SIZE, data, 0, length);
+			
+			return LENGTH_PREFIX_SIZE + compressedLength;
+		} catch(ZstdException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public byte[] decompress(final byte[] compressedData, final int offset, final int length) 
+			throws IOException {
+		
+		if(length < LENGTH_PREFIX_SIZE) {
+			throw new IOException("Compressed data is too short: " + length);
+		}
+		
+		final ByteBuffer header = ByteBuffer.wrap(compressedData, offset, length);
+		header.order(Const.APPLICATION_BYTE_ORDER);
+		final int uncompressedLength = header.getInt();
+		
+		if(uncompressedLength < 0) {
+			throw new IOException("Invalid uncompressed length: " + uncompressedLength);
+		}
+		
+		try {
+			final byte[] uncompressedData = new byte[uncompressedLength];
+			
+			final int decompressedLength = DECOMPRESS_CONTEXT.get().decompressByteArray(
+					uncompressedData, 0, uncompressedLength, compressedData, 
+					offset + LENGTH_PREFIX_SIZE, length - LENGTH_PREFIX_SIZE);
+			
+			if(decompressedLength != uncompressedLength) {
+				throw new IOException("Uncompressed data has wrong length " + decompressedLength 
+						+ " expected " + uncompressedLength);
+			}
+			
+			return uncompressedData;
+		} catch(ZstdException e) {
+			throw new IOException(e);
+		}
+	}
+
+}
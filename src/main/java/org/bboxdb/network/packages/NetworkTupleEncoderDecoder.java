@@ -19,15 +19,22 @@ package org.bboxdb.network.packages;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 
 import org.bboxdb.misc.Const;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleAndTable;
+import org.bboxdb.storage.sstable.TupleHelper;
 
 public class NetworkTupleEncoderDecoder {
 	
+	/**
+	 * The size of the header of an encoded tuple
+	 */
+	public final static int HEADER_SIZE = 20;
+	
 	/**
 	 * Convert a ByteBuffer into a TupleAndTable object
 	 * @param encodedPackage
@@ -96,5 +103,46 @@ public class NetworkTupleEncoderDecoder {
 		
 		return bos.toByteArray();
 	}
+	
+	/**
+	 * Get the size of the encoded tuple and table for a tuple in the storage format
+	 * (see Tuple.getEncodedTuple())
+	 * 
+	 * @param storedTuple
+	 * @param tableBytes
+	 * @return
+	 */
+	public static long getEncodedSize(final byte[] storedTuple, final byte[] tableBytes) {
+		return HEADER_SIZE + tableBytes.length + storedTuple.length - TupleHelper.TUPLE_HEADER_SIZE;
+	}
+	
+	/**
+	 * Write the tuple in the storage format and the table onto the output stream. The key, 
+	 * the bounding box and the data are copied directly from the stored bytes without 
+	 * decoding them. 
+	 * 
+	 * @param storedTuple
+	 * @param versionTimestamp
+	 * @param tableBytes
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	public static void writeToStream(final byte[] storedTuple, final long versionTimestamp, 
+			final byte[] tableBytes, final OutputStream outputStream) throws IOException {
+		
+		final ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE);
+		bb.order(Const.APPLICATION_BYTE_ORDER);
+		bb.putShort((short) tableBytes.length);
+		bb.putShort((short) TupleHelper.getEncodedKeyLength(storedTuple));
+		bb.putInt(TupleHelper.getEncodedBoundingBoxLength(storedTuple));
+		bb.putInt(TupleHelper.getEncodedDataLength(storedTuple));
+		bb.putLong(versionTimestamp);
+		
+		// Key, bounding box and data have the same layout in both formats
+		outputStream.write(bb.array());
+		outputStream.write(tableBytes);
+		outputStream.write(storedTuple, TupleHelper.TUPLE_HEADER_SIZE, 
+				storedTuple.length - TupleHelper.TUPLE_HEADER_SIZE);
+	}
 
 }
@@ -18,21 +18,24 @@
 package org.bboxdb.network.packages.request;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
 
 import org.bboxdb.misc.Const;
 import org.bboxdb.network.NetworkConst;
 import org.bboxdb.network.NetworkHelper;
 import org.bboxdb.network.NetworkPackageDecoder;
+import org.bboxdb.network.compression.CompressionBatch;
+import org.bboxdb.network.compression.CompressionBuffers;
+import org.bboxdb.network.compression.NetworkCompressionCodec;
+import org.bboxdb.network.compression.NetworkCompressionCodecFactory;
 import org.bboxdb.network.packages.NetworkRequestPackage;
 import org.bboxdb.network.packages.PackageEncodeException;
 import org.bboxdb.network.routing.RoutingHeader;
+import org.bboxdb.util.io.ReusableByteArrayOutputStream;
 
 public class CompressionEnvelopeRequest extends NetworkRequestPackage {
 	
@@ -45,6 +48,11 @@ public class CompressionEnvelopeRequest extends NetworkRequestPackage {
 	 * The packages to encode
 	 */
 	protected List<NetworkRequestPackage> networkRequestPackages;
+	
+	/**
+	 * The already encoded packages
+	 */
+	protected CompressionBatch compressionBatch;
 
 	public CompressionEnvelopeRequest(final byte compressionType, 
 			final List<NetworkRequestPackage> networkRequestPackages) {
@@ -55,32 +63,64 @@ public class CompressionEnvelopeRequest extends NetworkRequestPackage {
 		this.compressionType = compressionType;
 		this.networkRequestPackages = networkRequestPackages;
 	}
+	
+	/**
+	 * Create an envelope for the packages of the batch. The batch 
+	 * must not be changed until the envelope is written.
+	 * 
+	 * @param compressionType
+	 * @param compressionBatch
+	 */
+	public CompressionEnvelopeRequest(final byte compressionType, 
+			final CompressionBatch compressionBatch) {
+		
+		// Don't use a real sequence number
+		super((short) 0);
+		
+		this.compressionType = compressionType;
+		this.compressionBatch = compressionBatch;
+	}
 
 	public void writeToOutputStream(final OutputStream outputStream) throws PackageEncodeException {
 		try {
-			if(compressionType != NetworkConst.COMPRESSION_TYPE_GZIP) {
-				throw new PackageEncodeException("Unknown compression method: " + compressionType);
-			}
+			final NetworkCompressionCodec codec 
+				= NetworkCompressionCodecFactory.getCodecForType(compressionType);
 			
-			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			final OutputStream os = new GZIPOutputStream(baos);
+			final byte[] uncompressedBytes;
+			final int uncompressedLength;
+			final int packageCount;
 			
-			// Write packages
-			for(final NetworkRequestPackage networkRequestPackage : networkRequestPackages) {
-				networkRequestPackage.writeToOutputStream(os);
+			if(compressionBatch != null) {
+				uncompressedBytes = compressionBatch.getBuffer();
+				uncompressedLength = compressionBatch.getPendingBytes();
+				packageCount = compressionBatch.getPackageCount();
+			} else {
+				final ReusableByteArrayOutputStream packageBuffer = CompressionBuffers.getPackageBuffer();
+				
+				// Write packages
+				for(final NetworkRequestPackage networkRequestPackage : networkRequestPackages) {
+					networkRequestPackage.writeToOutputStream(packageBuffer);
+				}
+				
+				uncompressedBytes = packageBuffer.getBuffer();
+				uncompressedLength = packageBuffer.size();
+				packageCount = networkRequestPackages.size();
 			}
 			
-			os.close();
-			final byte[] compressedBytes = baos.toByteArray();
+			final byte[] compressedBytes = CompressionBuffers.getCompressionBuffer(
+					codec.getMaxCompressedLength(uncompressedLength));
+			
+			final int compressedLength = codec.compress(uncompressedBytes, 
+					uncompressedLength, compressedBytes);
 			
 			// Header
 			final ByteBuffer bb = ByteBuffer.allocate(4);
 			bb.order(Const.APPLICATION_BYTE_ORDER);
 			bb.put(compressionType);
-			bb.putShort((short) networkRequestPackages.size());
+			bb.putShort((short) packageCount);
 			
 			// Body length
-			final long bodyLength = bb.capacity() + compressedBytes.length;
+			final long bodyLength = bb.capacity() + compressedLength;
 
 			// Unrouted package
 			final RoutingHeader routingHeader = new RoutingHeader(false);
@@ -88,10 +128,10 @@ public class CompressionEnvelopeRequest extends NetworkRequestPackage {
 			
 			// Write body
 			outputStream.write(bb.array());
-			outputStream.write(compressedBytes);
+			outputStream.write(compressedBytes, 0, compressedLength);
 
 		} catch (IOException e) {
-			throw new PackageEncodeException("Got an IO Exception while writing compressed data");
+			throw new PackageEncodeException("Got an IO Exception while writing compressed data", e);
 		}
 	}
 
@@ -112,18 +152,11 @@ public class CompressionEnvelopeRequest extends NetworkRequestPackage {
 		
 		final byte compressionType = encodedPackage.get();
 		
-		if(compressionType != NetworkConst.COMPRESSION_TYPE_GZIP) {
-			throw new PackageEncodeException("Unknown compression type: " + compressionType);
-		}
-		
 		// Skip 3 bytes - Header
 		encodedPackage.getShort();
 		encodedPackage.get();
 		
-		final byte[] compressedBytes = new byte[encodedPackage.remaining()];
-		encodedPackage.get(compressedBytes, 0, encodedPackage.remaining());
-		
-		final byte[] uncompressedBytes = NetworkHelper.uncompressBytes(compressionType, compressedBytes);
+		final byte[] uncompressedBytes = NetworkHelper.uncompressBytes(compressionType, encodedPackage);
 		
 		final ByteArrayInputStream bis = new ByteArrayInputStream(uncompressedBytes);
 		
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.packages.request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.NetworkPackageDecoder;
+import org.bboxdb.network.packages.NetworkRequestPackage;
+import org.bboxdb.network.packages.PackageEncodeException;
+import org.bboxdb.network.routing.RoutingHeader;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+
+public class InsertTuplesBatchRequest extends NetworkRequestPackage {
+
+	/**
+	 * The name of the table
+	 */
+	protected final SSTableName table;
+	
+	/**
+	 * The tuples
+	 */
+	protected final List<Tuple> tuples;
+	
+	/**
+	 * A routing header for custom routing
+	 */
+	protected RoutingHeader routingHeader;
+	
+	/**
+	 * The size of the header of each tuple
+	 */
+	protected final static int TUPLE_HEADER_SIZE = 18;
+
+	/**
+	 * Create package from parameter
+	 * 
+	 * @param sequenceNumber
+	 * @param routingHeader
+	 * @param table
+	 * @param tuples
+	 */
+	public InsertTuplesBatchRequest(final short sequenceNumber, final RoutingHeader routingHeader, 
+			final SSTableName table, final List<Tuple> tuples) {
+		
+		super(sequenceNumber);
+		
+		this.routingHeader = routingHeader;
+		this.table = table;
+		this.tuples = Collections.unmodifiableList(tuples);
+	}
+
+	/**
+	 * Decode the encoded package into a object
+	 * 
+	 * @param encodedPackage
+	 * @return
+	 * @throws IOException 
+	 * @throws PackageEncodeException 
+	 */
+	public static InsertTuplesBatchRequest decodeTuple(final ByteBuffer encodedPackage) 
+			throws IOException, PackageEncodeException {
+
+		final short sequenceNumber = NetworkPackageDecoder.getRequestIDFromRequestPackage(encodedPackage);
+		
+		final boolean decodeResult = NetworkPackageDecoder.validateRequestPackageHeader(encodedPackage, 
+				NetworkConst.REQUEST_TYPE_INSERT_TUPLES_BATCH);
+		
+		if(decodeResult == false) {
+			throw new PackageEncodeException("Unable to decode package");
+		}
+		
+		final short tableLength = encodedPackage.getShort();
+		
+	    // 2 unused bytes
+	    encodedPackage.get();
+	    encodedPackage.get();
+	    
+		final int numberOfTuples = encodedPackage.getInt();
+		
+		if(numberOfTuples < 0) {
+			throw new PackageEncodeException("Invalid number of tuples: " + numberOfTuples);
+		}
+		
+		final byte[] tableBytes = new byte[tableLength];
+		encodedPackage.get(tableBytes, 0, tableBytes.length);
+		final SSTableName ssTableName = new SSTableName(new String(tableBytes));
+		
+		final List<Tuple> tuples = new ArrayList<>(numberOfTuples);
+		
+		for(int i = 0; i < numberOfTuples; i++) {
+			tuples.add(decodeTupleFromBuffer(encodedPackage));
+		}
+
+		if(encodedPackage.remaining() != 0) {
+			throw new PackageEncodeException("Some bytes are left after decoding: " + encodedPackage.remaining());
+		}
+		
+		final RoutingHeader routingHeader = NetworkPackageDecoder.getRoutingHeaderFromRequestPackage(encodedPackage);
+		
+		return new InsertTuplesBatchRequest(sequenceNumber, routingHeader, ssTableName, tuples);
+	}
+
+	/**
+	 * Decode the next tuple of the package
+	 * @param encodedPackage
+	 * @return
+	 */
+	protected static Tuple decodeTupleFromBuffer(final ByteBuffer encodedPackage) {
+		final short keyLength = encodedPackage.getShort();
+		final int bBoxLength = encodedPackage.getInt();
+		final int dataLength = encodedPackage.getInt();
+		final long timestamp = encodedPackage.getLong();
+		
+		final byte[] keyBytes = new byte[keyLength];
+		encodedPackage.get(keyBytes, 0, keyBytes.length);
+		final String key = new String(keyBytes);
+		
+		final byte[] boxBytes = new byte[bBoxLength];
+		encodedPackage.get(boxBytes, 0, boxBytes.length);
+
+		final byte[] dataBytes = new byte[dataLength];
+		encodedPackage.get(dataBytes, 0, dataBytes.length);
+		
+		final BoundingBox boundingBox = BoundingBox.fromByteArray(boxBytes);
+		
+		return new Tuple(key, boundingBox, dataBytes, timestamp);
+	}
+
+	@Override
+	public void writeToOutputStream(final OutputStream outputStream) throws PackageEncodeException {
+
+		try {
+			final byte[] tableBytes = table.getFullnameBytes();
+
+			final ByteBuffer bb = ByteBuffer.allocate(8);
+			bb.order(Const.APPLICATION_BYTE_ORDER);
+			bb.putShort((short) tableBytes.length);
+			bb.put(NetworkConst.UNUSED_BYTE);
+			bb.put(NetworkConst.UNUSED_BYTE);
+			bb.putInt(tuples.size());
+			
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			bos.write(bb.array());
+			bos.write(tableBytes);
+			
+			for(final Tuple tuple : tuples) {
+				writeTuple(tuple, bos);
+			}
+			
+			bos.close();
+			final byte[] body = bos.toByteArray();
+			
+			appendRequestPackageHeader(body.length, routingHeader, outputStream);
+			outputStream.write(body);
+		} catch (IOException e) {
+			throw new PackageEncodeException("Got exception while converting package into bytes", e);
+		}		
+	}
+
+	/**
+	 * Write the tuple onto the stream
+	 * @param tuple
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	protected void writeTuple(final Tuple tuple, final OutputStream outputStream) throws IOException {
+		final byte[] keyBytes = tuple.getKey().getBytes();
+		final byte[] bboxBytes = tuple.getBoundingBoxBytes();
+		final byte[] dataBytes = tuple.getDataBytes();
+		
+		final ByteBuffer bb = ByteBuffer.allocate(TUPLE_HEADER_SIZE);
+		bb.order(Const.APPLICATION_BYTE_ORDER);
+		bb.putShort((short) keyBytes.length);
+		bb.putInt(bboxBytes.length);
+		bb.putInt(dataBytes.length);
+		bb.putLong(tuple.getVersionTimestamp());
+		
+		outputStream.write(bb.array());
+		outputStream.write(keyBytes);
+		outputStream.write(bboxBytes);
+		outputStream.write(dataBytes);
+	}
+	
+	/**
+	 * Get the referenced table
+	 * @return
+	 */
+	public SSTableName getTable() {
+		return table;
+	}
+
+	/**
+	 * Get the tuples
+	 * @return
+	 */
+	public List<Tuple> getTuples() {
+		return tuples;
+	}
+
+	/**
+	 * Get the routing header
+	 * @return
+	 */
+	public RoutingHeader getRoutingHeader() {
+		return routingHeader;
+	}
+	
+	/**
+	 * Replace the existing routing header with a new one
+	 * @param routingHeader
+	 */
+	public void replaceRoutingHeader(final RoutingHeader routingHeader) {
+		this.routingHeader = routingHeader;
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((table == null) ? 0 : table.hashCode());
+		result = prime * result + ((tuples == null) ? 0 : tuples.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		InsertTuplesBatchRequest other = (InsertTuplesBatchRequest) obj;
+		if (table == null) {
+			if (other.table != null)
+				return false;
+		} else if (!table.equals(other.table))
+			return false;
+		if (tuples == null) {
+			if (other.tuples != null)
+				return false;
+		} else if (!tuples.equals(other.tuples))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "InsertTuplesBatchRequest [table=" + table + ", tuples=" + tuples.size() 
+			+ ", routingHeader=" + routingHeader + "]";
+	}
+
+	@Override
+	public byte getPackageType() {
+		return NetworkConst.REQUEST_TYPE_INSERT_TUPLES_BATCH;
+	}
+
+}
@@ -18,20 +18,23 @@
 package org.bboxdb.network.packages.response;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
 
 import org.bboxdb.misc.Const;
 import org.bboxdb.network.NetworkConst;
 import org.bboxdb.network.NetworkHelper;
 import org.bboxdb.network.NetworkPackageDecoder;
+import org.bboxdb.network.compression.CompressionBatch;
+import org.bboxdb.network.compression.CompressionBuffers;
+import org.bboxdb.network.compression.NetworkCompressionCodec;
+import org.bboxdb.network.compression.NetworkCompressionCodecFactory;
 import org.bboxdb.network.packages.NetworkResponsePackage;
 import org.bboxdb.network.packages.PackageEncodeException;
+import org.bboxdb.util.io.ReusableByteArrayOutputStream;
 
 public class CompressionEnvelopeResponse extends NetworkResponsePackage {
 
@@ -44,6 +47,11 @@ public class CompressionEnvelopeResponse extends NetworkResponsePackage {
 	 * The package to encode
 	 */
 	protected List<NetworkResponsePackage> networkResponsePackages;
+	
+	/**
+	 * The already encoded packages
+	 */
+	protected CompressionBatch compressionBatch;
 
 	public CompressionEnvelopeResponse(final byte compressionType, 
 			final List<NetworkResponsePackage> networkResponsePackages) {
@@ -53,6 +61,22 @@ public class CompressionEnvelopeResponse extends NetworkResponsePackage {
 		this.compressionType = compressionType;
 		this.networkResponsePackages = networkResponsePackages;
 	}
+	
+	/**
+	 * Create an envelope for the packages of the batch. The batch 
+	 * must not be changed until the envelope is written.
+	 * 
+	 * @param compressionType
+	 * @param compressionBatch
+	 */
+	public CompressionEnvelopeResponse(final byte compressionType, 
+			final CompressionBatch compressionBatch) {
+		
+		super((short) 0);
+
+		this.compressionType = compressionType;
+		this.compressionBatch = compressionBatch;
+	}
 
 	@Override
 	public byte getPackageType() {
@@ -63,36 +87,51 @@ public class CompressionEnvelopeResponse extends NetworkResponsePackage {
 	public void writeToOutputStream(final OutputStream outputStream) throws PackageEncodeException {
 
 		try {
-			if(compressionType != NetworkConst.COMPRESSION_TYPE_GZIP) {
-				throw new PackageEncodeException("Unknown compression method: " + compressionType);
-			}
+			final NetworkCompressionCodec codec 
+				= NetworkCompressionCodecFactory.getCodecForType(compressionType);
 			
-			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			final OutputStream os = new GZIPOutputStream(baos);
+			final byte[] uncompressedBytes;
+			final int uncompressedLength;
+			final int packageCount;
 			
-			// Write packages
-			for(final NetworkResponsePackage networkResponsePackage : networkResponsePackages) {
-				networkResponsePackage.writeToOutputStream(os);
+			if(compressionBatch != null) {
+				uncompressedBytes = compressionBatch.getBuffer();
+				uncompressedLength = compressionBatch.getPendingBytes();
+				packageCount = compressionBatch.getPackageCount();
+			} else {
+				final ReusableByteArrayOutputStream packageBuffer = CompressionBuffers.getPackageBuffer();
+				
+				// Write packages
+				for(final NetworkResponsePackage networkResponsePackage : networkResponsePackages) {
+					networkResponsePackage.writeToOutputStream(packageBuffer);
+				}
+				
+				uncompressedBytes = packageBuffer.getBuffer();
+				uncompressedLength = packageBuffer.size();
+				packageCount = networkResponsePackages.size();
 			}
 			
-			os.close();
-			final byte[] compressedBytes = baos.toByteArray();
+			final byte[] compressedBytes = CompressionBuffers.getCompressionBuffer(
+					codec.getMaxCompressedLength(uncompressedLength));
+			
+			final int compressedLength = codec.compress(uncompressedBytes, 
+					uncompressedLength, compressedBytes);
 			
 			// Header
 			final ByteBuffer bb = ByteBuffer.allocate(4);
 			bb.order(Const.APPLICATION_BYTE_ORDER);
 			bb.put(compressionType);
-			bb.putShort((short) networkResponsePackages.size());
+			bb.putShort((short) packageCount);
 			
 			// Body length
-			final long bodyLength = bb.capacity() + compressedBytes.length;
+			final long bodyLength = bb.capacity() + compressedLength;
 
 			// Write body length
 			appendResponsePackageHeader(bodyLength, outputStream);
 			
 			// Write body
 			outputStream.write(bb.array());
-			outputStream.write(compressedBytes);
+			outputStream.write(compressedBytes, 0, compressedLength);
 			
 		} catch (IOException e) {
 			throw new PackageEncodeException("Got exception while converting package into bytes", e);
@@ -116,19 +155,12 @@ public class CompressionEnvelopeResponse extends NetworkResponsePackage {
 		}
 		
 		final byte compressionType = encodedPackage.get();
-		
-		if(compressionType != NetworkConst.COMPRESSION_TYPE_GZIP) {
-			throw new PackageEncodeException("Unknown compression type: " + compressionType);
-		}
 
 		// Skip 3 bytes - Header
 		encodedPackage.getShort();
 		encodedPackage.get();
 		
-		final byte[] compressedBytes = new byte[encodedPackage.remaining()];
-		encodedPackage.get(compressedBytes, 0, encodedPackage.remaining());
-		
-		final byte[] uncompressedBytes = NetworkHelper.uncompressBytes(compressionType, compressedBytes);
+		final byte[] uncompressedBytes = NetworkHelper.uncompressBytes(compressionType, encodedPackage);
 		
 		final ByteArrayInputStream bis = new ByteArrayInputStream(uncompressedBytes);
 		
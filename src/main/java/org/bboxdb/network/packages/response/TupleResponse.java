@@ -56,6 +56,18 @@ public class TupleResponse extends NetworkResponsePackage {
 	public void writeToOutputStream(final OutputStream outputStream) throws PackageEncodeException {
 		
 		try {
+			final byte[] storedTuple = tuple.getEncodedTuple();
+			
+			// Copy the stored tuple without decoding it
+			if(storedTuple != null) {
+				final byte[] tableBytes = table.getBytes();
+				final long bodyLength = NetworkTupleEncoderDecoder.getEncodedSize(storedTuple, tableBytes);
+				appendResponsePackageHeader(bodyLength, outputStream);
+				NetworkTupleEncoderDecoder.writeToStream(storedTuple, tuple.getVersionTimestamp(), 
+						tableBytes, outputStream);
+				return;
+			}
+			
 			final byte[] encodedBytes = NetworkTupleEncoderDecoder.encode(tuple, table);
 			appendResponsePackageHeader(encodedBytes.length, outputStream);
 			outputStream.write(encodedBytes);
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.bboxdb.distribution.membership.DistributedInstance;
+import org.bboxdb.distribution.membership.MembershipConnectionService;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.network.client.BBoxDBClient;
+import org.bboxdb.network.client.future.EmptyResultFuture;
+import org.bboxdb.util.concurrent.ExceptionSafeThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the writes for replicas that are not reachable (hints) and 
+ * delivers them later with a growing delay.
+ */
+public class HintedHandoffService {
+
+	/**
+	 * The executor for the deliveries
+	 */
+	protected final ScheduledExecutorService executorService;
+	
+	/**
+	 * The number of not delivered hints
+	 */
+	protected final AtomicInteger pendingHints;
+	
+	/**
+	 * The max number of not delivered hints
+	 */
+	protected final int maxPendingHints;
+	
+	/**
+	 * The max number of delivery attempts for a hint
+	 */
+	public final static int MAX_DELIVERY_ATTEMPTS = 10;
+	
+	/**
+	 * The delay before the first delivery attempt
+	 */
+	public final static long INITIAL_DELIVERY_DELAY_IN_MS = 1000;
+	
+	/**
+	 * The max delay between two delivery attempts
+	 */
+	public final static long MAX_DELIVERY_DELAY_IN_MS = 30000;
+	
+	/**
+	 * The instance
+	 */
+	private static HintedHandoffService instance;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(HintedHandoffService.class);
+
+	protected HintedHandoffService(final int maxPendingHints) {
+		this.maxPendingHints = maxPendingHints;
+		this.pendingHints = new AtomicInteger(0);
+		this.executorService = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "Hinted handoff");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Get the instance of the service
+	 * @return
+	 */
+	public static synchronized HintedHandoffService getInstance() {
+		if(instance == null) {
+			final int maxPendingHints = BBoxDBConfigurationManager.getConfiguration().getReplicaMaxHints();
+			instance = new HintedHandoffService(maxPendingHints);
+		}
+		
+		return instance;
+	}
+	
+	/**
+	 * Add a hint for a replica
+	 * @param routingHop - the replica
+	 * @param sendFunction - sends the write to the replica
+	 * @return true if the hint is accepted, false if too many hints are pending
+	 */
+	public boolean addHint(final RoutingHop routingHop, 
+			final BiFunction<BBoxDBClient, RoutingHeader, EmptyResultFuture> sendFunction) {
+		
+		if(pendingHints.incrementAndGet() > maxPendingHints) {
+			pendingHints.decrementAndGet();
+			logger.error("Too many pending hints ({}), dropping write for {}", 
+					maxPendingHints, routingHop.getDistributedInstance());
+			return false;
+		}
+		
+		scheduleDelivery(new Hint(routingHop, sendFunction));
+		return true;
+	}
+	
+	/**
+	 * Schedule the next delivery attempt of the hint
+	 * @param hint
+	 */
+	protected void scheduleDelivery(final Hint hint) {
+		
+		if(hint.attempts >= MAX_DELIVERY_ATTEMPTS) {
+			pendingHints.decrementAndGet();
+			logger.error("Unable to deliver write to {} after {} attempts, giving up", 
+					hint.routingHop.getDistributedInstance(), hint.attempts);
+			return;
+		}
+		
+		final long delay = Math.min(MAX_DELIVERY_DELAY_IN_MS, 
+				INITIAL_DELIVERY_DELAY_IN_MS << hint.attempts);
+		
+		hint.attempts++;
+		
+		final Runnable deliveryRunnable = new ExceptionSafeThread() {
+			
+			@Override
+			protected void runThread() throws Exception {
+				deliverHint(hint);
+			}
+		};
+		
+		executorService.schedule(deliveryRunnable, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Deliver the hint to the replica
+	 * @param hint
+	 */
+	protected void deliverHint(final Hint hint) {
+		final DistributedInstance receiverInstance = hint.routingHop.getDistributedInstance();
+		
+		final BBoxDBClient connection = MembershipConnectionService
+				.getInstance()
+				.getConnectionForInstance(receiverInstance);
+		
+		if(connection == null) {
+			logger.debug("No connection to {}, retry hint delivery later", receiverInstance);
+			scheduleDelivery(hint);
+			return;
+		}
+		
+		final EmptyResultFuture future = hint.sendFunction.apply(connection, hint.getRoutingHeader());
+		
+		future.addCompleteCallback(() -> {
+			if(future.isFailed()) {
+				scheduleDelivery(hint);
+			} else {
+				pendingHints.decrementAndGet();
+				logger.debug("Hint delivered to {}", receiverInstance);
+			}
+		});
+	}
+	
+	/**
+	 * Get the number of not delivered hints
+	 * @return
+	 */
+	public int getPendingHints() {
+		return pendingHints.get();
+	}
+
+	/**
+	 * A not delivered write
+	 */
+	protected static class Hint {
+		
+		/**
+		 * The replica
+		 */
+		protected final RoutingHop routingHop;
+		
+		/**
+		 * The send function
+		 */
+		protected final BiFunction<BBoxDBClient, RoutingHeader, EmptyResultFuture> sendFunction;
+		
+		/**
+		 * The delivery attempts
+		 */
+		protected int attempts;
+
+		public Hint(final RoutingHop routingHop, 
+				final BiFunction<BBoxDBClient, RoutingHeader, EmptyResultFuture> sendFunction) {
+			
+			this.routingHop = routingHop;
+			this.sendFunction = sendFunction;
+			this.attempts = 0;
+		}
+		
+		/**
+		 * Get the routing header, that addresses only the replica
+		 * @return
+		 */
+		public RoutingHeader getRoutingHeader() {
+			return new RoutingHeader((short) 0, Arrays.asList(routingHop));
+		}
+	}
+}
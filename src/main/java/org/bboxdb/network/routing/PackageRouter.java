@@ -18,17 +18,24 @@
 package org.bboxdb.network.routing;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.bboxdb.distribution.membership.DistributedInstance;
 import org.bboxdb.distribution.membership.MembershipConnectionService;
+import org.bboxdb.misc.BBoxDBConfiguration;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
 import org.bboxdb.network.client.BBoxDBClient;
 import org.bboxdb.network.client.future.EmptyResultFuture;
 import org.bboxdb.network.packages.PackageEncodeException;
 import org.bboxdb.network.packages.request.InsertTupleRequest;
+import org.bboxdb.network.packages.request.InsertTuplesBatchRequest;
 import org.bboxdb.network.packages.response.ErrorResponse;
 import org.bboxdb.network.packages.response.SuccessResponse;
 import org.bboxdb.network.server.ClientConnectionHandler;
@@ -49,6 +56,16 @@ public class PackageRouter {
 	 */
 	protected final ClientConnectionHandler clientConnectionHandler;
 	
+	/**
+	 * Send the package to all replicas in parallel (fan out) or from hop to hop (chain)
+	 */
+	protected final boolean fanOutWrites;
+	
+	/**
+	 * The acknowledge level for fan out writes
+	 */
+	protected final WriteAcknowledgeLevel writeAcknowledgeLevel;
+	
 	/**
 	 * Amount of retries to route a package 
 	 */
@@ -70,6 +87,10 @@ public class PackageRouter {
 		
 		this.threadPool = threadPool;
 		this.clientConnectionHandler = clientConnectionHandler;
+		
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		this.fanOutWrites = configuration.isReplicaFanOutWrites();
+		this.writeAcknowledgeLevel = WriteAcknowledgeLevel.fromName(configuration.getReplicaWriteAcknowledge());
 	}
 
 	/**
@@ -80,6 +101,39 @@ public class PackageRouter {
 	 */
 	public void performInsertPackageRoutingAsync(final short packageSequence, 
 			final InsertTupleRequest insertTupleRequest) {
+		
+		final RoutingHeader routingHeader = insertTupleRequest.getRoutingHeader();
+		
+		performRoutingAsync(packageSequence, routingHeader, (c, h) -> c.insertTuple(
+				insertTupleRequest.getTable().getFullname(), 
+				insertTupleRequest.getTuple(), 
+				h));
+	}
+	
+	/**
+	 * Perform the routing task of a batch insert async
+	 * @param packageSequence
+	 * @param insertTuplesBatchRequest
+	 */
+	public void performInsertBatchPackageRoutingAsync(final short packageSequence, 
+			final InsertTuplesBatchRequest insertTuplesBatchRequest) {
+		
+		final RoutingHeader routingHeader = insertTuplesBatchRequest.getRoutingHeader();
+		
+		performRoutingAsync(packageSequence, routingHeader, (c, h) -> c.insertTuples(
+				insertTuplesBatchRequest.getTable().getFullname(), 
+				insertTuplesBatchRequest.getTuples(), 
+				h));
+	}
+	
+	/**
+	 * Perform the routing task async
+	 * @param packageSequence
+	 * @param routingHeader
+	 * @param sendFunction - sends the package with the given routing header
+	 */
+	protected void performRoutingAsync(final short packageSequence, final RoutingHeader routingHeader,
+			final BiFunction<BBoxDBClient, RoutingHeader, EmptyResultFuture> sendFunction) {
 	
 		final Runnable routeRunable = new ExceptionSafeThread()  {
 
@@ -87,10 +141,17 @@ public class PackageRouter {
 			protected void runThread() {
 				
 				try {
-					assert (insertTupleRequest.getRoutingHeader().isRoutedPackage()) : "Tuple is not a routed package";
+					assert (routingHeader.isRoutedPackage()) : "Tuple is not a routed package";
 					
-					insertTupleRequest.getRoutingHeader().dispatchToNextHop();				
-					final boolean routeResult = sendInsertPackage(insertTupleRequest);
+					final boolean routeResult;
+					
+					if(fanOutWrites) {
+						routeResult = sendPackageToReplicas(routingHeader, sendFunction);
+					} else {
+						routingHeader.dispatchToNextHop();				
+						routeResult = sendPackageToNextHop(routingHeader, 
+								c -> sendFunction.apply(c, routingHeader));
+					}
 	
 					if(routeResult) {
 						final SuccessResponse responsePackage = new SuccessResponse(packageSequence);
@@ -116,22 +177,93 @@ public class PackageRouter {
 			final ErrorResponse responsePackage = new ErrorResponse(packageSequence, ErrorMessages.ERROR_QUERY_SHUTDOWN);
 			clientConnectionHandler.writeResultPackageNE(responsePackage);
 		} else {
-			threadPool.submit(routeRunable);
+			try {
+				threadPool.submit(routeRunable);
+			} catch(RejectedExecutionException e) {
+				logger.warn("Too many pending routing tasks, don't route package: {}", packageSequence);
+				final ErrorResponse responsePackage = new ErrorResponse(packageSequence, ErrorMessages.ERROR_ROUTING_FAILED);
+				clientConnectionHandler.writeResultPackageNE(responsePackage);
+			}
 		}
 	}
-
+	
 	/**
-	 * @param insertTupleRequest
-	 * @return
+	 * Send the package to all remaining replicas in parallel. Each replica gets a 
+	 * routing header that contains only the replica itself, so the package is not 
+	 * routed further. Writes to unreachable replicas are handed over to the 
+	 * hinted handoff service.
+	 * 
+	 * @param routingHeader
+	 * @param sendFunction
+	 * @return true if enough replicas have acknowledged the write
 	 * @throws InterruptedException
-	 * @throws TimeoutException 
-	 * @throws ExecutionException
 	 */
-	protected boolean sendInsertPackage(final InsertTupleRequest insertTupleRequest) 
-			throws InterruptedException {
+	protected boolean sendPackageToReplicas(final RoutingHeader routingHeader,
+			final BiFunction<BBoxDBClient, RoutingHeader, EmptyResultFuture> sendFunction) 
+					throws InterruptedException {
 		
-		final RoutingHeader routingHeader = insertTupleRequest.getRoutingHeader();
+		final List<RoutingHop> routingList = routingHeader.getRoutingList();
 		
+		if(routingHeader.reachedFinalInstance()) {
+			return true;
+		}
+		
+		final List<RoutingHop> replicas = routingList.subList(routingHeader.getHop() + 1, routingList.size());
+		
+		// The local instance has stored the package already
+		final int requiredAcknowledges 
+			= writeAcknowledgeLevel.getRequiredAcknowledges(routingList.size()) - 1;
+		
+		final ReplicaAcknowledges acknowledges = new ReplicaAcknowledges(replicas.size(), requiredAcknowledges);
+		
+		for(final RoutingHop replica : replicas) {
+			final RoutingHeader replicaRoutingHeader = new RoutingHeader((short) 0, Arrays.asList(replica));
+			final DistributedInstance receiverInstance = replica.getDistributedInstance();
+			
+			final BBoxDBClient connection = MembershipConnectionService
+					.getInstance()
+					.getConnectionForInstance(receiverInstance);
+			
+			if(connection == null) {
+				logger.warn("Unable to get a connection to system: {}, adding hint", receiverInstance);
+				HintedHandoffService.getInstance().addHint(replica, sendFunction);
+				acknowledges.replicaDone(false);
+				continue;
+			} 
+			
+			final EmptyResultFuture insertFuture = sendFunction.apply(connection, replicaRoutingHeader);
+			
+			insertFuture.addCompleteCallback(() -> {
+				final boolean operationSuccess = (! insertFuture.isFailed());
+				
+				if(! operationSuccess) {
+					logger.warn("Write to replica {} failed, adding hint", receiverInstance);
+					HintedHandoffService.getInstance().addHint(replica, sendFunction);
+				}
+				
+				acknowledges.replicaDone(operationSuccess);
+			});
+		}
+		
+		final boolean acknowledged = acknowledges.waitForAcknowledges(
+				TimeUnit.SECONDS.toMillis(ROUTING_TIMEOUT_IN_SEC));
+		
+		if(! acknowledged) {
+			logger.warn("Write is not acknowledged by {} replicas ({})", 
+					requiredAcknowledges, writeAcknowledgeLevel);
+		}
+		
+		return acknowledged;
+	}
+
+	/**
+	 * @param routingHeader
+	 * @param sendFunction
+	 * @return
+	 * @throws InterruptedException
+	 */
+	protected boolean sendPackageToNextHop(final RoutingHeader routingHeader, 
+			final Function<BBoxDBClient, EmptyResultFuture> sendFunction) throws InterruptedException {
 		if(routingHeader.reachedFinalInstance()) {
 			return true;
 		} 
@@ -148,10 +280,7 @@ public class PackageRouter {
 			return false;
 		} 
 		
-		final EmptyResultFuture insertFuture = connection.insertTuple(
-				insertTupleRequest.getTable().getFullname(), 
-				insertTupleRequest.getTuple(), 
-				routingHeader);
+		final EmptyResultFuture insertFuture = sendFunction.apply(connection);
 		
 		try {
 			insertFuture.waitForAll(ROUTING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
@@ -164,4 +293,90 @@ public class PackageRouter {
 		return operationSuccess;
 	}
 	
+	/**
+	 * The acknowledges of the replicas for a fan out write
+	 */
+	protected static class ReplicaAcknowledges {
+		
+		/**
+		 * The number of replicas
+		 */
+		protected final int replicas;
+		
+		/**
+		 * The number of required acknowledges
+		 */
+		protected final int requiredAcknowledges;
+		
+		/**
+		 * The number of successful writes
+		 */
+		protected int successfulWrites;
+		
+		/**
+		 * The number of failed writes
+		 */
+		protected int failedWrites;
+
+		public ReplicaAcknowledges(final int replicas, final int requiredAcknowledges) {
+			this.replicas = replicas;
+			this.requiredAcknowledges = requiredAcknowledges;
+			this.successfulWrites = 0;
+			this.failedWrites = 0;
+		}
+		
+		/**
+		 * A replica has finished the write
+		 * @param success
+		 */
+		public synchronized void replicaDone(final boolean success) {
+			if(success) {
+				successfulWrites++;
+			} else {
+				failedWrites++;
+			}
+			
+			notifyAll();
+		}
+		
+		/**
+		 * Are enough acknowledges received?
+		 * @return
+		 */
+		public synchronized boolean isAcknowledged() {
+			return successfulWrites >= requiredAcknowledges;
+		}
+		
+		/**
+		 * Can the required acknowledges still be reached?
+		 * @return
+		 */
+		protected boolean isAcknowledgeReachable() {
+			return failedWrites <= replicas - requiredAcknowledges;
+		}
+		
+		/**
+		 * Wait until enough replicas have acknowledged the write
+		 * @param timeoutMillis
+		 * @return true if the write is acknowledged
+		 * @throws InterruptedException
+		 */
+		public synchronized boolean waitForAcknowledges(final long timeoutMillis) 
+				throws InterruptedException {
+			
+			final long deadline = System.currentTimeMillis() + timeoutMillis;
+			
+			while(! isAcknowledged() && isAcknowledgeReachable()) {
+				final long remaining = deadline - System.currentTimeMillis();
+				
+				if(remaining <= 0) {
+					break;
+				}
+				
+				wait(remaining);
+			}
+			
+			return isAcknowledged();
+		}
+	}
 }
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.routing;
+
+public enum WriteAcknowledgeLevel {
+	
+	/**
+	 * The write is acknowledged after the first replica has stored the tuple
+	 */
+	ONE,
+	
+	/**
+	 * The write is acknowledged after the majority of the replicas has stored the tuple
+	 */
+	QUORUM,
+	
+	/**
+	 * The write is acknowledged after all replicas have stored the tuple
+	 */
+	ALL;
+	
+	/**
+	 * Get the number of replicas that have to acknowledge the write
+	 * @param replicas - the total number of replicas
+	 * @return
+	 */
+	public int getRequiredAcknowledges(final int replicas) {
+		switch(this) {
+		case ONE:
+			return Math.min(1, replicas);
+		case QUORUM:
+			return (replicas / 2) + 1;
+		default:
+			return replicas;
+		}
+	}
+	
+	/**
+	 * Get the level for the name, the name is not case sensitive
+	 * @param name
+	 * @return
+	 */
+	public static WriteAcknowledgeLevel fromName(final String name) {
+		return WriteAcknowledgeLevel.valueOf(name.trim().toUpperCase());
+	}
+}
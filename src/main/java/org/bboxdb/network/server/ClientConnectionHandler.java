@@ -21,19 +21,21 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.bboxdb.misc.Const;
 import org.bboxdb.network.NetworkConnectionState;
 import org.bboxdb.network.NetworkConst;
 import org.bboxdb.network.NetworkPackageDecoder;
 import org.bboxdb.network.capabilities.PeerCapabilities;
+import org.bboxdb.network.compression.CompressionBatch;
+import org.bboxdb.network.compression.NetworkCompressionCodecFactory;
 import org.bboxdb.network.packages.NetworkResponsePackage;
 import org.bboxdb.network.packages.PackageEncodeException;
 import org.bboxdb.network.packages.response.CompressionEnvelopeResponse;
@@ -57,6 +59,7 @@ import org.bboxdb.network.server.handler.request.HandleDeleteTuple;
 import org.bboxdb.network.server.handler.request.HandleDisconnect;
 import org.bboxdb.network.server.handler.request.HandleHandshake;
 import org.bboxdb.network.server.handler.request.HandleInsertTuple;
+import org.bboxdb.network.server.handler.request.HandleInsertTuplesBatch;
 import org.bboxdb.network.server.handler.request.HandleKeepAlive;
 import org.bboxdb.network.server.handler.request.HandleListTables;
 import org.bboxdb.network.server.handler.request.HandleNextPage;
@@ -82,7 +85,7 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	/**
 	 * The output stream of the socket
 	 */
-	protected BufferedOutputStream outputStream;
+	protected OutputStream outputStream;
 	
 	/**
 	 * The input stream of the socket
@@ -101,15 +104,31 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	
 	/**
 	 * The open query iterators, i.e., the queries that are not finished and waiting
-	 * to send the next page
+	 * to send the next page. The queries of a non blocking connection are registered 
+	 * and released by different threads.
 	 */
 	private final Map<Short, ClientQuery> activeQueries;
 	
+	/**
+	 * Are the resources of the connection released, no further queries are registered
+	 */
+	private volatile boolean resourcesReleased = false;
+	
 	/**
 	 * The thread pool
 	 */
 	private final ExecutorService threadPool;
 	
+	/**
+	 * The shared thread pool to execute queries in parallel (null = sequential execution)
+	 */
+	private final ExecutorService queryThreadPool;
+	
+	/**
+	 * Is the thread pool shared with other connections
+	 */
+	private final boolean sharedThreadPool;
+	
 	/**
 	 * The package router
 	 */
@@ -118,7 +137,17 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	/**
 	 * The pending packages for compression
 	 */
-	protected final List<NetworkResponsePackage> pendingCompressionPackages;
+	protected final CompressionBatch compressionBatch;
+	
+	/**
+	 * The negotiated compression type of the connection
+	 */
+	protected volatile byte compressionType = NetworkConst.COMPRESSION_TYPE_NONE;
+	
+	/**
+	 * Is a flush of the pending compression packages scheduled
+	 */
+	protected final AtomicBoolean compressionFlushScheduled = new AtomicBoolean(false);
 
 	/**
 	 * Number of pending requests
@@ -155,11 +184,15 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	 */
 	private final static Logger logger = LoggerFactory.getLogger(ClientConnectionHandler.class);
 
-	public ClientConnectionHandler(final StorageRegistry storageRegistry, final Socket clientSocket) {
+	public ClientConnectionHandler(final StorageRegistry storageRegistry, final Socket clientSocket, 
+			final ExecutorService queryThreadPool) {
 		
 		// Client socket
 		this.clientSocket = clientSocket;
 		
+		// The shared query thread pool
+		this.queryThreadPool = queryThreadPool;
+		
 		// The storage reference
 		this.storageRegistry = storageRegistry;
 		
@@ -177,16 +210,17 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 		}
 		
 		// The active queries
-		activeQueries = new HashMap<Short, ClientQuery>();
+		activeQueries = new ConcurrentHashMap<Short, ClientQuery>();
 		
 		// Create a thread pool that blocks after submitting more than MAX_PENDING_REQUESTS
 		threadPool = ExecutorUtil.getBoundThreadPoolExecutor(10, MAX_PENDING_REQUESTS);
+		sharedThreadPool = false;
 
 		// The package router
 		packageRouter = new PackageRouter(threadPool, this);
 		
 		// The pending packages for compression 
-		pendingCompressionPackages = new ArrayList<>();
+		compressionBatch = new CompressionBatch();
 		
 		maintenanceThread = new ConnectionMaintenanceThread();
 		final Thread thread = new Thread(maintenanceThread);
@@ -198,6 +232,44 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 		// Init the query handler map
 		initQueryHandlerMap();
 	}
+	
+	/**
+	 * Create a connection handler for a non blocking connection. The packages are read 
+	 * by the transport and passed to handleFramedPackage(). The results are written
+	 * to the given output stream. The thread pools are shared with other connections, 
+	 * no maintenance thread is started for the connection. The routed packages are 
+	 * processed by the routing thread pool, so the threads of the request thread pool 
+	 * never wait for the acknowledgements of other nodes.
+	 * 
+	 * @param storageRegistry
+	 * @param clientSocket
+	 * @param outputStream
+	 * @param threadPool
+	 * @param routingThreadPool
+	 * @param queryThreadPool
+	 */
+	public ClientConnectionHandler(final StorageRegistry storageRegistry, final Socket clientSocket, 
+			final OutputStream outputStream, final ExecutorService threadPool, 
+			final ExecutorService routingThreadPool, final ExecutorService queryThreadPool) {
+		
+		this.clientSocket = clientSocket;
+		this.storageRegistry = storageRegistry;
+		this.outputStream = outputStream;
+		this.inputStream = null;
+		this.threadPool = threadPool;
+		this.sharedThreadPool = true;
+		this.queryThreadPool = queryThreadPool;
+		
+		this.setConnectionState(NetworkConnectionState.NETWORK_CONNECTION_HANDSHAKING);
+		
+		activeQueries = new ConcurrentHashMap<Short, ClientQuery>();
+		packageRouter = new PackageRouter(routingThreadPool, this);
+		compressionBatch = new CompressionBatch();
+		maintenanceThread = null;
+		
+		initRequestHandlerMap();
+		initQueryHandlerMap();
+	}
 
 	/**
 	 * Read the next package header from the socket
@@ -225,29 +297,54 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	 */
 	protected void flushPendingCompressionPackages() {
 		
-		final List<NetworkResponsePackage> packagesToWrite = new ArrayList<>();
-		
-		synchronized (pendingCompressionPackages) {
-			if(pendingCompressionPackages.isEmpty()) {
+		synchronized (compressionBatch) {
+			if(compressionBatch.isEmpty()) {
 				return;
 			}
 			
-			packagesToWrite.addAll(pendingCompressionPackages);
-			pendingCompressionPackages.clear();
-		}
+			if(logger.isDebugEnabled()) {
+				logger.debug("Chunk size is: {} packages / {} bytes", 
+						compressionBatch.getPackageCount(), compressionBatch.getPendingBytes());
+			}
+			
+			final NetworkResponsePackage compressionEnvelopeRequest 
+				= new CompressionEnvelopeResponse(compressionType, compressionBatch);
 			
-		if(logger.isDebugEnabled()) {
-			logger.debug("Chunk size is: {}", packagesToWrite.size());
+			try {
+				writePackageToSocket(compressionEnvelopeRequest);
+			} catch (PackageEncodeException | IOException e) {
+				logger.error("Got an exception while write pending compression packages to client", e);
+			} finally {
+				compressionBatch.reset();
+			}
 		}
-		
-		final NetworkResponsePackage compressionEnvelopeRequest 
-			= new CompressionEnvelopeResponse(NetworkConst.COMPRESSION_TYPE_GZIP, packagesToWrite);
-		
-		try {
-			writePackageToSocket(compressionEnvelopeRequest);
-		} catch (PackageEncodeException | IOException e) {
-			logger.error("Got an exception while write pending compression packages to client", e);
+	}
+	
+	/**
+	 * Should the pending compression packages be written
+	 * @return
+	 */
+	protected boolean isCompressionFlushNeeded() {
+		return compressionBatch.isFlushNeeded();
+	}
+	
+	/**
+	 * Write the pending compression packages on the given executor. Only one 
+	 * flush is scheduled at the same time.
+	 * @param executor
+	 */
+	protected void scheduleCompressionFlush(final ExecutorService executor) {
+		if(! compressionFlushScheduled.compareAndSet(false, true)) {
+			return;
 		}
+		
+		executor.submit(() -> {
+			try {
+				flushPendingCompressionPackages();
+			} finally {
+				compressionFlushScheduled.set(false);
+			}
+		});
 	}
 	
 	/**
@@ -259,16 +356,11 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	public synchronized void writeResultPackage(final NetworkResponsePackage responsePackage) 
 			throws IOException, PackageEncodeException {
 		
-		if(connectionCapabilities.hasGZipCompression()) {
-			boolean uncompressedQueueFull = false;
-			
-			synchronized (pendingCompressionPackages) {
-				// Schedule for batch compression
-				pendingCompressionPackages.add(responsePackage);
-				uncompressedQueueFull = pendingCompressionPackages.size() >= Const.MAX_UNCOMPRESSED_QUEUE_SIZE;
-			}
+		if(compressionType != NetworkConst.COMPRESSION_TYPE_NONE) {
+			// Schedule for batch compression
+			final boolean batchFull = compressionBatch.addPackage(responsePackage);
 			
-			if(uncompressedQueueFull) {
+			if(batchFull) {
 				flushPendingCompressionPackages();
 			}
 			
@@ -330,11 +422,29 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 			}
 		} 
 		
-		getThreadPool().shutdown();
+		releaseConnectionResources();
+	}
+	
+	/**
+	 * Release the resources of the connection: the thread pool (if not shared), 
+	 * the active queries and the socket
+	 */
+	public void releaseConnectionResources() {
 		
-		// Close active query iterators
-		getActiveQueries().values().forEach(i -> i.close());
-		getActiveQueries().clear();	
+		if(! sharedThreadPool) {
+			getThreadPool().shutdown();
+		}
+		
+		resourcesReleased = true;
+		
+		// Close active query iterators, a query is closed by the thread that removes it
+		for(final Short querySequence : getActiveQueries().keySet()) {
+			final ClientQuery clientQuery = getActiveQueries().remove(querySequence);
+			
+			if(clientQuery != null) {
+				clientQuery.close();
+			}
+		}
 		
 		CloseableHelper.closeWithoutException(clientSocket);
 	}
@@ -373,19 +483,30 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	public void handleNextPackage(final InputStream inputStream) throws IOException, PackageEncodeException {
 		final ByteBuffer packageHeader = readNextPackageHeader(inputStream);
 		
-		final short packageSequence = NetworkPackageDecoder.getRequestIDFromRequestPackage(packageHeader);
-		final short packageType = NetworkPackageDecoder.getPackageTypeFromRequest(packageHeader);
-		
-		if(getConnectionState() == NetworkConnectionState.NETWORK_CONNECTION_HANDSHAKING) {
-			if(packageType != NetworkConst.REQUEST_TYPE_HELLO) {
-				logger.error("Connection is in handshake state but got package: " + packageType);
-				setConnectionState(NetworkConnectionState.NETWORK_CONNECTION_CLOSING);
-				return;
-			}
+		if(! isPackageAllowedInState(packageHeader)) {
+			return;
 		}
 		
 		final ByteBuffer encodedPackage = readFullPackage(packageHeader, inputStream);
 
+		handleFramedPackage(encodedPackage);
+	}
+	
+	/**
+	 * Handle a complete request package (e.g., read by a non blocking transport)
+	 * @param encodedPackage
+	 * @throws IOException
+	 * @throws PackageEncodeException
+	 */
+	public void handleFramedPackage(final ByteBuffer encodedPackage) throws IOException, PackageEncodeException {
+		
+		if(! isPackageAllowedInState(encodedPackage)) {
+			return;
+		}
+		
+		final short packageSequence = NetworkPackageDecoder.getRequestIDFromRequestPackage(encodedPackage);
+		final short packageType = NetworkPackageDecoder.getPackageTypeFromRequest(encodedPackage);
+		
 		final boolean readFurtherPackages = handleBufferedPackage(encodedPackage, packageSequence, packageType);
 
 		if(readFurtherPackages == false) {
@@ -393,6 +514,30 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 		}	
 	}
 
+	/**
+	 * Only a hello package is allowed in the handshake state, the connection is 
+	 * closed on other packages
+	 * 
+	 * @param packageHeader
+	 * @return
+	 */
+	protected boolean isPackageAllowedInState(final ByteBuffer packageHeader) {
+		
+		if(getConnectionState() != NetworkConnectionState.NETWORK_CONNECTION_HANDSHAKING) {
+			return true;
+		}
+		
+		final short packageType = NetworkPackageDecoder.getPackageTypeFromRequest(packageHeader);
+
+		if(packageType != NetworkConst.REQUEST_TYPE_HELLO) {
+			logger.error("Connection is in handshake state but got package: " + packageType);
+			setConnectionState(NetworkConnectionState.NETWORK_CONNECTION_CLOSING);
+			return false;
+		}
+		
+		return true;
+	}
+
 	/**
 	 * Send a new result tuple to the client
 	 * @param packageSequence
@@ -492,6 +637,7 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 		requestHandlers.put(NetworkConst.REQUEST_TYPE_DELETE_TUPLE, new HandleDeleteTuple());
 		requestHandlers.put(NetworkConst.REQUEST_TYPE_LIST_TABLES, new HandleListTables());
 		requestHandlers.put(NetworkConst.REQUEST_TYPE_INSERT_TUPLE, new HandleInsertTuple());
+		requestHandlers.put(NetworkConst.REQUEST_TYPE_INSERT_TUPLES_BATCH, new HandleInsertTuplesBatch());
 		requestHandlers.put(NetworkConst.REQUEST_TYPE_CREATE_DISTRIBUTION_GROUP, new HandleCreateDistributionGroup());
 		requestHandlers.put(NetworkConst.REQUEST_TYPE_DELETE_DISTRIBUTION_GROUP, new HandleDeleteDistributionGroup());
 		requestHandlers.put(NetworkConst.REQUEST_TYPE_KEEP_ALIVE, new HandleKeepAlive());
@@ -532,14 +678,23 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 			@Override
 			protected void runThread() throws IOException, PackageEncodeException {
 				final ClientQuery clientQuery = getActiveQueries().get(querySequence);
+				
+				// Query is canceled or the connection is closed in the meantime
+				if(clientQuery == null) {
+					writeResultPackage(new ErrorResponse(packageSequence, ErrorMessages.ERROR_QUERY_NOT_FOUND));
+					return;
+				}
+				
 				clientQuery.fetchAndSendNextTuples(packageSequence);
 				
 				if(clientQuery.isQueryDone()) {
 					logger.info("Query {} is done with {} tuples, removing iterator ", 
 							querySequence,
 							clientQuery.getTotalSendTuples());
-					clientQuery.close();
-					getActiveQueries().remove(querySequence);
+					
+					if(getActiveQueries().remove(querySequence, clientQuery)) {
+						clientQuery.close();
+					}
 				}
 			}
 			
@@ -576,6 +731,7 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	 */
 	public void setConnectionCapabilities(PeerCapabilities connectionCapabilities) {
 		this.connectionCapabilities = connectionCapabilities;
+		this.compressionType = NetworkCompressionCodecFactory.getCompressionType(connectionCapabilities);
 	}
 
 	public NetworkConnectionState getConnectionState() {
@@ -586,6 +742,25 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 		this.connectionState = connectionState;
 	}
 
+	/**
+	 * Register a new query. When the resources of the connection are released 
+	 * concurrently, the query is closed, so no tables are kept acquired.
+	 * 
+	 * @param querySequence
+	 * @param clientQuery
+	 * @return true if the query is registered
+	 */
+	public boolean registerQuery(final short querySequence, final ClientQuery clientQuery) {
+		activeQueries.put(querySequence, clientQuery);
+		
+		if(resourcesReleased && activeQueries.remove(querySequence, clientQuery)) {
+			clientQuery.close();
+			return false;
+		}
+		
+		return true;
+	}
+	
 	public Map<Short, ClientQuery> getActiveQueries() {
 		return activeQueries;
 	}
@@ -593,6 +768,10 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 	public ExecutorService getThreadPool() {
 		return threadPool;
 	}
+	
+	public ExecutorService getQueryThreadPool() {
+		return queryThreadPool;
+	}
 
 	public PackageRouter getPackageRouter() {
 		return packageRouter;
@@ -642,11 +821,11 @@ public class ClientConnectionHandler extends ExceptionSafeThread {
 			while(getConnectionState() == NetworkConnectionState.NETWORK_CONNECTION_OPEN ||
 					getConnectionState() == NetworkConnectionState.NETWORK_CONNECTION_HANDSHAKING) {
 				
-				// Write all waiting for compression packages
-				flushPendingCompressionPackages();
-		
 				try {
-					Thread.sleep(NetworkConst.MAX_COMPRESSION_DELAY_MS);
+					// Write all waiting for compression packages
+					if(compressionBatch.awaitFlush(NetworkConst.MAX_COMPRESSION_DELAY_MS)) {
+						flushPendingCompressionPackages();
+					}
 				} catch (InterruptedException e) {
 					// Handle InterruptedException directly
 					return;
@@ -19,7 +19,9 @@ package org.bboxdb.network.server;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.bboxdb.distribution.RegionIdMapper;
 import org.bboxdb.distribution.RegionIdMapperInstanceManager;
@@ -28,9 +30,11 @@ import org.bboxdb.network.packages.response.MultipleTupleEndResponse;
 import org.bboxdb.network.packages.response.MultipleTupleStartResponse;
 import org.bboxdb.network.packages.response.PageEndResponse;
 import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.queryprocessor.CloseableIterator;
+import org.bboxdb.storage.queryprocessor.ParallelQueryIterator;
 import org.bboxdb.storage.queryprocessor.QueryProcessor;
 import org.bboxdb.storage.queryprocessor.queryplan.QueryPlan;
 import org.bboxdb.storage.sstable.SSTableManager;
@@ -84,6 +88,11 @@ public class ClientQuery implements Closeable {
 	 */
 	protected long totalSendTuples;
 	
+	/**
+	 * The size of the result queue for parallel executed queries
+	 */
+	protected final static int PARALLEL_RESULT_QUEUE_SIZE = 1000;
+	
 	/**
 	 * The Logger
 	 */
@@ -93,6 +102,19 @@ public class ClientQuery implements Closeable {
 	public ClientQuery(final QueryPlan queryPlan, final boolean pageResult,
 			final short tuplesPerPage, final ClientConnectionHandler clientConnectionHandler, 
 			final short querySequence, final SSTableName requestTable) {
+		
+		this(queryPlan, pageResult, tuplesPerPage, clientConnectionHandler, 
+				querySequence, requestTable, null);
+	}
+	
+	/**
+	 * Create a new query
+	 * 
+	 * @param queryBox - only the local tables overlapped by the box are queried (null = all tables)
+	 */
+	public ClientQuery(final QueryPlan queryPlan, final boolean pageResult,
+			final short tuplesPerPage, final ClientConnectionHandler clientConnectionHandler, 
+			final short querySequence, final SSTableName requestTable, final BoundingBox queryBox) {
 
 		this.queryPlan = queryPlan;
 		this.pageResult = pageResult;
@@ -102,7 +124,12 @@ public class ClientQuery implements Closeable {
 		this.requestTable = requestTable;
 
 		final RegionIdMapper nameprefixManager = RegionIdMapperInstanceManager.getInstance(requestTable.getDistributionGroupObject());
-		this.localTables = nameprefixManager.getAllLocalTables(requestTable);
+		
+		if(queryBox == null) {
+			this.localTables = nameprefixManager.getAllLocalTables(requestTable);
+		} else {
+			this.localTables = nameprefixManager.getAllLocalTables(requestTable, queryBox);
+		}
 		
 		this.totalSendTuples = 0;
 	}
@@ -126,7 +153,7 @@ public class ClientQuery implements Closeable {
 	 * @throws PackageEncodeException 
 	 * @throws IOException 
 	 */
-	public void fetchAndSendNextTuples(final short packageSequence) throws IOException, PackageEncodeException {
+	public synchronized void fetchAndSendNextTuples(final short packageSequence) throws IOException, PackageEncodeException {
 
 		long sendTuplesInThisPage = 0;
 		clientConnectionHandler.writeResultPackage(new MultipleTupleStartResponse(packageSequence));
@@ -195,6 +222,12 @@ public class ClientQuery implements Closeable {
 			return false;
 		}
 		
+		final ExecutorService queryThreadPool = clientConnectionHandler.getQueryThreadPool();
+		
+		if(queryThreadPool != null && localTables.size() > 1) {
+			return setupParallelIterator(queryThreadPool);
+		}
+		
 		try {
 			final SSTableName sstableName = localTables.remove(0);
 			
@@ -212,6 +245,34 @@ public class ClientQuery implements Closeable {
 		return false;
 	}
 	
+	/**
+	 * Setup an iterator that queries all remaining local tables in parallel
+	 * @param queryThreadPool
+	 * @return
+	 */
+	protected boolean setupParallelIterator(final ExecutorService queryThreadPool) {
+		final List<SSTableManager> storageManagers = new ArrayList<>();
+
+		for(final SSTableName sstableName : localTables) {
+			try {
+				final SSTableManager storageManager = clientConnectionHandler
+						.getStorageRegistry()
+						.getSSTableManager(sstableName);
+				
+				storageManagers.add(storageManager);
+			} catch (StorageManagerException e) {
+				logger.warn("Got exception while fetching tuples", e);
+			}
+		}
+		
+		localTables.clear();
+		
+		currentIterator = new ParallelQueryIterator(queryPlan, storageManagers, 
+				queryThreadPool, Math.max(tuplesPerPage, PARALLEL_RESULT_QUEUE_SIZE));
+		
+		return true;
+	}
+	
 	/**
 	 * Is the current query done
 	 * @return
@@ -221,9 +282,12 @@ public class ClientQuery implements Closeable {
 	}
 
 	@Override
-	public void close() {
+	public synchronized void close() {
 		logger.debug("Closing query {} (send {} result tuples)", querySequence, totalSendTuples);
 		closeIteratorNE();
+		
+		// A closed query does not acquire further tables
+		localTables.clear();
 	}
 
 	/**
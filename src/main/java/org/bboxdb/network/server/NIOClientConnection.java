@@ -0,0 +1,464 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.bboxdb.network.NetworkConnectionState;
+import org.bboxdb.network.NetworkPackageDecoder;
+import org.bboxdb.network.packages.PackageEncodeException;
+import org.bboxdb.util.CloseableHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class NIOClientConnection {
+
+	/**
+	 * The socket channel
+	 */
+	protected final SocketChannel channel;
+	
+	/**
+	 * The selector thread that handles the IO of the channel
+	 */
+	protected final NIOSelectorThread selectorThread;
+	
+	/**
+	 * The shared thread pool to process the requests
+	 */
+	protected final ExecutorService requestThreadPool;
+	
+	/**
+	 * The callback that is executed when the connection is closed
+	 */
+	protected final Consumer<NIOClientConnection> closeCallback;
+	
+	/**
+	 * The connection handler that processes the requests
+	 */
+	protected ClientConnectionHandler connectionHandler;
+	
+	/**
+	 * The selection key of the channel
+	 */
+	protected volatile SelectionKey selectionKey;
+	
+	/**
+	 * The read buffer (used only by the selector thread)
+	 */
+	protected ByteBuffer readBuffer;
+	
+	/**
+	 * The received but unprocessed packages
+	 */
+	protected final Deque<ByteBuffer> pendingPackages;
+	
+	/**
+	 * Is a dispatcher for the pending packages scheduled
+	 */
+	protected boolean dispatchScheduled;
+	
+	/**
+	 * Is reading suspended, because too many packages are unprocessed
+	 */
+	protected volatile boolean readSuspended;
+	
+	/**
+	 * The buffers that wait to be written to the channel
+	 */
+	protected final Deque<ByteBuffer> writeQueue;
+	
+	/**
+	 * The amount of bytes in the write queue
+	 */
+	protected long pendingWriteBytes;
+	
+	/**
+	 * Close the connection after all pending data is written
+	 */
+	protected volatile boolean closeAfterWrite;
+	
+	/**
+	 * Is the connection closed
+	 */
+	protected volatile boolean closed;
+	
+	/**
+	 * The initial size of the read buffer
+	 */
+	protected final static int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * The max amount of received but unprocessed packages, reading is 
+	 * suspended when more packages are waiting
+	 */
+	protected final static int MAX_PENDING_PACKAGES = 25;
+	
+	/**
+	 * The max amount of bytes that wait in the write queue. Writers are
+	 * blocked when more bytes are waiting
+	 */
+	protected final static long MAX_PENDING_WRITE_BYTES = 4 * 1024 * 1024;
+	
+	/**
+	 * The max amount of packages that are handled in one dispatcher run
+	 */
+	protected final static int MAX_PACKAGES_PER_DISPATCH = 16;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(NIOClientConnection.class);
+
+	public NIOClientConnection(final SocketChannel channel, final NIOSelectorThread selectorThread, 
+			final ExecutorService requestThreadPool, final Consumer<NIOClientConnection> closeCallback) {
+		
+		this.channel = channel;
+		this.selectorThread = selectorThread;
+		this.requestThreadPool = requestThreadPool;
+		this.closeCallback = closeCallback;
+		this.readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+		this.pendingPackages = new ArrayDeque<>();
+		this.writeQueue = new ArrayDeque<>();
+		this.dispatchScheduled = false;
+		this.readSuspended = false;
+		this.closeAfterWrite = false;
+		this.closed = false;
+		this.pendingWriteBytes = 0;
+	}
+	
+	/**
+	 * Read the available data from the channel and extract the complete packages, 
+	 * called by the selector thread
+	 * 
+	 * @throws IOException
+	 */
+	public void handleRead() throws IOException {
+		final int bytesRead = channel.read(readBuffer);
+		
+		if(bytesRead < 0) {
+			logger.debug("Got EOF from {}, closing connection", getConnectionName());
+			close();
+			return;
+		}
+		
+		readBuffer.flip();
+		
+		long packageLength;
+		while((packageLength = NetworkPackageDecoder.getRequestPackageLength(readBuffer)) > 0) {
+			
+			if(packageLength > Integer.MAX_VALUE - 8) {
+				throw new IOException("Got invalid package length " + packageLength 
+						+ " from " + getConnectionName());
+			}
+			
+			if(readBuffer.remaining() < packageLength) {
+				break;
+			}
+			
+			final byte[] encodedPackage = new byte[(int) packageLength];
+			readBuffer.get(encodedPackage);
+			addPendingPackage(NetworkPackageDecoder.encapsulateBytes(encodedPackage));
+		}
+		
+		// Grow the read buffer, if the next package is larger than the buffer
+		if(packageLength > readBuffer.capacity()) {
+			final ByteBuffer newReadBuffer = ByteBuffer.allocate((int) packageLength);
+			newReadBuffer.put(readBuffer);
+			readBuffer = newReadBuffer;
+		} else {
+			readBuffer.compact();
+		}
+	}
+	
+	/**
+	 * Add a received package and schedule the dispatcher if needed
+	 * @param encodedPackage
+	 */
+	protected void addPendingPackage(final ByteBuffer encodedPackage) {
+		synchronized (pendingPackages) {
+			pendingPackages.add(encodedPackage);
+			
+			if(pendingPackages.size() >= MAX_PENDING_PACKAGES && ! readSuspended) {
+				readSuspended = true;
+				updateInterestOps();
+			}
+			
+			if(! dispatchScheduled) {
+				dispatchScheduled = true;
+				submitDispatcher();
+			}
+		}
+	}
+
+	/**
+	 * Submit the dispatcher to the request thread pool
+	 */
+	protected void submitDispatcher() {
+		try {
+			requestThreadPool.submit(this::dispatchPendingPackages);
+		} catch(RejectedExecutionException e) {
+			logger.debug("Request thread pool is shut down, closing connection", e);
+			close();
+		}
+	}
+	
+	/**
+	 * Handle the pending packages in the request thread pool. The packages of 
+	 * one connection are handled sequentially in the order of reception. 
+	 */
+	protected void dispatchPendingPackages() {
+		
+		for(int handledPackages = 0; handledPackages < MAX_PACKAGES_PER_DISPATCH; handledPackages++) {
+			
+			final ByteBuffer encodedPackage;
+			
+			synchronized (pendingPackages) {
+				encodedPackage = pendingPackages.poll();
+				
+				if(encodedPackage == null || closed) {
+					dispatchScheduled = false;
+					return;
+				}
+				
+				if(readSuspended && pendingPackages.size() < MAX_PENDING_PACKAGES / 2) {
+					readSuspended = false;
+					requestInterestUpdate();
+				}
+			}
+			
+			try {
+				connectionHandler.handleFramedPackage(encodedPackage);
+			} catch (IOException | PackageEncodeException e) {
+				logger.error("Got exception while handling package from {}, closing connection", 
+						getConnectionName(), e);
+				close();
+				return;
+			}
+			
+			if(connectionHandler.getConnectionState() == NetworkConnectionState.NETWORK_CONNECTION_CLOSING) {
+				shutdownConnection();
+				return;
+			}
+		}
+		
+		// Give other connections the chance to process their packages
+		submitDispatcher();
+	}
+
+	/**
+	 * Write the pending results and close the connection afterwards
+	 */
+	protected void shutdownConnection() {
+		connectionHandler.flushPendingCompressionPackages();
+		connectionHandler.setConnectionState(NetworkConnectionState.NETWORK_CONNECTION_CLOSED);
+		logger.info("Closing connection to: {}", getConnectionName());
+		
+		synchronized (writeQueue) {
+			if(writeQueue.isEmpty()) {
+				close();
+			} else {
+				closeAfterWrite = true;
+			}
+		}
+	}
+	
+	/**
+	 * Write the given data to the channel. The data is written directly with a gathering 
+	 * write if possible, otherwise the data is queued and written by the selector thread. 
+	 * The caller is blocked if too much data is waiting. 
+	 * 
+	 * @param data
+	 * @throws IOException 
+	 */
+	public void write(final ByteBuffer... data) throws IOException {
+		synchronized (writeQueue) {
+			while(pendingWriteBytes > MAX_PENDING_WRITE_BYTES && ! closed) {
+				try {
+					writeQueue.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for the write queue", e);
+				}
+			}
+			
+			if(closed) {
+				throw new IOException("Connection is closed: " + getConnectionName());
+			}
+			
+			final boolean queueWasEmpty = writeQueue.isEmpty();
+			
+			// Fast path: try to write the data directly
+			if(queueWasEmpty) {
+				channel.write(data);
+			}
+			
+			for(final ByteBuffer buffer : data) {
+				if(buffer.hasRemaining()) {
+					writeQueue.add(buffer);
+					pendingWriteBytes += buffer.remaining();
+				}
+			}
+			
+			if(queueWasEmpty && ! writeQueue.isEmpty()) {
+				requestInterestUpdate();
+			}
+		}
+	}
+	
+	/**
+	 * Write the queued data to the channel, called by the selector thread
+	 * @throws IOException
+	 */
+	public void handleWrite() throws IOException {
+		synchronized (writeQueue) {
+			if(! writeQueue.isEmpty()) {
+				final ByteBuffer[] data = writeQueue.toArray(new ByteBuffer[writeQueue.size()]);
+				pendingWriteBytes -= channel.write(data);
+				
+				while(! writeQueue.isEmpty() && ! writeQueue.peek().hasRemaining()) {
+					writeQueue.poll();
+				}
+			}
+			
+			writeQueue.notifyAll();
+			
+			if(writeQueue.isEmpty()) {
+				if(closeAfterWrite) {
+					close();
+					return;
+				}
+				
+				updateInterestOps();
+			}
+		}
+	}
+	
+	/**
+	 * Update the interest ops of the selection key in the selector thread
+	 */
+	protected void requestInterestUpdate() {
+		selectorThread.execute(this::updateInterestOps);
+	}
+	
+	/**
+	 * Update the interest ops of the selection key, called by the selector thread
+	 */
+	protected void updateInterestOps() {
+		final SelectionKey key = selectionKey;
+		
+		if(key == null || ! key.isValid()) {
+			return;
+		}
+		
+		int interestOps = 0;
+		
+		if(! readSuspended) {
+			interestOps |= SelectionKey.OP_READ;
+		}
+		
+		synchronized (writeQueue) {
+			if(! writeQueue.isEmpty()) {
+				interestOps |= SelectionKey.OP_WRITE;
+			}
+		}
+		
+		key.interestOps(interestOps);
+	}
+	
+	/**
+	 * Close the connection
+	 */
+	public void close() {
+		synchronized (writeQueue) {
+			if(closed) {
+				return;
+			}
+			
+			closed = true;
+			writeQueue.clear();
+			pendingWriteBytes = 0;
+			writeQueue.notifyAll();
+		}
+		
+		final SelectionKey key = selectionKey;
+		
+		if(key != null) {
+			key.cancel();
+		}
+		
+		if(connectionHandler != null) {
+			connectionHandler.setConnectionState(NetworkConnectionState.NETWORK_CONNECTION_CLOSED);
+			connectionHandler.releaseConnectionResources();
+		}
+		
+		CloseableHelper.closeWithoutException(channel);
+		
+		synchronized (pendingPackages) {
+			pendingPackages.clear();
+		}
+		
+		if(closeCallback != null) {
+			closeCallback.accept(this);
+		}
+	}
+	
+	/**
+	 * Get the name of the connection
+	 * @return
+	 */
+	public String getConnectionName() {
+		if(connectionHandler != null) {
+			return connectionHandler.getConnectionName();
+		}
+		
+		return channel.toString();
+	}
+	
+	/**
+	 * Is the connection closed
+	 * @return
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	public void setSelectionKey(final SelectionKey selectionKey) {
+		this.selectionKey = selectionKey;
+	}
+
+	public ClientConnectionHandler getConnectionHandler() {
+		return connectionHandler;
+	}
+
+	public void setConnectionHandler(final ClientConnectionHandler connectionHandler) {
+		this.connectionHandler = connectionHandler;
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NIOOutputStream extends OutputStream {
+
+	/**
+	 * The connection to write the data to
+	 */
+	protected final NIOClientConnection connection;
+	
+	/**
+	 * The filled segments
+	 */
+	protected final List<ByteBuffer> segments;
+	
+	/**
+	 * The segment that is currently filled
+	 */
+	protected byte[] segment;
+	
+	/**
+	 * The write position in the current segment
+	 */
+	protected int segmentPosition;
+	
+	/**
+	 * The size of a segment. The buffered data is kept in segments, so it is 
+	 * never copied to grow the buffer. The segments are passed to the 
+	 * connection as one gathering write. 
+	 */
+	protected final static int SEGMENT_SIZE = 64 * 1024;
+	
+	/**
+	 * The size of the first segment, most packages are small
+	 */
+	protected final static int FIRST_SEGMENT_SIZE = 4 * 1024;
+
+	public NIOOutputStream(final NIOClientConnection connection) {
+		this.connection = connection;
+		this.segments = new ArrayList<>();
+		this.segment = null;
+		this.segmentPosition = 0;
+	}
+	
+	@Override
+	public void write(final int b) throws IOException {
+		if(segment == null || segmentPosition == segment.length) {
+			nextSegment(getNextSegmentSize());
+		}
+		
+		segment[segmentPosition++] = (byte) b;
+	}
+	
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		
+		// Large writes get their own segment
+		if(len >= SEGMENT_SIZE) {
+			nextSegment(len);
+			System.arraycopy(b, off, segment, 0, len);
+			segmentPosition = len;
+			return;
+		}
+		
+		int written = 0;
+		
+		while(written < len) {
+			if(segment == null || segmentPosition == segment.length) {
+				nextSegment(getNextSegmentSize());
+			}
+			
+			final int bytesToCopy = Math.min(len - written, segment.length - segmentPosition);
+			System.arraycopy(b, off + written, segment, segmentPosition, bytesToCopy);
+			segmentPosition += bytesToCopy;
+			written += bytesToCopy;
+		}
+	}
+	
+	/**
+	 * Get the size of the next segment
+	 * @return
+	 */
+	protected int getNextSegmentSize() {
+		if(segment == null && segments.isEmpty()) {
+			return FIRST_SEGMENT_SIZE;
+		}
+		
+		return SEGMENT_SIZE;
+	}
+	
+	/**
+	 * Finish the current segment and start a new one
+	 * @param size
+	 */
+	protected void nextSegment(final int size) {
+		finishSegment();
+		segment = new byte[size];
+		segmentPosition = 0;
+	}
+
+	/**
+	 * Add the current segment to the filled segments
+	 */
+	protected void finishSegment() {
+		if(segment != null && segmentPosition > 0) {
+			segments.add(ByteBuffer.wrap(segment, 0, segmentPosition));
+		}
+		
+		segment = null;
+		segmentPosition = 0;
+	}
+	
+	/**
+	 * Pass the buffered segments to the write queue of the connection
+	 */
+	@Override
+	public void flush() throws IOException {
+		finishSegment();
+		
+		if(segments.isEmpty()) {
+			return;
+		}
+		
+		final ByteBuffer[] data = segments.toArray(new ByteBuffer[segments.size()]);
+		segments.clear();
+		connection.write(data);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.bboxdb.util.concurrent.ExceptionSafeThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class NIOSelectorThread extends ExceptionSafeThread {
+
+	/**
+	 * The selector
+	 */
+	protected final Selector selector;
+	
+	/**
+	 * The tasks that need to be executed in the selector thread 
+	 * (e.g., registering channels and changing interest ops)
+	 */
+	protected final Queue<Runnable> pendingTasks;
+	
+	/**
+	 * The name of the thread
+	 */
+	protected final String name;
+	
+	/**
+	 * Is the thread active
+	 */
+	protected volatile boolean active;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(NIOSelectorThread.class);
+
+	public NIOSelectorThread(final String name) throws IOException {
+		this.name = name;
+		this.selector = Selector.open();
+		this.pendingTasks = new ConcurrentLinkedQueue<>();
+		this.active = true;
+	}
+	
+	/**
+	 * Execute the given task in the selector thread
+	 * @param task
+	 */
+	public void execute(final Runnable task) {
+		pendingTasks.add(task);
+		selector.wakeup();
+	}
+	
+	/**
+	 * Register a new connection at the selector
+	 * @param connection
+	 */
+	public void registerConnection(final NIOClientConnection connection) {
+		execute(() -> {
+			try {
+				final SocketChannel channel = connection.getChannel();
+				final SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+				connection.setSelectionKey(key);
+			} catch (IOException e) {
+				logger.error("Unable to register connection", e);
+				connection.close();
+			}
+		});
+	}
+	
+	/**
+	 * Stop the selector thread
+	 */
+	public void shutdown() {
+		active = false;
+		selector.wakeup();
+	}
+	
+	@Override
+	protected void beginHook() {
+		logger.info("Starting selector thread: {}", name);
+	}
+	
+	@Override
+	protected void endHook() {
+		logger.info("Selector thread {} has terminated", name);
+	}
+
+	@Override
+	protected void runThread() throws Exception {
+		try {
+			while(active) {
+				selector.select();
+				executePendingTasks();
+				handleSelectedKeys();
+			}
+		} catch(ClosedSelectorException e) {
+			logger.debug("Selector is closed", e);
+		} finally {
+			closeAllConnections();
+		}
+	}
+
+	/**
+	 * Execute the pending tasks
+	 */
+	protected void executePendingTasks() {
+		Runnable task;
+		while((task = pendingTasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Handle the keys that are ready for IO
+	 */
+	protected void handleSelectedKeys() {
+		final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+		
+		while(iterator.hasNext()) {
+			final SelectionKey key = iterator.next();
+			iterator.remove();
+			
+			final NIOClientConnection connection = (NIOClientConnection) key.attachment();
+			
+			try {
+				if(key.isValid() && key.isReadable()) {
+					connection.handleRead();
+				}
+				
+				if(key.isValid() && key.isWritable()) {
+					connection.handleWrite();
+				}
+			} catch(IOException | CancelledKeyException e) {
+				logger.debug("Got exception while handling connection, closing", e);
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Close all registered connections and the selector
+	 */
+	protected void closeAllConnections() {
+		try {
+			for(final SelectionKey key : new ArrayList<>(selector.keys())) {
+				final NIOClientConnection connection = (NIOClientConnection) key.attachment();
+				connection.close();
+			}
+		} catch(ClosedSelectorException e) {
+			// Ignore, selector is already closed
+		}
+		
+		try {
+			selector.close();
+		} catch (IOException e) {
+			logger.warn("Unable to close selector", e);
+		}
+	}
+}
@@ -18,15 +18,28 @@
 package org.bboxdb.network.server;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.bboxdb.misc.BBoxDBConfiguration;
 import org.bboxdb.misc.BBoxDBConfigurationManager;
 import org.bboxdb.misc.BBoxDBService;
+import org.bboxdb.network.NetworkConst;
 import org.bboxdb.storage.registry.StorageRegistry;
+import org.bboxdb.util.CloseableHelper;
 import org.bboxdb.util.ServiceState;
 import org.bboxdb.util.concurrent.ExceptionSafeThread;
 import org.slf4j.Logger;
@@ -44,6 +57,39 @@ public class NetworkConnectionService implements BBoxDBService {
 	 */
 	protected ExecutorService threadPool;
 	
+	/**
+	 * The thread pool to execute the regions of queries in parallel
+	 */
+	protected ExecutorService queryThreadPool;
+	
+	/**
+	 * The shared thread pool to process the requests of the non blocking connections
+	 */
+	protected ExecutorService requestThreadPool;
+	
+	/**
+	 * The thread pool to route the writes of the non blocking connections. The routing 
+	 * waits for the acknowledgements of the replicas, so it is kept out of the request
+	 * thread pool, which has to process the replica writes of other nodes.
+	 */
+	protected ExecutorService routingThreadPool;
+	
+	/**
+	 * The maximal amount of queued routing tasks, further tasks are rejected
+	 */
+	protected final static int MAX_PENDING_ROUTINGS = 1024;
+	
+	/**
+	 * The selector threads of the non blocking transport
+	 */
+	protected final List<NIOSelectorThread> selectorThreads = new ArrayList<>();
+	
+	/**
+	 * The open non blocking connections
+	 */
+	protected final Set<NIOClientConnection> nioConnections 
+		= Collections.newSetFromMap(new ConcurrentHashMap<>());
+	
 	/**
 	 * The connection handler state
 	 */
@@ -52,7 +98,12 @@ public class NetworkConnectionService implements BBoxDBService {
 	/**
 	 * The connection dispatcher runnable
 	 */
-	protected ConnectionDispatcher serverSocketDispatcher = null;
+	protected ExceptionSafeThread serverSocketDispatcher = null;
+	
+	/**
+	 * The thread that writes the pending compression packages of the non blocking connections
+	 */
+	protected Thread compressionFlushThread = null;
 	
 	/**
 	 * The thread that listens on the server socket and dispatches
@@ -89,11 +140,16 @@ public class NetworkConnectionService implements BBoxDBService {
 			
 			logger.info("Start the network connection handler on port: {}", configuration.getNetworkListenPort());
 			
-			if(threadPool == null) {
-				threadPool = Executors.newFixedThreadPool(configuration.getNetworkConnectionThreads());
+			if(queryThreadPool == null && configuration.getNetworkQueryThreads() > 0) {
+				queryThreadPool = Executors.newFixedThreadPool(configuration.getNetworkQueryThreads());
+			}
+			
+			if(configuration.isNetworkNonBlockingIO()) {
+				startNonBlockingTransport();
+			} else {
+				startBlockingTransport();
 			}
 			
-			serverSocketDispatcher = new ConnectionDispatcher();
 			serverSocketDispatchThread = new Thread(serverSocketDispatcher);
 			serverSocketDispatchThread.start();
 			serverSocketDispatchThread.setName("Connection dispatcher thread");
@@ -107,6 +163,54 @@ public class NetworkConnectionService implements BBoxDBService {
 		}
 	}
 	
+	/**
+	 * Start the blocking transport, each connection is handled by one thread
+	 */
+	protected void startBlockingTransport() {
+		
+		if(threadPool == null) {
+			threadPool = Executors.newFixedThreadPool(configuration.getNetworkConnectionThreads());
+		}
+		
+		serverSocketDispatcher = new ConnectionDispatcher();
+	}
+
+	/**
+	 * Start the non blocking transport, the IO of all connections is handled by the 
+	 * selector threads, the requests are processed by the shared request thread pool 
+	 */
+	protected void startNonBlockingTransport() {
+		
+		if(requestThreadPool == null) {
+			requestThreadPool = Executors.newFixedThreadPool(configuration.getNetworkRequestThreads());
+		}
+		
+		if(routingThreadPool == null) {
+			final int routingThreads = configuration.getNetworkRoutingThreads();
+			routingThreadPool = new ThreadPoolExecutor(routingThreads, routingThreads, 0, TimeUnit.SECONDS, 
+					new ArrayBlockingQueue<>(MAX_PENDING_ROUTINGS), new ThreadPoolExecutor.AbortPolicy());
+		}
+		
+		try {
+			for(int i = 0; i < configuration.getNetworkIOThreads(); i++) {
+				final NIOSelectorThread selectorThread = new NIOSelectorThread("Network selector " + i);
+				selectorThreads.add(selectorThread);
+				
+				final Thread thread = new Thread(selectorThread);
+				thread.setName("Network selector thread " + i);
+				thread.start();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open selector", e);
+		}
+		
+		compressionFlushThread = new Thread(new CompressionFlushThread());
+		compressionFlushThread.setName("Network compression flush thread");
+		compressionFlushThread.start();
+		
+		serverSocketDispatcher = new NIOConnectionDispatcher();
+	}
+	
 	/**
 	 * Shutdown our thread pool
 	 */
@@ -116,17 +220,46 @@ public class NetworkConnectionService implements BBoxDBService {
 		state.dispatchToStopping();
 		
 		if(serverSocketDispatchThread != null) {
-			serverSocketDispatcher.closeSocketNE();
+			if(serverSocketDispatcher instanceof ConnectionDispatcher) {
+				((ConnectionDispatcher) serverSocketDispatcher).closeSocketNE();
+			}
+			
 			serverSocketDispatchThread.interrupt();	
 			serverSocketDispatchThread = null;
 			serverSocketDispatcher = null;
 		}
 		
+		if(compressionFlushThread != null) {
+			compressionFlushThread.interrupt();
+			compressionFlushThread = null;
+		}
+		
+		selectorThreads.forEach(t -> t.shutdown());
+		selectorThreads.clear();
+		
+		new ArrayList<>(nioConnections).forEach(c -> c.close());
+		nioConnections.clear();
+		
 		if(threadPool != null) {
 			threadPool.shutdown();
 			threadPool = null;
 		}
 		
+		if(requestThreadPool != null) {
+			requestThreadPool.shutdown();
+			requestThreadPool = null;
+		}
+		
+		if(routingThreadPool != null) {
+			routingThreadPool.shutdown();
+			routingThreadPool = null;
+		}
+		
+		if(queryThreadPool != null) {
+			queryThreadPool.shutdown();
+			queryThreadPool = null;
+		}
+		
 		state.dispatchToTerminated();
 	}
 	
@@ -190,7 +323,105 @@ public class NetworkConnectionService implements BBoxDBService {
 		 */
 		protected void handleConnection(final Socket clientSocket) {
 			logger.debug("Got new connection from: {}", clientSocket.getInetAddress());
-			threadPool.submit(new ClientConnectionHandler(storageRegistry, clientSocket));
+			threadPool.submit(new ClientConnectionHandler(storageRegistry, 
+					clientSocket, queryThreadPool));
+		}
+	}
+
+	/**
+	 * The connection dispatcher of the non blocking transport. The accepted 
+	 * connections are assigned round robin to the selector threads.
+	 */
+	class NIOConnectionDispatcher extends ExceptionSafeThread {
+
+		/**
+		 * The number of accepted connections
+		 */
+		private long acceptedConnections = 0;
+		
+		@Override
+		public void runThread() {
+			
+			logger.info("Starting new non blocking connection dispatcher");
+			
+			ServerSocketChannel serverSocketChannel = null;
+			
+			try {
+				serverSocketChannel = ServerSocketChannel.open();
+				serverSocketChannel.socket().setReuseAddress(true);
+				serverSocketChannel.bind(new InetSocketAddress(configuration.getNetworkListenPort()));
+				
+				while(! Thread.currentThread().isInterrupted()) {
+					final SocketChannel clientChannel = serverSocketChannel.accept();
+					handleConnection(clientChannel);
+				}
+				
+			} catch(IOException e) {
+				
+				// Print exception only if the exception is really unexpected
+				if(Thread.currentThread().isInterrupted() != true) {
+					logger.error("Got an IO exception while reading from server socket ", e);
+				}
+
+			} finally {
+				CloseableHelper.closeWithoutException(serverSocketChannel);
+			}
+			
+			logger.info("Shutting down the non blocking connection dispatcher");
+		}
+		
+		/**
+		 * Register the connection at the next selector thread
+		 * @param clientChannel
+		 * @throws IOException 
+		 */
+		protected void handleConnection(final SocketChannel clientChannel) throws IOException {
+			logger.debug("Got new connection from: {}", clientChannel.getRemoteAddress());
+			
+			clientChannel.configureBlocking(false);
+			
+			final int selector = (int) (acceptedConnections++ % selectorThreads.size());
+			final NIOSelectorThread selectorThread = selectorThreads.get(selector);
+			
+			final NIOClientConnection connection = new NIOClientConnection(clientChannel, 
+					selectorThread, requestThreadPool, nioConnections::remove);
+			
+			final ClientConnectionHandler connectionHandler = new ClientConnectionHandler(
+					storageRegistry, clientChannel.socket(), new NIOOutputStream(connection), 
+					requestThreadPool, routingThreadPool, queryThreadPool);
+			
+			connection.setConnectionHandler(connectionHandler);
+			nioConnections.add(connection);
+			selectorThread.registerConnection(connection);
+		}
+	}
+	
+	/**
+	 * Write the pending compression packages of the non blocking connections. The 
+	 * packages are written by the request thread pool, so slow clients don't 
+	 * delay the packages of other clients.
+	 */
+	class CompressionFlushThread extends ExceptionSafeThread {
+
+		@Override
+		protected void runThread() throws Exception {
+			while(! Thread.currentThread().isInterrupted()) {
+				
+				for(final NIOClientConnection connection : nioConnections) {
+					final ClientConnectionHandler connectionHandler = connection.getConnectionHandler();
+					
+					if(connectionHandler.isCompressionFlushNeeded()) {
+						connectionHandler.scheduleCompressionFlush(requestThreadPool);
+					}
+				}
+				
+				try {
+					Thread.sleep(NetworkConst.MIN_COMPRESSION_DELAY_MS);
+				} catch (InterruptedException e) {
+					// Handle InterruptedException directly
+					return;
+				}
+			}
 		}
 	}
 
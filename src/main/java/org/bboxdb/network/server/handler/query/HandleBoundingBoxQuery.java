@@ -59,9 +59,10 @@ public class HandleBoundingBoxQuery implements QueryHandler {
 			final QueryPlan queryPlan = new BoundingBoxQueryPlan(queryRequest.getBoundingBox());
 			
 			final ClientQuery clientQuery = new ClientQuery(queryPlan, queryRequest.isPagingEnabled(), 
-					queryRequest.getTuplesPerPage(), clientConnectionHandler, packageSequence, requestTable);
+					queryRequest.getTuplesPerPage(), clientConnectionHandler, packageSequence, requestTable,
+					queryRequest.getBoundingBox());
 			
-			clientConnectionHandler.getActiveQueries().put(packageSequence, clientQuery);
+			clientConnectionHandler.registerQuery(packageSequence, clientQuery);
 			clientConnectionHandler.sendNextResultsForQuery(packageSequence, packageSequence);
 		} catch (PackageEncodeException e) {
 			logger.warn("Got exception while decoding package", e);
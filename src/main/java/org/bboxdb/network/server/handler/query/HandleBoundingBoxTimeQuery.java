@@ -60,9 +60,10 @@ public class HandleBoundingBoxTimeQuery implements QueryHandler {
 					queryRequest.getTimestamp());
 	
 			final ClientQuery clientQuery = new ClientQuery(queryPlan, queryRequest.isPagingEnabled(), 
-					queryRequest.getTuplesPerPage(), clientConnectionHandler, packageSequence, requestTable);
+					queryRequest.getTuplesPerPage(), clientConnectionHandler, packageSequence, requestTable,
+					queryRequest.getBoundingBox());
 			
-			clientConnectionHandler.getActiveQueries().put(packageSequence, clientQuery);
+			clientConnectionHandler.registerQuery(packageSequence, clientQuery);
 			clientConnectionHandler.sendNextResultsForQuery(packageSequence, packageSequence);
 		} catch (PackageEncodeException e) {
 			logger.warn("Got exception while decoding package", e);
@@ -51,13 +51,15 @@ public class HandleCancelQuery implements RequestHandler {
 		
 		try {
 			final CancelQueryRequest nextPagePackage = CancelQueryRequest.decodeTuple(encodedPackage);
-			logger.debug("Cancel query {} requested", nextPagePackage.getQuerySequence());
+			final short querySequence = nextPagePackage.getQuerySequence();
+			logger.debug("Cancel query {} requested", querySequence);
 			
-			if(! clientConnectionHandler.getActiveQueries().containsKey(packageSequence)) {
-				logger.error("Unable to cancel query {} - not found", packageSequence);
+			final ClientQuery clientQuery = clientConnectionHandler.getActiveQueries().remove(querySequence);
+			
+			if(clientQuery == null) {
+				logger.error("Unable to cancel query {} - not found", querySequence);
 				clientConnectionHandler.writeResultPackage(new ErrorResponse(packageSequence, ErrorMessages.ERROR_QUERY_NOT_FOUND));
 			} else {
-				final ClientQuery clientQuery = clientConnectionHandler.getActiveQueries().remove(packageSequence);
 				clientQuery.close();
 				clientConnectionHandler.writeResultPackage(new SuccessResponse(packageSequence));
 			}
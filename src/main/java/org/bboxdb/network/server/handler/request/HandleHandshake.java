@@ -20,8 +20,13 @@ package org.bboxdb.network.server.handler.request;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import org.bboxdb.misc.BBoxDBConfiguration;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
 import org.bboxdb.network.NetworkConnectionState;
 import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.capabilities.PeerCapabilities;
+import org.bboxdb.network.compression.NetworkCompressionCodec;
+import org.bboxdb.network.compression.NetworkCompressionCodecFactory;
 import org.bboxdb.network.packages.PackageEncodeException;
 import org.bboxdb.network.packages.request.HelloRequest;
 import org.bboxdb.network.packages.response.ErrorResponse;
@@ -50,7 +55,10 @@ public class HandleHandshake implements RequestHandler {
 		
 		try {	
 			final HelloRequest heloRequest = HelloRequest.decodeRequest(encodedPackage);
-			clientConnectionHandler.setConnectionCapabilities(heloRequest.getPeerCapabilities());
+			
+			final PeerCapabilities connectionCapabilities 
+				= getConnectionCapabilities(heloRequest.getPeerCapabilities());
+			clientConnectionHandler.setConnectionCapabilities(connectionCapabilities);
 
 			final HelloResponse responsePackage = new HelloResponse(packageSequence, NetworkConst.PROTOCOL_VERSION, clientConnectionHandler.getConnectionCapabilities());
 			clientConnectionHandler.writeResultPackage(responsePackage);
@@ -65,4 +73,34 @@ public class HandleHandshake implements RequestHandler {
 			return false;
 		}
 	}
+
+	/**
+	 * Negotiate the capabilities of the connection. The first configured 
+	 * compression codec that is supported by the client is selected.
+	 * 
+	 * @param clientCapabilities
+	 * @return
+	 * @throws PackageEncodeException
+	 */
+	protected PeerCapabilities getConnectionCapabilities(final PeerCapabilities clientCapabilities) 
+			throws PackageEncodeException {
+		
+		final PeerCapabilities connectionCapabilities = new PeerCapabilities();
+		
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		
+		final byte compressionType = NetworkCompressionCodecFactory.selectCompressionType(
+				clientCapabilities, configuration.getNetworkCompressionCodecs());
+		
+		if(compressionType != NetworkConst.COMPRESSION_TYPE_NONE) {
+			final NetworkCompressionCodec codec 
+				= NetworkCompressionCodecFactory.getCodecForType(compressionType);
+			codec.setSupported(connectionCapabilities);
+			logger.debug("Using {} compression", codec.getName());
+		}
+		
+		connectionCapabilities.freeze();
+		
+		return connectionCapabilities;
+	}
 }
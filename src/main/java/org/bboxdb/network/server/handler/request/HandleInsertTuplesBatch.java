@@ -0,0 +1,157 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.server.handler.request;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.bboxdb.distribution.RegionIdMapper;
+import org.bboxdb.distribution.RegionIdMapperInstanceManager;
+import org.bboxdb.network.client.BBoxDBException;
+import org.bboxdb.network.packages.PackageEncodeException;
+import org.bboxdb.network.packages.request.InsertTuplesBatchRequest;
+import org.bboxdb.network.packages.response.ErrorResponse;
+import org.bboxdb.network.packages.response.SuccessResponse;
+import org.bboxdb.network.routing.PackageRouter;
+import org.bboxdb.network.routing.RoutingHeader;
+import org.bboxdb.network.routing.RoutingHop;
+import org.bboxdb.network.server.ClientConnectionHandler;
+import org.bboxdb.network.server.ErrorMessages;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.registry.StorageRegistry;
+import org.bboxdb.storage.sstable.SSTableManager;
+import org.bboxdb.util.RejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class HandleInsertTuplesBatch extends HandleInsertTuple {
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(HandleInsertTuplesBatch.class);
+	
+
+	@Override
+	/**
+	 * Handle the insert tuples batch request
+	 */
+	public boolean handleRequest(final ByteBuffer encodedPackage, 
+			final short packageSequence, final ClientConnectionHandler clientConnectionHandler) 
+					throws IOException, PackageEncodeException {
+		
+		if(logger.isDebugEnabled()) {
+			logger.debug("Got insert tuples batch request");
+		}
+		
+		try {			
+			final InsertTuplesBatchRequest insertRequest = InsertTuplesBatchRequest.decodeTuple(encodedPackage);
+			
+			final List<Tuple> tuples = insertRequest.getTuples();			
+			final SSTableName requestTable = insertRequest.getTable();
+			final RoutingHeader routingHeader = insertRequest.getRoutingHeader();
+			final StorageRegistry storageRegistry = clientConnectionHandler.getStorageRegistry();
+			
+			if(! routingHeader.isRoutedPackage()) {
+				handleUnroutedPackage(tuples, requestTable, storageRegistry);
+				final SuccessResponse responsePackage = new SuccessResponse(packageSequence);
+				clientConnectionHandler.writeResultPackage(responsePackage);
+			} else {
+				handleRoutedPackage(tuples, requestTable, storageRegistry, routingHeader);
+				final PackageRouter packageRouter = clientConnectionHandler.getPackageRouter();
+				packageRouter.performInsertBatchPackageRoutingAsync(packageSequence, insertRequest);
+			}
+			
+		} catch (Exception e) {
+			logger.warn("Error while insert tuples", e);
+			final ErrorResponse responsePackage = new ErrorResponse(packageSequence, ErrorMessages.ERROR_EXCEPTION);
+			clientConnectionHandler.writeResultPackage(responsePackage);	
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Handle the unrouted package, the tuples are grouped by the local table 
+	 * and each table is updated once
+	 * 
+	 * @param tuples
+	 * @param requestTable
+	 * @param storageRegistry
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 */
+	protected void handleUnroutedPackage(final List<Tuple> tuples, final SSTableName requestTable, 
+			final StorageRegistry storageRegistry) throws StorageManagerException, RejectedException {
+		
+		final RegionIdMapper regionIdMapper = RegionIdMapperInstanceManager.getInstance(requestTable.getDistributionGroupObject());
+		final Map<SSTableName, List<Tuple>> tuplesForTable = new HashMap<>();
+		
+		for(final Tuple tuple : tuples) {
+			final Collection<SSTableName> localTables 
+				= regionIdMapper.getLocalTablesForRegion(tuple.getBoundingBox(), requestTable);
+			
+			for(final SSTableName ssTableName : localTables) {	
+				tuplesForTable.computeIfAbsent(ssTableName, t -> new ArrayList<>()).add(tuple);
+			}
+		}
+
+		for(final Entry<SSTableName, List<Tuple>> entry : tuplesForTable.entrySet()) {	
+			final SSTableManager storageManager = storageRegistry.getSSTableManager(entry.getKey());
+			storageManager.put(entry.getValue());
+		}
+	}
+
+	/**
+	 * Insert the tuples into the local storage
+	 * @param tuples
+	 * @param requestTable
+	 * @param storageRegistry
+	 * @param routingHeader
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 * @throws BBoxDBException
+	 */
+	protected void handleRoutedPackage(final List<Tuple> tuples, final SSTableName requestTable, 
+			final StorageRegistry storageRegistry, final RoutingHeader routingHeader) 
+			throws StorageManagerException, RejectedException, BBoxDBException {
+		
+		final RoutingHop localHop = routingHeader.getRoutingHop();
+		
+		checkSystemNameMatches(localHop);
+		
+		final RegionIdMapper regionIdMapper = RegionIdMapperInstanceManager.getInstance(
+				requestTable.getDistributionGroupObject());
+
+		final Collection<SSTableName> localTables = regionIdMapper.convertRegionIdToTableNames(
+					requestTable, localHop.getDistributionRegions());
+
+		for(final SSTableName ssTableName : localTables) {
+			final SSTableManager storageManager = storageRegistry.getSSTableManager(ssTableName);
+			storageManager.put(tuples);			
+		}
+	}
+}
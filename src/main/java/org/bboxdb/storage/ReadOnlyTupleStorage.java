@@ -22,6 +22,7 @@ import java.util.Iterator;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleTimestampType;
 
 public interface ReadOnlyTupleStorage extends Iterable<Tuple> {
 	
@@ -52,6 +53,15 @@ public interface ReadOnlyTupleStorage extends Iterable<Tuple> {
 	 */
 	public Iterator<Tuple> getAllTuplesInBoundingBox(final BoundingBox boundingBox);
 	
+	/**
+	 * Get all tuples with a timestamp of the given type that is newer than the timestamp
+	 * @param timestampType
+	 * @param timestamp
+	 * @return
+	 */
+	public Iterator<Tuple> getAllTuplesNewerAs(final TupleTimestampType timestampType, 
+			final long timestamp);
+	
 	/**
 	 * Get the number of tuples in the storage
 	 * @return
@@ -84,6 +94,13 @@ public interface ReadOnlyTupleStorage extends Iterable<Tuple> {
 	 */
 	public long getNewestTupleInsertedTimestamp();
 	
+	/**
+	 * Get the bounding box that covers all tuples of the storage. 
+	 * BoundingBox.EMPTY_BOX is returned if the covering box is unknown.
+	 * @return
+	 */
+	public BoundingBox getCoveringBoundingBox();
+	
 	/**
 	 * Delete the object and persistent data as soon as usage == 0
 	 */
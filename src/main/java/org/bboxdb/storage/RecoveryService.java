@@ -39,6 +39,7 @@ import org.bboxdb.misc.BBoxDBService;
 import org.bboxdb.misc.Const;
 import org.bboxdb.network.client.BBoxDBClient;
 import org.bboxdb.network.client.future.TupleListFuture;
+import org.bboxdb.storage.commitlog.CommitLog;
 import org.bboxdb.storage.entity.DistributionGroupMetadata;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
@@ -214,8 +215,8 @@ public class RecoveryService implements BBoxDBService {
 		// Even with NTP, the clock of the nodes can have a delta.
 		// We subtract this delta from the checkpoint timestamp to ensure
 		// that all tuples for the recovery are requested
-		final long requestTupleTimestamp = outdatedDistributionRegion.getLocalVersion() 
-				- Const.MAX_NODE_CLOCK_DELTA;
+		final long requestTupleTimestamp = getRecoveryCheckpoint(ssTableName, 
+				outdatedDistributionRegion.getLocalVersion()) - Const.MAX_NODE_CLOCK_DELTA;
 		
 		final TupleListFuture result = connection.queryInsertedTime
 				(sstableName, requestTupleTimestamp);
@@ -238,6 +239,35 @@ public class RecoveryService implements BBoxDBService {
 				sstableName);
 	}
 
+	/**
+	 * Get the timestamp since when the tuples of the table needs to be recovered. 
+	 * The tuples of the local commit log are already recovered, so only the 
+	 * gap after the newest replayed record needs to be requested.
+	 * 
+	 * @param ssTableName
+	 * @param localVersion
+	 * @return
+	 */
+	protected long getRecoveryCheckpoint(final SSTableName ssTableName, final long localVersion) {
+		
+		long checkpoint = localVersion;
+		
+		for(final Storage storage : storageRegistry.getAllStorages()) {
+			final CommitLog commitLog = storage.getCommitLog();
+			
+			if(commitLog != null) {
+				checkpoint = Math.max(checkpoint, commitLog.getNewestReplayedTimestamp(ssTableName));
+			}
+		}
+		
+		if(checkpoint != localVersion) {
+			logger.info("Recovery: table {} is recovered from the commit log up to {}", 
+					ssTableName.getFullname(), checkpoint);
+		}
+		
+		return checkpoint;
+	}
+
 	@Override
 	public void shutdown() {
 		// Nothing to do
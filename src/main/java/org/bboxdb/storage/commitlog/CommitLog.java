@@ -0,0 +1,547 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.commitlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.bboxdb.misc.BBoxDBService;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.util.ServiceState;
+import org.bboxdb.util.concurrent.ThreadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The append only commit log of a storage. Every tuple is written into the 
+ * log before it is added to the memtable. The log is synced in groups, a 
+ * writer waits until the sync interval is elapsed or enough bytes are 
+ * pending. A segment is deleted when all memtables with records in the 
+ * segment are flushed.
+ */
+public class CommitLog implements BBoxDBService {
+	
+	/**
+	 * The directory of the segments
+	 */
+	protected final File directory;
+	
+	/**
+	 * The max size of a segment
+	 */
+	protected final long segmentSize;
+	
+	/**
+	 * The sync interval in milliseconds, 0 syncs every record
+	 */
+	protected final int syncInterval;
+	
+	/**
+	 * The amount of unsynced bytes that trigger a sync
+	 */
+	protected final long syncBytes;
+	
+	/**
+	 * The segments of the log
+	 */
+	protected final Map<Long, CommitLogSegment> segments = new TreeMap<>();
+	
+	/**
+	 * The segment for new records
+	 */
+	protected CommitLogSegment activeSegment;
+	
+	/**
+	 * The amount of written bytes
+	 */
+	protected long writtenBytes = 0;
+	
+	/**
+	 * The amount of synced bytes
+	 */
+	protected long syncedBytes = 0;
+	
+	/**
+	 * Is a sync requested
+	 */
+	protected boolean syncRequested = false;
+	
+	/**
+	 * The amount of running forces of the active segment, the 
+	 * segment can't be closed until the forces are finished
+	 */
+	protected int runningForces = 0;
+	
+	/**
+	 * Is the active segment replaced, no records are appended meanwhile
+	 */
+	protected boolean rotating = false;
+	
+	/**
+	 * The segments of the last run, that need to be replayed
+	 */
+	protected final List<File> segmentsToReplay = new ArrayList<>();
+	
+	/**
+	 * The newest timestamp of the replayed records per table
+	 */
+	protected final Map<SSTableName, Long> replayedTimestamps = new ConcurrentHashMap<>();
+	
+	/**
+	 * The running sync threads
+	 */
+	protected final List<Thread> runningThreads = new ArrayList<>();
+	
+	/**
+	 * The state of the service
+	 */
+	protected final ServiceState serviceState = new ServiceState();
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CommitLog.class);
+	
+	public CommitLog(final File directory, final long segmentSize, final int syncInterval, 
+			final long syncBytes) {
+		
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.syncInterval = syncInterval;
+		this.syncBytes = syncBytes;
+	}
+
+	@Override
+	public void init() {
+		
+		if(serviceState.isInRunningState()) {
+			logger.warn("Unable to init service, is already in {} state", serviceState);
+			return;
+		}
+		
+		serviceState.dipatchToStarting();
+		
+		try {
+			directory.mkdirs();
+			
+			final long nextSegmentNumber = scanForExistingSegments() + 1;
+			openNewSegment(nextSegmentNumber);
+			
+			if(syncInterval > 0) {
+				final Thread syncThread = new Thread(new CommitLogSyncThread(this));
+				syncThread.setName("Commit log sync thread for: " + directory);
+				syncThread.start();
+				runningThreads.add(syncThread);
+			}
+			
+			serviceState.dispatchToRunning();
+		} catch (IOException e) {
+			logger.error("Unable to open commit log in " + directory, e);
+			serviceState.dispatchToFailed(e);
+		}
+	}
+
+	/**
+	 * Scan the directory for the segments of the last run
+	 * @return the highest segment number
+	 */
+	protected long scanForExistingSegments() {
+		segmentsToReplay.clear();
+		
+		long highestSegmentNumber = 0;
+		final File[] files = directory.listFiles();
+		
+		if(files == null) {
+			return highestSegmentNumber;
+		}
+		
+		for(final File file : files) {
+			final String filename = file.getName();
+			
+			if(! SSTableHelper.isFileNameCommitLogSegment(filename)) {
+				continue;
+			}
+			
+			final long segmentNumber = SSTableHelper.extractSegmentNumberFromFilename(filename);
+			highestSegmentNumber = Math.max(highestSegmentNumber, segmentNumber);
+			segmentsToReplay.add(file);
+		}
+		
+		return highestSegmentNumber;
+	}
+	
+	/**
+	 * Open a new active segment
+	 * @param segmentNumber
+	 * @throws IOException
+	 */
+	protected void openNewSegment(final long segmentNumber) throws IOException {
+		final File file = new File(directory, SSTableHelper.getCommitLogSegmentFilename(segmentNumber));
+		final CommitLogSegment segment = new CommitLogSegment(segmentNumber, file);
+		segment.openForWrite();
+		segments.put(segmentNumber, segment);
+		activeSegment = segment;
+		
+		logger.debug("Opened new commit log segment {}", file);
+	}
+
+	@Override
+	public void shutdown() {
+		
+		if(! serviceState.isInRunningState()) {
+			logger.warn("Unable to stop service, is already in {} state", serviceState);
+			return;
+		}
+		
+		serviceState.dispatchToStopping();
+		
+		ThreadHelper.stopThreads(runningThreads);
+		runningThreads.clear();
+		
+		synchronized (this) {
+			try {
+				waitForRunningForces();
+				activeSegment.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				logger.error("Interrupted while closing commit log segment", e);
+			} catch (IOException e) {
+				logger.error("Unable to close commit log segment", e);
+			}
+			
+			syncedBytes = writtenBytes;
+			deleteCleanSegments(true);
+			notifyAll();
+		}
+		
+		serviceState.dispatchToTerminated();
+	}
+	
+	/**
+	 * Append the tuple to the log. The record is durable, when 
+	 * awaitSync() for the returned position has returned. Without
+	 * a sync interval, the record is synced before the call returns.
+	 * 
+	 * @param ssTableName
+	 * @param tuple
+	 * @param memtable - the memtable that receives the tuple
+	 * @return the log position of the record
+	 * @throws StorageManagerException
+	 */
+	public long append(final SSTableName ssTableName, final Tuple tuple, final Memtable memtable) 
+			throws StorageManagerException {
+		
+		try {
+			final byte[] record = CommitLogSegment.encodeRecord(System.currentTimeMillis(), 
+					ssTableName, tuple);
+			
+			final long position;
+			
+			synchronized (this) {
+				while(rotating) {
+					wait();
+				}
+				
+				if(! serviceState.isInRunningState()) {
+					throw new StorageManagerException("Commit log is not ready: " + serviceState);
+				}
+				
+				if(activeSegment.getSize() + record.length > segmentSize) {
+					rotateSegment();
+				}
+				
+				activeSegment.append(record, memtable);
+				writtenBytes = writtenBytes + record.length;
+				position = writtenBytes;
+				
+				if(syncInterval > 0 && writtenBytes - syncedBytes >= syncBytes) {
+					syncRequested = true;
+					notifyAll();
+				}
+			}
+			
+			if(syncInterval == 0) {
+				sync();
+			}
+			
+			return position;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageManagerException("Interrupted while writing commit log record", e);
+		} catch (IOException e) {
+			throw new StorageManagerException("Unable to write commit log record", e);
+		}
+	}
+	
+	/**
+	 * Close the active segment and open a new segment. The appends are 
+	 * suspended until the running forces of the segment are finished.
+	 * 
+	 * @throws IOException
+	 * @throws InterruptedException 
+	 */
+	protected void rotateSegment() throws IOException, InterruptedException {
+		rotating = true;
+		
+		try {
+			waitForRunningForces();
+			activeSegment.close();
+			syncedBytes = writtenBytes;
+			
+			openNewSegment(activeSegment.getSegmentNumber() + 1);
+			deleteCleanSegments(false);
+		} finally {
+			rotating = false;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Wait until the running forces of the active segment are finished
+	 * @throws InterruptedException
+	 */
+	protected synchronized void waitForRunningForces() throws InterruptedException {
+		while(runningForces > 0) {
+			wait();
+		}
+	}
+	
+	/**
+	 * Wait until the given log position is synced to disk
+	 * @param position
+	 * @throws StorageManagerException
+	 */
+	public synchronized void awaitSync(final long position) throws StorageManagerException {
+		while(syncedBytes < position) {
+			
+			if(serviceState.isInFinishedState()) {
+				throw new StorageManagerException("Commit log is closed before the record is synced");
+			}
+			
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new StorageManagerException("Interrupted while waiting for commit log sync", e);
+			}
+		}
+	}
+	
+	/**
+	 * Wait until a sync is requested or the sync interval is elapsed
+	 * @throws InterruptedException
+	 */
+	protected synchronized void waitForSyncRequest() throws InterruptedException {
+		if(! syncRequested) {
+			wait(syncInterval);
+		}
+		
+		syncRequested = false;
+	}
+	
+	/**
+	 * Sync the pending records of the active segment to disk. The records are 
+	 * flushed under the lock of the log, but forced to disk outside of the lock, 
+	 * so new records can be appended while the segment is forced.
+	 * 
+	 * @throws IOException 
+	 */
+	protected void sync() throws IOException {
+		final CommitLogSegment segment;
+		final long syncPosition;
+		
+		synchronized (this) {
+			if(syncedBytes == writtenBytes) {
+				return;
+			}
+			
+			segment = activeSegment;
+			syncPosition = writtenBytes;
+			segment.flush();
+			runningForces++;
+		}
+		
+		boolean forced = false;
+		
+		try {
+			segment.force();
+			forced = true;
+		} finally {
+			synchronized (this) {
+				runningForces--;
+				
+				if(forced) {
+					syncedBytes = Math.max(syncedBytes, syncPosition);
+				}
+				
+				notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Handle an error during the sync, the waiting writers are woken up 
+	 * and no further records are accepted
+	 * 
+	 * @param e
+	 */
+	protected synchronized void handleSyncError(final IOException e) {
+		logger.error("Unable to sync commit log", e);
+		serviceState.dispatchToFailed(e);
+		notifyAll();
+	}
+	
+	/**
+	 * The memtable is flushed to disk, the records of the memtable
+	 * are no longer needed
+	 * 
+	 * @param memtable
+	 */
+	public synchronized void memtableFlushed(final Memtable memtable) {
+		segments.values().forEach(s -> s.memtableFlushed(memtable));
+		deleteCleanSegments(false);
+	}
+	
+	/**
+	 * Delete all segments without records of unflushed memtables
+	 * @param includeActiveSegment
+	 */
+	protected void deleteCleanSegments(final boolean includeActiveSegment) {
+		final Iterator<CommitLogSegment> iterator = segments.values().iterator();
+		
+		while(iterator.hasNext()) {
+			final CommitLogSegment segment = iterator.next();
+			
+			if(segment.isDirty()) {
+				continue;
+			}
+			
+			if(segment == activeSegment && ! includeActiveSegment) {
+				continue;
+			}
+			
+			segment.delete();
+			iterator.remove();
+		}
+	}
+	
+	/**
+	 * Replay the segments of the last run. The segments are read in parallel,
+	 * the replayed tuples are written into the new segments of the log. 
+	 * Afterwards, the old segments are deleted.
+	 * 
+	 * @param replayHandler
+	 * @return the number of replayed records
+	 * @throws StorageManagerException
+	 */
+	public long replay(final CommitLogSegment.ReplayHandler replayHandler) throws StorageManagerException {
+		
+		if(segmentsToReplay.isEmpty()) {
+			return 0;
+		}
+		
+		final long startTime = System.currentTimeMillis();
+		final int threads = Math.min(segmentsToReplay.size(), Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		
+		logger.info("Replaying {} commit log segments with {} threads", segmentsToReplay.size(), threads);
+		
+		long replayedRecords = 0;
+		
+		try {
+			final List<Future<Long>> futures = segmentsToReplay
+				.stream()
+				.map(f -> executor.submit(() -> CommitLogSegment.readRecords(f, (timestamp, table, tuple) -> {
+					replayHandler.handleRecord(timestamp, table, tuple);
+					replayedTimestamps.merge(table, timestamp, Math::max);
+				})))
+				.collect(Collectors.toList());
+			
+			for(final Future<Long> future : futures) {
+				replayedRecords = replayedRecords + future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageManagerException("Interrupted while replaying the commit log", e);
+		} catch (ExecutionException e) {
+			throw new StorageManagerException("Error while replaying the commit log", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		// The replayed tuples are stored in the new segments
+		try {
+			sync();
+		} catch (IOException e) {
+			throw new StorageManagerException("Unable to sync commit log", e);
+		}
+		
+		segmentsToReplay.forEach(f -> f.delete());
+		segmentsToReplay.clear();
+		
+		logger.info("Replayed {} commit log records in {} ms", replayedRecords, 
+				System.currentTimeMillis() - startTime);
+		
+		return replayedRecords;
+	}
+	
+	/**
+	 * Get the time when the newest replayed record of the table was written
+	 * @param ssTableName
+	 * @return the timestamp or 0, if no record was replayed
+	 */
+	public long getNewestReplayedTimestamp(final SSTableName ssTableName) {
+		return replayedTimestamps.getOrDefault(ssTableName, 0L);
+	}
+	
+	/**
+	 * Get the number of segments of the log
+	 * @return
+	 */
+	public synchronized int getNumberOfSegments() {
+		return segments.size();
+	}
+	
+	/**
+	 * Get the directory of the log
+	 * @return
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public String getServicename() {
+		return "Commit log for: " + directory;
+	}
+}
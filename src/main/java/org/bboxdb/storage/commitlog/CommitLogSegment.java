@@ -0,0 +1,377 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.commitlog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.util.io.DataEncoderHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * One append only file of the commit log.
+ * 
+ * Format of a record:
+ * 
+ * ---------------------------------------------------------------------------------------
+ * | Payload-Length | Checksum | Timestamp | Name-Length | Tablename | Encoded tuple     |
+ * |     4 Byte     |  4 Byte  |  8 Byte   |   2 Byte    |  n Byte   | m Byte            |
+ * ---------------------------------------------------------------------------------------
+ * 
+ * The checksum (CRC32C) covers the payload (timestamp, table name and tuple).
+ */
+public class CommitLogSegment {
+
+	/**
+	 * The number of the segment
+	 */
+	protected final long segmentNumber;
+	
+	/**
+	 * The file of the segment
+	 */
+	protected final File file;
+	
+	/**
+	 * The file output stream
+	 */
+	protected FileOutputStream fileOutputStream;
+	
+	/**
+	 * The buffered output stream
+	 */
+	protected BufferedOutputStream outputStream;
+	
+	/**
+	 * The size of the segment
+	 */
+	protected long size;
+	
+	/**
+	 * The memtables with records in this segment, that are not flushed
+	 */
+	protected final Set<Memtable> dirtyMemtables = Collections.newSetFromMap(new IdentityHashMap<>());
+	
+	/**
+	 * The size of the record header (length and checksum)
+	 */
+	public final static int RECORD_HEADER_BYTES = 2 * DataEncoderHelper.INT_BYTES;
+	
+	/**
+	 * The minimal size of a record payload (timestamp and length of the table name)
+	 */
+	protected final static int MIN_PAYLOAD_BYTES = DataEncoderHelper.LONG_BYTES + DataEncoderHelper.SHORT_BYTES;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CommitLogSegment.class);
+	
+	public CommitLogSegment(final long segmentNumber, final File file) {
+		this.segmentNumber = segmentNumber;
+		this.file = file;
+		this.size = 0;
+	}
+	
+	/**
+	 * Create the segment file and write the header
+	 * @throws IOException
+	 */
+	public void openForWrite() throws IOException {
+		fileOutputStream = new FileOutputStream(file);
+		outputStream = new BufferedOutputStream(fileOutputStream);
+		outputStream.write(SSTableConst.MAGIC_BYTES_COMMIT_LOG);
+		size = SSTableConst.MAGIC_BYTES_COMMIT_LOG.length;
+	}
+	
+	/**
+	 * Append the encoded record
+	 * @param record
+	 * @param memtable - the memtable that contains the tuple of the record
+	 * @throws IOException
+	 */
+	public void append(final byte[] record, final Memtable memtable) throws IOException {
+		outputStream.write(record);
+		size = size + record.length;
+		dirtyMemtables.add(memtable);
+	}
+	
+	/**
+	 * Write the buffered records and force them to disk
+	 * @throws IOException
+	 */
+	public void sync() throws IOException {
+		flush();
+		force();
+	}
+	
+	/**
+	 * Write the buffered records to the file
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		if(outputStream == null) {
+			return;
+		}
+		
+		outputStream.flush();
+	}
+	
+	/**
+	 * Force the flushed records to disk. The force can run concurrently 
+	 * to appends, but the segment must not be closed meanwhile.
+	 * 
+	 * @throws IOException
+	 */
+	public void force() throws IOException {
+		final FileOutputStream stream = fileOutputStream;
+		
+		if(stream == null) {
+			return;
+		}
+		
+		stream.getChannel().force(false);
+	}
+	
+	/**
+	 * Sync and close the segment
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if(outputStream == null) {
+			return;
+		}
+		
+		sync();
+		outputStream.close();
+		outputStream = null;
+		fileOutputStream = null;
+	}
+	
+	/**
+	 * The memtable is flushed, the records of the memtable are no longer needed
+	 * @param memtable
+	 */
+	public void memtableFlushed(final Memtable memtable) {
+		dirtyMemtables.remove(memtable);
+	}
+	
+	/**
+	 * Contains the segment records of unflushed memtables?
+	 * @return
+	 */
+	public boolean isDirty() {
+		return ! dirtyMemtables.isEmpty();
+	}
+	
+	/**
+	 * Delete the segment file
+	 */
+	public void delete() {
+		logger.debug("Deleting commit log segment {}", file);
+		file.delete();
+	}
+	
+	/**
+	 * Get the size of the segment
+	 * @return
+	 */
+	public long getSize() {
+		return size;
+	}
+	
+	/**
+	 * Get the number of the segment
+	 * @return
+	 */
+	public long getSegmentNumber() {
+		return segmentNumber;
+	}
+	
+	/**
+	 * Get the file of the segment
+	 * @return
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Encode a record
+	 * @param timestamp
+	 * @param ssTableName
+	 * @param tuple
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] encodeRecord(final long timestamp, final SSTableName ssTableName, 
+			final Tuple tuple) throws IOException {
+		
+		final byte[] nameBytes = ssTableName.getFullnameBytes();
+		final byte[] tupleBytes = TupleHelper.tupleToBytes(tuple);
+		
+		final int payloadLength = DataEncoderHelper.LONG_BYTES + DataEncoderHelper.SHORT_BYTES 
+				+ nameBytes.length + tupleBytes.length;
+		
+		final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadLength);
+		record.order(Const.APPLICATION_BYTE_ORDER);
+		record.putInt(payloadLength);
+		record.putInt(0);
+		record.putLong(timestamp);
+		record.putShort((short) nameBytes.length);
+		record.put(nameBytes);
+		record.put(tupleBytes);
+		
+		final int checksum = Hashing.crc32c().hashBytes(record.array(), RECORD_HEADER_BYTES, 
+				payloadLength).asInt();
+		
+		record.putInt(DataEncoderHelper.INT_BYTES, checksum);
+		
+		return record.array();
+	}
+	
+	/**
+	 * Read all records of the segment file. The reading stops at the first 
+	 * incomplete or corrupted record, the end of the segment may be not 
+	 * written completely on a crash.
+	 * 
+	 * @param file
+	 * @param replayHandler
+	 * @return the number of read records
+	 * @throws StorageManagerException
+	 */
+	public static long readRecords(final File file, final ReplayHandler replayHandler) 
+			throws StorageManagerException {
+		
+		long records = 0;
+		
+		try (final DataInputStream inputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			
+			final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_COMMIT_LOG.length];
+			inputStream.readFully(magicBytes);
+			
+			if(! Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_COMMIT_LOG)) {
+				throw new StorageManagerException("File " + file + " is not a commit log segment");
+			}
+			
+			// The length of a record is read from disk, it is only trusted 
+			// when the record fits into the unread bytes of the segment
+			long remainingBytes = file.length() - magicBytes.length;
+			
+			while(true) {
+				final int payloadLength;
+				
+				try {
+					payloadLength = inputStream.readInt();
+				} catch(EOFException e) {
+					break;
+				}
+				
+				final int checksum = inputStream.readInt();
+				remainingBytes = remainingBytes - RECORD_HEADER_BYTES;
+				
+				if(payloadLength < MIN_PAYLOAD_BYTES || payloadLength > remainingBytes) {
+					logger.warn("Invalid record length {} in commit log {}, stop reading", 
+							payloadLength, file);
+					break;
+				}
+				
+				final byte[] payload = new byte[payloadLength];
+				inputStream.readFully(payload);
+				remainingBytes = remainingBytes - payloadLength;
+				
+				if(Hashing.crc32c().hashBytes(payload).asInt() != checksum) {
+					logger.warn("Checksum mismatch in commit log {}, stop reading", file);
+					break;
+				}
+				
+				final ByteBuffer payloadBuffer = ByteBuffer.wrap(payload);
+				payloadBuffer.order(Const.APPLICATION_BYTE_ORDER);
+				
+				final long timestamp = payloadBuffer.getLong();
+				final short nameLength = payloadBuffer.getShort();
+				
+				if(nameLength < 0 || nameLength > payloadBuffer.remaining()) {
+					logger.warn("Invalid table name length {} in commit log {}, stop reading", 
+							nameLength, file);
+					break;
+				}
+				
+				final byte[] nameBytes = new byte[nameLength];
+				payloadBuffer.get(nameBytes);
+				
+				final SSTableName ssTableName = new SSTableName(new String(nameBytes));
+				final Tuple tuple = TupleHelper.decodeTuple(payloadBuffer);
+				
+				replayHandler.handleRecord(timestamp, ssTableName, tuple);
+				records++;
+			}
+		} catch(EOFException e) {
+			logger.warn("Incomplete record at the end of commit log {}", file);
+		} catch (IOException e) {
+			throw new StorageManagerException("Unable to read commit log " + file, e);
+		}
+		
+		return records;
+	}
+	
+	/**
+	 * The handler for the replayed records
+	 */
+	@FunctionalInterface
+	public interface ReplayHandler {
+		
+		/**
+		 * Handle the record
+		 * @param timestamp - the time when the record was written
+		 * @param ssTableName
+		 * @param tuple
+		 * @throws StorageManagerException
+		 */
+		public void handleRecord(final long timestamp, final SSTableName ssTableName, 
+				final Tuple tuple) throws StorageManagerException;
+	}
+
+	@Override
+	public String toString() {
+		return "CommitLogSegment [segmentNumber=" + segmentNumber + ", file=" + file + ", size=" + size
+				+ ", dirtyMemtables=" + dirtyMemtables.size() + "]";
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.commitlog;
+
+import java.io.IOException;
+
+import org.bboxdb.util.concurrent.ExceptionSafeThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CommitLogSyncThread extends ExceptionSafeThread {
+	
+	/**
+	 * The commit log
+	 */
+	protected final CommitLog commitLog;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CommitLogSyncThread.class);
+
+	public CommitLogSyncThread(final CommitLog commitLog) {
+		this.commitLog = commitLog;
+	}
+
+	/**
+	 * Sync the commit log after the sync interval or 
+	 * when enough data is pending
+	 */
+	@Override
+	protected void runThread() {
+		while(! Thread.currentThread().isInterrupted()) {
+			try {
+				commitLog.waitForSyncRequest();
+				commitLog.sync();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (IOException e) {
+				commitLog.handleSyncError(e);
+				break;
+			}
+		}
+		
+		logger.info("Commit log sync thread has ended");
+	}
+}
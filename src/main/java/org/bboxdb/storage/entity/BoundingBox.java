@@ -17,11 +17,13 @@
  *******************************************************************************/
 package org.bboxdb.storage.entity;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.bboxdb.misc.Const;
 import org.bboxdb.util.io.DataEncoderHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,9 +33,16 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	public final static BoundingBox EMPTY_BOX = new BoundingBox();
 	
 	/**
-	 * The boundingBox contains a interval for each dimension
+	 * The begin and the end of the interval for each dimension 
+	 * (begin of dimension d at 2*d, end at 2*d+1)
 	 */
-	protected final List<DoubleInterval> boundingBox;
+	protected final double[] values;
+	
+	/**
+	 * Are the begin and the end points included (same layout as the values). 
+	 * Null if all points are included, which is the case for nearly all boxes.
+	 */
+	protected final boolean[] included;
 	
 	/**
 	 * The return value of an invalid dimension
@@ -65,12 +74,14 @@ public class BoundingBox implements Comparable<BoundingBox> {
 			throw new IllegalArgumentException("Even number of arguments expected");
 		}
 		
-		boundingBox = new ArrayList<DoubleInterval>(args.length / 2);
-				
-		for(int i = 0; i < args.length; i = i + 2) {
-			final DoubleInterval interval = new DoubleInterval(args[i], args[i+1]);
-			boundingBox.add(interval);
-		}				
+		values = new double[args.length];
+		
+		for(int i = 0; i < args.length; i++) {
+			values[i] = args[i];
+		}
+		
+		included = null;
+		checkIntervals(values);
 	}
 	
 	/**
@@ -83,20 +94,54 @@ public class BoundingBox implements Comparable<BoundingBox> {
 			throw new IllegalArgumentException("Even number of arguments expected");
 		}
 		
-		boundingBox = new ArrayList<DoubleInterval>(values.length / 2);
-		
-		for(int i = 0; i < values.length; i = i + 2) {
-			final DoubleInterval interval = new DoubleInterval(values[i], values[i+1]);
-			boundingBox.add(interval);
-		}				
+		this.values = Arrays.copyOf(values, values.length);
+		this.included = null;
+		checkIntervals(this.values);
 	}
 	
 	/**
 	 * Create from List<DoubleInterval>
 	 * @param args
 	 */
-	public BoundingBox(final List<DoubleInterval> values) {
-		boundingBox = new ArrayList<DoubleInterval>(values);
+	public BoundingBox(final List<DoubleInterval> intervals) {
+		values = new double[intervals.size() * 2];
+		
+		final boolean[] includedPoints = new boolean[intervals.size() * 2];
+		boolean allPointsIncluded = true;
+		
+		for(int d = 0; d < intervals.size(); d++) {
+			final DoubleInterval interval = intervals.get(d);
+			values[2 * d] = interval.getBegin();
+			values[2 * d + 1] = interval.getEnd();
+			includedPoints[2 * d] = interval.isBeginIncluded();
+			includedPoints[2 * d + 1] = interval.isEndIncluded();
+			allPointsIncluded = allPointsIncluded && interval.isBeginIncluded() && interval.isEndIncluded();
+		}
+		
+		included = allPointsIncluded ? null : includedPoints;
+	}
+	
+	/**
+	 * Create from a checked values array, the array is not copied
+	 * @param values
+	 * @param included
+	 */
+	protected BoundingBox(final double[] values, final boolean[] included) {
+		this.values = values;
+		this.included = included;
+	}
+	
+	/**
+	 * Ensure that the begin of each interval is not after the end
+	 * @param values
+	 */
+	protected static void checkIntervals(final double[] values) {
+		for(int i = 0; i < values.length; i = i + 2) {
+			if(values[i] > values[i + 1]) {
+				throw new IllegalArgumentException("Failed to construct an interval with: begin " 
+						+ values[i] + " > end " + values[i + 1]);
+			}
+		}
 	}
 
 	/**
@@ -105,7 +150,7 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public int getSize() {
-		return boundingBox.size();
+		return getDimension();
 	}
 	
 	/**
@@ -114,8 +159,6 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public byte[] toByteArray() {
-		final double[] values = toDoubleArray();
-		
 		return DataEncoderHelper.doubleArrayToByteBuffer(values).array();
 	}
 
@@ -125,12 +168,7 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public double[] toDoubleArray() {
-		final double[] values = new double[boundingBox.size() * 2];
-		for(int i = 0; i < boundingBox.size(); i++) {
-			values[2*i] = boundingBox.get(i).getBegin();
-			values[(2*i)+1] = boundingBox.get(i).getEnd();
-		}
-		return values;
+		return Arrays.copyOf(values, values.length);
 	}
 	
 	/**
@@ -139,8 +177,39 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public static BoundingBox fromByteArray(final byte[] boxBytes) {
-		final double[] doubleArray = DataEncoderHelper.readDoubleArrayFromByte(boxBytes);
-		return new BoundingBox(doubleArray);
+		return fromByteArray(boxBytes, 0, boxBytes.length);
+	}
+	
+	/**
+	 * Read the bounding box from a part of a byte array
+	 * @param bytes
+	 * @param offset - the position of the encoded box
+	 * @param length - the length of the encoded box
+	 * @return
+	 */
+	public static BoundingBox fromByteArray(final byte[] bytes, final int offset, final int length) {
+		final int totalValues = length / DataEncoderHelper.DOUBLE_BYTES;
+		
+		if(totalValues == 0) {
+			return new BoundingBox(new double[0], null);
+		}
+		
+		final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+		byteBuffer.order(Const.APPLICATION_BYTE_ORDER);
+
+		if(totalValues % 2 != 0) {
+			throw new IllegalArgumentException("Even number of arguments expected");
+		}
+		
+		final double[] values = new double[totalValues];
+		
+		for(int i = 0; i < totalValues; i++) {
+			values[i] = byteBuffer.getDouble(offset + i * DataEncoderHelper.DOUBLE_BYTES);
+		}
+		
+		checkIntervals(values);
+		
+		return new BoundingBox(values, null);
 	}
 	
 	/**
@@ -153,13 +222,32 @@ public class BoundingBox implements Comparable<BoundingBox> {
 			throw new IllegalArgumentException("Unable to create full covering bounding box for dimension: " + dimension);
 		}
 		
-		final List<DoubleInterval> dimensions = new ArrayList<DoubleInterval>();
+		final double[] values = new double[dimension * 2];
 		
-		for(int i = 0; i < dimension; i++) {
-			dimensions.add(new DoubleInterval(MIN_VALUE, MAX_VALUE));
+		for(int d = 0; d < dimension; d++) {
+			values[2 * d] = MIN_VALUE;
+			values[2 * d + 1] = MAX_VALUE;
 		}
 		
-		return new BoundingBox(dimensions);
+		return new BoundingBox(values, null);
+	}
+	
+	/**
+	 * Is the begin of the interval in the dimension included?
+	 * @param dimension
+	 * @return
+	 */
+	protected boolean isBeginIncluded(final int dimension) {
+		return included == null || included[2 * dimension];
+	}
+	
+	/**
+	 * Is the end of the interval in the dimension included?
+	 * @param dimension
+	 * @return
+	 */
+	protected boolean isEndIncluded(final int dimension) {
+		return included == null || included[2 * dimension + 1];
 	}
 	
 	/**
@@ -189,23 +277,70 @@ public class BoundingBox implements Comparable<BoundingBox> {
 			return true;
 		}
 		
-		// Both boxes are equal (Case 5)
-		if(equals(otherBoundingBox)) {
-			return true;
-		}
-		
 		// Dimensions are not equal
 		if(otherBoundingBox.getDimension() != getDimension()) {
 			return false;
 		}
 		
+		final double[] otherValues = otherBoundingBox.values;
+		
+		// Closed intervals in both boxes, compare the values directly
+		if(included == null && otherBoundingBox.included == null) {
+			for(int i = 0; i < values.length; i = i + 2) {
+				if(values[i] > otherValues[i + 1] || otherValues[i] > values[i + 1]) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
 		// Check the overlapping in each dimension d
 		for(int d = 0; d < getDimension(); d++) {
+			if(! isOverlapping(values[2 * d], values[2 * d + 1], isBeginIncluded(d), isEndIncluded(d), 
+					otherValues[2 * d], otherValues[2 * d + 1], 
+					otherBoundingBox.isBeginIncluded(d), otherBoundingBox.isEndIncluded(d))) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Tests if the encoded bounding box shares some space with this box. The box 
+	 * is read directly from the buffer, no objects are created. The encoded box 
+	 * consists of closed intervals.
+	 * 
+	 * @param buffer - the buffer with the encoded box (in application byte order)
+	 * @param offset - the position of the encoded box
+	 * @param length - the length of the encoded box
+	 * @return
+	 */
+	public boolean overlaps(final ByteBuffer buffer, final int offset, final int length) {
+		
+		// The empty bounding box overlaps everything
+		if(this == BoundingBox.EMPTY_BOX || getDimension() == 0) {
+			return true;
+		}
+		
+		final int dimensions = length / (2 * DataEncoderHelper.DOUBLE_BYTES);
+		
+		if(dimensions != getDimension()) {
+			return false;
+		}
+		
+		for(int d = 0; d < dimensions; d++) {
+			final int position = offset + 2 * d * DataEncoderHelper.DOUBLE_BYTES;
+			final double begin = buffer.getDouble(position);
+			final double end = buffer.getDouble(position + DataEncoderHelper.DOUBLE_BYTES);
 			
-			final DoubleInterval ourInterval = boundingBox.get(d);
-			final DoubleInterval otherInterval = otherBoundingBox.getIntervalForDimension(d);
-			
-			if(! ourInterval.isOverlappingWith(otherInterval)) {
+			if(included == null) {
+				if(values[2 * d] > end || begin > values[2 * d + 1]) {
+					return false;
+				}
+			} else if(! isOverlapping(values[2 * d], values[2 * d + 1], isBeginIncluded(d), 
+					isEndIncluded(d), begin, end, true, true)) {
 				return false;
 			}
 		}
@@ -213,6 +348,55 @@ public class BoundingBox implements Comparable<BoundingBox> {
 		return true;
 	}
 	
+	/**
+	 * Do the intervals overlap? Same result as DoubleInterval.isOverlappingWith()
+	 * @return
+	 */
+	protected static boolean isOverlapping(final double begin, final double end, 
+			final boolean beginIncluded, final boolean endIncluded,
+			final double otherBegin, final double otherEnd, 
+			final boolean otherBeginIncluded, final boolean otherEndIncluded) {
+		
+		if(isPointCovered(otherBegin, otherBeginIncluded, begin, end, beginIncluded, endIncluded)) {
+			return true;
+		}
+		
+		if(isPointCovered(otherEnd, otherEndIncluded, begin, end, beginIncluded, endIncluded)) {
+			return true;
+		}
+		
+		if(isPointCovered(begin, beginIncluded, otherBegin, otherEnd, otherBeginIncluded, otherEndIncluded)) {
+			return true;
+		}
+		
+		// Both intervals are equal
+		return begin == otherBegin && end == otherEnd 
+				&& beginIncluded == otherBeginIncluded && endIncluded == otherEndIncluded;
+	}
+	
+	/**
+	 * Is the point covered by the interval? Same result as DoubleInterval.overlapsWith()
+	 * @return
+	 */
+	protected static boolean isPointCovered(final double point, final boolean pointIncluded, 
+			final double begin, final double end, final boolean beginIncluded, 
+			final boolean endIncluded) {
+		
+		if(point < begin || point > end) {
+			return false;
+		}
+		
+		if(point == begin && (! beginIncluded || ! pointIncluded)) {
+			return false;
+		}
+		
+		if(point == end && (! endIncluded || ! pointIncluded)) {
+			return false;
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Does the bounding box covers the point in the dimension?
 	 * @param point
@@ -221,12 +405,12 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 */
 	public boolean isCoveringPointInDimension(final double point, final int dimension) {
 		
-		if(dimension >= boundingBox.size()) {
-			throw new IllegalArgumentException("Wrong dimension : " + dimension + " we have only " + boundingBox.size() + " dimensions");
+		if(dimension >= getDimension()) {
+			throw new IllegalArgumentException("Wrong dimension : " + dimension + " we have only " + getDimension() + " dimensions");
 		}
 		
-		final DoubleInterval dimensionInterval = boundingBox.get(dimension);
-		return dimensionInterval.isNumberIncluded(point);
+		return isPointCovered(point, true, values[2 * dimension], values[2 * dimension + 1], 
+				isBeginIncluded(dimension), isEndIncluded(dimension));
 	}
 	
 	/**
@@ -235,7 +419,7 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public double getExtent(final int dimension) {
-		return boundingBox.get(dimension).getEnd() - boundingBox.get(dimension).getBegin();
+		return getCoordinateHigh(dimension) - getCoordinateLow(dimension);
 	}
 	
 	/**
@@ -244,7 +428,22 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public DoubleInterval getIntervalForDimension(final int dimension) {
-		return boundingBox.get(dimension);
+		return new DoubleInterval(getCoordinateLow(dimension), getCoordinateHigh(dimension), 
+				isBeginIncluded(dimension), isEndIncluded(dimension));
+	}
+	
+	/**
+	 * Get the double intervals of all dimensions
+	 * @return
+	 */
+	protected List<DoubleInterval> getIntervals() {
+		final List<DoubleInterval> intervals = new ArrayList<>(getDimension());
+		
+		for(int d = 0; d < getDimension(); d++) {
+			intervals.add(getIntervalForDimension(d));
+		}
+		
+		return intervals;
 	}
 	
 	/**
@@ -253,7 +452,8 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public double getCoordinateLow(final int dimension) {
-		return boundingBox.get(dimension).getBegin();
+		checkDimension(dimension);
+		return values[2 * dimension];
 	}
 	
 	/**
@@ -262,7 +462,18 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public double getCoordinateHigh(final int dimension) {
-		return boundingBox.get(dimension).getEnd();
+		checkDimension(dimension);
+		return values[2 * dimension + 1];
+	}
+	
+	/**
+	 * Ensure that the dimension exists
+	 * @param dimension
+	 */
+	protected void checkDimension(final int dimension) {
+		if(dimension < 0 || dimension >= getDimension()) {
+			throw new IndexOutOfBoundsException("Index: " + dimension + ", Size: " + getDimension());
+		}
 	}
 	
 	/**
@@ -270,7 +481,7 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	 * @return
 	 */
 	public int getDimension() {
-		return boundingBox.size();
+		return values.length / 2;
 	}
 	
 	/**
@@ -287,10 +498,10 @@ public class BoundingBox implements Comparable<BoundingBox> {
 		}
 		
 		if(! isCoveringPointInDimension(splitPosition, splitDimension)) {
-			throw new IllegalArgumentException("Unable to split, point " + splitPosition + " is not covered in dimension " + splitDimension + " " + boundingBox.get(splitDimension));
+			throw new IllegalArgumentException("Unable to split, point " + splitPosition + " is not covered in dimension " + splitDimension + " " + getIntervalForDimension(splitDimension));
 		}
 		
-		final List<DoubleInterval> intervals = new ArrayList<DoubleInterval>(boundingBox);
+		final List<DoubleInterval> intervals = getIntervals();
 		final DoubleInterval splitInterval = intervals.get(splitDimension);
 		final DoubleInterval newInterval = splitInterval.splitAndGetLeftPart(splitPosition, splitPositionIncluded);
 		intervals.set(splitDimension, newInterval);
@@ -312,7 +523,7 @@ public class BoundingBox implements Comparable<BoundingBox> {
 			throw new IllegalArgumentException("Unable to split, point " + splitDimension + " is not covered in dimension " + splitDimension);
 		}
 		
-		final List<DoubleInterval> intervals = new ArrayList<DoubleInterval>(boundingBox);
+		final List<DoubleInterval> intervals = getIntervals();
 		final DoubleInterval splitInterval = intervals.get(splitDimension);
 		final DoubleInterval newInterval = splitInterval.splitAndGetRightPart(splitPosition, splitPositionIncluded);
 		intervals.set(splitDimension, newInterval);
@@ -349,8 +560,8 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result
-				+ ((boundingBox == null) ? 0 : boundingBox.hashCode());
+		result = prime * result + Arrays.hashCode(included);
+		result = prime * result + Arrays.hashCode(values);
 		return result;
 	}
 
@@ -367,10 +578,9 @@ public class BoundingBox implements Comparable<BoundingBox> {
 		if (getClass() != obj.getClass())
 			return false;
 		BoundingBox other = (BoundingBox) obj;
-		if (boundingBox == null) {
-			if (other.boundingBox != null)
-				return false;
-		} else if (!boundingBox.equals(other.boundingBox))
+		if (!Arrays.equals(included, other.included))
+			return false;
+		if (!Arrays.equals(values, other.values))
 			return false;
 		return true;
 	}
@@ -455,7 +665,7 @@ public class BoundingBox implements Comparable<BoundingBox> {
 		// Construct the covering bounding box
 		for(int d = 0; d < dimensions; d++) {
 			double resultMin = Double.MAX_VALUE;
-			double resultMax = Double.MIN_VALUE;
+			double resultMax = -Double.MAX_VALUE;
 			
 			for(final BoundingBox currentBox : boundingBoxes) {
 				resultMin = Math.min(resultMin, currentBox.getCoordinateLow(d));
@@ -466,7 +676,7 @@ public class BoundingBox implements Comparable<BoundingBox> {
 			coverBox[2 * d + 1] = resultMax; // End position
 		}
 		
-		return new BoundingBox(coverBox);
+		return new BoundingBox(coverBox, null);
 	}
 
 	
@@ -482,8 +692,27 @@ public class BoundingBox implements Comparable<BoundingBox> {
 	
 		throwExceptionIfDimensionNotMatch(otherBox);
 		
+		final double[] otherValues = otherBox.values;
+		
 		for(int d = 0; d < getDimension(); d++) {
-			if(! getIntervalForDimension(d).isCovering(otherBox.getIntervalForDimension(d))) {
+			final double begin = values[2 * d];
+			final double end = values[2 * d + 1];
+			final double otherBegin = otherValues[2 * d];
+			final double otherEnd = otherValues[2 * d + 1];
+			
+			if(otherBegin < begin || otherEnd > end) {
+				return false;
+			}
+			
+			if(included == null) {
+				continue;
+			}
+			
+			if(otherBegin == begin && ! isBeginIncluded(d) && otherBox.isBeginIncluded(d)) {
+				return false;
+			}
+			
+			if(otherEnd == end && ! isEndIncluded(d) && otherBox.isEndIncluded(d)) {
 				return false;
 			}
 		}
@@ -507,11 +736,18 @@ public class BoundingBox implements Comparable<BoundingBox> {
 			return 0;
 		}
 		
-		final double ourVolume = getVolume();
+		final double[] otherValues = otherBox.values;
 		
-		final BoundingBox mergedBox = BoundingBox.getCoveringBox(this, otherBox);
+		double ourVolume = 1;
+		double mergedVolume = 1;
 		
-		return mergedBox.getVolume() - ourVolume;
+		for(int i = 0; i < values.length; i = i + 2) {
+			ourVolume = ourVolume * (values[i + 1] - values[i]);
+			mergedVolume = mergedVolume * (Math.max(values[i + 1], otherValues[i + 1]) 
+					- Math.min(values[i], otherValues[i]));
+		}
+		
+		return mergedVolume - ourVolume;
 	}
 	
 	/**
@@ -522,10 +758,8 @@ public class BoundingBox implements Comparable<BoundingBox> {
 		
 		double volume = 1;
 		
-		for(int d = 0; d < getDimension(); d++) {
-			final DoubleInterval dimension = getIntervalForDimension(d);
-			final double extend = dimension.getEnd() - dimension.getBegin();
-			volume = volume * extend;
+		for(int i = 0; i < values.length; i = i + 2) {
+			volume = volume * (values[i + 1] - values[i]);
 		}
 		
 		return volume;
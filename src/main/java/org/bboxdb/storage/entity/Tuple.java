@@ -20,7 +20,9 @@ package org.bboxdb.storage.entity;
 import java.util.Arrays;
 import java.util.Objects;
 
+import org.bboxdb.storage.sstable.TupleHelper;
 import org.bboxdb.util.MicroSecondTimestampProvider;
+import org.bboxdb.util.io.DataEncoderHelper;
 
 public class Tuple implements Comparable<Tuple> {
 	
@@ -49,6 +51,13 @@ public class Tuple implements Comparable<Tuple> {
 	 */
 	protected final long receivedTimestamp;
 	
+	/**
+	 * The tuple in the storage format. When set, the bounding box and the data
+	 * are decoded on the first access. The encoded tuple is dropped after the 
+	 * data is decoded.
+	 */
+	protected volatile byte[] encodedTuple;
+	
 	public Tuple(final String key, final BoundingBox boundingBox, final byte[] dataBytes) {
 		this.key = Objects.requireNonNull(key);
 		this.boundingBox = boundingBox;
@@ -78,12 +87,38 @@ public class Tuple implements Comparable<Tuple> {
 		this.receivedTimestamp = receivedTimestamp;
 	}
 
+	/**
+	 * Create a tuple from the storage format. Only the key is decoded, the 
+	 * bounding box and the data are decoded on the first access.
+	 * 
+	 * @param key
+	 * @param encodedTuple
+	 * @param versionTimestamp
+	 * @param receivedTimestamp
+	 */
+	public Tuple(final String key, final byte[] encodedTuple, 
+			final long versionTimestamp, final long receivedTimestamp) {
+		
+		this.key = key;
+		this.encodedTuple = Objects.requireNonNull(encodedTuple);
+		this.versionTimestamp = versionTimestamp;
+		this.receivedTimestamp = receivedTimestamp;
+	}
+
 	/**
 	 * Returns the size of the tuple in byte
 	 * 
 	 * @return
 	 */
 	public int getSize() {
+		final byte[] encoded = encodedTuple;
+		
+		// The bounding box is encoded as begin and end for each dimension
+		if(encoded != null) {
+			return TupleHelper.getEncodedDataLength(encoded) 
+					+ TupleHelper.getEncodedBoundingBoxLength(encoded) / (2 * DataEncoderHelper.DOUBLE_BYTES);
+		}
+		
 		int totalSize = 0;
 		
 		if(dataBytes != null) {
@@ -103,6 +138,17 @@ public class Tuple implements Comparable<Tuple> {
 	 * @return
 	 */
 	public byte[] getDataBytes() {
+		final byte[] encoded = encodedTuple;
+		
+		if(encoded != null) {
+			if(boundingBox == null) {
+				boundingBox = TupleHelper.decodeBoundingBox(encoded);
+			}
+			
+			dataBytes = TupleHelper.getEncodedDataBytes(encoded);
+			encodedTuple = null;
+		}
+		
 		return dataBytes;
 	}
 	
@@ -130,6 +176,12 @@ public class Tuple implements Comparable<Tuple> {
 	 * @return
 	 */
 	public BoundingBox getBoundingBox() {
+		final byte[] encoded = encodedTuple;
+		
+		if(boundingBox == null && encoded != null) {
+			boundingBox = TupleHelper.decodeBoundingBox(encoded);
+		}
+		
 		return boundingBox;
 	}
 	
@@ -138,22 +190,39 @@ public class Tuple implements Comparable<Tuple> {
 	 * @return
 	 */
 	public byte[] getBoundingBoxBytes() {
+		final byte[] encoded = encodedTuple;
+		
+		if(encoded != null) {
+			return TupleHelper.getEncodedBoundingBoxBytes(encoded);
+		}
+		
 		return boundingBox.toByteArray();
 	}
 	
+	/**
+	 * Get the tuple in the storage format, if the bounding box and the data 
+	 * are not decoded yet. The returned array must not be modified.
+	 * 
+	 * @return the encoded tuple or null
+	 */
+	public byte[] getEncodedTuple() {
+		return encodedTuple;
+	}
+	
 	@Override
 	public String toString() {
-		return "Tuple [key=" + key + ", boundingBox=" + boundingBox + ", dataBytes=" + Arrays.toString(dataBytes)
-			    + ", versionTimestamp=" + versionTimestamp + ", receivedTimestamp="
-				+ receivedTimestamp + "]";
+		return "Tuple [key=" + key + ", boundingBox=" + getBoundingBox() + ", dataBytes=" 
+				+ Arrays.toString(getDataBytes()) + ", versionTimestamp=" + versionTimestamp 
+				+ ", receivedTimestamp=" + receivedTimestamp + "]";
 	}
 
 	@Override
 	public int hashCode() {
+		final BoundingBox boundingBox = getBoundingBox();
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((boundingBox == null) ? 0 : boundingBox.hashCode());
-		result = prime * result + Arrays.hashCode(dataBytes);
+		result = prime * result + Arrays.hashCode(getDataBytes());
 		result = prime * result + ((key == null) ? 0 : key.hashCode());
 		result = prime * result + (int) (versionTimestamp ^ (versionTimestamp >>> 32));
 		return result;
@@ -168,12 +237,13 @@ public class Tuple implements Comparable<Tuple> {
 		if (getClass() != obj.getClass())
 			return false;
 		Tuple other = (Tuple) obj;
+		final BoundingBox boundingBox = getBoundingBox();
 		if (boundingBox == null) {
-			if (other.boundingBox != null)
+			if (other.getBoundingBox() != null)
 				return false;
-		} else if (!boundingBox.equals(other.boundingBox))
+		} else if (!boundingBox.equals(other.getBoundingBox()))
 			return false;
-		if (!Arrays.equals(dataBytes, other.dataBytes))
+		if (!Arrays.equals(getDataBytes(), other.getDataBytes()))
 			return false;
 		if (key == null) {
 			if (other.key != null)
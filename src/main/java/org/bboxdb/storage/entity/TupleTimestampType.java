@@ -0,0 +1,47 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.entity;
+
+/**
+ * The timestamps of a tuple that can be queried with a time index
+ */
+public enum TupleTimestampType {
+	
+	/**
+	 * The version timestamp of the tuple
+	 */
+	VERSION,
+	
+	/**
+	 * The timestamp when the tuple was inserted (received) 
+	 */
+	INSERTED;
+	
+	/**
+	 * Get the timestamp of this type from the tuple
+	 * @param tuple
+	 * @return
+	 */
+	public long getTimestamp(final Tuple tuple) {
+		if(this == VERSION) {
+			return tuple.getVersionTimestamp();
+		}
+		
+		return tuple.getReceivedTimestamp();
+	}
+}
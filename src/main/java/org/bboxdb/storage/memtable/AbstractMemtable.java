@@ -0,0 +1,314 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleTimestampType;
+import org.bboxdb.util.IntArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public abstract class AbstractMemtable implements Memtable {
+
+	/**
+	 * The name of the corresponding table
+	 */
+	protected final SSTableName table;
+	
+	/**
+	 * Maximal number of entries keep in memory
+	 */
+	protected final int maxEntries;
+	
+	/**
+	 * Maximal size of memtable in bytes
+	 */
+	protected final long maxSizeInMemory;
+	
+	/**
+	 * The timestamp when the memtable is created
+	 */
+	protected final long createdTimestamp;
+	
+	/**
+	 * The reference counter
+	 */
+	protected final AtomicInteger usage;
+	
+	/**
+	 * Is a deletion performed after (usage == 0)
+	 */
+	protected volatile boolean pendingDelete;
+	
+	/**
+	 * The usage value of a closed memtable, the memtable can't be acquired again
+	 */
+	protected final static int USAGE_CLOSED = -1;
+	
+	/**
+	 * The bounding box that covers all stored tuples (null = no tuple stored)
+	 */
+	protected volatile BoundingBox coveringBoundingBox;
+	
+	/**
+	 * The mutex for the covering bounding box updates
+	 */
+	protected final Object coveringBoundingBoxMutex = new Object();
+	
+	/**
+	 * The index for the version and the inserted timestamps
+	 */
+	protected final MemtableTimeIndex timeIndex;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(AbstractMemtable.class);
+
+	public AbstractMemtable(final SSTableName table, final int entries, final long maxSizeInMemory) {
+		this.table = table;
+		this.maxEntries = entries;
+		this.maxSizeInMemory = maxSizeInMemory;
+		
+		this.createdTimestamp = System.currentTimeMillis();
+		
+		this.usage = new AtomicInteger(0);
+		this.pendingDelete = false;
+		this.coveringBoundingBox = null;
+		this.timeIndex = new MemtableTimeIndex(entries);
+	}
+	
+	@Override
+	public void shutdown() {
+		
+	}
+	
+	@Override
+	public void put(final Tuple value) throws StorageManagerException {
+		if(! tryPut(value)) {
+			throw new StorageManagerException("Unable to store a new tuple, all memtable slots are full");
+		}
+	}
+	
+	/**
+	 * Delete a tuple, this is implemented by inserting a DeletedTuple object
+	 *
+	 */
+	@Override
+	public void delete(final String key, final long timestamp) throws StorageManagerException {
+		assert (usage.get() > 0);
+
+		final Tuple deleteTuple = new DeletedTuple(key, timestamp);
+		put(deleteTuple);
+	}
+	
+	/**
+	 * Get the maximal number of entries in the memtable
+	 * @return
+	 */
+	@Override
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	
+	/**
+	 * Get the created timestamp
+	 * @return
+	 */
+	@Override
+	public long getCreatedTimestamp() {
+		return createdTimestamp;
+	}
+	
+	@Override
+	public String getServicename() {
+		return "Memtable";
+	}
+	
+	@Override
+	public void deleteOnClose() {
+		logger.debug("deleteOnClose called and we have {} references", usage.get());
+
+		pendingDelete = true;
+		
+		// The sentinel ensures that no reader can acquire the memtable after the test
+		if(usage.compareAndSet(0, USAGE_CLOSED)) {
+			clear();
+		}
+	}
+
+	@Override
+	public boolean acquire() {
+		while(true) {
+			final int currentUsage = usage.get();
+			
+			if(pendingDelete == true || currentUsage == USAGE_CLOSED) {
+				return false;
+			}
+			
+			if(usage.compareAndSet(currentUsage, currentUsage + 1)) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public void release() {
+		assert (usage.get() > 0);
+
+		final int currentUsage = usage.decrementAndGet();
+		
+		if(pendingDelete) {
+			logger.debug("Release called and we have {} references", currentUsage);
+
+			// Only the last reader closes the memtable
+			if(currentUsage == 0 && usage.compareAndSet(0, USAGE_CLOSED)) {
+				clear();
+			}
+		}
+	}
+
+	@Override
+	public String getInternalName() {
+		return table.getFullname() + " / " + createdTimestamp;
+	}
+	
+	@Override
+	public SSTableName getSStableName() {
+		return table;
+	}
+	
+	@Override
+	public boolean isPersistent() {
+		return false;
+	}
+
+	@Override
+	public BoundingBox getCoveringBoundingBox() {
+		final BoundingBox boundingBox = coveringBoundingBox;
+		
+		if(boundingBox == null) {
+			return BoundingBox.EMPTY_BOX;
+		}
+		
+		return boundingBox;
+	}
+	
+	/**
+	 * Enlarge the covering bounding box with the bounding box of a new tuple. Must 
+	 * be called before the tuple becomes visible in the spatial index.
+	 * 
+	 * @param boundingBox
+	 */
+	protected void updateCoveringBoundingBox(final BoundingBox boundingBox) {
+		
+		// Deleted tuples and tuples without a bounding box
+		if(boundingBox == null || boundingBox.getDimension() == 0) {
+			return;
+		}
+		
+		synchronized (coveringBoundingBoxMutex) {
+			final BoundingBox oldBoundingBox = coveringBoundingBox;
+			
+			if(oldBoundingBox == null) {
+				coveringBoundingBox = boundingBox;
+				return;
+			}
+			
+			// The covering box is unknown, the memtable can't be pruned anymore
+			if(oldBoundingBox == BoundingBox.EMPTY_BOX) {
+				return;
+			}
+			
+			if(oldBoundingBox.getDimension() != boundingBox.getDimension()) {
+				logger.warn("Got tuples with different dimensions in memtable {}", table);
+				coveringBoundingBox = BoundingBox.EMPTY_BOX;
+				return;
+			}
+			
+			if(oldBoundingBox.isCovering(boundingBox)) {
+				return;
+			}
+			
+			coveringBoundingBox = BoundingBox.getCoveringBox(oldBoundingBox, boundingBox);
+		}
+	}
+	
+	@Override
+	public Iterator<Tuple> getAllTuplesNewerAs(final TupleTimestampType timestampType, 
+			final long timestamp) {
+		
+		assert (usage.get() > 0);
+		
+		final IntArrayList entries = timeIndex.getEntriesNewerAs(timestampType, timestamp);
+		
+		return new Iterator<Tuple>() {
+			
+			/**
+			 * The position in the entry list
+			 */
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				return position < entries.size();
+			}
+
+			@Override
+			public Tuple next() {
+				if(! hasNext()) {
+					throw new NoSuchElementException();
+				}
+				
+				try {
+					return getTupleAtPosition(entries.get(position++));
+				} catch (StorageManagerException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Reset the covering bounding box
+	 */
+	protected void resetCoveringBoundingBox() {
+		synchronized (coveringBoundingBoxMutex) {
+			coveringBoundingBox = null;
+		}
+	}
+	
+	@Override
+	public boolean isDeletePending() {
+		return pendingDelete;
+	}
+	
+	/**
+	 * Clean the whole memtable, useful for testing
+	 */
+	@Override
+	public abstract void clear();
+}
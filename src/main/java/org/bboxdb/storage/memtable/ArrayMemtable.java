@@ -0,0 +1,384 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.bboxdb.storage.BloomFilterBuilder;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.BloomFilter;
+
+public class ArrayMemtable extends AbstractMemtable {
+	
+	/**
+	 * The memtable
+	 */
+	protected final Tuple[] data;
+	
+	/**
+	 * The bloom filter
+	 */
+	protected final BloomFilter<String> bloomFilter;
+	
+	/**
+	 * The spatial index
+	 */
+	protected final SpatialIndexBuilder spatialIndex;
+	
+	/**
+	 * The next free position in the data array
+	 */
+	protected int freePos;
+	
+	/**
+	 * Current memory size in bytes
+	 */
+	protected long sizeInMemory;
+	
+	/**
+	 * The oldest tuple
+	 */
+	protected long oldestTupleTimestamp;
+	
+	/**
+	 * The newest tuple
+	 */
+	protected long newestTupleTimestamp;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ArrayMemtable.class);
+	
+	public ArrayMemtable(final SSTableName table, final int entries, final long maxSizeInMemory) {
+		super(table, entries, maxSizeInMemory);
+		
+		this.data = new Tuple[entries];
+		this.freePos = -1;
+		this.sizeInMemory = 0;
+		
+		this.bloomFilter = BloomFilterBuilder.buildBloomFilter(entries);
+		this.spatialIndex = SpatialIndexBuilderFactory.getInstance();
+		
+		this.oldestTupleTimestamp = -1;
+		this.newestTupleTimestamp = -1;
+	}
+
+	@Override
+	public void init() {
+		if(freePos != -1) {
+			logger.error("init() called on an initalized memtable");
+			return;
+		}
+		
+		logger.debug("Initializing a new memtable for table: {}", table.getFullname());
+		freePos = 0;
+	}
+
+	@Override
+	public synchronized boolean tryPut(final Tuple value) throws StorageManagerException {
+		
+		assert (usage.get() > 0);
+		
+		if(freePos >= maxEntries) {
+			return false;
+		}
+
+		updateCoveringBoundingBox(value.getBoundingBox());
+		data[freePos] = value;
+		bloomFilter.put(value.getKey());
+		final SpatialIndexEntry indexEntry = new SpatialIndexEntry(value.getBoundingBox(), freePos);
+		spatialIndex.insert(indexEntry);
+		timeIndex.insert(freePos, value.getVersionTimestamp(), value.getReceivedTimestamp());
+		
+		freePos++;
+		sizeInMemory = sizeInMemory + value.getSize();
+		
+		if(oldestTupleTimestamp == -1) {
+			oldestTupleTimestamp = value.getVersionTimestamp();
+		} else {
+			oldestTupleTimestamp = Math.min(oldestTupleTimestamp, value.getVersionTimestamp());
+		}
+		
+		if(newestTupleTimestamp == -1) {
+			newestTupleTimestamp = value.getVersionTimestamp();
+		} else {
+			newestTupleTimestamp = Math.max(newestTupleTimestamp, value.getVersionTimestamp());
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Get the most recent version of the tuple for key
+	 * 
+	 */
+	@Override
+	public Tuple get(final String key) {
+		
+		assert (usage.get() > 0);
+		
+		// The element is not contained in the bloom filter
+		if(! bloomFilter.mightContain(key)) {
+			return null;
+		}
+		
+		Tuple mostRecentTuple = null;
+		
+		for(int i = 0; i < freePos; i++) {
+			final Tuple possibleTuple = data[i];
+			
+			if(possibleTuple != null && possibleTuple.getKey().equals(key)) {
+				mostRecentTuple = TupleHelper.returnMostRecentTuple(mostRecentTuple, possibleTuple);
+			}
+		}
+		
+		return mostRecentTuple;
+	}
+
+	/**
+	 * Get a sorted list with all recent tuples
+	 * @return 
+	 * 
+	 */
+	@Override
+	public List<Tuple> getSortedTupleList() {
+		assert (usage.get() > 0);
+
+		final SortedMap<String, Tuple> allTuples = new TreeMap<String, Tuple>();
+		
+		for(int i = 0; i < freePos; i++) {
+			final String key = data[i].getKey();
+			
+			if(! allTuples.containsKey(key)) {
+				allTuples.put(key, data[i]);
+			} else {
+				if(allTuples.get(key).getVersionTimestamp() < data[i].getVersionTimestamp()) {
+					
+					if(data[i] instanceof DeletedTuple) {
+						allTuples.remove(key);
+					} else {
+						allTuples.put(key, data[i]);
+					}
+				}
+			}
+		}
+		
+		final List<Tuple> resultList = new ArrayList<Tuple>(allTuples.size());
+		resultList.addAll(allTuples.values());
+		
+		return resultList;
+	}
+	
+	@Override
+	public Iterator<Tuple> getSortedTupleIterator() {
+		return getSortedTupleList().iterator();
+	}
+	
+	/**
+	 * Clean the whole memtable, useful for testing
+	 * 
+	 */
+	@Override
+	public void clear() {
+		logger.debug("Clear on memtable {} called", table);
+		
+		for(int i = 0; i < data.length; i++) {
+			data[i] = null;
+		}
+		
+		resetCoveringBoundingBox();
+		timeIndex.clear();
+		freePos = 0;
+	}
+	
+	/**
+	 * Is this memtable full and needs to be flushed to disk
+	 * 
+	 * @return
+	 */
+	@Override
+	public boolean isFull() {
+		
+		// Check size of the table
+		if(sizeInMemory >= maxSizeInMemory) {
+			return true;
+		}
+		
+		// Check number of entries
+		if(freePos + 1 > maxEntries) {
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Is this memtable empty?
+	 */
+	@Override
+	public boolean isEmpty() {
+		if(freePos <= 0) {
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Get the total amount of entries in the table
+	 * @return
+	 */
+	@Override
+	public int getTotalEntries() {
+		return freePos;
+	}
+
+	/**
+	 * The size of the memtable in memory
+	 * @return
+	 */
+	@Override
+	public long getSize() {
+		return sizeInMemory;
+	}
+
+	@Override
+	public Iterator<Tuple> iterator() {
+
+		assert (usage.get() > 0);
+
+		return new Iterator<Tuple>() {
+
+			protected int entry = 0;
+			protected int lastEntry = freePos;
+			
+			@Override
+			public boolean hasNext() {
+				return entry < lastEntry;
+			}
+
+			@Override
+			public Tuple next() {
+				
+				if(entry > lastEntry) {
+					throw new IllegalStateException("Requesting wrong position: " + entry + " of " + lastEntry);
+				}
+				
+				final Tuple tuple = data[entry];
+				entry++;
+				return tuple;
+			}
+
+			@Override
+			public void remove() {
+				throw new IllegalStateException("Remove is not supported");
+			}
+		};
+	}
+
+	@Override
+	public long getNewestTupleInsertedTimestamp() {
+		if(freePos == 0) {
+			return System.currentTimeMillis();
+		}
+		
+		final Tuple mostRecentTuple = data[freePos - 1];
+		return mostRecentTuple.getReceivedTimestamp();
+	}
+	
+	/**
+	 * Get the oldest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getOldestTupleVersionTimestamp() {
+		return oldestTupleTimestamp;
+	}
+
+	/**
+	 * Get the newest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getNewestTupleVersionTimestamp() {
+		return newestTupleTimestamp;
+	}
+	
+	@Override
+	public long getNumberOfTuples() {
+		assert (usage.get() > 0);
+
+		return freePos;
+	}
+
+	@Override
+	public Tuple getTupleAtPosition(final long position) {		
+		assert (usage.get() > 0);
+
+		return data[(int) position];
+	}
+
+	@Override
+	public String toString() {
+		return "ArrayMemtable [table=" + table.getFullname() + ", freePos=" + freePos
+				+ ", sizeInMemory=" + sizeInMemory + ", createdTimestamp="
+				+ createdTimestamp + ", oldestTupleTimestamp="
+				+ oldestTupleTimestamp + ", newestTupleTimestamp="
+				+ newestTupleTimestamp +", pendingDelete=" + pendingDelete + "]";
+	}
+
+	@Override
+	public Iterator<Tuple> getAllTuplesInBoundingBox(final BoundingBox boundingBox) {
+		assert (usage.get() > 0);
+
+		final List<? extends SpatialIndexEntry> matchingKeys = spatialIndex.getEntriesForRegion(boundingBox);
+		
+		final Iterator<? extends SpatialIndexEntry> keyIterator = matchingKeys.iterator();
+		
+		return new Iterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				return keyIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				final SpatialIndexEntry entry = keyIterator.next();
+				final int pos = (int) entry.getValue();
+				return data[pos];
+			}
+		};
+	}
+}
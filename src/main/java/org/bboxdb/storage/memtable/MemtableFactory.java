@@ -0,0 +1,71 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.lang.reflect.Constructor;
+
+import org.bboxdb.misc.BBoxDBConfiguration;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.entity.SSTableName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MemtableFactory {
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(MemtableFactory.class);
+
+	/**
+	 * Get an instance of the configured memtable
+	 * @param table
+	 * @param entries
+	 * @param maxSizeInMemory
+	 * @return
+	 */
+	public static Memtable getInstance(final SSTableName table, final int entries, 
+			final long maxSizeInMemory) {
+
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		final String memtableClass = configuration.getStorageMemtable();
+		
+		// Instance the classname
+		try {
+			final Class<?> classObject = Class.forName(memtableClass);
+			
+			if(classObject == null) {
+				throw new ClassNotFoundException("Unable to locate class: " + memtableClass);
+			}
+			
+			if(! Memtable.class.isAssignableFrom(classObject)) {
+				throw new ClassNotFoundException(memtableClass + " is not a instance of Memtable");
+			}
+			
+			final Constructor<?> constructor = classObject.getConstructor(
+					SSTableName.class, int.class, long.class);
+			
+			return (Memtable) constructor.newInstance(table, entries, maxSizeInMemory);
+			
+		} catch (Exception e) {
+			logger.warn("Unable to instance class" + memtableClass, e);
+			throw new RuntimeException(e);
+		} 
+	}
+	
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bboxdb.storage.entity.TupleTimestampType;
+import org.bboxdb.util.IntArrayList;
+
+/**
+ * The time index of a memtable. The timestamps are stored for each position
+ * of the memtable. Blocks of positions are summarized by the newest timestamp 
+ * of the block (a zone map), so a time query skips all blocks with older 
+ * tuples. New tuples are mostly appended with increasing timestamps, 
+ * therefore most of the blocks can be skipped.
+ * 
+ * The index can be updated by multiple writers without locking, each 
+ * position is written only once.
+ */
+public class MemtableTimeIndex {
+	
+	/**
+	 * The version timestamps for each position
+	 */
+	protected final AtomicLongArray versionTimestamps;
+	
+	/**
+	 * The inserted timestamps for each position
+	 */
+	protected final AtomicLongArray insertedTimestamps;
+	
+	/**
+	 * The newest version timestamp for each block
+	 */
+	protected final AtomicLongArray newestVersionTimestampInBlock;
+	
+	/**
+	 * The newest inserted timestamp for each block
+	 */
+	protected final AtomicLongArray newestInsertedTimestampInBlock;
+	
+	/**
+	 * The highest used position + 1
+	 */
+	protected final AtomicInteger entries;
+	
+	/**
+	 * The number of positions summarized in one block
+	 */
+	protected final static int BLOCK_SIZE = 64;
+	
+	/**
+	 * The timestamp of a unused position
+	 */
+	protected final static long UNUSED_POSITION = Long.MIN_VALUE;
+
+	public MemtableTimeIndex(final int capacity) {
+		final int blocks = (capacity + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		
+		this.versionTimestamps = new AtomicLongArray(capacity);
+		this.insertedTimestamps = new AtomicLongArray(capacity);
+		this.newestVersionTimestampInBlock = new AtomicLongArray(blocks);
+		this.newestInsertedTimestampInBlock = new AtomicLongArray(blocks);
+		this.entries = new AtomicInteger(0);
+		
+		clear();
+	}
+	
+	/**
+	 * Add the timestamps of the tuple at the given position
+	 * @param position
+	 * @param versionTimestamp
+	 * @param insertedTimestamp
+	 */
+	public void insert(final int position, final long versionTimestamp, 
+			final long insertedTimestamp) {
+		
+		final int block = position / BLOCK_SIZE;
+		
+		versionTimestamps.set(position, versionTimestamp);
+		insertedTimestamps.set(position, insertedTimestamp);
+		
+		newestVersionTimestampInBlock.accumulateAndGet(block, versionTimestamp, Math::max);
+		newestInsertedTimestampInBlock.accumulateAndGet(block, insertedTimestamp, Math::max);
+		
+		entries.accumulateAndGet(position + 1, Math::max);
+	}
+	
+	/**
+	 * Get the positions of all tuples with a timestamp newer than the given timestamp
+	 * @param timestampType
+	 * @param timestamp
+	 * @return
+	 */
+	public IntArrayList getEntriesNewerAs(final TupleTimestampType timestampType, 
+			final long timestamp) {
+		
+		final AtomicLongArray timestamps;
+		final AtomicLongArray newestTimestampInBlock;
+		
+		if(timestampType == TupleTimestampType.VERSION) {
+			timestamps = versionTimestamps;
+			newestTimestampInBlock = newestVersionTimestampInBlock;
+		} else {
+			timestamps = insertedTimestamps;
+			newestTimestampInBlock = newestInsertedTimestampInBlock;
+		}
+		
+		final IntArrayList result = new IntArrayList();
+		final int lastEntry = entries.get();
+		
+		for(int blockStart = 0; blockStart < lastEntry; blockStart = blockStart + BLOCK_SIZE) {
+			
+			// All tuples of the block are older
+			if(newestTimestampInBlock.get(blockStart / BLOCK_SIZE) <= timestamp) {
+				continue;
+			}
+			
+			final int blockEnd = Math.min(blockStart + BLOCK_SIZE, lastEntry);
+			
+			for(int position = blockStart; position < blockEnd; position++) {
+				if(timestamps.get(position) > timestamp) {
+					result.add(position);
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		entries.set(0);
+		fill(versionTimestamps, UNUSED_POSITION);
+		fill(insertedTimestamps, UNUSED_POSITION);
+		fill(newestVersionTimestampInBlock, UNUSED_POSITION);
+		fill(newestInsertedTimestampInBlock, UNUSED_POSITION);
+	}
+	
+	/**
+	 * Set all elements of the array to the given value
+	 * @param array
+	 * @param value
+	 */
+	protected static void fill(final AtomicLongArray array, final long value) {
+		for(int i = 0; i < array.length(); i++) {
+			array.set(i, value);
+		}
+	}
+	
+}
@@ -22,12 +22,14 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 
 import org.bboxdb.storage.SSTableFlushCallback;
+import org.bboxdb.storage.commitlog.CommitLog;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.registry.MemtableAndSSTableManager;
 import org.bboxdb.storage.registry.Storage;
 import org.bboxdb.storage.sstable.SSTableManager;
 import org.bboxdb.storage.sstable.SSTableManagerState;
 import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.compact.CompactionMetrics;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.util.FileSizeHelper;
 import org.bboxdb.util.concurrent.ExceptionSafeThread;
@@ -124,6 +126,8 @@ public class MemtableWriterThread extends ExceptionSafeThread {
 						
 			sendCallbacks(memtable, sstableManager);	
 			
+			releaseCommitLogRecords(memtable);
+			
 			memtable.deleteOnClose();
 			memtable.release();
 		}  catch (Exception e) {
@@ -131,6 +135,7 @@ public class MemtableWriterThread extends ExceptionSafeThread {
 
 			if(sstableManager.getSstableManagerState() == SSTableManagerState.READ_ONLY) {
 				logger.debug("Rejected memtable write:", e);
+				releaseCommitLogRecords(memtable);
 				return;
 			}
 			
@@ -146,6 +151,20 @@ public class MemtableWriterThread extends ExceptionSafeThread {
 		}
 	}
 
+	/**
+	 * The data of the memtable is persisted, the records in the 
+	 * commit log are no longer needed
+	 * 
+	 * @param memtable
+	 */
+	protected void releaseCommitLogRecords(final Memtable memtable) {
+		final CommitLog commitLog = storage.getCommitLog();
+		
+		if(commitLog != null) {
+			commitLog.memtableFlushed(memtable);
+		}
+	}
+
 	/**
 	 * Delete the written facade
 	 * @param facade
@@ -198,7 +217,17 @@ public class MemtableWriterThread extends ExceptionSafeThread {
 				memtable.getMaxEntries())) {
 
 			ssTableWriter.open();
-			ssTableWriter.addData(memtable.getSortedTupleList());
+			
+			// Off heap memtables are written without decoding the tuples
+			if(memtable instanceof OffHeapMemtable) {
+				final OffHeapMemtable offHeapMemtable = (OffHeapMemtable) memtable;
+				ssTableWriter.addEncodedData(offHeapMemtable.getSortedEncodedTupleIterator());
+			} else {
+				ssTableWriter.addData(memtable.getSortedTupleIterator());
+			}
+			
+			CompactionMetrics.addFlushedBytes(ssTableWriter.getWrittenBytes());
+			
 			return tableNumber;
 		} catch (Exception e) {
 			throw e;
@@ -0,0 +1,513 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.bboxdb.storage.BloomFilterBuilder;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.util.io.DataEncoderHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.BloomFilter;
+
+/**
+ * A memtable that stores the encoded tuples in off heap memory. Only the 
+ * address of each tuple and a sorted key index are kept on the heap, so large 
+ * memtables don't increase the GC pressure. The encoding is the same as 
+ * in the SSTables, so the tuples can be flushed without decoding.
+ *
+ */
+public class OffHeapMemtable extends AbstractMemtable {
+	
+	/**
+	 * The off heap memory
+	 */
+	protected final OffHeapSlabAllocator allocator;
+	
+	/**
+	 * The addresses of the tuples in insert order
+	 */
+	protected final long[] tupleAddresses;
+	
+	/**
+	 * The position of the most recent version of each key, sorted by key
+	 */
+	protected final ConcurrentSkipListMap<String, Integer> keyIndex;
+	
+	/**
+	 * The bloom filter
+	 */
+	protected final BloomFilter<String> bloomFilter;
+	
+	/**
+	 * The spatial index
+	 */
+	protected SpatialIndexBuilder spatialIndex;
+	
+	/**
+	 * The next free position in the address array
+	 */
+	protected volatile int freePos;
+	
+	/**
+	 * The oldest tuple
+	 */
+	protected long oldestTupleTimestamp;
+	
+	/**
+	 * The newest tuple
+	 */
+	protected long newestTupleTimestamp;
+	
+	/**
+	 * The newest received timestamp
+	 */
+	protected long newestReceivedTimestamp;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OffHeapMemtable.class);
+
+	public OffHeapMemtable(final SSTableName table, final int entries, final long maxSizeInMemory) {
+		super(table, entries, maxSizeInMemory);
+		
+		this.allocator = new OffHeapSlabAllocator(OffHeapSlabAllocator.DEFAULT_SLAB_SIZE);
+		this.tupleAddresses = new long[entries];
+		this.keyIndex = new ConcurrentSkipListMap<>();
+		this.freePos = 0;
+		
+		this.bloomFilter = BloomFilterBuilder.buildBloomFilter(entries);
+		this.spatialIndex = SpatialIndexBuilderFactory.getInstance();
+		
+		this.oldestTupleTimestamp = -1;
+		this.newestTupleTimestamp = -1;
+		this.newestReceivedTimestamp = -1;
+	}
+
+	@Override
+	public void init() {
+		logger.debug("Initializing a new off heap memtable for table: {}", table.getFullname());
+	}
+
+	@Override
+	public synchronized boolean tryPut(final Tuple value) throws StorageManagerException {
+		
+		assert (usage.get() > 0);
+		
+		if(freePos >= maxEntries) {
+			return false;
+		}
+		
+		try {
+			final byte[] encodedTuple = TupleHelper.tupleToBytes(value);
+			final int position = freePos;
+			
+			tupleAddresses[position] = allocator.append(encodedTuple);
+			bloomFilter.put(value.getKey());
+			updateKeyIndex(value, position);
+			
+			updateCoveringBoundingBox(value.getBoundingBox());
+			
+			final SpatialIndexEntry indexEntry = new SpatialIndexEntry(value.getBoundingBox(), position);
+			spatialIndex.insert(indexEntry);
+			timeIndex.insert(position, value.getVersionTimestamp(), value.getReceivedTimestamp());
+			
+			updateTimestamps(value);
+			
+			// Publish the tuple
+			freePos = position + 1;
+			
+			return true;
+		} catch (IOException e) {
+			throw new StorageManagerException("Unable to encode tuple", e);
+		}
+	}
+
+	/**
+	 * Point the key index to the new tuple, if it is the most recent version of the key
+	 * @param value
+	 * @param position
+	 */
+	protected void updateKeyIndex(final Tuple value, final int position) {
+		final Integer oldPosition = keyIndex.get(value.getKey());
+		
+		if(oldPosition == null || value.getVersionTimestamp() > getVersionTimestamp(oldPosition)) {
+			keyIndex.put(value.getKey(), position);
+		}
+	}
+	
+	/**
+	 * Read the version timestamp of the encoded tuple at the given position
+	 * @param position
+	 * @return
+	 */
+	protected long getVersionTimestamp(final int position) {
+		final long address = tupleAddresses[position];
+		final int versionOffset = OffHeapSlabAllocator.getOffset(address) 
+				+ DataEncoderHelper.SHORT_BYTES + 2 * DataEncoderHelper.INT_BYTES;
+		
+		return allocator.getSlab(address).getLong(versionOffset);
+	}
+
+	/**
+	 * Update the timestamps for the new tuple
+	 * @param value
+	 */
+	protected void updateTimestamps(final Tuple value) {
+		if(oldestTupleTimestamp == -1) {
+			oldestTupleTimestamp = value.getVersionTimestamp();
+		} else {
+			oldestTupleTimestamp = Math.min(oldestTupleTimestamp, value.getVersionTimestamp());
+		}
+		
+		newestTupleTimestamp = Math.max(newestTupleTimestamp, value.getVersionTimestamp());
+		newestReceivedTimestamp = Math.max(newestReceivedTimestamp, value.getReceivedTimestamp());
+	}
+
+	/**
+	 * Get the most recent version of the tuple for key
+	 */
+	@Override
+	public Tuple get(final String key) {
+		
+		assert (usage.get() > 0);
+		
+		// The element is not contained in the bloom filter
+		if(! bloomFilter.mightContain(key)) {
+			return null;
+		}
+		
+		final Integer position = keyIndex.get(key);
+		
+		if(position == null) {
+			return null;
+		}
+		
+		return decodeTupleAtPosition(position);
+	}
+	
+	/**
+	 * Decode the tuple at the given position
+	 * @param position
+	 * @return
+	 */
+	protected Tuple decodeTupleAtPosition(final int position) {
+		final ByteBuffer buffer = allocator.getBuffer(tupleAddresses[position]);
+		
+		try {
+			return TupleHelper.decodeTuple(buffer);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to decode tuple at position " + position, e);
+		}
+	}
+	
+	/**
+	 * Get the encoded tuple at the given position. The returned 
+	 * buffer is limited to the tuple.
+	 * 
+	 * @param position
+	 * @return
+	 */
+	protected ByteBuffer getEncodedTupleAtPosition(final int position) {
+		final long address = tupleAddresses[position];
+		final int offset = OffHeapSlabAllocator.getOffset(address);
+		final int length = TupleHelper.getEncodedTupleLength(allocator.getSlab(address), offset);
+		
+		final ByteBuffer buffer = allocator.getBuffer(address);
+		buffer.limit(offset + length);
+		return buffer;
+	}
+	
+	/**
+	 * Get the positions of the most recent version of each key, sorted by key
+	 * @return
+	 */
+	protected int[] getSortedPositions() {
+		return keyIndex.values().stream().mapToInt(Integer::intValue).toArray();
+	}
+	
+	/**
+	 * Get the most recent version of each key in encoded form, sorted by key.
+	 * Used to flush the memtable without decoding the tuples.
+	 * 
+	 * @return
+	 */
+	public Iterator<ByteBuffer> getSortedEncodedTupleIterator() {
+		assert (usage.get() > 0);
+
+		final int[] sortedPositions = getSortedPositions();
+
+		return new Iterator<ByteBuffer>() {
+
+			protected int entry = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return entry < sortedPositions.length;
+			}
+
+			@Override
+			public ByteBuffer next() {
+				if(! hasNext()) {
+					throw new NoSuchElementException("No more tuples available");
+				}
+				
+				final ByteBuffer buffer = getEncodedTupleAtPosition(sortedPositions[entry]);
+				entry++;
+				return buffer;
+			}
+		};
+	}
+
+	/**
+	 * Get a sorted list with all recent tuples
+	 * @return 
+	 */
+	@Override
+	public List<Tuple> getSortedTupleList() {
+		final List<Tuple> resultList = new ArrayList<>();
+		getSortedTupleIterator().forEachRemaining(resultList::add);
+		return resultList;
+	}
+
+	@Override
+	public Iterator<Tuple> getSortedTupleIterator() {
+		assert (usage.get() > 0);
+
+		final int[] sortedPositions = getSortedPositions();
+
+		return new Iterator<Tuple>() {
+
+			protected int entry = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return entry < sortedPositions.length;
+			}
+
+			@Override
+			public Tuple next() {
+				if(! hasNext()) {
+					throw new NoSuchElementException("No more tuples available");
+				}
+				
+				final Tuple tuple = decodeTupleAtPosition(sortedPositions[entry]);
+				entry++;
+				return tuple;
+			}
+		};
+	}
+	
+	/**
+	 * Clean the whole memtable and release the off heap memory
+	 */
+	@Override
+	public synchronized void clear() {
+		logger.debug("Clear on memtable {} called", table);
+		
+		freePos = 0;
+		keyIndex.clear();
+		allocator.free();
+		spatialIndex = SpatialIndexBuilderFactory.getInstance();
+		
+		oldestTupleTimestamp = -1;
+		newestTupleTimestamp = -1;
+		newestReceivedTimestamp = -1;
+		resetCoveringBoundingBox();
+		timeIndex.clear();
+	}
+	
+	/**
+	 * Is this memtable full and needs to be flushed to disk
+	 * 
+	 * @return
+	 */
+	@Override
+	public boolean isFull() {
+		
+		// Check size of the table
+		if(allocator.getUsedBytes() >= maxSizeInMemory) {
+			return true;
+		}
+		
+		// Check number of entries
+		if(freePos + 1 > maxEntries) {
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Is this memtable empty?
+	 */
+	@Override
+	public boolean isEmpty() {
+		return freePos == 0;
+	}
+	
+	/**
+	 * Get the total amount of entries in the table
+	 * @return
+	 */
+	@Override
+	public int getTotalEntries() {
+		return freePos;
+	}
+
+	/**
+	 * The size of the encoded tuples in memory
+	 * @return
+	 */
+	@Override
+	public long getSize() {
+		return allocator.getUsedBytes();
+	}
+	
+	/**
+	 * Get the amount of allocated off heap memory
+	 * @return
+	 */
+	public long getAllocatedBytes() {
+		return allocator.getAllocatedBytes();
+	}
+
+	@Override
+	public Iterator<Tuple> iterator() {
+
+		assert (usage.get() > 0);
+
+		final int lastEntry = freePos;
+		
+		return new Iterator<Tuple>() {
+
+			protected int entry = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return entry < lastEntry;
+			}
+
+			@Override
+			public Tuple next() {
+				if(! hasNext()) {
+					throw new NoSuchElementException("No more tuples available");
+				}
+				
+				final Tuple tuple = decodeTupleAtPosition(entry);
+				entry++;
+				return tuple;
+			}
+		};
+	}
+
+	@Override
+	public long getNewestTupleInsertedTimestamp() {
+		if(freePos == 0) {
+			return System.currentTimeMillis();
+		}
+		
+		return newestReceivedTimestamp;
+	}
+	
+	/**
+	 * Get the oldest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getOldestTupleVersionTimestamp() {
+		return oldestTupleTimestamp;
+	}
+
+	/**
+	 * Get the newest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getNewestTupleVersionTimestamp() {
+		return newestTupleTimestamp;
+	}
+	
+	@Override
+	public long getNumberOfTuples() {
+		assert (usage.get() > 0);
+
+		return freePos;
+	}
+
+	@Override
+	public Tuple getTupleAtPosition(final long position) {		
+		assert (usage.get() > 0);
+
+		return decodeTupleAtPosition((int) position);
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapMemtable [table=" + table.getFullname() + ", freePos=" + freePos
+				+ ", usedBytes=" + allocator.getUsedBytes() + ", allocatedBytes=" 
+				+ allocator.getAllocatedBytes() + ", createdTimestamp="
+				+ createdTimestamp + ", oldestTupleTimestamp="
+				+ oldestTupleTimestamp + ", newestTupleTimestamp="
+				+ newestTupleTimestamp +", pendingDelete=" + pendingDelete + "]";
+	}
+
+	@Override
+	public Iterator<Tuple> getAllTuplesInBoundingBox(final BoundingBox boundingBox) {
+		assert (usage.get() > 0);
+
+		final List<? extends SpatialIndexEntry> matchingKeys;
+		
+		synchronized (this) {
+			matchingKeys = spatialIndex.getEntriesForRegion(boundingBox);
+		}
+		
+		final Iterator<? extends SpatialIndexEntry> keyIterator = matchingKeys.iterator();
+		
+		return new Iterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				return keyIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				final SpatialIndexEntry entry = keyIterator.next();
+				final int pos = (int) entry.getValue();
+				return decodeTupleAtPosition(pos);
+			}
+		};
+	}
+}
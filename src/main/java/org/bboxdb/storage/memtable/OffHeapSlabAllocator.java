@@ -0,0 +1,252 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.util.io.UnsafeMemoryHelper;
+
+/**
+ * Append only allocator for off heap memory. The memory is requested 
+ * in slabs of direct memory. Each stored record is addressed by a long 
+ * value that contains the number of the slab and the offset in the slab.
+ * 
+ * Only one thread is allowed to append data, reads can be performed 
+ * concurrently.
+ */
+public class OffHeapSlabAllocator {
+	
+	/**
+	 * The default size of a slab
+	 */
+	public final static int DEFAULT_SLAB_SIZE = 1024 * 1024;
+	
+	/**
+	 * The allocated slabs
+	 */
+	protected final List<ByteBuffer> slabs;
+	
+	/**
+	 * One read only view per slab, readers use absolute offsets
+	 */
+	protected final List<ByteBuffer> readViews;
+	
+	/**
+	 * The size of the slabs
+	 */
+	protected final int slabSize;
+	
+	/**
+	 * The write view of the current slab
+	 */
+	protected ByteBuffer currentSlab;
+	
+	/**
+	 * The amount of used bytes
+	 */
+	protected long usedBytes;
+	
+	/**
+	 * The amount of allocated bytes
+	 */
+	protected long allocatedBytes;
+	
+	/**
+	 * The total allocated slabs (of all allocators)
+	 */
+	protected final static AtomicLong totalAllocatedSlabs = new AtomicLong(0);
+	
+	/**
+	 * The total allocated bytes (of all allocators)
+	 */
+	protected final static AtomicLong totalAllocatedBytes = new AtomicLong(0);
+	
+	/**
+	 * The total used bytes (of all allocators)
+	 */
+	protected final static AtomicLong totalUsedBytes = new AtomicLong(0);
+
+	public OffHeapSlabAllocator(final int slabSize) {
+		this.slabSize = slabSize;
+		this.slabs = new CopyOnWriteArrayList<>();
+		this.readViews = new CopyOnWriteArrayList<>();
+		this.currentSlab = null;
+		this.usedBytes = 0;
+		this.allocatedBytes = 0;
+	}
+	
+	/**
+	 * Append the given bytes and return the address of the data
+	 * @param bytes
+	 * @return
+	 */
+	public long append(final byte[] bytes) {
+		
+		if(currentSlab == null || currentSlab.remaining() < bytes.length) {
+			allocateSlab(Math.max(slabSize, bytes.length));
+		}
+		
+		final int offset = currentSlab.position();
+		currentSlab.put(bytes);
+		
+		usedBytes = usedBytes + bytes.length;
+		totalUsedBytes.addAndGet(bytes.length);
+		
+		return getAddress(slabs.size() - 1, offset);
+	}
+
+	/**
+	 * Allocate a new slab
+	 * @param size
+	 */
+	protected void allocateSlab(final int size) {
+		final ByteBuffer slab = ByteBuffer.allocateDirect(size);
+		slab.order(Const.APPLICATION_BYTE_ORDER);
+		
+		final ByteBuffer readView = slab.asReadOnlyBuffer();
+		readView.order(Const.APPLICATION_BYTE_ORDER);
+		
+		// The read view is published before the address of the first record
+		readViews.add(readView);
+		slabs.add(slab);
+		
+		// The write view has its own position, readers use absolute offsets
+		currentSlab = slab.duplicate();
+		currentSlab.order(Const.APPLICATION_BYTE_ORDER);
+		
+		allocatedBytes = allocatedBytes + size;
+		totalAllocatedBytes.addAndGet(size);
+		totalAllocatedSlabs.incrementAndGet();
+	}
+	
+	/**
+	 * Get the shared read only view on the slab for the given address. The 
+	 * view is shared between all readers, so only absolute reads are allowed. 
+	 * 
+	 * @param address
+	 * @return
+	 */
+	public ByteBuffer getSlab(final long address) {
+		final int slabNumber = (int) (address >>> 32);
+		
+		if(slabNumber >= readViews.size()) {
+			throw new IllegalStateException("The slab " + slabNumber + " is not allocated");
+		}
+		
+		return readViews.get(slabNumber);
+	}
+	
+	/**
+	 * Get a read only view on the slab for the given address. The position 
+	 * of the view is set to the beginning of the record.
+	 * 
+	 * @param address
+	 * @return
+	 */
+	public ByteBuffer getBuffer(final long address) {
+		final ByteBuffer view = getSlab(address).duplicate();
+		view.order(Const.APPLICATION_BYTE_ORDER);
+		view.position(getOffset(address));
+		
+		return view;
+	}
+	
+	/**
+	 * Release all slabs. The memory is freed immediately, so this method must only be 
+	 * called when no reader holds a view on the slabs (e.g., the usage counter of 
+	 * the memtable is closed).
+	 */
+	public void free() {
+		totalUsedBytes.addAndGet(-usedBytes);
+		totalAllocatedBytes.addAndGet(-allocatedBytes);
+		totalAllocatedSlabs.addAndGet(-slabs.size());
+		
+		for(final ByteBuffer slab : slabs) {
+			UnsafeMemoryHelper.freeDirectMemory(slab);
+		}
+		
+		readViews.clear();
+		slabs.clear();
+		currentSlab = null;
+		usedBytes = 0;
+		allocatedBytes = 0;
+	}
+	
+	/**
+	 * Build the address for the slab and the offset
+	 * @param slab
+	 * @param offset
+	 * @return
+	 */
+	protected static long getAddress(final int slab, final int offset) {
+		return ((long) slab << 32) | (offset & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Get the offset in the slab for the address
+	 * @param address
+	 * @return
+	 */
+	public static int getOffset(final long address) {
+		return (int) address;
+	}
+	
+	/**
+	 * Get the amount of used bytes
+	 * @return
+	 */
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+	
+	/**
+	 * Get the amount of allocated bytes
+	 * @return
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+	
+	/**
+	 * Get the total number of allocated slabs
+	 * @return
+	 */
+	public static long getTotalAllocatedSlabs() {
+		return totalAllocatedSlabs.get();
+	}
+	
+	/**
+	 * Get the total number of allocated bytes
+	 * @return
+	 */
+	public static long getTotalAllocatedBytes() {
+		return totalAllocatedBytes.get();
+	}
+	
+	/**
+	 * Get the total number of used bytes
+	 * @return
+	 */
+	public static long getTotalUsedBytes() {
+		return totalUsedBytes.get();
+	}
+}
@@ -0,0 +1,485 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.util.IntArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A memtable backed by a concurrent skip list. The tuples are ordered 
+ * by key and (for the same key) by descending version timestamp, so the 
+ * most recent version of a key is found in O(log n) and the flush 
+ * iterator is already sorted. Puts don't take a lock, the spatial 
+ * index is built by the bounding box queries.
+ *
+ */
+public class SkipListMemtable extends AbstractMemtable {
+	
+	/**
+	 * The tuples, sorted by key and version (most recent version first)
+	 */
+	protected final ConcurrentSkipListMap<Tuple, Tuple> sortedData;
+	
+	/**
+	 * The tuples in insert order, used for positional access and 
+	 * by the spatial index
+	 */
+	protected final AtomicReferenceArray<Tuple> data;
+	
+	/**
+	 * The next free position in the data array
+	 */
+	protected final AtomicInteger freePos;
+	
+	/**
+	 * The spatial index, guarded by the spatial index mutex
+	 */
+	protected SpatialIndexBuilder spatialIndex;
+	
+	/**
+	 * The number of positions that are processed by the spatial index
+	 */
+	protected int indexedEntries;
+	
+	/**
+	 * The processed positions that were reserved but not published 
+	 */
+	protected IntArrayList unpublishedPositions;
+	
+	/**
+	 * The mutex for the spatial index
+	 */
+	protected final Object spatialIndexMutex = new Object();
+	
+	/**
+	 * Current memory size in bytes
+	 */
+	protected final AtomicLong sizeInMemory;
+	
+	/**
+	 * The oldest tuple
+	 */
+	protected final AtomicLong oldestTupleTimestamp;
+	
+	/**
+	 * The newest tuple
+	 */
+	protected final AtomicLong newestTupleTimestamp;
+	
+	/**
+	 * The newest received timestamp
+	 */
+	protected final AtomicLong newestReceivedTimestamp;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(SkipListMemtable.class);
+	
+	public SkipListMemtable(final SSTableName table, final int entries, final long maxSizeInMemory) {
+		super(table, entries, maxSizeInMemory);
+		
+		this.sortedData = new ConcurrentSkipListMap<>();
+		this.data = new AtomicReferenceArray<>(entries);
+		this.freePos = new AtomicInteger(0);
+		this.spatialIndex = SpatialIndexBuilderFactory.getInstance();
+		this.indexedEntries = 0;
+		this.unpublishedPositions = new IntArrayList();
+		
+		this.sizeInMemory = new AtomicLong(0);
+		this.oldestTupleTimestamp = new AtomicLong(-1);
+		this.newestTupleTimestamp = new AtomicLong(-1);
+		this.newestReceivedTimestamp = new AtomicLong(-1);
+	}
+
+	@Override
+	public void init() {
+		logger.debug("Initializing a new memtable for table: {}", table.getFullname());
+	}
+
+	@Override
+	public boolean tryPut(final Tuple value) throws StorageManagerException {
+		
+		assert (usage.get() > 0);
+		
+		final int position = freePos.getAndIncrement();
+		
+		if(position >= maxEntries) {
+			return false;
+		}
+		
+		updateCoveringBoundingBox(value.getBoundingBox());
+		sortedData.put(value, value);
+		sizeInMemory.addAndGet(value.getSize());
+		
+		final long versionTimestamp = value.getVersionTimestamp();
+		oldestTupleTimestamp.updateAndGet(v -> v == -1 ? versionTimestamp : Math.min(v, versionTimestamp));
+		newestTupleTimestamp.updateAndGet(v -> Math.max(v, versionTimestamp));
+		newestReceivedTimestamp.accumulateAndGet(value.getReceivedTimestamp(), Math::max);
+		
+		// Publish the tuple, the spatial index is updated on the next bounding box query
+		data.set(position, value);
+		timeIndex.insert(position, value.getVersionTimestamp(), value.getReceivedTimestamp());
+		
+		return true;
+	}
+	
+	/**
+	 * Insert all published tuples into the spatial index. The spatial index builder 
+	 * is not thread safe, so the index is updated by the readers and not on the 
+	 * write path. Reserved but unpublished slots are remembered and indexed 
+	 * by a later call.
+	 * 
+	 * @return the updated spatial index
+	 */
+	protected SpatialIndexBuilder updateSpatialIndex() {
+		
+		synchronized (spatialIndexMutex) {
+			final int lastEntry = getTotalEntries();
+			
+			final IntArrayList stillUnpublished = new IntArrayList();
+			
+			for(int i = 0; i < unpublishedPositions.size(); i++) {
+				insertIntoSpatialIndex(unpublishedPositions.get(i), stillUnpublished);
+			}
+			
+			for(int position = indexedEntries; position < lastEntry; position++) {
+				insertIntoSpatialIndex(position, stillUnpublished);
+			}
+			
+			indexedEntries = Math.max(indexedEntries, lastEntry);
+			unpublishedPositions = stillUnpublished;
+			
+			return spatialIndex;
+		}
+	}
+
+	/**
+	 * Insert the tuple at the given position into the spatial index
+	 * @param position
+	 * @param unpublished - the position is added to this list, if the tuple is not published
+	 */
+	protected void insertIntoSpatialIndex(final int position, final IntArrayList unpublished) {
+		final Tuple tuple = data.get(position);
+		
+		if(tuple == null) {
+			unpublished.add(position);
+			return;
+		}
+		
+		final SpatialIndexEntry indexEntry = new SpatialIndexEntry(tuple.getBoundingBox(), position);
+		spatialIndex.insert(indexEntry);
+	}
+
+	/**
+	 * Get the most recent version of the tuple for key
+	 * 
+	 */
+	@Override
+	public Tuple get(final String key) {
+		
+		assert (usage.get() > 0);
+		
+		// The probe is sorted in front of all versions of the key
+		final Tuple probe = new Tuple(key, null, null, Long.MAX_VALUE, 0);
+		final Map.Entry<Tuple, Tuple> entry = sortedData.ceilingEntry(probe);
+		
+		if(entry == null) {
+			return null;
+		}
+		
+		final Tuple tuple = entry.getValue();
+		
+		if(! tuple.getKey().equals(key)) {
+			return null;
+		}
+		
+		return tuple;
+	}
+
+	/**
+	 * Get a sorted list with all recent tuples
+	 * @return 
+	 */
+	@Override
+	public List<Tuple> getSortedTupleList() {
+		final List<Tuple> resultList = new ArrayList<>();
+		getSortedTupleIterator().forEachRemaining(resultList::add);
+		return resultList;
+	}
+	
+	/**
+	 * Get an iterator over the most recent version of each key. The 
+	 * skip list is already sorted, so only older versions are skipped.
+	 */
+	@Override
+	public Iterator<Tuple> getSortedTupleIterator() {
+		
+		assert (usage.get() > 0);
+
+		final Iterator<Tuple> iterator = sortedData.values().iterator();
+		
+		return new Iterator<Tuple>() {
+			
+			protected Tuple nextTuple = null;
+			
+			protected String lastKey = null;
+
+			@Override
+			public boolean hasNext() {
+				while(nextTuple == null && iterator.hasNext()) {
+					final Tuple tuple = iterator.next();
+					
+					// The first tuple of a key is the most recent version
+					if(! tuple.getKey().equals(lastKey)) {
+						nextTuple = tuple;
+						lastKey = tuple.getKey();
+					}
+				}
+				
+				return nextTuple != null;
+			}
+
+			@Override
+			public Tuple next() {
+				if(! hasNext()) {
+					throw new NoSuchElementException("No more tuples available");
+				}
+				
+				final Tuple tuple = nextTuple;
+				nextTuple = null;
+				return tuple;
+			}
+		};
+	}
+	
+	/**
+	 * Clean the whole memtable, useful for testing
+	 * 
+	 */
+	@Override
+	public void clear() {
+		logger.debug("Clear on memtable {} called", table);
+		
+		sortedData.clear();
+		
+		for(int i = 0; i < data.length(); i++) {
+			data.set(i, null);
+		}
+		
+		synchronized (spatialIndexMutex) {
+			spatialIndex = SpatialIndexBuilderFactory.getInstance();
+			indexedEntries = 0;
+			unpublishedPositions = new IntArrayList();
+		}
+		
+		resetCoveringBoundingBox();
+		timeIndex.clear();
+		freePos.set(0);
+		sizeInMemory.set(0);
+		oldestTupleTimestamp.set(-1);
+		newestTupleTimestamp.set(-1);
+		newestReceivedTimestamp.set(-1);
+	}
+	
+	/**
+	 * Is this memtable full and needs to be flushed to disk
+	 * 
+	 * @return
+	 */
+	@Override
+	public boolean isFull() {
+		
+		// Check size of the table
+		if(sizeInMemory.get() >= maxSizeInMemory) {
+			return true;
+		}
+		
+		// Check number of entries
+		if(getTotalEntries() + 1 > maxEntries) {
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Is this memtable empty?
+	 */
+	@Override
+	public boolean isEmpty() {
+		return getTotalEntries() == 0;
+	}
+	
+	/**
+	 * Get the total amount of entries in the table
+	 * @return
+	 */
+	@Override
+	public int getTotalEntries() {
+		return Math.min(freePos.get(), maxEntries);
+	}
+
+	/**
+	 * The size of the memtable in memory
+	 * @return
+	 */
+	@Override
+	public long getSize() {
+		return sizeInMemory.get();
+	}
+
+	/**
+	 * Iterate over all tuples in insert order
+	 */
+	@Override
+	public Iterator<Tuple> iterator() {
+
+		assert (usage.get() > 0);
+
+		final int lastEntry = getTotalEntries();
+		
+		return new Iterator<Tuple>() {
+
+			protected int entry = 0;
+			
+			protected Tuple nextTuple = null;
+			
+			@Override
+			public boolean hasNext() {
+				
+				// Slots can be reserved by a concurrent put but not written yet
+				while(nextTuple == null && entry < lastEntry) {
+					nextTuple = data.get(entry);
+					entry++;
+				}
+				
+				return nextTuple != null;
+			}
+
+			@Override
+			public Tuple next() {
+				if(! hasNext()) {
+					throw new NoSuchElementException("No more tuples available");
+				}
+				
+				final Tuple tuple = nextTuple;
+				nextTuple = null;
+				return tuple;
+			}
+		};
+	}
+
+	@Override
+	public long getNewestTupleInsertedTimestamp() {
+		final long newestReceived = newestReceivedTimestamp.get();
+		
+		if(newestReceived == -1) {
+			return System.currentTimeMillis();
+		}
+		
+		return newestReceived;
+	}
+	
+	/**
+	 * Get the oldest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getOldestTupleVersionTimestamp() {
+		return oldestTupleTimestamp.get();
+	}
+
+	/**
+	 * Get the newest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getNewestTupleVersionTimestamp() {
+		return newestTupleTimestamp.get();
+	}
+	
+	@Override
+	public long getNumberOfTuples() {
+		assert (usage.get() > 0);
+
+		return getTotalEntries();
+	}
+
+	@Override
+	public Tuple getTupleAtPosition(final long position) {		
+		assert (usage.get() > 0);
+
+		return data.get((int) position);
+	}
+
+	@Override
+	public String toString() {
+		return "SkipListMemtable [table=" + table.getFullname() + ", freePos=" + freePos
+				+ ", sizeInMemory=" + sizeInMemory + ", createdTimestamp="
+				+ createdTimestamp + ", oldestTupleTimestamp="
+				+ oldestTupleTimestamp + ", newestTupleTimestamp="
+				+ newestTupleTimestamp +", pendingDelete=" + pendingDelete + "]";
+	}
+
+	@Override
+	public Iterator<Tuple> getAllTuplesInBoundingBox(final BoundingBox boundingBox) {
+		assert (usage.get() > 0);
+
+		final List<? extends SpatialIndexEntry> matchingKeys;
+		
+		synchronized (spatialIndexMutex) {
+			matchingKeys = updateSpatialIndex().getEntriesForRegion(boundingBox);
+		}
+		
+		final Iterator<? extends SpatialIndexEntry> keyIterator = matchingKeys.iterator();
+		
+		return new Iterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				return keyIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				final SpatialIndexEntry entry = keyIterator.next();
+				final int pos = (int) entry.getValue();
+				return data.get(pos);
+			}
+		};
+	}
+}
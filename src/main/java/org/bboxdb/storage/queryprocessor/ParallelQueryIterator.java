@@ -0,0 +1,408 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.queryprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.queryprocessor.queryplan.QueryPlan;
+import org.bboxdb.storage.sstable.SSTableManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a query plan on multiple tables concurrently. Every table is processed by 
+ * a query processor on the given executor, the results are merged into a bounded queue.
+ * 
+ * When the queue is full, the producer does not block the executor thread. The 
+ * producer is suspended and resubmitted when the consumer has drained the queue.
+ * This keeps the threads of the (shared) executor free while a client is not 
+ * requesting the next page of a query.
+ * 
+ * When a producer fails or the consumer is interrupted, the producers are stopped 
+ * and the failure is thrown by hasNext(), so a partial result is never returned.
+ *
+ */
+public class ParallelQueryIterator implements CloseableIterator<Tuple> {
+
+	/**
+	 * The query plan to execute
+	 */
+	protected final QueryPlan queryPlan;
+	
+	/**
+	 * The producers
+	 */
+	protected final List<RegionProducer> producers;
+	
+	/**
+	 * The suspended producers, waiting for free space in the queue
+	 */
+	protected final List<RegionProducer> suspendedProducers;
+	
+	/**
+	 * The executor for the producers
+	 */
+	protected final ExecutorService executor;
+	
+	/**
+	 * The result queue
+	 */
+	protected final BlockingQueue<Tuple> resultQueue;
+	
+	/**
+	 * The size of the result queue
+	 */
+	protected final int queueSize;
+	
+	/**
+	 * The amount of unfinished producers
+	 */
+	protected final AtomicInteger unfinishedProducers;
+	
+	/**
+	 * The first failure of a producer
+	 */
+	protected final AtomicReference<IllegalStateException> failure;
+	
+	/**
+	 * The mutex for the queue and the producer state
+	 */
+	protected final Object mutex = new Object();
+	
+	/**
+	 * Are the producers started
+	 */
+	protected boolean started;
+	
+	/**
+	 * Is the iterator closed
+	 */
+	protected volatile boolean closed;
+	
+	/**
+	 * The next tuple
+	 */
+	protected Tuple nextTuple;
+	
+	/**
+	 * The poll timeout in ms
+	 */
+	protected final static long POLL_TIMEOUT = 100;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ParallelQueryIterator.class);
+	
+	public ParallelQueryIterator(final QueryPlan queryPlan, final List<SSTableManager> ssTableManager, 
+			final ExecutorService executor, final int queueSize) {
+		
+		if(queueSize < 1) {
+			throw new IllegalArgumentException("Queue size has to be > 0: " + queueSize);
+		}
+		
+		this.queryPlan = queryPlan;
+		this.executor = executor;
+		this.queueSize = queueSize;
+		this.resultQueue = new ArrayBlockingQueue<>(queueSize);
+		this.producers = new ArrayList<>();
+		this.suspendedProducers = new ArrayList<>();
+		this.unfinishedProducers = new AtomicInteger(ssTableManager.size());
+		this.failure = new AtomicReference<>();
+		this.started = false;
+		this.closed = false;
+		
+		for(final SSTableManager manager : ssTableManager) {
+			producers.add(new RegionProducer(manager));
+		}
+	}
+	
+	/**
+	 * Submit all producers to the executor
+	 */
+	protected void startProducers() {
+		started = true;
+		
+		for(final RegionProducer producer : producers) {
+			submitProducer(producer);
+		}
+	}
+	
+	/**
+	 * Submit the producer to the executor
+	 * @param producer
+	 */
+	protected void submitProducer(final RegionProducer producer) {
+		try {
+			executor.submit(producer);
+		} catch(RejectedExecutionException e) {
+			producerFailed(new IllegalStateException("Unable to submit query producer for " 
+					+ producer.getSSTableManager().getSSTableName(), e));
+			producer.finish();
+		}
+	}
+	
+	/**
+	 * Handle the failure of a producer. The first failure is kept for the consumer, 
+	 * the remaining producers are stopped.
+	 * 
+	 * @param exception
+	 */
+	protected void producerFailed(final IllegalStateException exception) {
+		logger.error("Query producer failed", exception);
+		
+		if(failure.compareAndSet(null, exception)) {
+			stopProducers();
+		}
+	}
+	
+	/**
+	 * Throw the failure of a producer, if any
+	 */
+	protected void throwProducerFailure() {
+		final IllegalStateException exception = failure.get();
+		
+		if(exception != null) {
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Resume the suspended producers, when the queue has enough free space
+	 */
+	protected void resumeProducers() {
+		final List<RegionProducer> producersToResume = new ArrayList<>();
+		
+		synchronized (mutex) {
+			if(suspendedProducers.isEmpty()) {
+				return;
+			}
+			
+			if(resultQueue.remainingCapacity() < Math.max(1, queueSize / 2)) {
+				return;
+			}
+			
+			producersToResume.addAll(suspendedProducers);
+			suspendedProducers.clear();
+		}
+		
+		producersToResume.forEach(p -> submitProducer(p));
+	}
+	
+	@Override
+	public boolean hasNext() {
+		
+		throwProducerFailure();
+		
+		if(nextTuple != null) {
+			return true;
+		}
+		
+		if(closed) {
+			return false;
+		}
+		
+		if(! started) {
+			startProducers();
+		}
+		
+		try {
+			while(nextTuple == null) {
+				resumeProducers();
+				
+				// Read the finish state before polling, all tuples are 
+				// in the queue when the producers are finished 
+				final boolean producersFinished = (unfinishedProducers.get() == 0);
+
+				nextTuple = resultQueue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				
+				throwProducerFailure();
+				
+				if(nextTuple == null && producersFinished) {
+					return false;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure.compareAndSet(null, new IllegalStateException(
+					"Interrupted while waiting for query results", e));
+			stopProducers();
+			throw failure.get();
+		}
+		
+		return true;
+	}
+
+	@Override
+	public Tuple next() {
+		
+		throwProducerFailure();
+		
+		if(nextTuple == null) {
+			throw new IllegalStateException("Next tuple is null, did you really call hasNext() before?");
+		}
+		
+		final Tuple resultTuple = nextTuple;
+		nextTuple = null;
+		return resultTuple;
+	}
+
+	@Override
+	public void close() {
+		stopProducers();
+		nextTuple = null;
+	}
+	
+	/**
+	 * Stop the producers and discard the queued tuples
+	 */
+	protected void stopProducers() {
+		
+		final List<RegionProducer> producersToClose = new ArrayList<>();
+		
+		synchronized (mutex) {
+			if(closed) {
+				return;
+			}
+			
+			closed = true;
+			
+			// The running producers close their iterator after the next tuple
+			producersToClose.addAll(suspendedProducers);
+			suspendedProducers.clear();
+			resultQueue.clear();
+		}
+		
+		producersToClose.forEach(p -> p.finish());
+	}
+	
+	/**
+	 * Get the amount of unfinished producers
+	 * @return
+	 */
+	public int getUnfinishedProducers() {
+		return unfinishedProducers.get();
+	}
+	
+	class RegionProducer implements Runnable {
+		
+		/**
+		 * The sstable manager
+		 */
+		protected final SSTableManager ssTableManager;
+		
+		/**
+		 * The iterator of the query processor
+		 */
+		protected CloseableIterator<Tuple> iterator;
+		
+		/**
+		 * The tuple that could not be added to the full queue
+		 */
+		protected Tuple pendingTuple;
+		
+		/**
+		 * Is the producer finished
+		 */
+		protected boolean finished;
+
+		public RegionProducer(final SSTableManager ssTableManager) {
+			this.ssTableManager = ssTableManager;
+			this.finished = false;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if(iterator == null) {
+					final QueryProcessor queryProcessor = new QueryProcessor(queryPlan, ssTableManager);
+					iterator = queryProcessor.iterator();
+				}
+				
+				while(! closed) {
+					if(pendingTuple == null) {
+						if(! iterator.hasNext()) {
+							break;
+						}
+						
+						pendingTuple = iterator.next();
+					}
+					
+					synchronized (mutex) {
+						if(closed) {
+							break;
+						}
+						
+						if(! resultQueue.offer(pendingTuple)) {
+							// Queue is full, free the executor thread
+							suspendedProducers.add(this);
+							return;
+						}
+					}
+					
+					pendingTuple = null;
+				}
+			} catch(Exception e) {
+				producerFailed(new IllegalStateException("Got exception while executing query on " 
+						+ ssTableManager.getSSTableName(), e));
+			}
+			
+			finish();
+		}
+		
+		/**
+		 * Close the iterator and mark the producer as finished
+		 */
+		public void finish() {
+			if(finished) {
+				return;
+			}
+			
+			finished = true;
+			pendingTuple = null;
+			
+			if(iterator != null) {
+				try {
+					iterator.close();
+				} catch (Exception e) {
+					logger.warn("Got an exception while closing iterator", e);
+				}
+				iterator = null;
+			}
+			
+			unfinishedProducers.decrementAndGet();
+		}
+		
+		/**
+		 * Get the sstable manager
+		 * @return
+		 */
+		public SSTableManager getSSTableManager() {
+			return ssTableManager;
+		}
+	}
+}
@@ -17,11 +17,15 @@
  *******************************************************************************/
 package org.bboxdb.storage.queryprocessor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bboxdb.storage.ReadOnlyTupleStorage;
 import org.bboxdb.storage.StorageManagerException;
@@ -29,6 +33,7 @@ import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.queryprocessor.queryplan.QueryPlan;
 import org.bboxdb.storage.sstable.SSTableManager;
 import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.util.SortedIteratorMerger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,7 +68,36 @@ public class QueryProcessor {
 	 * The aquired storages
 	 */
 	protected final List<ReadOnlyTupleStorage> aquiredStorages;
-
+	
+	/**
+	 * The storages that can't contain matching tuples (determined by the meta data)
+	 */
+	protected final Set<ReadOnlyTupleStorage> prunedStorages;
+	
+	/**
+	 * The number of storages that were skipped by this query
+	 */
+	protected int numberOfPrunedStorages;
+	
+	/**
+	 * The number of storages that were queried by this query
+	 */
+	protected int numberOfQueriedStorages;
+	
+	/**
+	 * The total number of pruned storages
+	 */
+	protected final static AtomicLong totalPrunedStorages = new AtomicLong(0);
+	
+	/**
+	 * The total number of queried storages
+	 */
+	protected final static AtomicLong totalQueriedStorages = new AtomicLong(0);
+	
+	/**
+	 * The number of tuples whose versions are resolved together
+	 */
+	protected final static int VERSION_RESOLVE_BATCH_SIZE = 1000;
 	
 	/**
 	 * The Logger
@@ -78,12 +112,113 @@ public class QueryProcessor {
 		this.seenTuples = new HashMap<String, Long>();
 		this.aquiredStorages = new LinkedList<ReadOnlyTupleStorage>();
 		this.unprocessedStorages = new LinkedList<ReadOnlyTupleStorage>();
+		this.prunedStorages = new HashSet<ReadOnlyTupleStorage>();
+		this.numberOfPrunedStorages = 0;
+		this.numberOfQueriedStorages = 0;
 	}
 	
 	public CloseableIterator<Tuple> iterator() {
 
 		prepareUnprocessedStorage();
 		
+		if(queryplan.isVersionResolvableByMerge()) {
+			return getMergeIterator();
+		}
+		
+		return getBatchIterator();
+	}
+	
+	/**
+	 * Get an iterator that merges the key sorted results of all storages. The versions
+	 * are resolved in one streaming pass, no lookups and no seen tuples are needed.
+	 * 
+	 * @return
+	 */
+	protected CloseableIterator<Tuple> getMergeIterator() {
+		
+		final List<Iterator<Tuple>> storageIterators = new ArrayList<>();
+		
+		for(final ReadOnlyTupleStorage storage : unprocessedStorages) {
+			
+			// The meta data of the storage shows that no tuple can match
+			if(isStoragePruned(storage)) {
+				continue;
+			}
+			
+			final Iterator<Tuple> storageIterator = queryplan.execute(storage);
+			
+			if(storageIterator == null) {
+				continue;
+			}
+			
+			storageIterators.add(getKeySortedIterator(storage, storageIterator));
+		}
+		
+		unprocessedStorages.clear();
+		
+		final SortedIteratorMerger<Tuple> sortedIteratorMerger = new SortedIteratorMerger<>(
+				storageIterators, TupleHelper.TUPLE_KEY_COMPARATOR, 
+				TupleHelper.NEWEST_TUPLE_DUPLICATE_RESOLVER);
+		
+		final Iterator<Tuple> mergedIterator = sortedIteratorMerger.iterator();
+		
+		return new CloseableIterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				if(ready == false) {
+					throw new IllegalStateException("Iterator is not ready");
+				}
+				
+				return mergedIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				if(ready == false) {
+					throw new IllegalStateException("Iterator is not ready");
+				}
+				
+				return mergedIterator.next();
+			}
+
+			@Override
+			public void close() throws Exception {
+				cleanup();
+			}
+		};
+	}
+	
+	/**
+	 * Persistent storages return the tuples sorted by key, the tuples of
+	 * memtables (bounded in size) are sorted in memory. 
+	 * 
+	 * @param storage
+	 * @param storageIterator
+	 * @return
+	 */
+	protected Iterator<Tuple> getKeySortedIterator(final ReadOnlyTupleStorage storage, 
+			final Iterator<Tuple> storageIterator) {
+		
+		if(storage.isPersistent()) {
+			return storageIterator;
+		}
+		
+		final List<Tuple> tuples = new ArrayList<>();
+		storageIterator.forEachRemaining(tuples::add);
+		tuples.sort(TupleHelper.TUPLE_KEY_COMPARATOR);
+		
+		return tuples.iterator();
+	}
+	
+	/**
+	 * Get an iterator that processes the storages one after another. The versions 
+	 * of the tuples are resolved in batches with lookups in the unprocessed storages.
+	 * 
+	 * @return
+	 */
+	protected CloseableIterator<Tuple> getBatchIterator() {
+		
 		return new CloseableIterator<Tuple>() {
 
 			/**
@@ -96,6 +231,16 @@ public class QueryProcessor {
 			 */
 			protected ReadOnlyTupleStorage activeStorage = null;
 			
+			/**
+			 * The resolved tuples of the current batch
+			 */
+			protected final List<Tuple> batch = new ArrayList<>(VERSION_RESOLVE_BATCH_SIZE);
+			
+			/**
+			 * The position of the next tuple in the batch
+			 */
+			protected int batchPosition = 0;
+			
 			/**
 			 * The next precomputed tuple
 			 */
@@ -111,6 +256,12 @@ public class QueryProcessor {
 				// Find next iterator 
 				while(! unprocessedStorages.isEmpty()) {
 					activeStorage = unprocessedStorages.remove(0);
+					
+					// The meta data of the storage shows that no tuple can match
+					if(isStoragePruned(activeStorage)) {
+						continue;
+					}
+					
 					activeIterator = queryplan.execute(activeStorage);
 					
 					if(activeIterator == null) {
@@ -127,7 +278,7 @@ public class QueryProcessor {
 			}
 			
 			/**
-			 * Fetch the next tuple from the iterator
+			 * Fetch the next tuple from the batch
 			 * @throws StorageManagerException
 			 */
 			protected void setupNextTuple() throws StorageManagerException {
@@ -137,7 +288,7 @@ public class QueryProcessor {
 
 				nextTuple = null;
 				
-				while(nextTuple == null) {
+				while(batchPosition >= batch.size()) {
 					if(activeIterator == null || ! activeIterator.hasNext()) {
 						setupNewIterator();
 					}
@@ -146,7 +297,24 @@ public class QueryProcessor {
 					if(activeIterator == null) {
 						return;
 					}
-		
+					
+					readNextBatch();
+				}
+				
+				nextTuple = batch.get(batchPosition);
+				batchPosition++;
+			}
+			
+			/**
+			 * Read the next batch of unseen tuples from the active iterator and
+			 * resolve the most recent versions 
+			 * @throws StorageManagerException
+			 */
+			protected void readNextBatch() throws StorageManagerException {
+				batch.clear();
+				batchPosition = 0;
+				
+				while(activeIterator.hasNext() && batch.size() < VERSION_RESOLVE_BATCH_SIZE) {
 					final Tuple possibleTuple = activeIterator.next();
 				
 					if(seenTuples.containsKey(possibleTuple.getKey())) {
@@ -154,38 +322,16 @@ public class QueryProcessor {
 						if(oldTimestamp < possibleTuple.getVersionTimestamp()) {
 							logger.warn("Unprocessded: {}", unprocessedStorages);
 							logger.warn("Aquired: {}", aquiredStorages);
-							logger.warn("Got newer tuple {} than {}", possibleTuple, oldTimestamp);
+							logger.warn("Got newer tuple {} than {}", possibleTuple, oldTimestamp);
 							seenTuples.put(possibleTuple.getKey(), possibleTuple.getVersionTimestamp());
 						}
 					} else {
-						// Set nextTuple != null to exit the loop
-						nextTuple = getMostRecentVersionForTuple(possibleTuple);
+						batch.add(possibleTuple);
 						seenTuples.put(possibleTuple.getKey(), possibleTuple.getVersionTimestamp());
 					}
 				}
-			}
-			
-			/**
-			 * Get the most recent version of the tuple
-			 * e.g. Memtables can contain multiple versions of the key
-		 	 * The iterator can return an outdated version
-		 	 * 
-			 * @param tuple
-			 * @return
-			 * @throws StorageManagerException 
-			 */
-			public Tuple getMostRecentVersionForTuple(final Tuple tuple) throws StorageManagerException {
-				
-				Tuple resultTuple = activeStorage.get(tuple.getKey());
-				
-				for(final ReadOnlyTupleStorage readOnlyTupleStorage : unprocessedStorages) {
-					if(TupleHelper.canStorageContainNewerTuple(resultTuple, readOnlyTupleStorage)) {
-						final Tuple possibleTuple = readOnlyTupleStorage.get(tuple.getKey());
-						resultTuple = TupleHelper.returnMostRecentTuple(resultTuple, possibleTuple);
-					}
-				}
 				
-				return resultTuple;
+				resolveMostRecentVersions(batch, activeStorage);
 			}
 			
 			@Override
@@ -225,6 +371,66 @@ public class QueryProcessor {
 		};
 	}
 	
+	/**
+	 * Replace the tuples of the batch with the most recent version of the tuple.
+	 * e.g. Memtables can contain multiple versions of the key, the unprocessed
+	 * storages can contain newer versions.
+	 * 
+	 * The batch is sorted by key, so the lookups of a storage access the storage 
+	 * in key order. Storages that are older than all tuples of the batch are skipped.
+	 * 
+	 * @param batch
+	 * @param activeStorage
+	 * @throws StorageManagerException
+	 */
+	protected void resolveMostRecentVersions(final List<Tuple> batch, 
+			final ReadOnlyTupleStorage activeStorage) throws StorageManagerException {
+		
+		batch.sort(TupleHelper.TUPLE_KEY_COMPARATOR);
+		
+		// A persistent storage contains only one version per key
+		if(! activeStorage.isPersistent()) {
+			for(int i = 0; i < batch.size(); i++) {
+				final Tuple tuple = batch.get(i);
+				batch.set(i, TupleHelper.returnMostRecentTuple(tuple, activeStorage.get(tuple.getKey())));
+			}
+		}
+		
+		for(final ReadOnlyTupleStorage readOnlyTupleStorage : unprocessedStorages) {
+			
+			if(! canStorageContainNewerTuples(batch, readOnlyTupleStorage)) {
+				continue;
+			}
+			
+			for(int i = 0; i < batch.size(); i++) {
+				final Tuple resultTuple = batch.get(i);
+				
+				if(TupleHelper.canStorageContainNewerTuple(resultTuple, readOnlyTupleStorage)) {
+					final Tuple possibleTuple = readOnlyTupleStorage.get(resultTuple.getKey());
+					batch.set(i, TupleHelper.returnMostRecentTuple(resultTuple, possibleTuple));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Can the storage contain a newer version for any tuple of the batch
+	 * @param batch
+	 * @param storage
+	 * @return
+	 */
+	protected boolean canStorageContainNewerTuples(final List<Tuple> batch, 
+			final ReadOnlyTupleStorage storage) {
+		
+		for(final Tuple tuple : batch) {
+			if(TupleHelper.canStorageContainNewerTuple(tuple, storage)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
 	/**
 	 * Cleanup all aquired tables
 	 */
@@ -233,6 +439,31 @@ public class QueryProcessor {
 		ssTableManager.releaseStorage(aquiredStorages);
 		aquiredStorages.clear();
 		unprocessedStorages.clear();
+		prunedStorages.clear();
+	}
+	
+	/**
+	 * Is the storage pruned by the query plan and can be skipped? Persistent storages are 
+	 * pruned during the preparation, memtables are tested directly before they are queried
+	 * because they can receive new tuples.
+	 * 
+	 * @param storage
+	 * @return
+	 */
+	protected boolean isStoragePruned(final ReadOnlyTupleStorage storage) {
+		
+		final boolean pruned = prunedStorages.contains(storage) 
+				|| (! storage.isPersistent() && ! queryplan.canStorageContainMatchingTuples(storage));
+		
+		if(pruned) {
+			numberOfPrunedStorages++;
+			totalPrunedStorages.incrementAndGet();
+		} else {
+			numberOfQueriedStorages++;
+			totalQueriedStorages.incrementAndGet();
+		}
+		
+		return pruned;
 	}
 
 	/**
@@ -254,6 +485,15 @@ public class QueryProcessor {
 					-> Long.compare(storage2.getNewestTupleVersionTimestamp(), 
 							        storage1.getNewestTupleVersionTimestamp()));
 			
+			// Find the storages that can't contain matching tuples
+			prunedStorages.clear();
+			
+			for(final ReadOnlyTupleStorage storage : unprocessedStorages) {
+				if(storage.isPersistent() && ! queryplan.canStorageContainMatchingTuples(storage)) {
+					prunedStorages.add(storage);
+				}
+			}
+			
 			ready = true;
 		
 		} catch (StorageManagerException e) {
@@ -262,4 +502,36 @@ public class QueryProcessor {
 		}
 	}
 	
+	/**
+	 * Get the number of storages that were skipped by this query
+	 * @return
+	 */
+	public int getNumberOfPrunedStorages() {
+		return numberOfPrunedStorages;
+	}
+	
+	/**
+	 * Get the number of storages that were queried by this query
+	 * @return
+	 */
+	public int getNumberOfQueriedStorages() {
+		return numberOfQueriedStorages;
+	}
+	
+	/**
+	 * Get the total number of pruned storages
+	 * @return
+	 */
+	public static long getTotalPrunedStorages() {
+		return totalPrunedStorages.get();
+	}
+	
+	/**
+	 * Get the total number of queried storages
+	 * @return
+	 */
+	public static long getTotalQueriedStorages() {
+		return totalQueriedStorages.get();
+	}
+	
 }
@@ -58,4 +58,22 @@ public class BoundingBoxAndTimeQueryPlan implements QueryPlan {
 		
 		return predicateFilterIterator;
 	}
+	
+	@Override
+	public boolean canStorageContainMatchingTuples(final ReadOnlyTupleStorage readOnlyTupleStorage) {
+		
+		// All tuples are older than our predicate
+		if(readOnlyTupleStorage.getNewestTupleVersionTimestamp() <= timestamp) {
+			return false;
+		}
+		
+		return readOnlyTupleStorage.getCoveringBoundingBox().overlaps(boundingBox);
+	}
+	
+	@Override
+	public boolean isVersionResolvableByMerge() {
+		// The spatial index returns the tuples unsorted and a newer version can be outside of the box
+		return false;
+	}
+
 }
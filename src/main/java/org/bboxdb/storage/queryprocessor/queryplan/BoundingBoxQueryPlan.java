@@ -42,5 +42,16 @@ public class BoundingBoxQueryPlan implements QueryPlan {
 		
 		return dataSource.iterator();
 	}
+	
+	@Override
+	public boolean canStorageContainMatchingTuples(final ReadOnlyTupleStorage readOnlyTupleStorage) {
+		return readOnlyTupleStorage.getCoveringBoundingBox().overlaps(boundingBox);
+	}
+	
+	@Override
+	public boolean isVersionResolvableByMerge() {
+		// The spatial index returns the tuples unsorted and a newer version can be outside of the box
+		return false;
+	}
 
 }
@@ -21,8 +21,9 @@ import java.util.Iterator;
 
 import org.bboxdb.storage.ReadOnlyTupleStorage;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleTimestampType;
 import org.bboxdb.storage.queryprocessor.datasource.DataSource;
-import org.bboxdb.storage.queryprocessor.datasource.FullStoreScanSource;
+import org.bboxdb.storage.queryprocessor.datasource.TimeIndexDataSource;
 import org.bboxdb.storage.queryprocessor.predicate.NewerAsInsertedTimePredicate;
 import org.bboxdb.storage.queryprocessor.predicate.Predicate;
 import org.bboxdb.storage.queryprocessor.predicate.PredicateFilterIterator;
@@ -41,19 +42,32 @@ public class NewerAsInsertTimeQueryPlan implements QueryPlan {
 	@Override
 	public Iterator<Tuple> execute(final ReadOnlyTupleStorage readOnlyTupleStorage) {
 		
-		// All tuples are older than our predicate
-		if(readOnlyTupleStorage.getNewestTupleInsertedTimestamp() < timestamp) {
-			return null;
-		}
-		
-		final DataSource fullStoreScanSource = new FullStoreScanSource(readOnlyTupleStorage);
+		final DataSource timeIndexDataSource = new TimeIndexDataSource(readOnlyTupleStorage, 
+				TupleTimestampType.INSERTED, timestamp);
 		
 		final Predicate predicate = new NewerAsInsertedTimePredicate(timestamp);
 		
 		final PredicateFilterIterator predicateFilterIterator 
-			= new PredicateFilterIterator(fullStoreScanSource.iterator(), predicate);
+			= new PredicateFilterIterator(timeIndexDataSource.iterator(), predicate);
 		
 		return predicateFilterIterator;
 	}
+	
+	@Override
+	public boolean canStorageContainMatchingTuples(final ReadOnlyTupleStorage readOnlyTupleStorage) {
+		
+		// All tuples are older than our predicate
+		if(readOnlyTupleStorage.getNewestTupleInsertedTimestamp() < timestamp) {
+			return false;
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public boolean isVersionResolvableByMerge() {
+		// The insert timestamp is assigned on arrival, a newer version has a newer insert timestamp
+		return true;
+	}
 
 }
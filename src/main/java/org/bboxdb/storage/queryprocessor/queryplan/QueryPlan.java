@@ -30,4 +30,24 @@ public interface QueryPlan {
 	 * @return
 	 */
 	public Iterator<Tuple> execute(final ReadOnlyTupleStorage readOnlyTupleStorage);
+	
+	/**
+	 * Can the tuple storage contain tuples that are matching the query plan? This
+	 * is tested with the meta data of the storage (e.g., the covering bounding box 
+	 * or the timestamps), the tuples are not read.
+	 * 
+	 * @param readOnlyTupleStorage
+	 * @return
+	 */
+	public boolean canStorageContainMatchingTuples(final ReadOnlyTupleStorage readOnlyTupleStorage);
+	
+	/**
+	 * Can the versions of the tuples be resolved by merging the results of the storages? 
+	 * This requires that the query plan returns the tuples of persistent storages sorted 
+	 * by key and that the newest version of a key is returned whenever an older 
+	 * version of the key is returned.
+	 * 
+	 * @return
+	 */
+	public boolean isVersionResolvableByMerge();
 }
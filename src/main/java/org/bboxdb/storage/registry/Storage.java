@@ -25,10 +25,15 @@ import java.util.concurrent.BlockingQueue;
 
 import org.bboxdb.misc.BBoxDBConfiguration;
 import org.bboxdb.misc.BBoxDBService;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.commitlog.CommitLog;
 import org.bboxdb.storage.memtable.MemtableWriterThread;
 import org.bboxdb.storage.sstable.SSTableCheckpointThread;
 import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.SSTableManager;
 import org.bboxdb.storage.sstable.compact.SSTableCompactorThread;
+import org.bboxdb.util.RejectedException;
 import org.bboxdb.util.ServiceState;
 import org.bboxdb.util.concurrent.ThreadHelper;
 import org.slf4j.Logger;
@@ -66,6 +71,11 @@ public class Storage implements BBoxDBService {
 	 */
 	protected final StorageRegistry storageRegistry;
 	
+	/**
+	 * The commit log, null if the commit log is disabled
+	 */
+	protected final CommitLog commitLog;
+	
 	/**
 	 * The logger
 	 */
@@ -79,6 +89,26 @@ public class Storage implements BBoxDBService {
 		this.basedir = basedir;
 		this.flushThreadsPerStorage = flushThreadsPerStorage;
 		this.memtablesToFlush = new ArrayBlockingQueue<>(SSTableConst.MAX_UNFLUSHED_MEMTABLES_PER_TABLE);
+		this.commitLog = createCommitLog();
+	}
+
+	/**
+	 * Create the commit log, if enabled
+	 * @return
+	 */
+	protected CommitLog createCommitLog() {
+		final BBoxDBConfiguration configuration = storageRegistry.getConfiguration();
+		
+		if(! configuration.isStorageCommitLogEnabled()) {
+			return null;
+		}
+		
+		final File commitLogDir = new File(SSTableHelper.getCommitLogDir(basedir.getAbsolutePath()));
+		
+		return new CommitLog(commitLogDir, 
+				configuration.getStorageCommitLogSegmentSize(),
+				configuration.getStorageCommitLogSyncInterval(), 
+				configuration.getStorageCommitLogSyncBytes());
 	}
 
 	@Override
@@ -91,6 +121,10 @@ public class Storage implements BBoxDBService {
 		
 		serviceState.dipatchToStarting();
 		memtablesToFlush.clear();
+		
+		if(commitLog != null) {
+			commitLog.init();
+		}
 	
 		startFlushThreads();
 		startCompactThread();
@@ -156,6 +190,11 @@ public class Storage implements BBoxDBService {
 		ThreadHelper.stopThreads(runningThreads);
 		
 		runningThreads.clear();
+		
+		if(commitLog != null) {
+			commitLog.shutdown();
+		}
+		
 		serviceState.dispatchToTerminated();
 	}
 
@@ -181,6 +220,37 @@ public class Storage implements BBoxDBService {
 		}
 	}
 	
+	/**
+	 * Replay the commit log of the last run into the tables of 
+	 * this storage. Records of deleted tables are skipped. The tuples 
+	 * are inserted without waiting for the commit log sync, the log 
+	 * is synced once at the end of the replay.
+	 */
+	public void replayCommitLog() {
+		
+		if(commitLog == null) {
+			return;
+		}
+		
+		try {
+			commitLog.replay((timestamp, ssTableName, tuple) -> {
+				if(! storageRegistry.isTableKnown(ssTableName)) {
+					return;
+				}
+				
+				final SSTableManager sstableManager = storageRegistry.getSSTableManager(ssTableName);
+				
+				try {
+					sstableManager.putReplayedTuple(tuple);
+				} catch (RejectedException e) {
+					throw new StorageManagerException(e);
+				}
+			});
+		} catch (StorageManagerException e) {
+			logger.error("Unable to replay the commit log of storage: " + basedir, e);
+		}
+	}
+	
 	/**
 	 * Get the memtable flush queue
 	 * @return
@@ -197,6 +267,14 @@ public class Storage implements BBoxDBService {
 		return basedir;
 	}
 
+	/**
+	 * Get the commit log of this storage
+	 * @return the commit log or null, if the commit log is disabled
+	 */
+	public CommitLog getCommitLog() {
+		return commitLog;
+	}
+
 	/**
 	 * Get the storage registry
 	 * @return
@@ -122,6 +122,11 @@ public class StorageRegistry implements BBoxDBService {
 			}
 		}
 		
+		// Recover the unflushed tuples of the last run
+		for(final Storage storage : storages.values()) {
+			storage.replayCommitLog();
+		}
+		
 		serviceState.dispatchToRunning();
 	}
 	
@@ -340,6 +345,15 @@ public class StorageRegistry implements BBoxDBService {
 		}
 	}
 	
+	/**
+	 * Is the table stored in one of the storages?
+	 * @param table
+	 * @return
+	 */
+	public boolean isTableKnown(final SSTableName table) {
+		return sstableLocations.containsKey(table);
+	}
+	
 	/**
 	 * Is a storage manager for the relation active?
 	 * @param table
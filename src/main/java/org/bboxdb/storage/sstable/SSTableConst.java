@@ -31,16 +31,59 @@ public class SSTableConst {
 	 */
 	public final static byte[] MAGIC_BYTES_INDEX = "bboxdb-idx".getBytes();
 	
+	/**
+	 * The magic bytes at the beginning of every SSTable index file with 
+	 * 64 bit tuple positions
+	 */
+	public final static byte[] MAGIC_BYTES_INDEX_LONG = "bboxdb-lidx".getBytes();
+	
 	/**
 	 * The magic bytes at the beginning of every spatial index file
 	 */
 	public final static byte[] MAGIC_BYTES_SPATIAL_RTREE_INDEX = "bboxdb-sidx".getBytes();
 	
+	/**
+	 * The magic bytes at the beginning of every spatial index file with
+	 * 64 bit child node pointers
+	 */
+	public final static byte[] MAGIC_BYTES_SPATIAL_RTREE_INDEX_LONG = "bboxdb-lsidx".getBytes();
+	
+	/**
+	 * The magic bytes at the beginning of every block based SSTable file
+	 */
+	public final static byte[] MAGIC_BYTES_BLOCK = "bboxdb-blk".getBytes();
+	
+	/**
+	 * The magic bytes at the beginning of every sparse block index file
+	 */
+	public final static byte[] MAGIC_BYTES_BLOCK_INDEX = "bboxdb-bidx".getBytes();
+	
+	/**
+	 * The magic bytes at the beginning of every key sample file
+	 */
+	public final static byte[] MAGIC_BYTES_KEY_SAMPLE = "bboxdb-ksmp".getBytes();
+	
+	/**
+	 * The magic bytes at the beginning of every time index file
+	 */
+	public final static byte[] MAGIC_BYTES_TIME_INDEX = "bboxdb-tidx".getBytes();
+	
+	/**
+	 * The magic bytes at the beginning of every commit log segment
+	 */
+	public final static byte[] MAGIC_BYTES_COMMIT_LOG = "bboxdb-clog".getBytes();
+	
 	/**
 	 * The current version of the SSTable layout format
 	 */
 	public final short SST_VERSION = 1;
 	
+	/**
+	 * The version of the block based SSTable layout format. The version 
+	 * is stored after the magic bytes of the SSTable and the block index.
+	 */
+	public final static short SST_BLOCK_VERSION = 2;
+	
 	/**
 	 * The prefix for every SSTable file
 	 */
@@ -71,6 +114,26 @@ public class SSTableConst {
 	 */
 	public final static String SST_META_SUFFIX = ".meta";
 	
+	/**
+	 * The suffix for the key sample files
+	 */
+	public final static String SST_KEY_SAMPLE_SUFFIX = ".ksmp";
+	
+	/**
+	 * The suffix for the time index files
+	 */
+	public final static String SST_TIME_INDEX_SUFFIX = ".tidx";
+	
+	/**
+	 * The prefix for every commit log segment
+	 */
+	public final static String COMMIT_LOG_SEGMENT_PREFIX = "segment_";
+	
+	/**
+	 * The suffix for the commit log segments
+	 */
+	public final static String COMMIT_LOG_SEGMENT_SUFFIX = ".clog";
+	
 	/**
 	 * Distribution group medata data file
 	 */
@@ -87,6 +150,61 @@ public class SSTableConst {
 	 */
 	public final static int INDEX_ENTRY_BYTES = 4;
 	
+	/**
+	 * Format of the index file with 64 bit positions:
+	 * 
+	 * -------------------------------------------------
+	 * | Tuple-Position | Tuple-Position |  .........  |
+	 * |     8 Byte     |     8 Byte     |  .........  |
+	 * -------------------------------------------------
+	 */
+	public final static int INDEX_LONG_ENTRY_BYTES = 8;
+	
+	/**
+	 * Format of a block header in the block based SSTable format:
+	 * 
+	 * ---------------------------------------------------------------------
+	 * | Codec  | Uncompressed length | Compressed length | CRC32C checksum |
+	 * | 1 Byte |       4 Byte        |      4 Byte       |     4 Byte      |
+	 * ---------------------------------------------------------------------
+	 * 
+	 * The header is followed by the compressed data. The uncompressed
+	 * data contains the amount of tuples, the offsets of the tuples 
+	 * (relative to the first tuple) and the encoded tuples:
+	 * 
+	 * -----------------------------------------------------------
+	 * | Tuples | Offset | Offset |  ....  | Tuple | Tuple | ... |
+	 * | 4 Byte | 4 Byte | 4 Byte |  ....  |       |       |     |
+	 * -----------------------------------------------------------
+	 */
+	public final static int BLOCK_HEADER_BYTES = 13;
+	
+	/**
+	 * Format of an entry in the sparse block index:
+	 * 
+	 * --------------------------------------------------------------------------
+	 * | Block position | First entry | Tuples in block | Key-Length |  First key |
+	 * |     8 Byte     |   4 Byte    |     4 Byte      |   2 Byte   |  n Byte    |
+	 * --------------------------------------------------------------------------
+	 */
+	public final static int BLOCK_INDEX_ENTRY_HEADER_BYTES = 18;
+	
+	/**
+	 * Format of the key sample file (every n-th key of a SSTable 
+	 * in the row format): 
+	 * 
+	 * -------------------------------------------------------------------
+	 * | Interval | Samples | Key-Length |  Key   | Key-Length |  ...... |
+	 * |  4 Byte  |  4 Byte |   2 Byte   | n Byte |   2 Byte   |  ...... |
+	 * -------------------------------------------------------------------
+	 */
+	public final static int KEY_SAMPLE_HEADER_BYTES = 8;
+	
+	/**
+	 * Every n-th key of a SSTable is stored in the key sample file
+	 */
+	public final static int KEY_SAMPLE_INTERVAL = 64;
+	
 	/**
 	 * Marker for deleted tuples
 	 */
@@ -103,10 +221,20 @@ public class SSTableConst {
 	public final static long CHECKPOINT_THREAD_DELAY = TimeUnit.SECONDS.toMillis(60);
 	
 	/**
-	 * The maximal size for one SSTable. SStables are mapped into memory, the JVM can only
-	 * map files up to 2 GB. Therefore the limit is set to 1.9 GB.
+	 * The maximal size for one SSTable (16 GB)
+	 */
+	public final static long MAX_SSTABLE_SIZE = 16L * 1024 * 1024 * 1024;
+	
+	/**
+	 * The minimal number of tuples per key range of a parallel compaction
+	 */
+	public final static int COMPACTION_MIN_ENTRIES_PER_RANGE = 100000;
+	
+	/**
+	 * SSTables are mapped into memory, the JVM can only map regions up to 2 GB. 
+	 * Therefore larger tables are mapped in segments of 1 GB.
 	 */
-	public final static int MAX_SSTABLE_SIZE = 2040109465;
+	public final static int MAPPED_SEGMENT_SIZE = 1024 * 1024 * 1024;
 	
 	/**
 	 * The maximal amount of unflushed memtables per SSTable
@@ -194,6 +194,78 @@ public class SSTableHelper {
 				+ SSTableConst.SST_META_SUFFIX;
 	}
 	
+	/**
+	 * The full name of the SSTable key sample file for a given relation
+	 * 
+	 * @param directory
+	 * @param name
+	 * 
+	 * @return e.g. /tmp/bboxdb/data/relation1/sstable_relation1_2.ksmp
+	 */
+	public static String getSSTableKeySampleFilename(final String directory, final SSTableName name, final int tablenumber) {
+		return getSSTableBase(directory, name, tablenumber)
+				+ SSTableConst.SST_KEY_SAMPLE_SUFFIX;
+	}
+	
+	/**
+	 * The full name of the SSTable time index file for a given relation
+	 * 
+	 * @param directory
+	 * @param name
+	 * 
+	 * @return e.g. /tmp/bboxdb/data/relation1/sstable_relation1_2.tidx
+	 */
+	public static String getSSTableTimeIndexFilename(final String directory, final SSTableName name, final int tablenumber) {
+		return getSSTableBase(directory, name, tablenumber)
+				+ SSTableConst.SST_TIME_INDEX_SUFFIX;
+	}
+	
+	/**
+	 * Get the commit log dir for a given volume dir
+	 * @param directory
+	 * 
+	 * @return e.g. /tmp/bboxdb/commitlog
+	 */
+	public static String getCommitLogDir(final String directory) {
+		return directory 
+				+ File.separator 
+				+ "commitlog";
+	}
+	
+	/**
+	 * The name of a commit log segment
+	 * @param segmentNumber
+	 * 
+	 * @return e.g. segment_12.clog
+	 */
+	public static String getCommitLogSegmentFilename(final long segmentNumber) {
+		return SSTableConst.COMMIT_LOG_SEGMENT_PREFIX 
+				+ segmentNumber 
+				+ SSTableConst.COMMIT_LOG_SEGMENT_SUFFIX;
+	}
+	
+	/**
+	 * Belongs the given filename to a commit log segment?
+	 * @param filename
+	 * @return
+	 */
+	public static boolean isFileNameCommitLogSegment(final String filename) {
+		return filename.startsWith(SSTableConst.COMMIT_LOG_SEGMENT_PREFIX) 
+				&& filename.endsWith(SSTableConst.COMMIT_LOG_SEGMENT_SUFFIX);
+	}
+	
+	/**
+	 * Extract the segment number from the name of a commit log segment
+	 * @param filename
+	 * @return
+	 */
+	public static long extractSegmentNumberFromFilename(final String filename) {
+		final String number = filename.substring(SSTableConst.COMMIT_LOG_SEGMENT_PREFIX.length(), 
+				filename.length() - SSTableConst.COMMIT_LOG_SEGMENT_SUFFIX.length());
+		
+		return Long.parseLong(number);
+	}
+	
 	/**
 	 * Belongs the given filename to a SSTable?
 	 * 
@@ -245,4 +317,24 @@ public class SSTableHelper {
 		return filename.startsWith(SSTableConst.SST_FILE_PREFIX) 
 				&& filename.endsWith(SSTableConst.SST_META_SUFFIX);
 	}
+
+	/**
+	 * Belongs the given filename to a SSTable key sample file?
+	 * @param filename
+	 * @return
+	 */
+	public static boolean isFileNameSSTableKeySample(final String filename) {
+		return filename.startsWith(SSTableConst.SST_FILE_PREFIX) 
+				&& filename.endsWith(SSTableConst.SST_KEY_SAMPLE_SUFFIX);
+	}
+	
+	/**
+	 * Belongs the given filename to a SSTable time index file?
+	 * @param filename
+	 * @return
+	 */
+	public static boolean isFileNameSSTableTimeIndex(final String filename) {
+		return filename.startsWith(SSTableConst.SST_FILE_PREFIX) 
+				&& filename.endsWith(SSTableConst.SST_TIME_INDEX_SUFFIX);
+	}
 }
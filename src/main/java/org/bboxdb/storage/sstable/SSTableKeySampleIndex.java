@@ -0,0 +1,171 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.util.io.DataEncoderHelper;
+
+/**
+ * Sparse in memory index that contains every n-th key of a SSTable in the 
+ * row format. A lookup narrows the binary search in the SSTable to the 
+ * n entries between two samples.
+ * 
+ * The samples are stored UTF-8 encoded and compared as strings, so the 
+ * order is the order of String.compareTo() that is used to sort the table.
+ */
+public class SSTableKeySampleIndex {
+	
+	/**
+	 * The distance between two samples in entries
+	 */
+	protected final int interval;
+	
+	/**
+	 * The sampled keys, key i belongs to entry i * interval
+	 */
+	protected final String[] keys;
+	
+	public SSTableKeySampleIndex(final int interval, final String[] keys) {
+		this.interval = interval;
+		this.keys = keys;
+	}
+	
+	/**
+	 * Get the first entry that can contain the key 
+	 * @param key
+	 * @return the entry or -1 if the key is smaller than the first key of the table
+	 */
+	public int getFirstEntryForKey(final String key) {
+		int firstSample = 0;
+		int lastSample = keys.length - 1;
+		int result = -1;
+		
+		// Search the last sample <= key
+		while(firstSample <= lastSample) {
+			final int curSample = (firstSample + lastSample) >>> 1;
+			
+			if(keys[curSample].compareTo(key) <= 0) {
+				result = curSample;
+				firstSample = curSample + 1;
+			} else {
+				lastSample = curSample - 1;
+			}
+		}
+		
+		if(result == -1) {
+			return -1;
+		}
+		
+		return result * interval;
+	}
+	
+	/**
+	 * Get the distance between two samples in entries
+	 * @return
+	 */
+	public int getInterval() {
+		return interval;
+	}
+	
+	/**
+	 * Get the number of samples
+	 * @return
+	 */
+	public int getNumberOfSamples() {
+		return keys.length;
+	}
+
+	/**
+	 * Write the key samples into the output stream
+	 * @param outputStream
+	 * @param interval
+	 * @param keys
+	 * @throws IOException
+	 */
+	public static void writeToStream(final OutputStream outputStream, final int interval, 
+			final List<String> keys) throws IOException {
+		
+		outputStream.write(SSTableConst.MAGIC_BYTES_KEY_SAMPLE);
+		outputStream.write(DataEncoderHelper.intToByteBuffer(interval).array());
+		outputStream.write(DataEncoderHelper.intToByteBuffer(keys.size()).array());
+		
+		for(final String key : keys) {
+			final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+			outputStream.write(DataEncoderHelper.shortToByteBuffer((short) keyBytes.length).array());
+			outputStream.write(keyBytes);
+		}
+	}
+	
+	/**
+	 * Read the key samples from the given file
+	 * @param file
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public static SSTableKeySampleIndex readFromFile(final File file) throws StorageManagerException {
+		
+		try (   final FileInputStream fileInputStream = new FileInputStream(file);
+				final DataInputStream inputStream = new DataInputStream(
+						new BufferedInputStream(fileInputStream));
+			) {
+			
+			final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_KEY_SAMPLE.length];
+			inputStream.readFully(magicBytes);
+			
+			if(! Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_KEY_SAMPLE)) {
+				throw new StorageManagerException("File " + file + " does not contain the magic bytes");
+			}
+			
+			final int interval = inputStream.readInt();
+			final int numberOfSamples = inputStream.readInt();
+			
+			if(interval <= 0 || numberOfSamples < 0) {
+				throw new StorageManagerException("Invalid key sample header in file " + file);
+			}
+			
+			final String[] keys = new String[numberOfSamples];
+			
+			for(int i = 0; i < numberOfSamples; i++) {
+				final int keyLength = inputStream.readUnsignedShort();
+				final byte[] keyBytes = new byte[keyLength];
+				inputStream.readFully(keyBytes);
+				keys[i] = new String(keyBytes, StandardCharsets.UTF_8);
+			}
+			
+			return new SSTableKeySampleIndex(interval, keys);
+		} catch (IOException e) {
+			throw new StorageManagerException("Unable to read key samples from " + file, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SSTableKeySampleIndex [interval=" + interval + ", samples=" + keys.length + "]";
+	}
+
+}
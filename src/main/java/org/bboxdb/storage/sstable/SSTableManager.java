@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.bboxdb.distribution.DistributionGroupMetadataHelper;
 import org.bboxdb.distribution.mode.DistributionGroupZookeeperAdapter;
@@ -35,10 +37,13 @@ import org.bboxdb.misc.BBoxDBService;
 import org.bboxdb.misc.Const;
 import org.bboxdb.storage.ReadOnlyTupleStorage;
 import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.commitlog.CommitLog;
+import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.DistributionGroupMetadata;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.MemtableFactory;
 import org.bboxdb.storage.registry.MemtableAndSSTableManager;
 import org.bboxdb.storage.registry.Storage;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
@@ -80,6 +85,12 @@ public class SSTableManager implements BBoxDBService {
 	 */
 	protected final Storage storage;
 	
+	/**
+	 * The lock for the active memtable. Writers share the read lock, the 
+	 * write lock is needed to replace the memtable.
+	 */
+	protected final ReadWriteLock memtableLock;
+	
 	/**
 	 * The logger
 	 */
@@ -93,6 +104,7 @@ public class SSTableManager implements BBoxDBService {
 		this.sstablename = sstablename;
 		this.tableNumber = new AtomicInteger();
 		this.tupleStoreInstances = new TupleStoreInstanceManager();
+		this.memtableLock = new ReentrantReadWriteLock();
 		
 		// Close open ressources when the failed state is entered
 		this.serviceState = new ServiceState(); 
@@ -388,6 +400,12 @@ public class SSTableManager implements BBoxDBService {
 			} else if(SSTableHelper.isFileNameSpatialIndex(filename)) {
 				logger.info("Deleting spatial index file: {}", file);
 				file.delete();
+			} else if(SSTableHelper.isFileNameSSTableKeySample(filename)) {
+				logger.info("Deleting key sample file: {}", file);
+				file.delete();
+			} else if(SSTableHelper.isFileNameSSTableTimeIndex(filename)) {
+				logger.info("Deleting time index file: {}", file);
+				file.delete();
 			}
 		}
 		
@@ -528,30 +546,82 @@ public class SSTableManager implements BBoxDBService {
 	 * Open a new memtable and schedule the old memtable for flushing
 	 * @throws StorageManagerException
 	 */
-	public synchronized void initNewMemtable() {
-		final Memtable memtable = new Memtable(sstablename, 
-				configuration.getMemtableEntriesMax(), 
-				configuration.getMemtableSizeMax());
+	public void initNewMemtable() {
+		memtableLock.writeLock().lock();
 		
-		memtable.acquire();
-		memtable.init();
-		
-		final Memtable oldMemtable = tupleStoreInstances.activateNewMemtable(memtable);	
-		
-		final MemtableAndSSTableManager memtableTask = new MemtableAndSSTableManager(oldMemtable, this);
-		storage.scheduleMemtableFlush(memtableTask);
+		try {
+			final Memtable memtable = MemtableFactory.getInstance(sstablename, 
+					configuration.getMemtableEntriesMax(), 
+					configuration.getMemtableSizeMax());
+			
+			memtable.acquire();
+			memtable.init();
+			
+			final Memtable oldMemtable = tupleStoreInstances.activateNewMemtable(memtable);	
+			
+			final MemtableAndSSTableManager memtableTask = new MemtableAndSSTableManager(oldMemtable, this);
+			storage.scheduleMemtableFlush(memtableTask);
+			
+			logger.debug("Activated a new memtable: {}", memtable.getInternalName());
+		} finally {
+			memtableLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Replace the given memtable with a new one, if it is still the active memtable
+	 * @param fullMemtable
+	 */
+	protected void replaceFullMemtable(final Memtable fullMemtable) {
+		memtableLock.writeLock().lock();
 		
-		logger.debug("Activated a new memtable: {}", memtable.getInternalName());
+		try {
+			// Ensure that only one memtable is newly created
+			if(getMemtable() == fullMemtable) {
+				initNewMemtable();
+			}
+		} finally {
+			memtableLock.writeLock().unlock();
+		}
 	}
-
+	
 	/**
-	 * Store a new tuple
+	 * Store the tuple in the active memtable and in the commit log. Multiple writers
+	 * share the read lock, the write lock is only taken to replace a full memtable.
+	 * 
 	 * @param tuple
+	 * @return the position in the commit log or -1, if the commit log is disabled
 	 * @throws StorageManagerException
-	 * @throws RejectedException 
 	 */
-	public void put(final Tuple tuple) throws StorageManagerException, RejectedException {
+	protected long putIntoMemtable(final Tuple tuple) throws StorageManagerException {
 		
+		while(true) {
+			final Memtable memtable;
+			
+			memtableLock.readLock().lock();
+			
+			try {
+				memtable = getMemtable();
+				
+				// The memtable can't be replaced while the read lock is held, so the 
+				// commit log record and the tuple belong to the same memtable
+				if(! memtable.isFull() && memtable.tryPut(tuple)) {
+					return appendToCommitLog(tuple, memtable);
+				}
+			} finally {
+				memtableLock.readLock().unlock();
+			}
+			
+			replaceFullMemtable(memtable);
+		}
+	}
+	
+	/**
+	 * Test if the storage manager accepts writes
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 */
+	protected void checkWriteState() throws StorageManagerException, RejectedException {
 		if(! serviceState.isInRunningState()) {
 			throw new StorageManagerException("Storage manager is not ready: " 
 					+ sstablename.getFullname() 
@@ -561,20 +631,74 @@ public class SSTableManager implements BBoxDBService {
 		if(tupleStoreInstances.getState() == SSTableManagerState.READ_ONLY) {
 			throw new RejectedException("Storage manager is in read only state");
 		}
+	}
+
+	/**
+	 * Store a new tuple
+	 * @param tuple
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	public void put(final Tuple tuple) throws StorageManagerException, RejectedException {
+		
+		checkWriteState();
+		
+		long commitLogPosition = -1;
 		
 		try {
-			// Ensure that only one memtable is newly created
-			synchronized (this) {	
-				if(getMemtable().isFull()) {
-					initNewMemtable();
-				}
-				
-				getMemtable().put(tuple);
+			commitLogPosition = putIntoMemtable(tuple);
+		} catch (StorageManagerException e) {
+			serviceState.dispatchToFailed(e);
+			throw e;
+		}
+		
+		awaitCommitLogSync(commitLogPosition);
+	}
+
+	/**
+	 * Store multiple tuples. The commit log is synced once for all tuples.
+	 * 
+	 * @param tuples
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	public void put(final Collection<Tuple> tuples) throws StorageManagerException, RejectedException {
+		
+		checkWriteState();
+		
+		long commitLogPosition = -1;
+		
+		try {
+			for(final Tuple tuple : tuples) {
+				commitLogPosition = Math.max(commitLogPosition, putIntoMemtable(tuple));
 			}
 		} catch (StorageManagerException e) {
 			serviceState.dispatchToFailed(e);
 			throw e;
 		}
+		
+		awaitCommitLogSync(commitLogPosition);
+	}
+
+	/**
+	 * Store a tuple of the commit log replay. The replayed tuple is written
+	 * into the new segments of the commit log, but the call does not wait 
+	 * for the sync. The commit log is synced once after the replay.
+	 * 
+	 * @param tuple
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	public void putReplayedTuple(final Tuple tuple) throws StorageManagerException, RejectedException {
+		
+		checkWriteState();
+		
+		try {
+			putIntoMemtable(tuple);
+		} catch (StorageManagerException e) {
+			serviceState.dispatchToFailed(e);
+			throw e;
+		}
 	}
 
 	/**
@@ -585,29 +709,70 @@ public class SSTableManager implements BBoxDBService {
 	 * @throws RejectedException 
 	 */
 	public void delete(final String key, final long timestamp) throws StorageManagerException, RejectedException {
-		if(! serviceState.isInRunningState()) {
-			throw new StorageManagerException("Storage manager is not ready: " 
-					+ sstablename.getFullname() 
-					+ " state: " + serviceState);
-		}
 		
-		if(tupleStoreInstances.getState() == SSTableManagerState.READ_ONLY) {
-			throw new RejectedException("Storage manager is in read only state");
-		}
+		checkWriteState();
+		
+		long commitLogPosition = -1;
 		
-		// Ensure that only one memtable is newly created
 		try {
-			synchronized (this) {	
-				if(getMemtable().isFull()) {
-					initNewMemtable();
-				}
-				
-				getMemtable().delete(key, timestamp);
-			}
+			commitLogPosition = putIntoMemtable(new DeletedTuple(key, timestamp));
 		} catch (StorageManagerException e) {
 			serviceState.dispatchToFailed(e);
 			throw e;
 		}
+		
+		awaitCommitLogSync(commitLogPosition);
+	}
+	
+	/**
+	 * Write the tuple into the commit log of the storage
+	 * @param tuple
+	 * @param memtable
+	 * @return the position in the commit log or -1, if the commit log is disabled
+	 * @throws StorageManagerException
+	 */
+	protected long appendToCommitLog(final Tuple tuple, final Memtable memtable) 
+			throws StorageManagerException {
+		
+		final CommitLog commitLog = getCommitLog();
+		
+		if(commitLog == null) {
+			return -1;
+		}
+		
+		return commitLog.append(sstablename, tuple, memtable);
+	}
+	
+	/**
+	 * Wait until the commit log is synced up to the given position. The 
+	 * wait is performed outside of the memtable lock, so that the 
+	 * records of multiple writers are synced together.
+	 * 
+	 * @param commitLogPosition
+	 * @throws StorageManagerException
+	 */
+	protected void awaitCommitLogSync(final long commitLogPosition) throws StorageManagerException {
+		
+		final CommitLog commitLog = getCommitLog();
+		
+		if(commitLog == null || commitLogPosition < 0) {
+			return;
+		}
+		
+		commitLog.awaitSync(commitLogPosition);
+	}
+	
+	/**
+	 * Get the commit log of the storage
+	 * @return the commit log or null
+	 */
+	protected CommitLog getCommitLog() {
+		
+		if(storage == null) {
+			return null;
+		}
+		
+		return storage.getCommitLog();
 	}
 	
 	
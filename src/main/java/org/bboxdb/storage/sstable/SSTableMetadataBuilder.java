@@ -52,20 +52,32 @@ public class SSTableMetadataBuilder {
 	 * Update the metadata 
 	 */
 	public void addTuple(final Tuple tuple) {
+		addTuple(tuple.getBoundingBox(), tuple.getVersionTimestamp(), tuple.getReceivedTimestamp());
+	}
+	
+	/**
+	 * Update the metadata with the values of a tuple
+	 * @param tupleBoundingBox
+	 * @param versionTimestamp
+	 * @param receivedTimestamp
+	 */
+	public void addTuple(final BoundingBox tupleBoundingBox, final long versionTimestamp, 
+			final long receivedTimestamp) {
+		
 		tuples++;
 		
 		if(boundingBox == null) {
-			boundingBox = tuple.getBoundingBox();
+			boundingBox = tupleBoundingBox;
 		} else {
 			// Calculate the bounding box of the current bounding box and
 			// the bounding box of the tuple
-			boundingBox = BoundingBox.getCoveringBox(boundingBox, tuple.getBoundingBox());
+			boundingBox = BoundingBox.getCoveringBox(boundingBox, tupleBoundingBox);
 		}
 				
 		// Update the newest and the oldest tuple
-		newestTupleVersionTimstamp = Math.max(newestTupleVersionTimstamp, tuple.getVersionTimestamp());
-		oldestTupleVersionTimestamp = Math.min(oldestTupleVersionTimestamp, tuple.getVersionTimestamp());
-		newestTupleInsertedTimstamp = Math.max(newestTupleInsertedTimstamp, tuple.getReceivedTimestamp());
+		newestTupleVersionTimstamp = Math.max(newestTupleVersionTimstamp, versionTimestamp);
+		oldestTupleVersionTimestamp = Math.min(oldestTupleVersionTimestamp, versionTimestamp);
+		newestTupleInsertedTimstamp = Math.max(newestTupleInsertedTimstamp, receivedTimestamp);
 	}
 	
 	/**
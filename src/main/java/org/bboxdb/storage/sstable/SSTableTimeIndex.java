@@ -0,0 +1,269 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.TupleTimestampType;
+import org.bboxdb.util.io.DataEncoderHelper;
+import org.bboxdb.util.io.UnsafeMemoryHelper;
+
+/**
+ * Index of the version and the inserted timestamps of a SSTable. The index 
+ * contains the tuple numbers of the SSTable sorted by the timestamps. A time
+ * query seeks with a binary search to the first matching entry and reads only 
+ * the matching tuples, instead of scanning the whole table. The file is 
+ * mapped into memory.
+ * 
+ * Format of the file:
+ * 
+ * -------------------------------------------------------------------------
+ * | Magic bytes | Entries | Version timestamps     | Inserted timestamps    |
+ * |             | 4 Byte  | Entries * 12 Byte      | Entries * 12 Byte      |
+ * -------------------------------------------------------------------------
+ * 
+ * Each entry consists of the timestamp (8 byte) and the tuple number (4 byte).
+ */
+public class SSTableTimeIndex {
+	
+	/**
+	 * The mapped file
+	 */
+	protected MappedByteBuffer memory;
+	
+	/**
+	 * The number of entries per timestamp type
+	 */
+	protected final int entries;
+	
+	/**
+	 * The size of one entry
+	 */
+	protected final static int ENTRY_SIZE = DataEncoderHelper.LONG_BYTES + DataEncoderHelper.INT_BYTES;
+	
+	/**
+	 * The size of the header
+	 */
+	protected final static int HEADER_SIZE = SSTableConst.MAGIC_BYTES_TIME_INDEX.length 
+			+ DataEncoderHelper.INT_BYTES;
+	
+	public SSTableTimeIndex(final MappedByteBuffer memory, final int entries) {
+		this.memory = memory;
+		this.entries = entries;
+	}
+	
+	/**
+	 * Pass the number of all tuples with a timestamp newer than the given 
+	 * timestamp to the consumer
+	 * 
+	 * @param timestampType
+	 * @param timestamp
+	 * @param consumer
+	 */
+	public void getEntriesNewerAs(final TupleTimestampType timestampType, final long timestamp, 
+			final IntConsumer consumer) {
+		
+		final ByteBuffer mappedMemory = memory;
+		
+		if(mappedMemory == null) {
+			throw new IllegalStateException("The time index is already closed");
+		}
+		
+		final int sectionStart = getSectionStart(timestampType);
+		
+		// Search the first entry > timestamp
+		int low = 0;
+		int high = entries;
+		
+		while(low < high) {
+			final int mid = (low + high) >>> 1;
+			
+			if(mappedMemory.getLong(sectionStart + mid * ENTRY_SIZE) > timestamp) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		
+		for(int entry = low; entry < entries; entry++) {
+			final int position = sectionStart + entry * ENTRY_SIZE + DataEncoderHelper.LONG_BYTES;
+			consumer.accept(mappedMemory.getInt(position));
+		}
+	}
+	
+	/**
+	 * Get the position of the entries for the timestamp type
+	 * @param timestampType
+	 * @return
+	 */
+	protected int getSectionStart(final TupleTimestampType timestampType) {
+		if(timestampType == TupleTimestampType.VERSION) {
+			return HEADER_SIZE;
+		}
+		
+		return HEADER_SIZE + entries * ENTRY_SIZE;
+	}
+	
+	/**
+	 * Get the number of indexed tuples
+	 * @return
+	 */
+	public int getNumberOfEntries() {
+		return entries;
+	}
+	
+	/**
+	 * Unmap the index
+	 */
+	public void close() {
+		final MappedByteBuffer mappedMemory = memory;
+		
+		if(mappedMemory != null) {
+			memory = null;
+			UnsafeMemoryHelper.unmapMemory(mappedMemory);
+		}
+	}
+	
+	/**
+	 * Write the time index into the output stream. The timestamps of tuple 
+	 * number i are stored at position i of the arrays. 
+	 * 
+	 * @param outputStream
+	 * @param versionTimestamps
+	 * @param insertedTimestamps
+	 * @param entries
+	 * @throws IOException
+	 */
+	public static void writeToStream(final OutputStream outputStream, final long[] versionTimestamps, 
+			final long[] insertedTimestamps, final int entries) throws IOException {
+		
+		outputStream.write(SSTableConst.MAGIC_BYTES_TIME_INDEX);
+		outputStream.write(DataEncoderHelper.intToByteBuffer(entries).array());
+		
+		final ByteBuffer entryBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+		entryBuffer.order(Const.APPLICATION_BYTE_ORDER);
+		
+		for(final long[] timestamps : new long[][] {versionTimestamps, insertedTimestamps}) {
+			final int[] tupleNumbers = sortByTimestamp(timestamps, entries);
+			
+			for(final int tupleNumber : tupleNumbers) {
+				entryBuffer.clear();
+				entryBuffer.putLong(timestamps[tupleNumber]);
+				entryBuffer.putInt(tupleNumber);
+				outputStream.write(entryBuffer.array());
+			}
+		}
+	}
+	
+	/**
+	 * Get the tuple numbers sorted by their timestamps (stable merge sort)
+	 * @param timestamps
+	 * @param entries
+	 * @return
+	 */
+	protected static int[] sortByTimestamp(final long[] timestamps, final int entries) {
+		int[] source = new int[entries];
+		int[] destination = new int[entries];
+		
+		for(int i = 0; i < entries; i++) {
+			source[i] = i;
+		}
+		
+		for(int width = 1; width < entries; width = width * 2) {
+			for(int begin = 0; begin < entries; begin = begin + 2 * width) {
+				final int middle = Math.min(begin + width, entries);
+				final int end = Math.min(begin + 2 * width, entries);
+				
+				int left = begin;
+				int right = middle;
+				
+				for(int pos = begin; pos < end; pos++) {
+					if(left < middle && (right >= end || timestamps[source[left]] <= timestamps[source[right]])) {
+						destination[pos] = source[left++];
+					} else {
+						destination[pos] = source[right++];
+					}
+				}
+			}
+			
+			final int[] swap = source;
+			source = destination;
+			destination = swap;
+		}
+		
+		return source;
+	}
+	
+	/**
+	 * Map the time index file into memory
+	 * @param file
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public static SSTableTimeIndex readFromFile(final File file) throws StorageManagerException {
+		
+		try (   final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				final FileChannel fileChannel = randomAccessFile.getChannel();
+			) {
+			
+			final long size = fileChannel.size();
+			
+			if(size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				throw new StorageManagerException("Invalid size of time index file " + file + ": " + size);
+			}
+			
+			final MappedByteBuffer mappedMemory = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			mappedMemory.order(Const.APPLICATION_BYTE_ORDER);
+			
+			final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_TIME_INDEX.length];
+			mappedMemory.get(magicBytes);
+			
+			if(! Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_TIME_INDEX)) {
+				UnsafeMemoryHelper.unmapMemory(mappedMemory);
+				throw new StorageManagerException("File " + file + " does not contain the magic bytes");
+			}
+			
+			final int entries = mappedMemory.getInt(SSTableConst.MAGIC_BYTES_TIME_INDEX.length);
+			
+			if(entries < 0 || HEADER_SIZE + 2L * entries * ENTRY_SIZE != size) {
+				UnsafeMemoryHelper.unmapMemory(mappedMemory);
+				throw new StorageManagerException("Invalid time index header in file " + file);
+			}
+			
+			return new SSTableTimeIndex(mappedMemory, entries);
+		} catch (IOException e) {
+			throw new StorageManagerException("Unable to read time index from " + file, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SSTableTimeIndex [entries=" + entries + "]";
+	}
+	
+}
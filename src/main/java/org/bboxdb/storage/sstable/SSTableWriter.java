@@ -25,13 +25,21 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
+import org.bboxdb.misc.BBoxDBConfigurationManager;
 import org.bboxdb.storage.BloomFilterBuilder;
 import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableMetaData;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.block.BlockCompressionCodec;
+import org.bboxdb.storage.sstable.block.BlockCompressionCodecFactory;
+import org.bboxdb.storage.sstable.block.SSTableBlockBuilder;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
@@ -84,6 +92,16 @@ public class SSTableWriter implements AutoCloseable {
 	 */
 	protected File sstableBloomFilterFile;
 	
+	/**
+	 * The key sample file
+	 */
+	protected File sstableKeySampleFile;
+	
+	/**
+	 * The time index file
+	 */
+	protected File sstableTimeIndexFile;
+	
 	/**
 	 * The spatial index file
 	 */
@@ -109,6 +127,12 @@ public class SSTableWriter implements AutoCloseable {
 	 */
 	protected final SpatialIndexBuilder spatialIndex;
 	
+	/**
+	 * The entries for the spatial index, the index is bulk 
+	 * loaded when the table is closed
+	 */
+	protected final List<SpatialIndexEntry> spatialIndexEntries;
+	
 	/**
 	 * The error flag
 	 */
@@ -119,6 +143,36 @@ public class SSTableWriter implements AutoCloseable {
 	 */
 	protected int writtenTuples;
 	
+	/**
+	 * The buffer to copy encoded tuples from off heap memory
+	 */
+	protected final byte[] copyBuffer = new byte[8192];
+	
+	/**
+	 * The block builder, null if the table is written in the row format
+	 */
+	protected final SSTableBlockBuilder blockBuilder;
+	
+	/**
+	 * The amount of tuples in the already written blocks
+	 */
+	protected int tuplesInWrittenBlocks;
+	
+	/**
+	 * Every n-th key of the table (row format only)
+	 */
+	protected final List<String> keySamples;
+	
+	/**
+	 * The version timestamps of the written tuples (indexed by tuple number)
+	 */
+	protected long[] versionTimestamps;
+	
+	/**
+	 * The inserted timestamps of the written tuples (indexed by tuple number)
+	 */
+	protected long[] insertedTimestamps;
+	
 	/**
 	 * The Logger
 	 */
@@ -127,22 +181,61 @@ public class SSTableWriter implements AutoCloseable {
 	public SSTableWriter(final String directory, final SSTableName name, 
 			final int tablenumber, final long estimatedNumberOfTuples) {
 		
+		this(directory, name, tablenumber, estimatedNumberOfTuples, 
+				BlockCompressionCodecFactory.getInstance());
+	}
+	
+	/**
+	 * Create a new SSTable writer
+	 * 
+	 * @param directory
+	 * @param name
+	 * @param tablenumber
+	 * @param estimatedNumberOfTuples
+	 * @param blockCodec - the codec for the block format, null for the row format
+	 */
+	public SSTableWriter(final String directory, final SSTableName name, 
+			final int tablenumber, final long estimatedNumberOfTuples, 
+			final BlockCompressionCodec blockCodec) {
+		
 		this.directory = directory;
 		this.name = name;
 		this.tablenumber = tablenumber;		
 		this.metadataBuilder = new SSTableMetadataBuilder();
 		this.exceptionDuringWrite = false;
 		writtenTuples = 0;
+		tuplesInWrittenBlocks = 0;
+		
+		// Block format
+		if(blockCodec == null) {
+			this.blockBuilder = null;
+		} else {
+			final int blockSize = BBoxDBConfigurationManager.getConfiguration().getStorageSSTableBlockSize();
+			this.blockBuilder = new SSTableBlockBuilder(blockCodec, blockSize);
+		}
 		
 		// Bloom Filter
 		final String sstableBloomFilterFilename = SSTableHelper.getSSTableBloomFilterFilename(directory, name, tablenumber);
 		this.sstableBloomFilterFile = new File(sstableBloomFilterFilename);
 		this.bloomFilter = BloomFilterBuilder.buildBloomFilter(estimatedNumberOfTuples);
 		
+		// Key samples
+		final String keySampleFilename = SSTableHelper.getSSTableKeySampleFilename(directory, name, tablenumber);
+		this.sstableKeySampleFile = new File(keySampleFilename);
+		this.keySamples = new ArrayList<>();
+		
+		// Time index
+		final String timeIndexFilename = SSTableHelper.getSSTableTimeIndexFilename(directory, name, tablenumber);
+		this.sstableTimeIndexFile = new File(timeIndexFilename);
+		final int timestampCapacity = (int) Math.max(16, Math.min(estimatedNumberOfTuples, 1 << 20));
+		this.versionTimestamps = new long[timestampCapacity];
+		this.insertedTimestamps = new long[timestampCapacity];
+		
 		// Spatial index
 		final String spatialIndexFilename =  SSTableHelper.getSSTableSpatialIndexFilename(directory, name, tablenumber);
 		this.spatialIndexFile = new File(spatialIndexFilename);
 		this.spatialIndex = SpatialIndexBuilderFactory.getInstance();
+		this.spatialIndexEntries = new ArrayList<>();
 		
 		// Metadata
 		final String ssTableMetadataFilename = SSTableHelper.getSSTableMetadataFilename(directory, name, tablenumber);
@@ -182,14 +275,32 @@ public class SSTableWriter implements AutoCloseable {
 			throw new StorageManagerException("Bloom filter file already exists: " + sstableBloomFilterFile);
 		}
 		
+		if(sstableKeySampleFile.exists()) {
+			throw new StorageManagerException("Key sample file already exists: " + sstableKeySampleFile);
+		}
+		
+		if(sstableTimeIndexFile.exists()) {
+			throw new StorageManagerException("Time index file already exists: " + sstableTimeIndexFile);
+		}
+		
 		try {
 			logger.info("Writing new SSTable for relation: {} file: {}", name.getFullname(), sstableOutputFileName);
 			final BufferedOutputStream sstableFileOutputStream = new BufferedOutputStream(new FileOutputStream(sstableFile));
 			sstableOutputStream = new CountingOutputStream(sstableFileOutputStream);
-			sstableOutputStream.write(SSTableConst.MAGIC_BYTES);
-			
 			sstableIndexOutputStream = new BufferedOutputStream(new FileOutputStream(sstableIndexFile));
-			sstableIndexOutputStream.write(SSTableConst.MAGIC_BYTES_INDEX);
+			
+			if(blockBuilder == null) {
+				sstableOutputStream.write(SSTableConst.MAGIC_BYTES);
+				sstableIndexOutputStream.write(SSTableConst.MAGIC_BYTES_INDEX_LONG);
+			} else {
+				final byte[] versionBytes = DataEncoderHelper.shortToByteBuffer(
+						SSTableConst.SST_BLOCK_VERSION).array();
+				
+				sstableOutputStream.write(SSTableConst.MAGIC_BYTES_BLOCK);
+				sstableOutputStream.write(versionBytes);
+				sstableIndexOutputStream.write(SSTableConst.MAGIC_BYTES_BLOCK_INDEX);
+				sstableIndexOutputStream.write(versionBytes);
+			}
 		} catch (FileNotFoundException e) {
 			exceptionDuringWrite = true;
 			throw new StorageManagerException("Unable to open output file", e);
@@ -208,6 +319,7 @@ public class SSTableWriter implements AutoCloseable {
 					name.getFullname(), tablenumber, sstableFile.getName());
 
 			if(sstableOutputStream != null) {
+				writePendingBlock();
 				sstableOutputStream.close();
 				sstableOutputStream = null;
 			}
@@ -219,6 +331,8 @@ public class SSTableWriter implements AutoCloseable {
 			
 			writeSpatialIndex();
 			writeBloomFilter();
+			writeKeySamples();
+			writeTimeIndex();
 			writeMetadata();
 			
 		} catch (IOException e) {
@@ -259,6 +373,14 @@ public class SSTableWriter implements AutoCloseable {
 			spatialIndexFile.delete();
 		}
 		
+		if(sstableKeySampleFile != null && sstableKeySampleFile.exists()) {
+			sstableKeySampleFile.delete();
+		}
+		
+		if(sstableTimeIndexFile != null && sstableTimeIndexFile.exists()) {
+			sstableTimeIndexFile.delete();
+		}
+		
 		if(metadatafile != null && metadatafile.exists()) {
 			metadatafile.delete();
 		}
@@ -270,6 +392,9 @@ public class SSTableWriter implements AutoCloseable {
 	 * @throws StorageManagerException 
 	 */
 	protected void writeSpatialIndex() throws IOException, StorageManagerException {
+		spatialIndex.bulkInsert(spatialIndexEntries);
+		spatialIndexEntries.clear();
+		
 		try (   
 				final RandomAccessFile file = new RandomAccessFile(spatialIndexFile, "rw" );
 			) {
@@ -293,6 +418,67 @@ public class SSTableWriter implements AutoCloseable {
 		}
 	}
 	
+	/**
+	 * Write the key samples into the key sample file. Tables in the block 
+	 * format contain the first key of each block in the block index. 
+	 * @throws IOException
+	 */
+	protected void writeKeySamples() throws IOException {
+		
+		if(blockBuilder != null) {
+			return;
+		}
+		
+		try (   final FileOutputStream fos = new FileOutputStream(sstableKeySampleFile);
+				final OutputStream outputStream = new BufferedOutputStream(fos);
+			) {
+			
+			SSTableKeySampleIndex.writeToStream(outputStream, SSTableConst.KEY_SAMPLE_INTERVAL, keySamples);
+			outputStream.close();
+		}
+	}
+	
+	/**
+	 * Add the key of the next tuple to the key samples, if the tuple is 
+	 * the n-th tuple of the table
+	 * @param key
+	 */
+	protected void addKeySample(final String key) {
+		if(writtenTuples % SSTableConst.KEY_SAMPLE_INTERVAL == 0) {
+			keySamples.add(key);
+		}
+	}
+	
+	/**
+	 * Write the timestamps of all tuples into the time index file
+	 * @throws IOException
+	 */
+	protected void writeTimeIndex() throws IOException {
+		
+		try (   final FileOutputStream fos = new FileOutputStream(sstableTimeIndexFile);
+				final OutputStream outputStream = new BufferedOutputStream(fos);
+			) {
+			
+			SSTableTimeIndex.writeToStream(outputStream, versionTimestamps, insertedTimestamps, writtenTuples);
+			outputStream.close();
+		}
+	}
+	
+	/**
+	 * Store the timestamps of the next tuple for the time index
+	 * @param versionTimestamp
+	 * @param insertedTimestamp
+	 */
+	protected void addTimestamps(final long versionTimestamp, final long insertedTimestamp) {
+		if(writtenTuples == versionTimestamps.length) {
+			versionTimestamps = Arrays.copyOf(versionTimestamps, writtenTuples * 2);
+			insertedTimestamps = Arrays.copyOf(insertedTimestamps, writtenTuples * 2);
+		}
+		
+		versionTimestamps[writtenTuples] = versionTimestamp;
+		insertedTimestamps[writtenTuples] = insertedTimestamp;
+	}
+	
 	/**
 	 * Write the meta data to yaml info file
 	 * @throws IOException
@@ -308,6 +494,15 @@ public class SSTableWriter implements AutoCloseable {
 	 * @throws StorageManagerException
 	 */
 	public void addData(final List<Tuple> tuples) throws StorageManagerException {
+		addData(tuples.iterator());
+	}
+	
+	/**
+	 * Add the sorted tuples of the iterator to the sstable
+	 * @param tuples
+	 * @throws StorageManagerException
+	 */
+	public void addData(final Iterator<Tuple> tuples) throws StorageManagerException {
 		if(sstableOutputStream == null) {
 			final String error = "Trying to add a memtable to a non ready SSTable writer";
 			logger.error(error);
@@ -315,8 +510,8 @@ public class SSTableWriter implements AutoCloseable {
 		}
 
 		try {
-			for(final Tuple tuple : tuples) {
-				addNextTuple(tuple);
+			while(tuples.hasNext()) {
+				addNextTuple(tuples.next());
 			}
 		} catch(StorageManagerException e) {
 			exceptionDuringWrite = true;
@@ -332,13 +527,21 @@ public class SSTableWriter implements AutoCloseable {
 	 */
 	public void addNextTuple(final Tuple tuple) throws StorageManagerException {
 		try {
-			// Add Tuple to the index
-			final long tuplePosition = sstableOutputStream.getCount();
-			writeIndexEntry((int) tuplePosition);
+			if(blockBuilder == null) {
+				// Add Tuple to the index
+				final long tuplePosition = sstableOutputStream.getCount();
+				writeIndexEntry(tuplePosition);
+				addKeySample(tuple.getKey());
+				
+				// Add Tuple to the SSTable file
+				TupleHelper.writeTupleToStream(tuple, sstableOutputStream);
+			} else {
+				final ByteBuffer encodedTuple = ByteBuffer.wrap(TupleHelper.tupleToBytes(tuple));
+				addTupleToBlock(tuple.getKey().getBytes(), encodedTuple);
+			}
 			
-			// Add Tuple to the SSTable file
-			TupleHelper.writeTupleToStream(tuple, sstableOutputStream);
 			metadataBuilder.addTuple(tuple);
+			addTimestamps(tuple.getVersionTimestamp(), tuple.getReceivedTimestamp());
 			
 			// Add tuple to the bloom filter
 			bloomFilter.put(tuple.getKey());
@@ -346,7 +549,7 @@ public class SSTableWriter implements AutoCloseable {
 			// Add tuple to the spatial index
 			final SpatialIndexEntry sIndexentry 
 				= new SpatialIndexEntry(tuple.getBoundingBox(), writtenTuples);
-			spatialIndex.insert(sIndexentry);
+			spatialIndexEntries.add(sIndexentry);
 
 			writtenTuples++;
 		} catch (IOException e) {
@@ -355,6 +558,172 @@ public class SSTableWriter implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Add the encoded tuples of the iterator to the sstable. The 
+	 * tuples have to be sorted by key.
+	 * 
+	 * @param encodedTuples
+	 * @throws StorageManagerException
+	 */
+	public void addEncodedData(final Iterator<ByteBuffer> encodedTuples) throws StorageManagerException {
+		if(sstableOutputStream == null) {
+			final String error = "Trying to add a memtable to a non ready SSTable writer";
+			logger.error(error);
+			throw new StorageManagerException(error);
+		}
+
+		try {
+			while(encodedTuples.hasNext()) {
+				addNextEncodedTuple(encodedTuples.next());
+			}
+		} catch(StorageManagerException e) {
+			exceptionDuringWrite = true;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Add the next encoded tuple into the result sstable. The bytes are copied 
+	 * without decoding the tuple, only the key and the bounding box are read 
+	 * for the indices. 
+	 * 
+	 * @param encodedTuple - the tuple between position and limit
+	 * @throws StorageManagerException
+	 */
+	public void addNextEncodedTuple(final ByteBuffer encodedTuple) throws StorageManagerException {
+		try {
+			final int offset = encodedTuple.position();
+			final short keyLength = encodedTuple.getShort(offset);
+			final int boxLength = encodedTuple.getInt(offset + DataEncoderHelper.SHORT_BYTES);
+			final int dataLength = encodedTuple.getInt(offset + DataEncoderHelper.SHORT_BYTES 
+					+ DataEncoderHelper.INT_BYTES);
+			final long versionTimestamp = encodedTuple.getLong(offset + DataEncoderHelper.SHORT_BYTES 
+					+ 2 * DataEncoderHelper.INT_BYTES);
+			final long receivedTimestamp = encodedTuple.getLong(offset + DataEncoderHelper.SHORT_BYTES 
+					+ 2 * DataEncoderHelper.INT_BYTES + DataEncoderHelper.LONG_BYTES);
+			
+			final ByteBuffer readBuffer = encodedTuple.duplicate();
+			readBuffer.position(offset + TupleHelper.TUPLE_HEADER_SIZE);
+			
+			final byte[] keyBytes = new byte[keyLength];
+			readBuffer.get(keyBytes);
+			
+			final byte[] boxBytes = new byte[boxLength];
+			readBuffer.get(boxBytes);
+			
+			final BoundingBox boundingBox = decodeBoundingBox(readBuffer, boxBytes, dataLength);
+			final String key = new String(keyBytes);
+			
+			final ByteBuffer tupleBuffer = encodedTuple.duplicate();
+			tupleBuffer.position(offset);
+			tupleBuffer.limit(offset + TupleHelper.TUPLE_HEADER_SIZE + keyLength + boxLength + dataLength);
+
+			if(blockBuilder == null) {
+				// Add Tuple to the index
+				final long tuplePosition = sstableOutputStream.getCount();
+				writeIndexEntry(tuplePosition);
+				addKeySample(key);
+				
+				// Add Tuple to the SSTable file
+				writeBufferToStream(tupleBuffer);
+			} else {
+				addTupleToBlock(keyBytes, tupleBuffer);
+			}
+			
+			metadataBuilder.addTuple(boundingBox, versionTimestamp, receivedTimestamp);
+			addTimestamps(versionTimestamp, receivedTimestamp);
+			
+			// Add tuple to the bloom filter
+			bloomFilter.put(key);
+			
+			// Add tuple to the spatial index
+			final SpatialIndexEntry sIndexentry = new SpatialIndexEntry(boundingBox, writtenTuples);
+			spatialIndexEntries.add(sIndexentry);
+
+			writtenTuples++;
+		} catch (IOException e) {
+			exceptionDuringWrite = true;
+			throw new StorageManagerException("Unable to write tuple to SSTable", e);
+		}
+	}
+
+	/**
+	 * Decode the bounding box of an encoded tuple. Returns null for 
+	 * deleted tuples. 
+	 * 
+	 * @param dataBuffer - a buffer positioned at the data of the tuple
+	 * @param boxBytes
+	 * @param dataLength
+	 * @return
+	 */
+	protected BoundingBox decodeBoundingBox(final ByteBuffer dataBuffer, final byte[] boxBytes, 
+			final int dataLength) {
+		
+		if(dataLength == SSTableConst.DELETED_MARKER.length) {
+			final byte[] dataBytes = new byte[dataLength];
+			dataBuffer.get(dataBytes);
+			
+			if(TupleHelper.isDeletedTuple(boxBytes, dataBytes)) {
+				return null;
+			}
+		}
+		
+		return BoundingBox.fromByteArray(boxBytes);
+	}
+	
+	/**
+	 * Copy the remaining bytes of the buffer into the sstable
+	 * @param buffer
+	 * @throws IOException
+	 */
+	protected void writeBufferToStream(final ByteBuffer buffer) throws IOException {
+		
+		if(buffer.hasArray()) {
+			sstableOutputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), 
+					buffer.remaining());
+			return;
+		}
+		
+		while(buffer.hasRemaining()) {
+			final int chunkSize = Math.min(copyBuffer.length, buffer.remaining());
+			buffer.get(copyBuffer, 0, chunkSize);
+			sstableOutputStream.write(copyBuffer, 0, chunkSize);
+		}
+	}
+
+	/**
+	 * Add the encoded tuple to the current block and write the block 
+	 * if it is full
+	 * 
+	 * @param keyBytes
+	 * @param encodedTuple
+	 * @throws IOException
+	 */
+	protected void addTupleToBlock(final byte[] keyBytes, final ByteBuffer encodedTuple) throws IOException {
+		blockBuilder.addTuple(keyBytes, encodedTuple);
+		
+		if(blockBuilder.isFull()) {
+			writePendingBlock();
+		}
+	}
+	
+	/**
+	 * Write the pending block (if any) into the sstable and the block index
+	 * @throws IOException
+	 */
+	protected void writePendingBlock() throws IOException {
+		if(blockBuilder == null || blockBuilder.isEmpty()) {
+			return;
+		}
+		
+		final int tuplesInBlock = blockBuilder.getTuplesInBlock();
+		
+		blockBuilder.writeBlock(sstableOutputStream, sstableIndexOutputStream, 
+				sstableOutputStream.getCount(), tuplesInWrittenBlocks);
+		
+		tuplesInWrittenBlocks = tuplesInWrittenBlocks + tuplesInBlock;
+	}
+
 	/** 
 	 * Append an entry to the index file.
 	 * 
@@ -362,15 +731,14 @@ public class SSTableWriter implements AutoCloseable {
 	 * 
 	 * -------------------------------------------------
 	 * | Tuple-Position | Tuple-Position |  .........  |
- 	 * |     4 Byte     |     4 Byte     |  .........  |
+ 	 * |     8 Byte     |     8 Byte     |  .........  |
 	 * -------------------------------------------------
 	 * 
-	 * @param keyLengthBytes
-	 * @param keyPosition
+	 * @param tuplePosition
 	 * @throws IOException
 	 */
-	protected void writeIndexEntry(int tuplePosition) throws IOException {
-		final ByteBuffer tuplePositionBytes = DataEncoderHelper.intToByteBuffer(tuplePosition);
+	protected void writeIndexEntry(final long tuplePosition) throws IOException {
+		final ByteBuffer tuplePositionBytes = DataEncoderHelper.longToByteBuffer(tuplePosition);
 		sstableIndexOutputStream.write(tuplePositionBytes.array());
 	}
 
@@ -403,6 +771,11 @@ public class SSTableWriter implements AutoCloseable {
 	 * @return
 	 */
 	public long getWrittenBytes() {
+		
+		if(blockBuilder != null) {
+			return sstableOutputStream.getCount() + blockBuilder.getPendingBytes();
+		}
+		
 		return sstableOutputStream.getCount();
 	}
 	
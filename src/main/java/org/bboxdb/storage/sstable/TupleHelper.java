@@ -25,6 +25,7 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
 
+import org.bboxdb.misc.Const;
 import org.bboxdb.storage.ReadOnlyTupleStorage;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.DeletedTuple;
@@ -51,6 +52,24 @@ public class TupleHelper {
 		t.add(newestTuple);
 	};
 
+	/**
+	 * The size of the header of an encoded tuple
+	 */
+	public final static int TUPLE_HEADER_SIZE = DataEncoderHelper.SHORT_BYTES 
+			+ 2 * DataEncoderHelper.INT_BYTES + 2 * DataEncoderHelper.LONG_BYTES;
+	
+	/**
+	 * The position of the version timestamp in the header of an encoded tuple
+	 */
+	public final static int VERSION_TIMESTAMP_OFFSET = DataEncoderHelper.SHORT_BYTES 
+			+ 2 * DataEncoderHelper.INT_BYTES;
+	
+	/**
+	 * The position of the received timestamp in the header of an encoded tuple
+	 */
+	public final static int RECEIVED_TIMESTAMP_OFFSET = VERSION_TIMESTAMP_OFFSET 
+			+ DataEncoderHelper.LONG_BYTES;
+
 	/**
 	 * Compare the tuples by key
 	 */
@@ -136,6 +155,15 @@ public class TupleHelper {
 	 * @throws IOException
 	 */
 	public static void writeTupleToStream(final Tuple tuple, final OutputStream outputStream) throws IOException {
+		
+		// The tuple is still in the storage format
+		final byte[] encodedTuple = tuple.getEncodedTuple();
+		
+		if(encodedTuple != null) {
+			outputStream.write(encodedTuple);
+			return;
+		}
+		
 		final byte[] keyBytes = tuple.getKey().getBytes();
 		final ByteBuffer keyLengthBytes = DataEncoderHelper.shortToByteBuffer((short) keyBytes.length);
 
@@ -171,37 +199,127 @@ public class TupleHelper {
 	}
 	
 	/**
-	 * Decode the tuple at the current reader position
+	 * Decode the tuple at the current reader position. The encoded tuple is copied 
+	 * and only the key is decoded, the bounding box and the data are decoded 
+	 * on the first access. 
 	 * 
 	 * @param reader
 	 * @return
 	 * @throws IOException
 	 */
 	public static Tuple decodeTuple(final ByteBuffer byteBuffer) throws IOException {
-		final short keyLength = byteBuffer.getShort();
-		final int boxLength = byteBuffer.getInt();
-		final int dataLength = byteBuffer.getInt();
-		final long versionTimestamp = byteBuffer.getLong();
-		final long receivedTimestamp = byteBuffer.getLong();
-
-		final byte[] keyBytes = new byte[keyLength];
-		byteBuffer.get(keyBytes, 0, keyBytes.length);
+		final int offset = byteBuffer.position();
 		
-		final byte[] boxBytes = new byte[boxLength];
-		byteBuffer.get(boxBytes, 0, boxBytes.length);
+		if(byteBuffer.remaining() < TUPLE_HEADER_SIZE 
+				|| byteBuffer.remaining() < getEncodedTupleLength(byteBuffer, offset)) {
+			throw new IOException("Buffer does not contain the complete tuple");
+		}
 		
-		final byte[] dataBytes = new byte[dataLength];
-		byteBuffer.get(dataBytes, 0, dataBytes.length);				
+		final short keyLength = byteBuffer.getShort(offset);
+		final long versionTimestamp = byteBuffer.getLong(offset + VERSION_TIMESTAMP_OFFSET);
+		final long receivedTimestamp = byteBuffer.getLong(offset + RECEIVED_TIMESTAMP_OFFSET);
+		final byte[] encodedTuple = new byte[getEncodedTupleLength(byteBuffer, offset)];
+		final boolean deletedTuple = isDeletedTuple(byteBuffer, offset);
+		byteBuffer.get(encodedTuple, 0, encodedTuple.length);
 		
-		final String keyString = new String(keyBytes);
+		final String keyString = new String(encodedTuple, TUPLE_HEADER_SIZE, keyLength);
 		
-		if(isDeletedTuple(boxBytes, dataBytes)) {
+		if(deletedTuple) {
 			return new DeletedTuple(keyString, versionTimestamp);
 		}
 		
-		final BoundingBox boundingBox = BoundingBox.fromByteArray(boxBytes);
+		return new Tuple(keyString, encodedTuple, versionTimestamp, receivedTimestamp);
+	}
+	
+	/**
+	 * Wrap the encoded tuple into a byte buffer
+	 * @param encodedTuple
+	 * @return
+	 */
+	protected static ByteBuffer wrapEncodedTuple(final byte[] encodedTuple) {
+		return ByteBuffer.wrap(encodedTuple).order(Const.APPLICATION_BYTE_ORDER);
+	}
+	
+	/**
+	 * Get the length of the key of the encoded tuple
+	 * @param encodedTuple
+	 * @return
+	 */
+	public static int getEncodedKeyLength(final byte[] encodedTuple) {
+		return wrapEncodedTuple(encodedTuple).getShort(0);
+	}
+	
+	/**
+	 * Get the length of the bounding box of the encoded tuple
+	 * @param encodedTuple
+	 * @return
+	 */
+	public static int getEncodedBoundingBoxLength(final byte[] encodedTuple) {
+		return wrapEncodedTuple(encodedTuple).getInt(DataEncoderHelper.SHORT_BYTES);
+	}
+	
+	/**
+	 * Get the length of the data of the encoded tuple
+	 * @param encodedTuple
+	 * @return
+	 */
+	public static int getEncodedDataLength(final byte[] encodedTuple) {
+		return wrapEncodedTuple(encodedTuple).getInt(DataEncoderHelper.SHORT_BYTES 
+				+ DataEncoderHelper.INT_BYTES);
+	}
+	
+	/**
+	 * Decode the bounding box of the encoded tuple, without copying the bytes
+	 * @param encodedTuple
+	 * @return
+	 */
+	public static BoundingBox decodeBoundingBox(final byte[] encodedTuple) {
+		final int boxPosition = TUPLE_HEADER_SIZE + getEncodedKeyLength(encodedTuple);
 		
-		return new Tuple(keyString, boundingBox, dataBytes, versionTimestamp, receivedTimestamp);
+		return BoundingBox.fromByteArray(encodedTuple, boxPosition, 
+				getEncodedBoundingBoxLength(encodedTuple));
+	}
+	
+	/**
+	 * Copy the bounding box bytes of the encoded tuple
+	 * @param encodedTuple
+	 * @return
+	 */
+	public static byte[] getEncodedBoundingBoxBytes(final byte[] encodedTuple) {
+		final int boxPosition = TUPLE_HEADER_SIZE + getEncodedKeyLength(encodedTuple);
+		
+		return Arrays.copyOfRange(encodedTuple, boxPosition, 
+				boxPosition + getEncodedBoundingBoxLength(encodedTuple));
+	}
+	
+	/**
+	 * Copy the data bytes of the encoded tuple
+	 * @param encodedTuple
+	 * @return
+	 */
+	public static byte[] getEncodedDataBytes(final byte[] encodedTuple) {
+		final int dataPosition = TUPLE_HEADER_SIZE + getEncodedKeyLength(encodedTuple) 
+				+ getEncodedBoundingBoxLength(encodedTuple);
+		
+		return Arrays.copyOfRange(encodedTuple, dataPosition, 
+				dataPosition + getEncodedDataLength(encodedTuple));
+	}
+	
+	/**
+	 * Get the total length of the encoded tuple that starts at the 
+	 * given position. The position of the buffer is not changed.
+	 * 
+	 * @param byteBuffer
+	 * @param offset
+	 * @return
+	 */
+	public static int getEncodedTupleLength(final ByteBuffer byteBuffer, final int offset) {
+		final short keyLength = byteBuffer.getShort(offset);
+		final int boxLength = byteBuffer.getInt(offset + DataEncoderHelper.SHORT_BYTES);
+		final int dataLength = byteBuffer.getInt(offset + DataEncoderHelper.SHORT_BYTES 
+				+ DataEncoderHelper.INT_BYTES);
+		
+		return TUPLE_HEADER_SIZE + keyLength + boxLength + dataLength;
 	}
 	
 	/**
@@ -251,6 +369,42 @@ public class TupleHelper {
 		return new Tuple(keyString, boundingBox, dataBytes, versionTimestamp, receivedTimestamp);
 	}
 	
+	/**
+	 * Is the encoded tuple, that starts at the given offset, a deleted tuple? 
+	 * The position of the buffer is not changed.
+	 * 
+	 * @param byteBuffer
+	 * @param offset
+	 * @return
+	 */
+	public static boolean isDeletedTuple(final ByteBuffer byteBuffer, final int offset) {
+		final short keyLength = byteBuffer.getShort(offset);
+		final int boxLength = byteBuffer.getInt(offset + DataEncoderHelper.SHORT_BYTES);
+		final int dataLength = byteBuffer.getInt(offset + DataEncoderHelper.SHORT_BYTES 
+				+ DataEncoderHelper.INT_BYTES);
+		
+		final int markerLength = SSTableConst.DELETED_MARKER.length;
+		
+		if(boxLength != markerLength || dataLength != markerLength) {
+			return false;
+		}
+		
+		final int boxPosition = offset + TUPLE_HEADER_SIZE + keyLength;
+		final int dataPosition = boxPosition + boxLength;
+		
+		for(int i = 0; i < markerLength; i++) {
+			if(byteBuffer.get(boxPosition + i) != SSTableConst.DELETED_MARKER[i]) {
+				return false;
+			}
+			
+			if(byteBuffer.get(dataPosition + i) != SSTableConst.DELETED_MARKER[i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Is this a deleted tuple?
 	 * @param boxBytes
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.block;
+
+import java.io.IOException;
+
+public interface BlockCompressionCodec {
+	
+	/**
+	 * Get the id of the codec. The id is stored in the header of 
+	 * every block and used to find the codec for decompression.
+	 * 
+	 * @return
+	 */
+	public byte getCodecId();
+	
+	/**
+	 * Compress the first length bytes of the data
+	 * 
+	 * @param data
+	 * @param length
+	 * @return the compressed bytes
+	 * @throws IOException
+	 */
+	public byte[] compress(final byte[] data, final int length) throws IOException;
+	
+	/**
+	 * Decompress the first length bytes of the compressed data into 
+	 * the target array. The target has the size of the uncompressed data.
+	 * 
+	 * @param compressedData
+	 * @param length
+	 * @param target
+	 * @throws IOException
+	 */
+	public void decompress(final byte[] compressedData, final int length, final byte[] target) 
+			throws IOException;
+
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.block;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bboxdb.misc.BBoxDBConfiguration;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.StorageManagerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BlockCompressionCodecFactory {
+	
+	/**
+	 * The value to disable the block format
+	 */
+	public final static String CODEC_NONE = "none";
+	
+	/**
+	 * The known codecs, accessed by id
+	 */
+	protected final static Map<Byte, BlockCompressionCodec> codecs = new ConcurrentHashMap<>();
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BlockCompressionCodecFactory.class);
+	
+	static {
+		registerCodec(new NoCompressionCodec());
+		registerCodec(new DeflateCompressionCodec());
+	}
+
+	/**
+	 * Get an instance of the configured codec
+	 * @return the codec or null, if the block format is disabled
+	 */
+	public static BlockCompressionCodec getInstance() {
+
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		final String codecClass = configuration.getStorageSSTableBlockCodec();
+		
+		if(codecClass == null || CODEC_NONE.equals(codecClass)) {
+			return null;
+		}
+		
+		// Instance the classname
+		try {
+			final Class<?> classObject = Class.forName(codecClass);
+			
+			if(classObject == null) {
+				throw new ClassNotFoundException("Unable to locate class: " + codecClass);
+			}
+			
+			final Object codecObject = classObject.newInstance();
+			
+			if(! (codecObject instanceof BlockCompressionCodec)) {
+				throw new ClassNotFoundException(codecClass + " is not a instance of BlockCompressionCodec");
+			}
+			
+			final BlockCompressionCodec codec = (BlockCompressionCodec) codecObject;
+			registerCodec(codec);
+			
+			return codec;
+		} catch (Exception e) {
+			logger.warn("Unable to instance class" + codecClass, e);
+			throw new RuntimeException(e);
+		} 
+	}
+	
+	/**
+	 * Register a codec, the codec can be used to read blocks afterwards
+	 * @param codec
+	 */
+	public static void registerCodec(final BlockCompressionCodec codec) {
+		codecs.putIfAbsent(codec.getCodecId(), codec);
+	}
+	
+	/**
+	 * Get the codec for the given id
+	 * @param codecId
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public static BlockCompressionCodec getCodecForId(final byte codecId) throws StorageManagerException {
+		final BlockCompressionCodec codec = codecs.get(codecId);
+		
+		if(codec == null) {
+			throw new StorageManagerException("Unknown block compression codec: " + codecId);
+		}
+		
+		return codec;
+	}
+	
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.block;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class DeflateCompressionCodec implements BlockCompressionCodec {
+
+	/**
+	 * The id of the codec
+	 */
+	public final static byte CODEC_ID = 1;
+	
+	/**
+	 * The compression level. Blocks are compressed during memtable flushes
+	 * and compactions, so the fastest level is used.
+	 */
+	protected final static int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+	@Override
+	public byte getCodecId() {
+		return CODEC_ID;
+	}
+
+	@Override
+	public byte[] compress(final byte[] data, final int length) {
+		final Deflater deflater = new Deflater(COMPRESSION_LEVEL);
+		
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length / 2 + 64);
+			final byte[] buffer = new byte[8192];
+			
+			while(! deflater.finished()) {
+				final int compressedBytes = deflater.deflate(buffer);
+				outputStream.write(buffer, 0, compressedBytes);
+			}
+			
+			return outputStream.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@Override
+	public void decompress(final byte[] compressedData, final int length, final byte[] target) 
+			throws IOException {
+		
+		final Inflater inflater = new Inflater();
+		
+		try {
+			inflater.setInput(compressedData, 0, length);
+			
+			int uncompressedBytes = 0;
+			
+			while(uncompressedBytes < target.length && ! inflater.finished()) {
+				final int readBytes = inflater.inflate(target, uncompressedBytes, 
+						target.length - uncompressedBytes);
+				
+				if(readBytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				
+				uncompressedBytes += readBytes;
+			}
+			
+			if(uncompressedBytes != target.length) {
+				throw new IOException("Uncompressed block has wrong length " + uncompressedBytes 
+						+ " expected " + target.length);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+}
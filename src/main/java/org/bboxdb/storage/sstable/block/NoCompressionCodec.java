@@ -0,0 +1,52 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.block;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class NoCompressionCodec implements BlockCompressionCodec {
+
+	/**
+	 * The id of the codec
+	 */
+	public final static byte CODEC_ID = 0;
+
+	@Override
+	public byte getCodecId() {
+		return CODEC_ID;
+	}
+
+	@Override
+	public byte[] compress(final byte[] data, final int length) {
+		return Arrays.copyOf(data, length);
+	}
+
+	@Override
+	public void decompress(final byte[] compressedData, final int length, final byte[] target) 
+			throws IOException {
+		
+		if(length != target.length) {
+			throw new IOException("Uncompressed block has wrong length " + length 
+					+ " expected " + target.length);
+		}
+		
+		System.arraycopy(compressedData, 0, target, 0, length);
+	}
+
+}
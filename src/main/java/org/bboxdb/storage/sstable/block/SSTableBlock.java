@@ -0,0 +1,171 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.block;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.util.io.DataEncoderHelper;
+
+public class SSTableBlock {
+
+	/**
+	 * The position of the block in the sstable
+	 */
+	protected final long blockPosition;
+	
+	/**
+	 * The uncompressed block data
+	 */
+	protected final ByteBuffer blockData;
+	
+	/**
+	 * The amount of tuples in the block
+	 */
+	protected final int tuplesInBlock;
+	
+	/**
+	 * The position of the first tuple in the block data
+	 */
+	protected final int tupleDataStart;
+	
+	public SSTableBlock(final long blockPosition, final byte[] uncompressedData) {
+		this.blockPosition = blockPosition;
+		this.blockData = ByteBuffer.wrap(uncompressedData);
+		this.blockData.order(Const.APPLICATION_BYTE_ORDER);
+		this.tuplesInBlock = blockData.getInt(0);
+		this.tupleDataStart = DataEncoderHelper.INT_BYTES * (tuplesInBlock + 1);
+	}
+	
+	/**
+	 * Get the position of the n-th tuple in the block data
+	 * @param tupleNumber
+	 * @return
+	 */
+	protected int getTuplePosition(final int tupleNumber) {
+		
+		if(tupleNumber < 0 || tupleNumber >= tuplesInBlock) {
+			throw new IllegalArgumentException("Tuple " + tupleNumber + " requested, block contains " 
+					+ tuplesInBlock + " tuples");
+		}
+		
+		final int offset = blockData.getInt(DataEncoderHelper.INT_BYTES * (tupleNumber + 1));
+		return tupleDataStart + offset;
+	}
+	
+	/**
+	 * Decode the n-th tuple of the block
+	 * @param tupleNumber
+	 * @return
+	 * @throws IOException
+	 */
+	public Tuple getTuple(final int tupleNumber) throws IOException {
+		final ByteBuffer view = blockData.duplicate();
+		view.order(Const.APPLICATION_BYTE_ORDER);
+		view.position(getTuplePosition(tupleNumber));
+		return TupleHelper.decodeTuple(view);
+	}
+	
+	/**
+	 * Get the n-th tuple of the block in the encoded form, the 
+	 * tuple is between position and limit of the buffer
+	 * 
+	 * @param tupleNumber
+	 * @return
+	 */
+	public ByteBuffer getEncodedTuple(final int tupleNumber) {
+		final int tuplePosition = getTuplePosition(tupleNumber);
+		final ByteBuffer view = blockData.duplicate();
+		view.order(Const.APPLICATION_BYTE_ORDER);
+		view.position(tuplePosition);
+		view.limit(tuplePosition + TupleHelper.getEncodedTupleLength(view, tuplePosition));
+		return view;
+	}
+	
+	/**
+	 * Decode only the key of the n-th tuple of the block
+	 * @param tupleNumber
+	 * @return
+	 */
+	public String getKey(final int tupleNumber) {
+		final int tuplePosition = getTuplePosition(tupleNumber);
+		final short keyLength = blockData.getShort(tuplePosition);
+		final int keyPosition = blockData.arrayOffset() + tuplePosition + TupleHelper.TUPLE_HEADER_SIZE;
+		return new String(blockData.array(), keyPosition, keyLength);
+	}
+	
+	/**
+	 * Search the tuple with the given key in the block
+	 * @param key
+	 * @return the number of the tuple in the block or -1
+	 */
+	public int findTuple(final String key) {
+		int firstTuple = 0;
+		int lastTuple = tuplesInBlock - 1;
+		
+		// Binary search, the tuples of a block are sorted by key
+		while(firstTuple <= lastTuple) {
+			final int curTuple = (firstTuple + lastTuple) >>> 1;
+			final int result = key.compareTo(getKey(curTuple));
+			
+			if(result == 0) {
+				return curTuple;
+			}
+			
+			if(result > 0) {
+				firstTuple = curTuple + 1;
+			} else {
+				lastTuple = curTuple - 1;
+			}
+		}
+		
+		return -1;
+	}
+
+	/**
+	 * Get the position of the block in the sstable
+	 * @return
+	 */
+	public long getBlockPosition() {
+		return blockPosition;
+	}
+	
+	/**
+	 * Get the amount of tuples in the block
+	 * @return
+	 */
+	public int getTuplesInBlock() {
+		return tuplesInBlock;
+	}
+	
+	/**
+	 * Get the size of the uncompressed block data in bytes
+	 * @return
+	 */
+	public int getUncompressedSize() {
+		return blockData.capacity();
+	}
+
+	@Override
+	public String toString() {
+		return "SSTableBlock [blockPosition=" + blockPosition + ", tuplesInBlock=" + tuplesInBlock + "]";
+	}
+}
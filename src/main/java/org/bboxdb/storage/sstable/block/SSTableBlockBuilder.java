@@ -0,0 +1,209 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.block;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.util.io.DataEncoderHelper;
+
+import com.google.common.hash.Hashing;
+
+public class SSTableBlockBuilder {
+
+	/**
+	 * The codec for the blocks
+	 */
+	protected final BlockCompressionCodec codec;
+	
+	/**
+	 * The size of a block (uncompressed)
+	 */
+	protected final int blockSize;
+	
+	/**
+	 * The encoded tuples of the current block
+	 */
+	protected final ByteArrayOutputStream tupleData;
+	
+	/**
+	 * The offsets of the tuples in the current block
+	 */
+	protected int[] tupleOffsets;
+	
+	/**
+	 * The amount of tuples in the current block
+	 */
+	protected int tuplesInBlock;
+	
+	/**
+	 * The first key of the current block
+	 */
+	protected byte[] firstKey;
+	
+	/**
+	 * The buffer to copy encoded tuples from off heap memory
+	 */
+	protected final byte[] copyBuffer = new byte[8192];
+	
+	public SSTableBlockBuilder(final BlockCompressionCodec codec, final int blockSize) {
+		this.codec = codec;
+		this.blockSize = blockSize;
+		this.tupleData = new ByteArrayOutputStream(blockSize + blockSize / 4);
+		this.tupleOffsets = new int[128];
+		this.tuplesInBlock = 0;
+	}
+	
+	/**
+	 * Add the encoded tuple to the current block
+	 * @param keyBytes - the key of the tuple
+	 * @param encodedTuple - the tuple between position and limit
+	 */
+	public void addTuple(final byte[] keyBytes, final ByteBuffer encodedTuple) {
+		
+		if(tuplesInBlock == tupleOffsets.length) {
+			tupleOffsets = Arrays.copyOf(tupleOffsets, tupleOffsets.length * 2);
+		}
+		
+		if(tuplesInBlock == 0) {
+			firstKey = keyBytes;
+		}
+		
+		tupleOffsets[tuplesInBlock] = tupleData.size();
+		tuplesInBlock++;
+		
+		if(encodedTuple.hasArray()) {
+			tupleData.write(encodedTuple.array(), encodedTuple.arrayOffset() + encodedTuple.position(), 
+					encodedTuple.remaining());
+			return;
+		}
+		
+		final ByteBuffer readBuffer = encodedTuple.duplicate();
+		
+		while(readBuffer.hasRemaining()) {
+			final int chunkSize = Math.min(copyBuffer.length, readBuffer.remaining());
+			readBuffer.get(copyBuffer, 0, chunkSize);
+			tupleData.write(copyBuffer, 0, chunkSize);
+		}
+	}
+	
+	/**
+	 * Is the block full?
+	 * @return
+	 */
+	public boolean isFull() {
+		return tupleData.size() >= blockSize;
+	}
+	
+	/**
+	 * Is the block empty?
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return tuplesInBlock == 0;
+	}
+	
+	/**
+	 * Get the amount of tuples in the current block
+	 * @return
+	 */
+	public int getTuplesInBlock() {
+		return tuplesInBlock;
+	}
+	
+	/**
+	 * Get the amount of uncompressed bytes in the current block
+	 * @return
+	 */
+	public int getPendingBytes() {
+		return tupleData.size();
+	}
+	
+	/**
+	 * Compress the current block, write the block to the sstable stream and the 
+	 * block index entry to the index stream. The builder is empty afterwards.
+	 * 
+	 * @param sstableStream
+	 * @param indexStream
+	 * @param blockPosition - the position of the block in the sstable
+	 * @param firstEntry - the number of the first tuple in the block
+	 * @return the amount of bytes written to the sstable stream
+	 * @throws IOException
+	 */
+	public int writeBlock(final OutputStream sstableStream, final OutputStream indexStream, 
+			final long blockPosition, final int firstEntry) throws IOException {
+		
+		final int offsetTableBytes = DataEncoderHelper.INT_BYTES * (tuplesInBlock + 1);
+		final int uncompressedLength = offsetTableBytes + tupleData.size();
+		
+		final ByteBuffer uncompressedBlock = ByteBuffer.allocate(uncompressedLength);
+		uncompressedBlock.order(Const.APPLICATION_BYTE_ORDER);
+		uncompressedBlock.putInt(tuplesInBlock);
+		
+		for(int i = 0; i < tuplesInBlock; i++) {
+			uncompressedBlock.putInt(tupleOffsets[i]);
+		}
+		
+		uncompressedBlock.put(tupleData.toByteArray());
+		
+		final byte[] compressedBlock = codec.compress(uncompressedBlock.array(), uncompressedLength);
+		final int checksum = Hashing.crc32c().hashBytes(compressedBlock).asInt();
+		
+		// Block header
+		final ByteBuffer blockHeader = ByteBuffer.allocate(SSTableConst.BLOCK_HEADER_BYTES);
+		blockHeader.order(Const.APPLICATION_BYTE_ORDER);
+		blockHeader.put(codec.getCodecId());
+		blockHeader.putInt(uncompressedLength);
+		blockHeader.putInt(compressedBlock.length);
+		blockHeader.putInt(checksum);
+		
+		sstableStream.write(blockHeader.array());
+		sstableStream.write(compressedBlock);
+		
+		// Sparse index entry
+		final ByteBuffer indexEntry = ByteBuffer.allocate(SSTableConst.BLOCK_INDEX_ENTRY_HEADER_BYTES);
+		indexEntry.order(Const.APPLICATION_BYTE_ORDER);
+		indexEntry.putLong(blockPosition);
+		indexEntry.putInt(firstEntry);
+		indexEntry.putInt(tuplesInBlock);
+		indexEntry.putShort((short) firstKey.length);
+		
+		indexStream.write(indexEntry.array());
+		indexStream.write(firstKey);
+		
+		// Reset builder
+		tupleData.reset();
+		tuplesInBlock = 0;
+		firstKey = null;
+		
+		return SSTableConst.BLOCK_HEADER_BYTES + compressedBlock.length;
+	}
+
+	/**
+	 * Get the codec
+	 * @return
+	 */
+	public BlockCompressionCodec getCodec() {
+		return codec;
+	}
+}
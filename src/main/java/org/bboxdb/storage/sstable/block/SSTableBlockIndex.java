@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.block;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.SSTableConst;
+
+public class SSTableBlockIndex {
+	
+	/**
+	 * The positions of the blocks in the sstable
+	 */
+	protected final long[] blockPositions;
+	
+	/**
+	 * The number of the first tuple of each block
+	 */
+	protected final int[] firstEntries;
+	
+	/**
+	 * The amount of tuples in each block
+	 */
+	protected final int[] tuplesInBlock;
+	
+	/**
+	 * The first key of each block
+	 */
+	protected final String[] firstKeys;
+
+	public SSTableBlockIndex(final long[] blockPositions, final int[] firstEntries, 
+			final int[] tuplesInBlock, final String[] firstKeys) {
+		
+		this.blockPositions = blockPositions;
+		this.firstEntries = firstEntries;
+		this.tuplesInBlock = tuplesInBlock;
+		this.firstKeys = firstKeys;
+	}
+	
+	/**
+	 * Read the block index entries from the buffer. The buffer has to be 
+	 * positioned at the first entry.
+	 * 
+	 * @param buffer
+	 * @return
+	 * @throws StorageManagerException 
+	 */
+	public static SSTableBlockIndex readFromBuffer(final ByteBuffer buffer) throws StorageManagerException {
+		final List<Long> blockPositions = new ArrayList<>();
+		final List<Integer> firstEntries = new ArrayList<>();
+		final List<Integer> tuplesInBlock = new ArrayList<>();
+		final List<String> firstKeys = new ArrayList<>();
+		
+		while(buffer.hasRemaining()) {
+			
+			if(buffer.remaining() < SSTableConst.BLOCK_INDEX_ENTRY_HEADER_BYTES) {
+				throw new StorageManagerException("Truncated block index entry, remaining bytes " 
+						+ buffer.remaining());
+			}
+			
+			blockPositions.add(buffer.getLong());
+			firstEntries.add(buffer.getInt());
+			tuplesInBlock.add(buffer.getInt());
+			
+			final short keyLength = buffer.getShort();
+			final byte[] keyBytes = new byte[keyLength];
+			buffer.get(keyBytes);
+			firstKeys.add(new String(keyBytes));
+		}
+		
+		final int blocks = blockPositions.size();
+		
+		return new SSTableBlockIndex(
+				blockPositions.stream().mapToLong(l -> l).toArray(), 
+				firstEntries.stream().mapToInt(i -> i).toArray(), 
+				tuplesInBlock.stream().mapToInt(i -> i).toArray(), 
+				firstKeys.toArray(new String[blocks]));
+	}
+	
+	/**
+	 * Get the number of the block that contains the entry
+	 * @param entry
+	 * @return the block number or -1
+	 */
+	public int getBlockForEntry(final long entry) {
+		
+		if(entry < 0 || entry >= getNumberOfEntries()) {
+			return -1;
+		}
+		
+		int firstBlock = 0;
+		int lastBlock = firstEntries.length - 1;
+		
+		// Search the last block with a first entry <= entry
+		while(firstBlock < lastBlock) {
+			final int curBlock = (firstBlock + lastBlock + 1) >>> 1;
+			
+			if(firstEntries[curBlock] <= entry) {
+				firstBlock = curBlock;
+			} else {
+				lastBlock = curBlock - 1;
+			}
+		}
+		
+		return firstBlock;
+	}
+	
+	/**
+	 * Get the number of the block that could contain the key
+	 * @param key
+	 * @return the block number or -1
+	 */
+	public int getBlockForKey(final String key) {
+		
+		if(firstKeys.length == 0 || key.compareTo(firstKeys[0]) < 0) {
+			return -1;
+		}
+		
+		int firstBlock = 0;
+		int lastBlock = firstKeys.length - 1;
+		
+		// Search the last block with a first key <= key
+		while(firstBlock < lastBlock) {
+			final int curBlock = (firstBlock + lastBlock + 1) >>> 1;
+			
+			if(firstKeys[curBlock].compareTo(key) <= 0) {
+				firstBlock = curBlock;
+			} else {
+				lastBlock = curBlock - 1;
+			}
+		}
+		
+		return firstBlock;
+	}
+	
+	/**
+	 * Get the total number of entries
+	 * @return
+	 */
+	public int getNumberOfEntries() {
+		
+		if(firstEntries.length == 0) {
+			return 0;
+		}
+		
+		final int lastBlock = firstEntries.length - 1;
+		return firstEntries[lastBlock] + tuplesInBlock[lastBlock];
+	}
+	
+	/**
+	 * Get the number of blocks
+	 * @return
+	 */
+	public int getNumberOfBlocks() {
+		return blockPositions.length;
+	}
+	
+	/**
+	 * Get the position of the block in the sstable
+	 * @param block
+	 * @return
+	 */
+	public long getBlockPosition(final int block) {
+		return blockPositions[block];
+	}
+	
+	/**
+	 * Get the number of the first entry of the block
+	 * @param block
+	 * @return
+	 */
+	public int getFirstEntry(final int block) {
+		return firstEntries[block];
+	}
+	
+	/**
+	 * Get the amount of tuples in the block
+	 * @param block
+	 * @return
+	 */
+	public int getTuplesInBlock(final int block) {
+		return tuplesInBlock[block];
+	}
+
+}
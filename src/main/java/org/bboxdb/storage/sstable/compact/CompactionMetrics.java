@@ -0,0 +1,185 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CompactionMetrics {
+
+	/**
+	 * The bytes written by flushing memtables
+	 */
+	protected final static AtomicLong flushedBytes = new AtomicLong(0);
+	
+	/**
+	 * The bytes read by the compactions
+	 */
+	protected final static AtomicLong compactionReadBytes = new AtomicLong(0);
+	
+	/**
+	 * The bytes written by the compactions
+	 */
+	protected final static AtomicLong compactionWrittenBytes = new AtomicLong(0);
+	
+	/**
+	 * The state of the storage locations
+	 */
+	protected final static Map<String, LocationState> locationStates = new ConcurrentHashMap<>();
+
+	/**
+	 * Count bytes written by a memtable flush
+	 * @param bytes
+	 */
+	public static void addFlushedBytes(final long bytes) {
+		flushedBytes.addAndGet(bytes);
+	}
+	
+	/**
+	 * Count bytes read by a compaction
+	 * @param bytes
+	 */
+	public static void addCompactionReadBytes(final long bytes) {
+		compactionReadBytes.addAndGet(bytes);
+	}
+	
+	/**
+	 * Count bytes written by a compaction
+	 * @param bytes
+	 */
+	public static void addCompactionWrittenBytes(final long bytes) {
+		compactionWrittenBytes.addAndGet(bytes);
+	}
+	
+	/**
+	 * Update the state of a storage location
+	 * @param location
+	 * @param regions
+	 * @param tables
+	 * @param pendingBytes
+	 */
+	public static void updateLocationState(final String location, final int regions, 
+			final int tables, final long pendingBytes) {
+		
+		locationStates.put(location, new LocationState(regions, tables, pendingBytes));
+	}
+	
+	/**
+	 * Get the bytes written by memtable flushes
+	 * @return
+	 */
+	public static long getFlushedBytes() {
+		return flushedBytes.get();
+	}
+	
+	/**
+	 * Get the bytes read by compactions
+	 * @return
+	 */
+	public static long getCompactionReadBytes() {
+		return compactionReadBytes.get();
+	}
+	
+	/**
+	 * Get the bytes written by compactions
+	 * @return
+	 */
+	public static long getCompactionWrittenBytes() {
+		return compactionWrittenBytes.get();
+	}
+	
+	/**
+	 * Get the write amplification (all written bytes / flushed bytes)
+	 * @return
+	 */
+	public static double getWriteAmplification() {
+		final long flushed = flushedBytes.get();
+		
+		if(flushed == 0) {
+			return 0;
+		}
+		
+		return (double) (flushed + compactionWrittenBytes.get()) / (double) flushed;
+	}
+	
+	/**
+	 * Get the read amplification (the average number of sstables per region)
+	 * @return
+	 */
+	public static double getReadAmplification() {
+		long regions = 0;
+		long tables = 0;
+		
+		for(final LocationState state : locationStates.values()) {
+			regions = regions + state.regions;
+			tables = tables + state.tables;
+		}
+		
+		if(regions == 0) {
+			return 0;
+		}
+		
+		return (double) tables / (double) regions;
+	}
+	
+	/**
+	 * Get the bytes of the tables that are scheduled for the next compactions
+	 * @return
+	 */
+	public static long getPendingCompactionBytes() {
+		return locationStates.values()
+				.stream()
+				.mapToLong(s -> s.pendingBytes)
+				.sum();
+	}
+	
+	/**
+	 * Reset all metrics
+	 */
+	public static void reset() {
+		flushedBytes.set(0);
+		compactionReadBytes.set(0);
+		compactionWrittenBytes.set(0);
+		locationStates.clear();
+	}
+	
+	protected static class LocationState {
+		
+		/**
+		 * The number of regions
+		 */
+		protected final int regions;
+		
+		/**
+		 * The number of sstables
+		 */
+		protected final int tables;
+		
+		/**
+		 * The size of the tables that need to be compacted
+		 */
+		protected final long pendingBytes;
+		
+		public LocationState(final int regions, final int tables, final long pendingBytes) {
+			this.regions = regions;
+			this.tables = tables;
+			this.pendingBytes = pendingBytes;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+public class CompactionRateLimiter {
+	
+	/**
+	 * The rate limiter (null if the write rate is unlimited)
+	 */
+	protected final RateLimiter rateLimiter;
+	
+	/**
+	 * The time the compaction was throttled (in microseconds)
+	 */
+	protected final AtomicLong throttleTime = new AtomicLong(0);
+	
+	/**
+	 * The instance
+	 */
+	protected static CompactionRateLimiter instance;
+
+	public CompactionRateLimiter(final long bytesPerSecond) {
+		if(bytesPerSecond <= 0) {
+			rateLimiter = null;
+		} else {
+			rateLimiter = RateLimiter.create(bytesPerSecond);
+		}
+	}
+	
+	/**
+	 * Get the instance of the rate limiter, the write rate is read from the configuration
+	 * @return
+	 */
+	public static synchronized CompactionRateLimiter getInstance() {
+		if(instance == null) {
+			final long bytesPerSecond = BBoxDBConfigurationManager.getConfiguration()
+					.getStorageCompactionWriteRate();
+			
+			instance = new CompactionRateLimiter(bytesPerSecond);
+		}
+		
+		return instance;
+	}
+	
+	/**
+	 * Acquire the permit to write the given amount of bytes, blocks if the write
+	 * rate is exceeded
+	 * @param bytes
+	 */
+	public void acquire(final int bytes) {
+		if(rateLimiter == null || bytes <= 0) {
+			return;
+		}
+		
+		final double waitTime = rateLimiter.acquire(bytes);
+		throttleTime.addAndGet((long) (waitTime * TimeUnit.SECONDS.toMicros(1)));
+	}
+	
+	/**
+	 * Is the write rate limited
+	 * @return
+	 */
+	public boolean isLimited() {
+		return rateLimiter != null;
+	}
+	
+	/**
+	 * Get the time the compaction was throttled in milliseconds
+	 * @return
+	 */
+	public long getThrottleTime() {
+		return TimeUnit.MICROSECONDS.toMillis(throttleTime.get());
+	}
+}
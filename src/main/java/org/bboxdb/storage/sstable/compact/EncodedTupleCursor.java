@@ -0,0 +1,116 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.util.io.DataEncoderHelper;
+
+/**
+ * A cursor over encoded tuples. Only the key and the version timestamp
+ * of the current tuple are decoded, the tuple itself stays encoded.
+ */
+public class EncodedTupleCursor {
+	
+	/**
+	 * The encoded tuples
+	 */
+	protected final Iterator<ByteBuffer> encodedTuples;
+	
+	/**
+	 * The current tuple
+	 */
+	protected ByteBuffer encodedTuple;
+	
+	/**
+	 * The key of the current tuple
+	 */
+	protected String key;
+	
+	/**
+	 * The version timestamp of the current tuple
+	 */
+	protected long versionTimestamp;
+	
+	/**
+	 * The offset of the version timestamp in the tuple header
+	 */
+	protected final static int VERSION_TIMESTAMP_OFFSET = DataEncoderHelper.SHORT_BYTES 
+			+ 2 * DataEncoderHelper.INT_BYTES;
+
+	public EncodedTupleCursor(final Iterator<ByteBuffer> encodedTuples) {
+		this.encodedTuples = encodedTuples;
+	}
+	
+	/**
+	 * Move the cursor to the next tuple
+	 * @return false if no tuple is available
+	 */
+	public boolean next() {
+		if(! encodedTuples.hasNext()) {
+			encodedTuple = null;
+			key = null;
+			return false;
+		}
+		
+		encodedTuple = encodedTuples.next();
+		
+		final int offset = encodedTuple.position();
+		final short keyLength = encodedTuple.getShort(offset);
+		versionTimestamp = encodedTuple.getLong(offset + VERSION_TIMESTAMP_OFFSET);
+		
+		final byte[] keyBytes = new byte[keyLength];
+		final ByteBuffer keyBuffer = encodedTuple.duplicate();
+		keyBuffer.position(offset + TupleHelper.TUPLE_HEADER_SIZE);
+		keyBuffer.get(keyBytes);
+		key = new String(keyBytes);
+		
+		return true;
+	}
+	
+	/**
+	 * Get the current tuple, the tuple is between position and limit
+	 * @return
+	 */
+	public ByteBuffer getEncodedTuple() {
+		return encodedTuple;
+	}
+	
+	/**
+	 * Get the key of the current tuple
+	 * @return
+	 */
+	public String getKey() {
+		return key;
+	}
+	
+	/**
+	 * Get the version timestamp of the current tuple
+	 * @return
+	 */
+	public long getVersionTimestamp() {
+		return versionTimestamp;
+	}
+	
+	@Override
+	public String toString() {
+		return "EncodedTupleCursor [key=" + key + ", versionTimestamp=" + versionTimestamp + "]";
+	}
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+
+/**
+ * The leveled merge strategy assigns each table to a level by its size. Level 0 
+ * contains the small tables, level n the tables up to LEVEL_BASE_SIZE * LEVEL_FANOUT^(n-1). 
+ * When a level contains too many tables, the level is merged together with the 
+ * next level. The number of tables per region stays small, the tuples are rewritten
+ * more often than with the size tiered strategy.
+ */
+public class LeveledMergeStrategy implements MergeStrategy {
+	
+	/**
+	 * The max number of tables in level 0
+	 */
+	protected final static int LEVEL0_MAX_TABLES = 4;
+	
+	/**
+	 * The size ratio between two levels and the max number of tables in the levels > 0
+	 */
+	protected final static int LEVEL_FANOUT = 10;
+	
+	/**
+	 * All tables below this size belong to level 0 (4 MB)
+	 */
+	protected final static long LEVEL_BASE_SIZE = 4 * 1024 * 1024;
+	
+	/**
+	 * The max number of tables to merge per task
+	 */
+	protected final static int MAX_MERGE_TABLES_PER_JOB = 32;
+
+	@Override
+	public MergeTask getMergeTask(final List<SSTableFacade> sstables) {
+		
+		final MergeTask mergeTask = new MergeTask();
+		final List<List<SSTableFacade>> levels = getLevels(sstables);
+		
+		for(int level = 0; level < levels.size(); level++) {
+			final List<SSTableFacade> levelTables = levels.get(level);
+			
+			if(levelTables.size() <= getMaxTablesForLevel(level)) {
+				continue;
+			}
+			
+			final List<SSTableFacade> candidates = new ArrayList<>(levelTables);
+			
+			if(level + 1 < levels.size()) {
+				candidates.addAll(levels.get(level + 1));
+			}
+			
+			candidates.sort(Comparator.comparingLong(f -> getTableSize(f)));
+			final List<SSTableFacade> selectedTables 
+				= candidates.subList(0, Math.min(candidates.size(), MAX_MERGE_TABLES_PER_JOB));
+			
+			// Keep the order of the tables, the later tables win on equal versions
+			final List<SSTableFacade> mergeTables = sstables
+					.stream()
+					.filter(f -> selectedTables.contains(f))
+					.collect(Collectors.toList());
+			
+			// Deleted tuples can only be removed, when all tables are merged
+			if(mergeTables.size() == sstables.size()) {
+				mergeTask.setTaskType(MergeTaskType.MAJOR);
+			} else {
+				mergeTask.setTaskType(MergeTaskType.MINNOR);
+			}
+			
+			mergeTask.setCompactTables(mergeTables);
+			return mergeTask;
+		}
+		
+		return mergeTask;
+	}
+	
+	/**
+	 * Assign the tables to the levels
+	 * @param sstables
+	 * @return
+	 */
+	protected List<List<SSTableFacade>> getLevels(final List<SSTableFacade> sstables) {
+		final List<List<SSTableFacade>> levels = new ArrayList<>();
+		
+		for(final SSTableFacade facade : sstables) {
+			final int level = getLevelForSize(getTableSize(facade));
+			
+			while(levels.size() <= level) {
+				levels.add(new ArrayList<>());
+			}
+			
+			levels.get(level).add(facade);
+		}
+		
+		return levels;
+	}
+	
+	/**
+	 * Get the level for a table with the given size
+	 * @param tableSize
+	 * @return
+	 */
+	protected int getLevelForSize(final long tableSize) {
+		int level = 0;
+		long levelLimit = LEVEL_BASE_SIZE;
+		
+		while(tableSize >= levelLimit && levelLimit < Long.MAX_VALUE / LEVEL_FANOUT) {
+			level++;
+			levelLimit = levelLimit * LEVEL_FANOUT;
+		}
+		
+		return level;
+	}
+	
+	/**
+	 * Get the max number of tables for the level. A compaction writes one table per 
+	 * key range, so a level has to contain more tables than key ranges.
+	 * @param level
+	 * @return
+	 */
+	protected int getMaxTablesForLevel(final int level) {
+		final int compactionThreads = BBoxDBConfigurationManager.getConfiguration().getStorageCompactionThreads();
+		
+		if(level == 0) {
+			return Math.max(LEVEL0_MAX_TABLES, compactionThreads);
+		}
+		
+		return Math.max(LEVEL_FANOUT, compactionThreads);
+	}
+	
+	/**
+	 * Get the size of the table
+	 * @param facade
+	 * @return
+	 */
+	protected long getTableSize(final SSTableFacade facade) {
+		return facade.getSize();
+	}
+
+	@Override
+	public long getCompactorDelay() {
+		return SSTableConst.COMPACT_THREAD_DELAY;
+	}
+
+}
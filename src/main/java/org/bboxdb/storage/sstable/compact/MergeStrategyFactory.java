@@ -0,0 +1,87 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.Map;
+
+import org.bboxdb.misc.BBoxDBConfiguration;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MergeStrategyFactory {
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(MergeStrategyFactory.class);
+
+	/**
+	 * Get an instance of the default merge strategy
+	 * @return
+	 */
+	public static MergeStrategy getInstance() {
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		return getInstance(configuration.getStorageMergeStrategy());
+	}
+	
+	/**
+	 * Get an instance of the merge strategy for the distribution group
+	 * @param distributionGroup
+	 * @return
+	 */
+	public static MergeStrategy getInstanceForDistributionGroup(final String distributionGroup) {
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		final Map<String, String> groupStrategies = configuration.getStorageMergeStrategyDistributionGroups();
+		
+		if(groupStrategies == null || ! groupStrategies.containsKey(distributionGroup)) {
+			return getInstance(configuration.getStorageMergeStrategy());
+		}
+		
+		return getInstance(groupStrategies.get(distributionGroup));
+	}
+	
+	/**
+	 * Get an instance of the given merge strategy
+	 * @param strategyClass
+	 * @return
+	 */
+	protected static MergeStrategy getInstance(final String strategyClass) {
+		
+		// Instance the classname
+		try {
+			final Class<?> classObject = Class.forName(strategyClass);
+			
+			if(classObject == null) {
+				throw new ClassNotFoundException("Unable to locate class: " + strategyClass);
+			}
+			
+			final Object strategyObject = classObject.newInstance();
+			
+			if(! (strategyObject instanceof MergeStrategy)) {
+				throw new ClassNotFoundException(strategyClass + " is not a instance of MergeStrategy");
+			}
+			
+			return (MergeStrategy) strategyObject;
+						
+		} catch (Exception e) {
+			logger.warn("Unable to instance class: " + strategyClass, e);
+			throw new RuntimeException(e);
+		} 
+	}
+}
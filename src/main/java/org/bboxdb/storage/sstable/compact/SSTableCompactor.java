@@ -17,20 +17,25 @@
  *******************************************************************************/
 package org.bboxdb.storage.sstable.compact;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.bboxdb.misc.BBoxDBConfigurationManager;
 import org.bboxdb.storage.StorageManagerException;
-import org.bboxdb.storage.entity.DeletedTuple;
-import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.SSTableManager;
 import org.bboxdb.storage.sstable.SSTableWriter;
 import org.bboxdb.storage.sstable.TupleHelper;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
-import org.bboxdb.util.SortedIteratorMerger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,14 +58,19 @@ public class SSTableCompactor {
 	protected int writtenTuples;
 	
 	/**
-	 * The list of sstables to compact
+	 * The amount of written bytes
 	 */
-	protected final List<SSTableKeyIndexReader> sstableIndexReader;
-
+	protected long writtenBytes;
+	
+	/**
+	 * The execution time of the compaction in milliseconds
+	 */
+	protected long executionTime;
+	
 	/**
-	 * The current SStable writer
+	 * The list of sstables to compact
 	 */
-	protected SSTableWriter sstableWriter;
+	protected final List<SSTableKeyIndexReader> sstableIndexReader;
 	
 	/**
 	 * The SStable manager
@@ -72,11 +82,36 @@ public class SSTableCompactor {
 	 */
 	protected final List<SSTableWriter> resultList = new ArrayList<>();
 	
+	/**
+	 * The key ranges of the compaction
+	 */
+	protected final List<KeyRangeCompactor> keyRanges = new ArrayList<>();
+	
+	/**
+	 * The number of threads that merge the key ranges
+	 */
+	protected int compactionThreads;
+	
+	/**
+	 * The minimal number of tuples per key range
+	 */
+	protected int minEntriesPerRange = SSTableConst.COMPACTION_MIN_ENTRIES_PER_RANGE;
+	
 	/**
 	 * Was the compactification successfully
 	 */
 	protected boolean successfully = true;
 	
+	/**
+	 * The rate limiter for the written bytes
+	 */
+	protected final CompactionRateLimiter rateLimiter = CompactionRateLimiter.getInstance();
+	
+	/**
+	 * The written bytes are acquired from the rate limiter in chunks of this size
+	 */
+	protected final static int RATE_LIMITER_CHUNK_SIZE = 64 * 1024;
+	
 	/**
 	 * The logger
 	 */
@@ -89,6 +124,8 @@ public class SSTableCompactor {
 		this.sstableIndexReader = sstableIndexReader;
 		this.readTuples = 0;
 		this.writtenTuples = 0;
+		this.writtenBytes = 0;
+		this.compactionThreads = BBoxDBConfigurationManager.getConfiguration().getStorageCompactionThreads();
 	}
 	
 	/**
@@ -104,119 +141,163 @@ public class SSTableCompactor {
 	}
 	
 	/** 
-	 * Execute the compactation of the input sstables
+	 * Execute the compactation of the input sstables. The key space is split 
+	 * into ranges, the ranges are merged in parallel into separate sstables.
 	 * 
 	 * @return success or failure
 	 */
 	public void executeCompactation() throws StorageManagerException {
 	
+		final long startTime = System.currentTimeMillis();
+		
 		try {
-			// The iterators
-			final List<Iterator<Tuple>> iterators = sstableIndexReader
-					.stream()
-					.map(r -> r.iterator())
-					.collect(Collectors.toList());
+			createKeyRanges();
 			
-			final SortedIteratorMerger<Tuple> sortedIteratorMerger = new SortedIteratorMerger<>(
-					iterators, 
-					TupleHelper.TUPLE_KEY_COMPARATOR, 
-					TupleHelper.NEWEST_TUPLE_DUPLICATE_RESOLVER);
-						
-			for(final Tuple tuple : sortedIteratorMerger) {
-				checkForThreadTermination();
-				addTupleToWriter(tuple);
+			if(keyRanges.size() == 1) {
+				keyRanges.get(0).call();
+			} else {
+				executeKeyRangesInParallel();
+			}
+			
+			for(final KeyRangeCompactor keyRange : keyRanges) {
+				readTuples = readTuples + keyRange.getReadTuples();
+				writtenTuples = writtenTuples + keyRange.getWrittenTuples();
+				writtenBytes = writtenBytes + keyRange.getWrittenBytes();
+				resultList.addAll(keyRange.getResultList());
 			}
-
-			readTuples = sortedIteratorMerger.getReadElements();
 		} catch (StorageManagerException e) {
 			handleErrorDuringCompact();
 			throw e;
 		} finally {
-			closeSSTableWriter();
+			executionTime = System.currentTimeMillis() - startTime;
 		}
 	}
-	
+
 	/**
-	 * Check for the thread termination
-	 * @throws StorageManagerException 
+	 * Split the key space into ranges. The split keys are taken from the 
+	 * key index of the biggest table.
+	 * 
+	 * @throws StorageManagerException
 	 */
-	protected void checkForThreadTermination() throws StorageManagerException {
-		if(Thread.currentThread().isInterrupted()) {
-			throw new StorageManagerException("The curent thread is interrupted, stop compact");
+	protected void createKeyRanges() throws StorageManagerException {
+		keyRanges.clear();
+		
+		final long totalEntries = calculateNumberOfEntries(sstableIndexReader);
+		final long numberOfRanges = Math.min(compactionThreads, 
+				totalEntries / Math.max(1, minEntriesPerRange));
+		
+		String lastSplitKey = null;
+		
+		if(numberOfRanges > 1) {
+			final SSTableKeyIndexReader biggestTable = sstableIndexReader
+					.stream()
+					.max((r1, r2) -> Integer.compare(r1.getNumberOfEntries(), r2.getNumberOfEntries()))
+					.get();
+			
+			final long entries = biggestTable.getNumberOfEntries();
+			
+			try {
+				for(int range = 1; range < numberOfRanges; range++) {
+					final String splitKey = biggestTable.getKeyForIndexEntry(entries * range / numberOfRanges);
+					
+					if(lastSplitKey != null && splitKey.compareTo(lastSplitKey) <= 0) {
+						continue;
+					}
+					
+					keyRanges.add(new KeyRangeCompactor(lastSplitKey, splitKey));
+					lastSplitKey = splitKey;
+				}
+			} catch (IOException e) {
+				throw new StorageManagerException("Unable to read split key", e);
+			}
 		}
+		
+		keyRanges.add(new KeyRangeCompactor(lastSplitKey, null));
 	}
-
+	
 	/**
-	 * Add the given tuple to the output file
-	 * @param tuple
+	 * Merge the key ranges on a bounded thread pool
 	 * @throws StorageManagerException
 	 */
-	protected void addTupleToWriter(final Tuple tuple) throws StorageManagerException {
-		// Don't add deleted tuples to output in a major compaction
-		if(isMajorCompaction() && tuple instanceof DeletedTuple) {
-			return;
-		}
+	protected void executeKeyRangesInParallel() throws StorageManagerException {
+		final int threads = Math.min(compactionThreads, keyRanges.size());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		
+		logger.info("Merging {} key ranges with {} threads", keyRanges.size(), threads);
 		
-		openNewWriterIfNeeded(tuple);
-		sstableWriter.addNextTuple(tuple);
-		writtenTuples++;
+		try {
+			final List<Future<Void>> futures = new ArrayList<>();
+			
+			for(final KeyRangeCompactor keyRange : keyRanges) {
+				futures.add(executor.submit(keyRange));
+			}
+			
+			for(final Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageManagerException("Interrupted while waiting for the compaction", e);
+		} catch (ExecutionException e) {
+			throw new StorageManagerException("Error while merging key range", e.getCause());
+		} finally {
+			shutdownExecutor(executor);
+		}
 	}
 
 	/**
-	 * Handle the error during compact
+	 * Stop the executor and wait until all running merges are done, 
+	 * so that no writer is open after this method returns
+	 * 
+	 * @param executor
 	 */
-	protected void handleErrorDuringCompact() {
-		successfully = false;
-
-		closeSSTableWriter();
+	protected void shutdownExecutor(final ExecutorService executor) {
+		executor.shutdownNow();
 		
-		// Delete partial written results
-		logger.debug("Deleting partial written results");
-		resultList.forEach(s -> s.deleteFromDisk());
-		resultList.clear();
+		boolean interrupted = false;
+		
+		while(! executor.isTerminated()) {
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
 	}
-
+	
 	/**
-	 * Close the open sstable writer
+	 * Check for the thread termination
+	 * @throws StorageManagerException 
 	 */
-	protected void closeSSTableWriter() {
-		// Close open writer
-		if(sstableWriter == null) {
-			return;
+	protected void checkForThreadTermination() throws StorageManagerException {
+		if(Thread.currentThread().isInterrupted()) {
+			throw new StorageManagerException("The curent thread is interrupted, stop compact");
 		}
-		
-		try {
-			sstableWriter.close();
-			sstableWriter = null;
-		} catch (StorageManagerException e) {
-			logger.error("Got an exception while closing writer in error handler", e);
-		} 
 	}
 
 	/**
-	 * Create a new table if the size of the open table hits the threshold
-	 * @param resultList
-	 * @param tuple
-	 * @throws StorageManagerException
+	 * Handle the error during compact
 	 */
-	protected void openNewWriterIfNeeded(final Tuple tuple)
-			throws StorageManagerException {
+	protected void handleErrorDuringCompact() {
+		successfully = false;
 		
-		if(sstableWriter == null) {
-			sstableWriter = openNewSSTableWriter();
-			return;
-		}
+		// Delete partial written results
+		logger.debug("Deleting partial written results");
 		
-		// Check max table size limit
-		if(sstableWriter.getWrittenBytes() + tuple.getSize() > SSTableConst.MAX_SSTABLE_SIZE) {
-			sstableWriter.close();
-			sstableWriter = openNewSSTableWriter();
+		for(final KeyRangeCompactor keyRange : keyRanges) {
+			keyRange.getResultList().forEach(s -> s.deleteFromDisk());
+			keyRange.getResultList().clear();
 		}
+		
+		resultList.clear();
 	}
 
 	/**
 	 * Open a new SSTable writer
-	 * @param resultList 
 	 * @return 
 	 * @throws StorageManagerException
 	 */
@@ -232,11 +313,236 @@ public class SSTableCompactor {
 				tablenumber, estimatedMaxNumberOfEntries);
 				
 		sstableWriter.open();
-		resultList.add(sstableWriter);
 		logger.info("Output file for compact: {}", sstableWriter.getSstableFile());
 		return sstableWriter;
 	}
 
+	/**
+	 * Merges the tuples of one key range [startKey, endKey) into own 
+	 * sstables. The tuples are copied in the encoded form, only the 
+	 * key and the version timestamp are decoded.
+	 */
+	protected class KeyRangeCompactor implements Callable<Void> {
+		
+		/**
+		 * The first key of the range (included), null for the begin of the key space
+		 */
+		protected final String startKey;
+		
+		/**
+		 * The last key of the range (excluded), null for the end of the key space
+		 */
+		protected final String endKey;
+		
+		/**
+		 * The current SStable writer
+		 */
+		protected SSTableWriter sstableWriter;
+		
+		/**
+		 * The resulting writer of the range
+		 */
+		protected final List<SSTableWriter> rangeResultList = new ArrayList<>();
+		
+		/**
+		 * The amount of read tuples
+		 */
+		protected int rangeReadTuples = 0;
+		
+		/**
+		 * The amount of written tuples
+		 */
+		protected int rangeWrittenTuples = 0;
+		
+		/**
+		 * The amount of written bytes
+		 */
+		protected long rangeWrittenBytes = 0;
+		
+		/**
+		 * The written bytes, that are not acquired from the rate limiter
+		 */
+		protected int unthrottledBytes = 0;
+		
+		public KeyRangeCompactor(final String startKey, final String endKey) {
+			this.startKey = startKey;
+			this.endKey = endKey;
+		}
+
+		@Override
+		public Void call() throws StorageManagerException {
+			
+			try {
+				final List<EncodedTupleCursor> cursors = openCursors();
+				
+				while(! cursors.isEmpty()) {
+					checkForThreadTermination();
+					
+					String key = null;
+					EncodedTupleCursor newestCursor = null;
+					
+					for(final EncodedTupleCursor cursor : cursors) {
+						final int result = (key == null) ? -1 : cursor.getKey().compareTo(key);
+						
+						// The later tables win, if the version timestamps are equal
+						if(result < 0 || (result == 0 
+								&& cursor.getVersionTimestamp() >= newestCursor.getVersionTimestamp())) {
+							
+							key = cursor.getKey();
+							newestCursor = cursor;
+						}
+					}
+					
+					addTupleToWriter(newestCursor.getEncodedTuple());
+					
+					// Skip all versions of the key
+					final Iterator<EncodedTupleCursor> iterator = cursors.iterator();
+					
+					while(iterator.hasNext()) {
+						final EncodedTupleCursor cursor = iterator.next();
+						
+						if(cursor.getKey().equals(key)) {
+							rangeReadTuples++;
+							
+							if(! cursor.next()) {
+								iterator.remove();
+							}
+						}
+					}
+				}
+			} catch (IllegalStateException e) {
+				throw new StorageManagerException("Error while reading tuples", e);
+			} finally {
+				rateLimiter.acquire(unthrottledBytes);
+				unthrottledBytes = 0;
+				closeSSTableWriter();
+			}
+			
+			return null;
+		}
+
+		/**
+		 * Open a cursor for each non empty table
+		 * @return
+		 * @throws StorageManagerException
+		 */
+		protected List<EncodedTupleCursor> openCursors() throws StorageManagerException {
+			
+			final List<EncodedTupleCursor> cursors = new ArrayList<>();
+			
+			for(final SSTableKeyIndexReader reader : sstableIndexReader) {
+				final int firstEntry = (startKey == null) ? 0 : reader.getFirstEntryNotLessThan(startKey);
+				
+				final int endEntry = (endKey == null) ? reader.getNumberOfEntries() 
+						: reader.getFirstEntryNotLessThan(endKey);
+				
+				final EncodedTupleCursor cursor 
+					= new EncodedTupleCursor(reader.getEncodedTuples(firstEntry, endEntry));
+				
+				if(cursor.next()) {
+					cursors.add(cursor);
+				}
+			}
+			
+			return cursors;
+		}
+		
+		/**
+		 * Add the given tuple to the output file
+		 * @param encodedTuple
+		 * @throws StorageManagerException
+		 */
+		protected void addTupleToWriter(final ByteBuffer encodedTuple) throws StorageManagerException {
+			// Don't add deleted tuples to output in a major compaction
+			if(isMajorCompaction() && TupleHelper.isDeletedTuple(encodedTuple, encodedTuple.position())) {
+				return;
+			}
+			
+			final int tupleLength = encodedTuple.remaining();
+			openNewWriterIfNeeded(tupleLength);
+			sstableWriter.addNextEncodedTuple(encodedTuple);
+			rangeWrittenTuples++;
+			rangeWrittenBytes = rangeWrittenBytes + tupleLength;
+			
+			// Acquire the written bytes in chunks, to keep the overhead of the limiter low
+			unthrottledBytes = unthrottledBytes + tupleLength;
+			
+			if(unthrottledBytes >= RATE_LIMITER_CHUNK_SIZE) {
+				rateLimiter.acquire(unthrottledBytes);
+				unthrottledBytes = 0;
+			}
+		}
+		
+		/**
+		 * Create a new table if the size of the open table hits the threshold
+		 * @param tupleLength
+		 * @throws StorageManagerException
+		 */
+		protected void openNewWriterIfNeeded(final int tupleLength) throws StorageManagerException {
+			
+			if(sstableWriter == null) {
+				sstableWriter = openNewSSTableWriter();
+				rangeResultList.add(sstableWriter);
+				return;
+			}
+			
+			// Check max table size limit
+			if(sstableWriter.getWrittenBytes() + tupleLength > SSTableConst.MAX_SSTABLE_SIZE) {
+				sstableWriter.close();
+				sstableWriter = openNewSSTableWriter();
+				rangeResultList.add(sstableWriter);
+			}
+		}
+		
+		/**
+		 * Close the open sstable writer
+		 */
+		protected void closeSSTableWriter() {
+			// Close open writer
+			if(sstableWriter == null) {
+				return;
+			}
+			
+			try {
+				sstableWriter.close();
+				sstableWriter = null;
+			} catch (StorageManagerException e) {
+				logger.error("Got an exception while closing writer", e);
+			} 
+		}
+		
+		/**
+		 * Get the amount of read tuples
+		 * @return
+		 */
+		public int getReadTuples() {
+			return rangeReadTuples;
+		}
+		
+		/**
+		 * Get the amount of written tuples
+		 * @return
+		 */
+		public int getWrittenTuples() {
+			return rangeWrittenTuples;
+		}
+		
+		/**
+		 * Get the amount of written bytes
+		 * @return
+		 */
+		public long getWrittenBytes() {
+			return rangeWrittenBytes;
+		}
+		
+		/**
+		 * Get the writer result list of the range
+		 * @return
+		 */
+		public List<SSTableWriter> getResultList() {
+			return rangeResultList;
+		}
+	}
 
 	/**
 	 * Is this a major compaction?
@@ -254,6 +560,38 @@ public class SSTableCompactor {
 		this.majorCompaction = majorCompaction;
 	}
 	
+	/**
+	 * Get the number of threads that merge the key ranges
+	 * @return
+	 */
+	public int getCompactionThreads() {
+		return compactionThreads;
+	}
+	
+	/**
+	 * Set the number of threads that merge the key ranges
+	 * @param compactionThreads
+	 */
+	public void setCompactionThreads(final int compactionThreads) {
+		this.compactionThreads = compactionThreads;
+	}
+	
+	/**
+	 * Get the minimal number of tuples per key range
+	 * @return
+	 */
+	public int getMinEntriesPerRange() {
+		return minEntriesPerRange;
+	}
+	
+	/**
+	 * Set the minimal number of tuples per key range
+	 * @param minEntriesPerRange
+	 */
+	public void setMinEntriesPerRange(final int minEntriesPerRange) {
+		this.minEntriesPerRange = minEntriesPerRange;
+	}
+	
 	/**
 	 * Get the amount of read tuples
 	 * @return
@@ -270,6 +608,30 @@ public class SSTableCompactor {
 		return writtenTuples;
 	}
 	
+	/**
+	 * Get the amount of written bytes
+	 * @return
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes;
+	}
+	
+	/**
+	 * Get the execution time of the compaction in milliseconds
+	 * @return
+	 */
+	public long getExecutionTime() {
+		return executionTime;
+	}
+	
+	/**
+	 * Get the number of key ranges of the compaction
+	 * @return
+	 */
+	public int getNumberOfKeyRanges() {
+		return keyRanges.size();
+	}
+	
 	/**
 	 * Get the writer result list
 	 * @return
@@ -18,7 +18,9 @@
 package org.bboxdb.storage.sstable.compact;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.bboxdb.distribution.DistributionGroupName;
@@ -32,6 +34,7 @@ import org.bboxdb.storage.registry.StorageRegistry;
 import org.bboxdb.storage.sstable.SSTableManager;
 import org.bboxdb.storage.sstable.SSTableManagerState;
 import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.reader.SSTableCache;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
 import org.bboxdb.util.RejectedException;
@@ -42,9 +45,14 @@ import org.slf4j.LoggerFactory;
 public class SSTableCompactorThread extends ExceptionSafeThread {
 	
 	/**
-	 * The merge strategy
+	 * The default merge strategy
 	 */
 	protected final MergeStrategy mergeStragegy;
+	
+	/**
+	 * The merge strategies of the distribution groups
+	 */
+	protected final Map<String, MergeStrategy> distributionGroupStrategies;
 
 	/**
 	 * The storage
@@ -58,7 +66,8 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 
 	public SSTableCompactorThread(final Storage storage) {
 		this.storage = storage;
-		this.mergeStragegy = new SimpleMergeStrategy();
+		this.mergeStragegy = MergeStrategyFactory.getInstance();
+		this.distributionGroupStrategies = new HashMap<>();
 	}
 
 	/**
@@ -94,6 +103,10 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 			return;
 		}
 		
+		int regions = 0;
+		int tables = 0;
+		long pendingBytes = 0;
+		
 		for(final SSTableName ssTableName: sstables) {
 		
 			try {
@@ -110,8 +123,17 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 				final List<SSTableFacade> facades = new ArrayList<>();
 				facades.addAll(sstableManager.getSstableFacades());
 				
-				final MergeTask mergeTask = mergeStragegy.getMergeTask(facades);
+				final MergeStrategy mergeStrategy = getMergeStrategy(ssTableName);
+				final MergeTask mergeTask = mergeStrategy.getMergeTask(facades);
 				mergeSSTables(mergeTask, sstableManager);
+				
+				// Determine the state after the compaction
+				final List<SSTableFacade> remainingFacades = new ArrayList<>();
+				remainingFacades.addAll(sstableManager.getSstableFacades());
+				
+				regions++;
+				tables = tables + remainingFacades.size();
+				pendingBytes = pendingBytes + getPendingBytes(mergeStrategy.getMergeTask(remainingFacades));
 			} catch (StorageManagerException e) {
 				if(! Thread.currentThread().isInterrupted()) {
 					logger.error("Error while merging tables", e);
@@ -120,6 +142,40 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 				}
 			}
 		}
+		
+		CompactionMetrics.updateLocationState(location, regions, tables, pendingBytes);
+	}
+	
+	/**
+	 * Get the merge strategy for the given table
+	 * @param ssTableName
+	 * @return
+	 */
+	protected MergeStrategy getMergeStrategy(final SSTableName ssTableName) {
+		final String distributionGroup = ssTableName.getDistributionGroup();
+		
+		if(distributionGroup == null) {
+			return mergeStragegy;
+		}
+		
+		return distributionGroupStrategies.computeIfAbsent(distributionGroup, 
+				g -> MergeStrategyFactory.getInstanceForDistributionGroup(g));
+	}
+	
+	/**
+	 * Get the size of the tables of the merge task
+	 * @param mergeTask
+	 * @return
+	 */
+	protected long getPendingBytes(final MergeTask mergeTask) {
+		if(mergeTask.getTaskType() == MergeTaskType.UNKNOWN || mergeTask.getCompactTables() == null) {
+			return 0;
+		}
+		
+		return mergeTask.getCompactTables()
+				.stream()
+				.mapToLong(SSTableFacade::getSize)
+				.sum();
 	}
 
 	/**
@@ -174,6 +230,8 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 			writeMergeLog(facades, majorCompaction);
 		}
 		
+		CompactionMetrics.addCompactionReadBytes(getPendingBytes(mergeTask));
+		
 		// Run the compact process
 		final SSTableCompactor ssTableCompactor = new SSTableCompactor(sstableManager, reader);
 		ssTableCompactor.setMajorCompaction(majorCompaction);
@@ -186,6 +244,9 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 				ssTableCompactor.getReadTuples(), ssTableCompactor.getWrittenTuples(), 
 				mergeFactor);
 		
+		writeThroughputLog(ssTableCompactor);
+		CompactionMetrics.addCompactionWrittenBytes(ssTableCompactor.getWrittenBytes());
+		
 		registerNewFacadeAndDeleteOldInstances(sstableManager, facades, newTables);
 		
 		if(sstableManager.getSSTableName().isDistributedTable()) {
@@ -256,6 +317,10 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 			
 			// Switch facades in registry
 			sstableManager.replaceCompactedSStables(newFacedes, oldFacades);
+			
+			// The old tables are no longer readable by new queries
+			final SSTableCache cache = SSTableCache.getInstance();
+			oldFacades.forEach(f -> cache.invalidateTable(f.getSStableName(), f.getTablebumber()));
 
 			// Schedule facades for deletion
 			oldFacades.forEach(f -> f.deleteOnClose());
@@ -281,6 +346,21 @@ public class SSTableCompactorThread extends ExceptionSafeThread {
 		}
 	}
 
+	/**
+	 * Write the throughput of the compaction into log
+	 * @param ssTableCompactor
+	 */
+	protected void writeThroughputLog(final SSTableCompactor ssTableCompactor) {
+		final long executionTime = Math.max(1, ssTableCompactor.getExecutionTime());
+		final double seconds = executionTime / 1000.0;
+		final double tuplesPerSecond = ssTableCompactor.getReadTuples() / seconds;
+		final double megabytesPerSecond = ssTableCompactor.getWrittenBytes() / (1024.0 * 1024.0) / seconds;
+		
+		logger.info("Compactation took {} ms with {} key ranges. Throughput: {} tuples/s, {} MB/s written",
+				executionTime, ssTableCompactor.getNumberOfKeyRanges(), 
+				String.format("%.0f", tuplesPerSecond), String.format("%.2f", megabytesPerSecond));
+	}
+
 	/***
 	 * Write info about the merge run into log
 	 * @param facades
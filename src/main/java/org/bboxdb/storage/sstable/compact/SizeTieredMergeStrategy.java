@@ -0,0 +1,170 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+
+/**
+ * The size tiered merge strategy groups the tables into buckets of tables with 
+ * a similar size. The tables of a bucket are merged as soon as the bucket 
+ * contains enough tables. Each tuple is rewritten once per tier, the 
+ * number of tables grows logarithmically with the size of the region.
+ */
+public class SizeTieredMergeStrategy implements MergeStrategy {
+	
+	/**
+	 * The minimal number of tables in a bucket to start a merge
+	 */
+	protected final static int MIN_TABLES_PER_BUCKET = 4;
+	
+	/**
+	 * The max number of tables to merge per task
+	 */
+	protected final static int MAX_MERGE_TABLES_PER_JOB = 32;
+	
+	/**
+	 * A table belongs to a bucket, if the size is at least BUCKET_LOW * average 
+	 * size of the bucket
+	 */
+	protected final static double BUCKET_LOW = 0.5;
+	
+	/**
+	 * A table belongs to a bucket, if the size is at most BUCKET_HIGH * average 
+	 * size of the bucket
+	 */
+	protected final static double BUCKET_HIGH = 1.5;
+	
+	/**
+	 * All tables below this size are placed in the same bucket (4 MB)
+	 */
+	protected final static long MIN_TABLE_SIZE = 4 * 1024 * 1024;
+
+	@Override
+	public MergeTask getMergeTask(final List<SSTableFacade> sstables) {
+		
+		final MergeTask mergeTask = new MergeTask();
+		final List<SSTableFacade> bucket = getBucketToMerge(sstables);
+		
+		if(bucket.isEmpty()) {
+			return mergeTask;
+		}
+		
+		// Keep the order of the tables, the later tables win on equal versions
+		final List<SSTableFacade> mergeTables = sstables
+				.stream()
+				.filter(f -> bucket.contains(f))
+				.collect(Collectors.toList());
+		
+		// Deleted tuples can only be removed, when all tables are merged
+		if(mergeTables.size() == sstables.size()) {
+			mergeTask.setTaskType(MergeTaskType.MAJOR);
+		} else {
+			mergeTask.setTaskType(MergeTaskType.MINNOR);
+		}
+		
+		mergeTask.setCompactTables(mergeTables);
+		return mergeTask;
+	}
+
+	/**
+	 * Get the bucket with the smallest tables that contains enough tables for a merge
+	 * @param sstables
+	 * @return the tables of the bucket or an empty list
+	 */
+	protected List<SSTableFacade> getBucketToMerge(final List<SSTableFacade> sstables) {
+		final List<SSTableFacade> sortedTables = new ArrayList<>(sstables);
+		sortedTables.sort(Comparator.comparingLong(f -> getTableSize(f)));
+		
+		final int minTables = getMinTablesPerBucket();
+		
+		List<SSTableFacade> bucket = new ArrayList<>();
+		long bucketSize = 0;
+		
+		for(final SSTableFacade facade : sortedTables) {
+			final long tableSize = getTableSize(facade);
+			
+			if(! bucket.isEmpty() && ! isTableInBucket(tableSize, bucketSize / bucket.size())) {
+				
+				// The tables are sorted, the first bucket with enough tables has the smallest tables
+				if(bucket.size() >= minTables) {
+					break;
+				}
+				
+				bucket = new ArrayList<>();
+				bucketSize = 0;
+			}
+			
+			bucket.add(facade);
+			bucketSize = bucketSize + tableSize;
+		}
+		
+		if(bucket.size() < minTables) {
+			return Collections.emptyList();
+		}
+		
+		return bucket.subList(0, Math.min(bucket.size(), MAX_MERGE_TABLES_PER_JOB));
+	}
+
+	/**
+	 * Belongs a table with the given size to a bucket with the given average size
+	 * @param tableSize
+	 * @param averageSize
+	 * @return
+	 */
+	protected boolean isTableInBucket(final long tableSize, final long averageSize) {
+		
+		if(tableSize < MIN_TABLE_SIZE && averageSize < MIN_TABLE_SIZE) {
+			return true;
+		}
+		
+		return tableSize >= averageSize * BUCKET_LOW && tableSize <= averageSize * BUCKET_HIGH;
+	}
+	
+	/**
+	 * The minimal number of tables for a merge. A compaction writes one table per 
+	 * key range, so a merge of fewer tables would create a bucket of the same size.
+	 * @return
+	 */
+	protected int getMinTablesPerBucket() {
+		final int compactionThreads = BBoxDBConfigurationManager.getConfiguration().getStorageCompactionThreads();
+		return Math.max(MIN_TABLES_PER_BUCKET, compactionThreads + 1);
+	}
+	
+	/**
+	 * Get the size of the table
+	 * @param facade
+	 * @return
+	 */
+	protected long getTableSize(final SSTableFacade facade) {
+		return facade.getSize();
+	}
+	
+	@Override
+	public long getCompactorDelay() {
+		return SSTableConst.COMPACT_THREAD_DELAY;
+	}
+
+}
@@ -20,7 +20,7 @@ package org.bboxdb.storage.sstable.reader;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
@@ -28,6 +28,8 @@ import org.bboxdb.misc.BBoxDBService;
 import org.bboxdb.misc.Const;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.util.io.SegmentedMappedFile;
 import org.bboxdb.util.io.UnsafeMemoryHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,9 +57,16 @@ public abstract class AbstractTableReader implements BBoxDBService {
 	protected final String directory;
 	
 	/**
-	 * The memory region
+	 * The memory region. The file is mapped in multiple segments, so
+	 * files larger than 2 GB can be read. All reads are absolute or 
+	 * performed on private views, so no synchronization is needed.
 	 */
-	protected MappedByteBuffer memory;
+	protected volatile SegmentedMappedFile memory;
+	
+	/**
+	 * The size of a mapped segment
+	 */
+	protected int segmentSize = SSTableConst.MAPPED_SEGMENT_SIZE;
 
 	/**
 	 * The file to read
@@ -116,13 +125,54 @@ public abstract class AbstractTableReader implements BBoxDBService {
 		// Validate file - read the magic from the beginning
 		final byte[] magicBytes = new byte[expectedMagicBytes.length];
 		
-		memory.get(magicBytes, 0, expectedMagicBytes.length);
+		if(memory.size() < magicBytes.length) {
+			throw new StorageManagerException("File " + file + " is too short");
+		}
+		
+		memory.get(0, magicBytes);
 
 		if(! Arrays.equals(magicBytes, expectedMagicBytes)) {
 			throw new StorageManagerException("File " + file + " does not contain the magic bytes");
 		}
 	}
 	
+	/**
+	 * Does the file start with the given magic bytes?
+	 * 
+	 * @param magicBytes
+	 * @return
+	 */
+	protected boolean hasMagicBytes(final byte[] magicBytes) {
+		
+		if(memory.size() < magicBytes.length) {
+			return false;
+		}
+		
+		for(int i = 0; i < magicBytes.length; i++) {
+			if(memory.get(i) != magicBytes[i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Read and check the version of the block format. The version is 
+	 * stored after the magic bytes.
+	 * 
+	 * @param magicBytes
+	 * @throws StorageManagerException
+	 */
+	protected void validateBlockFormatVersion(final byte[] magicBytes) throws StorageManagerException {
+		final short version = memory.getShort(magicBytes.length);
+		
+		if(version != SSTableConst.SST_BLOCK_VERSION) {
+			throw new StorageManagerException("File " + file + " has unsupported block format version " 
+					+ version);
+		}
+	}
+	
 	/**
 	 * Get the magic bytes for the file
 	 * @return
@@ -130,13 +180,23 @@ public abstract class AbstractTableReader implements BBoxDBService {
 	protected abstract byte[] getMagicBytes();
 	
 	/**
-	 * Reset the position to the first element
+	 * Get a private view of the given region of the memory. The view 
+	 * is positioned at the beginning of the region and has its own 
+	 * position and limit. So it can be used without synchronization 
+	 * by concurrent readers.
+	 * 
+	 * @param position
+	 * @param length
+	 * @return the view or null, if the memory was unmapped
 	 */
-	protected void resetPosition() {
+	protected ByteBuffer getMemoryView(final long position, final int length) {
+		final SegmentedMappedFile mappedMemory = memory;
 		
-		final byte[] magicBytes = getMagicBytes();
+		if(mappedMemory == null) {
+			return null;
+		}
 		
-		memory.position(magicBytes.length);
+		return mappedMemory.getView(position, length);
 	}
 
 	/**
@@ -149,8 +209,7 @@ public abstract class AbstractTableReader implements BBoxDBService {
 		try {
 			randomAccessFile = new RandomAccessFile(file, "r");
 			fileChannel = randomAccessFile.getChannel();
-			memory = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
-			memory.order(Const.APPLICATION_BYTE_ORDER);
+			memory = SegmentedMappedFile.mapFile(fileChannel, segmentSize, Const.APPLICATION_BYTE_ORDER);
 			validateFile();
 		} catch (Exception e) {
 			if(! Thread.currentThread().isInterrupted()) {
@@ -185,9 +244,11 @@ public abstract class AbstractTableReader implements BBoxDBService {
 			randomAccessFile = null;
 		}
 		
-		if(memory != null) {
-			UnsafeMemoryHelper.unmapMemory(memory);
+		final SegmentedMappedFile mappedMemory = memory;
+		
+		if(mappedMemory != null) {
 			memory = null;
+			mappedMemory.unmap();
 		}
 	}
 	
@@ -254,10 +315,10 @@ public abstract class AbstractTableReader implements BBoxDBService {
 	}
 	
 	/**
-	 * Get the memory buffer
+	 * Get the mapped memory
 	 * @return
 	 */
-	public MappedByteBuffer getMemory() {
+	public SegmentedMappedFile getMemory() {
 		return memory;
 	}
 }
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.reader;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.block.SSTableBlock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Node wide, size bounded cache for decoded tuples, keys and 
+ * decompressed blocks of the SSTables. The elements are identified 
+ * by the table name, the table number and the position in the file.
+ * 
+ * The elements of a table are invalidated when the reader of the 
+ * table is opened or closed (e.g., after the table is replaced by
+ * a compaction), so an element can never belong to an older file 
+ * with the same name and number. The keys of the cached elements 
+ * are also indexed per table, so the invalidation of a table only
+ * touches the elements of that table.
+ */
+public class SSTableCache {
+	
+	/**
+	 * The cached elements
+	 */
+	protected final Cache<SSTableCacheKey, Object> cache;
+	
+	/**
+	 * The keys of the cached elements, grouped by table
+	 */
+	protected final Map<SSTableCacheKey, Set<SSTableCacheKey>> tableKeys;
+	
+	/**
+	 * The maximal size of the cache in bytes
+	 */
+	protected final long maxSize;
+	
+	/**
+	 * The estimated overhead of a cache entry in bytes
+	 */
+	protected final static int ENTRY_OVERHEAD = 96;
+	
+	/**
+	 * The node wide instance
+	 */
+	protected static SSTableCache instance;
+
+	/**
+	 * The Logger
+	 */
+	protected final static Logger logger = LoggerFactory.getLogger(SSTableCache.class);
+	
+	public SSTableCache(final long maxSize) {
+		this.maxSize = maxSize;
+		this.tableKeys = new ConcurrentHashMap<>();
+		
+		this.cache = CacheBuilder.newBuilder()
+			.maximumWeight(Math.max(0, maxSize))
+			.weigher((final SSTableCacheKey key, final Object value) -> getWeight(value))
+			.removalListener((final RemovalNotification<SSTableCacheKey, Object> notification) -> {
+				if(notification.wasEvicted()) {
+					removeTableKey(notification.getKey());
+				}
+			})
+			.recordStats()
+			.build();
+	}
+	
+	/**
+	 * Get the node wide instance of the cache
+	 * @return
+	 */
+	public static synchronized SSTableCache getInstance() {
+		if(instance == null) {
+			final long cacheSize = BBoxDBConfigurationManager.getConfiguration().getStorageSSTableCacheSize();
+			logger.info("Creating SSTable cache with a size of {} bytes", cacheSize);
+			instance = new SSTableCache(cacheSize);
+		}
+		
+		return instance;
+	}
+	
+	/**
+	 * Estimate the memory usage of the cached element
+	 * @param value
+	 * @return
+	 */
+	protected static int getWeight(final Object value) {
+		if(value instanceof Tuple) {
+			return ENTRY_OVERHEAD + ((Tuple) value).getSize();
+		} 
+		
+		if(value instanceof String) {
+			return ENTRY_OVERHEAD + 2 * ((String) value).length();
+		}
+		
+		if(value instanceof SSTableBlock) {
+			return ENTRY_OVERHEAD + ((SSTableBlock) value).getUncompressedSize();
+		}
+		
+		return ENTRY_OVERHEAD;
+	}
+	
+	/**
+	 * Is the cache enabled
+	 * @return
+	 */
+	public boolean isEnabled() {
+		return maxSize > 0;
+	}
+	
+	/**
+	 * Get the tuple at the given position
+	 * @param name
+	 * @param tablenumber
+	 * @param position
+	 * @return the tuple or null
+	 */
+	public Tuple getTuple(final SSTableName name, final int tablenumber, final long position) {
+		return (Tuple) getElement(new SSTableCacheKey(name, tablenumber, 
+				SSTableCacheEntryType.TUPLE, position));
+	}
+	
+	/**
+	 * Put the tuple at the given position into the cache
+	 * @param name
+	 * @param tablenumber
+	 * @param position
+	 * @param tuple
+	 */
+	public void putTuple(final SSTableName name, final int tablenumber, final long position, 
+			final Tuple tuple) {
+		
+		putElement(new SSTableCacheKey(name, tablenumber, SSTableCacheEntryType.TUPLE, position), tuple);
+	}
+	
+	/**
+	 * Get the key of the tuple at the given position
+	 * @param name
+	 * @param tablenumber
+	 * @param position
+	 * @return the key or null
+	 */
+	public String getKey(final SSTableName name, final int tablenumber, final long position) {
+		return (String) getElement(new SSTableCacheKey(name, tablenumber, 
+				SSTableCacheEntryType.KEY, position));
+	}
+	
+	/**
+	 * Put the key of the tuple at the given position into the cache
+	 * @param name
+	 * @param tablenumber
+	 * @param position
+	 * @param key
+	 */
+	public void putKey(final SSTableName name, final int tablenumber, final long position, 
+			final String key) {
+		
+		putElement(new SSTableCacheKey(name, tablenumber, SSTableCacheEntryType.KEY, position), key);
+	}
+	
+	/**
+	 * Get the block at the given position
+	 * @param name
+	 * @param tablenumber
+	 * @param position
+	 * @return the block or null
+	 */
+	public SSTableBlock getBlock(final SSTableName name, final int tablenumber, final long position) {
+		return (SSTableBlock) getElement(new SSTableCacheKey(name, tablenumber, 
+				SSTableCacheEntryType.BLOCK, position));
+	}
+	
+	/**
+	 * Put the block into the cache
+	 * @param name
+	 * @param tablenumber
+	 * @param block
+	 */
+	public void putBlock(final SSTableName name, final int tablenumber, final SSTableBlock block) {
+		putElement(new SSTableCacheKey(name, tablenumber, SSTableCacheEntryType.BLOCK, 
+				block.getBlockPosition()), block);
+	}
+	
+	/**
+	 * Get the element for the key
+	 * @param key
+	 * @return the element or null
+	 */
+	protected Object getElement(final SSTableCacheKey key) {
+		if(! isEnabled()) {
+			return null;
+		}
+		
+		return cache.getIfPresent(key);
+	}
+	
+	/**
+	 * Put the element into the cache
+	 * @param key
+	 * @param value
+	 */
+	protected void putElement(final SSTableCacheKey key, final Object value) {
+		if(! isEnabled() || value == null) {
+			return;
+		}
+		
+		addTableKey(key);
+		cache.put(key, value);
+	}
+	
+	/**
+	 * Add the key to the keys of its table
+	 * @param key
+	 */
+	protected void addTableKey(final SSTableCacheKey key) {
+		tableKeys.compute(key.getTableKey(), (k, keys) -> {
+			final Set<SSTableCacheKey> result = (keys == null) ? ConcurrentHashMap.newKeySet() : keys;
+			result.add(key);
+			return result;
+		});
+	}
+	
+	/**
+	 * Remove the evicted key from the keys of its table
+	 * @param key
+	 */
+	protected void removeTableKey(final SSTableCacheKey key) {
+		tableKeys.computeIfPresent(key.getTableKey(), (k, keys) -> {
+			keys.remove(key);
+			return keys.isEmpty() ? null : keys;
+		});
+	}
+	
+	/**
+	 * Remove all elements of the given table from the cache
+	 * @param name
+	 * @param tablenumber
+	 */
+	public void invalidateTable(final SSTableName name, final int tablenumber) {
+		if(! isEnabled()) {
+			return;
+		}
+		
+		final SSTableCacheKey tableKey = new SSTableCacheKey(name, tablenumber, null, -1);
+		final Set<SSTableCacheKey> keys = tableKeys.remove(tableKey);
+		
+		if(keys != null) {
+			cache.invalidateAll(keys);
+		}
+	}
+	
+	/**
+	 * Remove all elements from the cache
+	 */
+	public void clear() {
+		cache.invalidateAll();
+		tableKeys.clear();
+	}
+	
+	/**
+	 * Get the number of tables with cached elements
+	 * @return
+	 */
+	public int getNumberOfTables() {
+		return tableKeys.size();
+	}
+	
+	/**
+	 * Get the number of cache hits
+	 * @return
+	 */
+	public long getHitCount() {
+		return cache.stats().hitCount();
+	}
+	
+	/**
+	 * Get the number of cache misses
+	 * @return
+	 */
+	public long getMissCount() {
+		return cache.stats().missCount();
+	}
+	
+	/**
+	 * Get the number of evicted elements
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return cache.stats().evictionCount();
+	}
+	
+	/**
+	 * Get the statistics of the cache
+	 * @return
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+	
+	/**
+	 * Get the number of cached elements
+	 * @return
+	 */
+	public long getNumberOfElements() {
+		return cache.size();
+	}
+	
+	/**
+	 * Get the maximal size of the cache in bytes
+	 * @return
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public String toString() {
+		return "SSTableCache [maxSize=" + maxSize + ", elements=" + cache.size() 
+			+ ", stats=" + cache.stats() + "]";
+	}
+
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.reader;
+
+import org.bboxdb.storage.entity.SSTableName;
+
+public class SSTableCacheKey {
+
+	/**
+	 * The name of the table
+	 */
+	protected final SSTableName name;
+	
+	/**
+	 * The number of the table
+	 */
+	protected final int tablenumber;
+	
+	/**
+	 * The type of the cached element
+	 */
+	protected final SSTableCacheEntryType type;
+	
+	/**
+	 * The position of the element in the file
+	 */
+	protected final long position;
+
+	public SSTableCacheKey(final SSTableName name, final int tablenumber, 
+			final SSTableCacheEntryType type, final long position) {
+		
+		this.name = name;
+		this.tablenumber = tablenumber;
+		this.type = type;
+		this.position = position;
+	}
+	
+	/**
+	 * Does the key belong to the given table
+	 * @param name
+	 * @param tablenumber
+	 * @return
+	 */
+	public boolean isKeyForTable(final SSTableName name, final int tablenumber) {
+		return this.tablenumber == tablenumber && this.name.equals(name);
+	}
+
+	/**
+	 * Get the key that identifies the table of the element
+	 * @return
+	 */
+	public SSTableCacheKey getTableKey() {
+		return new SSTableCacheKey(name, tablenumber, null, -1);
+	}
+
+	public SSTableName getName() {
+		return name;
+	}
+
+	public int getTablenumber() {
+		return tablenumber;
+	}
+
+	public SSTableCacheEntryType getType() {
+		return type;
+	}
+
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public String toString() {
+		return "SSTableCacheKey [name=" + name + ", tablenumber=" + tablenumber + ", type=" + type
+				+ ", position=" + position + "]";
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		result = prime * result + (int) (position ^ (position >>> 32));
+		result = prime * result + tablenumber;
+		result = prime * result + ((type == null) ? 0 : type.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		SSTableCacheKey other = (SSTableCacheKey) obj;
+		if (name == null) {
+			if (other.name != null)
+				return false;
+		} else if (!name.equals(other.name))
+			return false;
+		if (position != other.position)
+			return false;
+		if (tablenumber != other.tablenumber)
+			return false;
+		if (type != other.type)
+			return false;
+		return true;
+	}
+
+}
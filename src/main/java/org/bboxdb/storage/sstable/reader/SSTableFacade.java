@@ -21,7 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bboxdb.misc.BBoxDBService;
@@ -33,13 +33,17 @@ import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableMetaData;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleTimestampType;
 import org.bboxdb.storage.sstable.SSTableHelper;
-import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.SSTableKeySampleIndex;
+import org.bboxdb.storage.sstable.SSTableTimeIndex;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexReader;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexReaderFactory;
+import org.bboxdb.util.IntArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Iterators;
 import com.google.common.hash.BloomFilter;
 
 public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
@@ -69,6 +73,11 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 	 */
 	protected final SSTableMetaData ssTableMetadata;
 	
+	/**
+	 * The bounding box that covers all tuples of the sstable
+	 */
+	protected final BoundingBox coveringBoundingBox;
+	
 	/**
 	 * The spatial index
 	 */
@@ -79,6 +88,11 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 	 */
 	protected BloomFilter<String> bloomfilter;
 	
+	/**
+	 * The time index, null for tables written by older versions
+	 */
+	protected SSTableTimeIndex timeIndex;
+	
 	/**
 	 * The number of the table
 	 */
@@ -112,6 +126,7 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 		// Meta data
 		final File metadataFile = getMetadataFile(directory, tablename, tablenumber);
 		ssTableMetadata = SSTableMetaData.importFromYamlFile(metadataFile);
+		coveringBoundingBox = getCoveringBoundingBox(ssTableMetadata);
 		
 		this.usage = new AtomicInteger(0);
 		deleteOnClose = false;
@@ -143,6 +158,30 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 		return bloomFilterFile;
 	}
 	
+	/**
+	 * Get the key sample file
+	 * @param directory
+	 * @param tablename
+	 * @param tablenumber
+	 * @return
+	 */
+	protected File getKeySampleFile(final String directory, final SSTableName tablename, final int tablenumber) {
+		final String keySampleFileName = SSTableHelper.getSSTableKeySampleFilename(directory, tablename, tablenumber);
+		return new File(keySampleFileName);
+	}
+	
+	/**
+	 * Get the time index file
+	 * @param directory
+	 * @param tablename
+	 * @param tablenumber
+	 * @return
+	 */
+	protected File getTimeIndexFile(final String directory, final SSTableName tablename, final int tablenumber) {
+		final String timeIndexFileName = SSTableHelper.getSSTableTimeIndexFilename(directory, tablename, tablenumber);
+		return new File(timeIndexFileName);
+	}
+	
 	/**
 	 * Load the spatial index from file
 	 * @throws StorageManagerException 
@@ -183,6 +222,49 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 		}	
 	}
 
+	/**
+	 * Load the key samples from file. Tables in the block format and 
+	 * tables written by older versions don't have key samples.
+	 * 
+	 * @param keySampleFile
+	 */
+	protected void loadKeySamples(final File keySampleFile) {
+		
+		if(ssTableKeyIndexReader.isBlockFormat() || ! keySampleFile.exists()) {
+			ssTableKeyIndexReader.setKeySampleIndex(null);
+			return;
+		}
+		
+		try {
+			final SSTableKeySampleIndex keySamples = SSTableKeySampleIndex.readFromFile(keySampleFile);
+			ssTableKeyIndexReader.setKeySampleIndex(keySamples);
+		} catch (StorageManagerException e) {
+			logger.warn("Unable to load the key samples", e);
+			ssTableKeyIndexReader.setKeySampleIndex(null);
+		}
+	}
+
+	/**
+	 * Load the time index from file. Tables written by older versions 
+	 * don't have a time index and are scanned completely.
+	 * 
+	 * @param timeIndexFile
+	 */
+	protected void loadTimeIndex(final File timeIndexFile) {
+		
+		if(! timeIndexFile.exists()) {
+			timeIndex = null;
+			return;
+		}
+		
+		try {
+			timeIndex = SSTableTimeIndex.readFromFile(timeIndexFile);
+		} catch (StorageManagerException e) {
+			logger.warn("Unable to load the time index", e);
+			timeIndex = null;
+		}
+	}
+
 	/**
 	 * Calculate the name of the metadata file
 	 * @param directory
@@ -215,6 +297,14 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 			// Bloom filter
 			final File bloomFilterFile = getBloomFilterFile(directory, tablename, tablenumber);
 			loadBloomFilter(bloomFilterFile);
+			
+			// Key samples
+			final File keySampleFile = getKeySampleFile(directory, tablename, tablenumber);
+			loadKeySamples(keySampleFile);
+			
+			// Time index
+			final File timeIndexFile = getTimeIndexFile(directory, tablename, tablenumber);
+			loadTimeIndex(timeIndexFile);
 		} catch (StorageManagerException e) {
 			throw new BBoxDBException(e);
 		}
@@ -233,6 +323,10 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 		if(spatialIndex != null) {
 			spatialIndex.close();
 		}
+		
+		if(timeIndex != null) {
+			timeIndex.close();
+		}
 	}
 
 	@Override
@@ -321,6 +415,14 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 			final File bloomFilterFile = getBloomFilterFile(directory, tablename, tablenumber);
 			bloomFilterFile.delete();
 			
+			// Delete key samples
+			final File keySampleFile = getKeySampleFile(directory, tablename, tablenumber);
+			keySampleFile.delete();
+			
+			// Delete time index
+			final File timeIndexFile = getTimeIndexFile(directory, tablename, tablenumber);
+			timeIndexFile.delete();
+			
 			// Delete metadata
 			final File metadataFile = getMetadataFile(directory, tablename, tablenumber);
 			metadataFile.delete();
@@ -367,6 +469,27 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 	public long getNewestTupleInsertedTimestamp() {
 		return ssTableMetadata.getNewestTupleInsertedTimstamp();
 	}
+	
+	@Override
+	public BoundingBox getCoveringBoundingBox() {
+		return coveringBoundingBox;
+	}
+	
+	/**
+	 * Read the covering bounding box from the meta data
+	 * @param metaData
+	 * @return
+	 */
+	protected static BoundingBox getCoveringBoundingBox(final SSTableMetaData metaData) {
+		final double[] boundingBoxData = metaData.getBoundingBoxData();
+		
+		// No tuple with a bounding box is stored in the sstable
+		if(boundingBoxData == null || boundingBoxData.length == 0) {
+			return BoundingBox.EMPTY_BOX;
+		}
+		
+		return new BoundingBox(boundingBoxData);
+	}
 
 	@Override
 	public Tuple get(final String key) throws StorageManagerException {
@@ -382,14 +505,18 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 			}
 		}
 		
-		final int position = ssTableKeyIndexReader.getPositionForTuple(key);
+		final int entry = ssTableKeyIndexReader.getEntryForTuple(key);
 		
 		// Does the tuple exist?
-		if(position == -1) {
+		if(entry == -1) {
 			return null;
 		}
 		
-		return ssTableReader.getTupleAtPosition(position);
+		try {
+			return ssTableKeyIndexReader.getTupleForIndexEntry(entry);
+		} catch (IOException e) {
+			throw new StorageManagerException(e);
+		}
 	}
 
 	@Override
@@ -432,27 +559,63 @@ public class SSTableFacade implements BBoxDBService, ReadOnlyTupleStorage {
 	public Iterator<Tuple> getAllTuplesInBoundingBox(final BoundingBox boundingBox) {
 		assert (usage.get() > 0);
 
-		List<SpatialIndexEntry> entries;
+		final IntArrayList entries = new IntArrayList();
 		
 		try {
-			entries = spatialIndex.getEntriesForRegion(boundingBox);
+			spatialIndex.getEntriesForRegion(boundingBox, entries);
 		} catch (StorageManagerException e) {
 			throw new RuntimeException(e);
 		}
 		
-		final Iterator<SpatialIndexEntry> entryIterator = entries.iterator();
+		return getTuplesForEntries(entries);
+	}
+	
+	@Override
+	public Iterator<Tuple> getAllTuplesNewerAs(final TupleTimestampType timestampType, 
+			final long timestamp) {
+		
+		assert (usage.get() > 0);
+		
+		final SSTableTimeIndex index = timeIndex;
+		
+		if(index == null) {
+			return Iterators.filter(iterator(), t -> timestampType.getTimestamp(t) > timestamp);
+		}
+		
+		final IntArrayList entries = new IntArrayList();
+		index.getEntriesNewerAs(timestampType, timestamp, entries);
+		
+		// Read the tuples in the order of the table
+		entries.sort();
 		
+		return getTuplesForEntries(entries);
+	}
+	
+	/**
+	 * Get an iterator that reads the tuples for the given tuple numbers
+	 * @param entries
+	 * @return
+	 */
+	protected Iterator<Tuple> getTuplesForEntries(final IntArrayList entries) {
 		return new Iterator<Tuple>() {
+			
+			/**
+			 * The position in the entry list
+			 */
+			private int position = 0;
 
 			@Override
 			public boolean hasNext() {
-				return entryIterator.hasNext();
+				return position < entries.size();
 			}
 
 			@Override
 			public Tuple next() {
-				final SpatialIndexEntry entry = (SpatialIndexEntry) entryIterator.next();
-				final long tupleNumber = entry.getValue();
+				if(! hasNext()) {
+					throw new NoSuchElementException();
+				}
+				
+				final long tupleNumber = entries.get(position++);
 				
 				try {
 					return ssTableKeyIndexReader.getTupleForIndexEntry(tupleNumber);
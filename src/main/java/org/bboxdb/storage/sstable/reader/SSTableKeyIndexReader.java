@@ -19,6 +19,7 @@ package org.bboxdb.storage.sstable.reader;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 import org.bboxdb.storage.StorageManagerException;
@@ -26,7 +27,12 @@ import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.queryprocessor.predicate.Predicate;
 import org.bboxdb.storage.queryprocessor.predicate.PredicateFilterIterator;
 import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.SSTableKeySampleIndex;
 import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.block.SSTableBlock;
+import org.bboxdb.storage.sstable.block.SSTableBlockIndex;
+import org.bboxdb.util.io.DataEncoderHelper;
+import org.bboxdb.util.io.SegmentedMappedFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +43,21 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 	 */
 	protected final SSTableReader sstableReader;
 	
+	/**
+	 * The sparse block index, null if the table is stored in the row format
+	 */
+	protected volatile SSTableBlockIndex blockIndex;
+	
+	/**
+	 * The size of an entry in the row format index (4 or 8 bytes)
+	 */
+	protected int indexEntryBytes;
+	
+	/**
+	 * The sampled keys of the table (row format only)
+	 */
+	protected volatile SSTableKeySampleIndex keySampleIndex;
+	
 	/**
 	 * The Logger
 	 */
@@ -45,6 +66,7 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 	public SSTableKeyIndexReader(final SSTableReader sstableReader) throws StorageManagerException {
 		super(sstableReader.getDirectory(), sstableReader.getName(), sstableReader.getTablebumber());
 		this.sstableReader = sstableReader;
+		this.indexEntryBytes = SSTableConst.INDEX_LONG_ENTRY_BYTES;
 	}
 
 	@Override
@@ -54,12 +76,73 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 	}
 
 	/**
-	 * Scan the index file for the tuple position
+	 * Validate the file and detect the format of the index
+	 */
+	@Override
+	protected void validateFile() throws StorageManagerException {
+		
+		if(hasMagicBytes(SSTableConst.MAGIC_BYTES_BLOCK_INDEX)) {
+			validateBlockFormatVersion(SSTableConst.MAGIC_BYTES_BLOCK_INDEX);
+			
+			final int headerLength = SSTableConst.MAGIC_BYTES_BLOCK_INDEX.length + DataEncoderHelper.SHORT_BYTES;
+			final ByteBuffer view = getMemoryView(headerLength, (int) (memory.size() - headerLength));
+			blockIndex = SSTableBlockIndex.readFromBuffer(view);
+			return;
+		}
+		
+		blockIndex = null;
+		
+		if(hasMagicBytes(SSTableConst.MAGIC_BYTES_INDEX_LONG)) {
+			indexEntryBytes = SSTableConst.INDEX_LONG_ENTRY_BYTES;
+		} else {
+			indexEntryBytes = SSTableConst.INDEX_ENTRY_BYTES;
+		}
+		
+		super.validateFile();
+	}
+	
+	/**
+	 * Scan the index file for the tuple position. Only tables in the 
+	 * row format have tuple positions.
+	 * 
 	 * @param key
 	 * @return
 	 * @throws StorageManagerException 
 	 */
-	public int getPositionForTuple(final String key) throws StorageManagerException {
+	public long getPositionForTuple(final String key) throws StorageManagerException {
+		
+		if(blockIndex != null) {
+			throw new StorageManagerException("Tuple positions are not available in the block format");
+		}
+		
+		final int entry = getEntryForTuple(key);
+		
+		if(entry == -1) {
+			return -1;
+		}
+		
+		return convertEntryToPosition(entry);
+	}
+	
+	/**
+	 * Search the index entry of the tuple
+	 * @param key
+	 * @return the entry or -1
+	 * @throws StorageManagerException 
+	 */
+	public int getEntryForTuple(final String key) throws StorageManagerException {
+		
+		final SSTableBlockIndex sparseIndex = blockIndex;
+		
+		if(sparseIndex != null) {
+			return getEntryForTupleInBlocks(sparseIndex, key);
+		}
+		
+		final SSTableKeySampleIndex samples = keySampleIndex;
+		
+		if(samples != null) {
+			return getEntryForTupleWithSamples(samples, key);
+		}
 		
 		try {
 			
@@ -69,7 +152,7 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 			// Check key is > then first value
 			final String firstValue = getKeyForIndexEntry(firstEntry);
 			if(firstValue.equals(key)) {
-				return convertEntryToPosition(firstEntry);
+				return firstEntry;
 			}
 			
 			if(firstValue.compareTo(key) > 0) {
@@ -79,7 +162,7 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 			// Check if key is < then first value
 			final String lastValue = getKeyForIndexEntry(lastEntry);
 			if(lastValue.equals(key)) {
-				return convertEntryToPosition(lastEntry);
+				return lastEntry;
 			}
 			if(lastValue.compareTo(key) < 0) {
 				return -1;
@@ -96,7 +179,7 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 				final String curEntryValue = getKeyForIndexEntry(curEntry);
 				
 				if(curEntryValue.equals(key)) {
-					return convertEntryToPosition(curEntry);
+					return curEntry;
 				}
 				
 				if(key.compareTo(curEntryValue) > 0) {
@@ -113,6 +196,82 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 		
 		return -1;
 	}
+	
+	/**
+	 * Search the index entry of the tuple with the key samples. The 
+	 * samples narrow the binary search to one interval.
+	 * 
+	 * @param samples
+	 * @param key
+	 * @return the entry or -1
+	 * @throws StorageManagerException
+	 */
+	protected int getEntryForTupleWithSamples(final SSTableKeySampleIndex samples, final String key) 
+			throws StorageManagerException {
+		
+		final int sampleEntry = samples.getFirstEntryForKey(key);
+		
+		if(sampleEntry == -1) {
+			return -1;
+		}
+		
+		int firstEntry = sampleEntry;
+		int lastEntry = Math.min(sampleEntry + samples.getInterval(), getNumberOfEntries()) - 1;
+		
+		try {
+			while(firstEntry <= lastEntry) {
+				final int curEntry = (firstEntry + lastEntry) >>> 1;
+				final long position = convertEntryToPosition(curEntry);
+				final String curEntryValue = sstableReader.decodeOnlyKeyFromTupleAtPosition(position);
+				final int result = curEntryValue.compareTo(key);
+				
+				if(result == 0) {
+					return curEntry;
+				}
+				
+				if(result < 0) {
+					firstEntry = curEntry + 1;
+				} else {
+					lastEntry = curEntry - 1;
+				}
+			}
+		} catch (IOException e) {
+			throw new StorageManagerException("Error while reading index file", e);
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Search the index entry of the tuple with the sparse block index
+	 * @param sparseIndex
+	 * @param key
+	 * @return the entry or -1
+	 * @throws StorageManagerException
+	 */
+	protected int getEntryForTupleInBlocks(final SSTableBlockIndex sparseIndex, final String key) 
+			throws StorageManagerException {
+		
+		final int blockNumber = sparseIndex.getBlockForKey(key);
+		
+		if(blockNumber == -1) {
+			return -1;
+		}
+		
+		final SSTableBlock block = sstableReader.readBlock(sparseIndex.getBlockPosition(blockNumber));
+		
+		if(block == null) {
+			return -1;
+		}
+		
+		final int tupleInBlock = block.findTuple(key);
+		
+		if(tupleInBlock == -1) {
+			return -1;
+		}
+		
+		return sparseIndex.getFirstEntry(blockNumber) + tupleInBlock;
+	}
 
 	/**
 	 * Get the string key for index entry
@@ -121,7 +280,25 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 	 * @throws IOException
 	 */
 	public String getKeyForIndexEntry(final long entry) throws IOException {
-		final int position = convertEntryToPosition(entry);
+		
+		final SSTableBlockIndex sparseIndex = blockIndex;
+		
+		if(sparseIndex != null) {
+			try {
+				final int blockNumber = getBlockForEntry(sparseIndex, entry);
+				final SSTableBlock block = sstableReader.readBlock(sparseIndex.getBlockPosition(blockNumber));
+				
+				if(block == null) {
+					throw new IOException("Unable to read block " + blockNumber + " of " + name);
+				}
+				
+				return block.getKey((int) (entry - sparseIndex.getFirstEntry(blockNumber)));
+			} catch (StorageManagerException e) {
+				throw new IOException(e);
+			}
+		}
+		
+		final long position = convertEntryToPosition(entry);
 		return sstableReader.decodeOnlyKeyFromTupleAtPosition(position);
 	}
 	
@@ -133,27 +310,66 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 	 * @throws StorageManagerException 
 	 */
 	public Tuple getTupleForIndexEntry(final long entry) throws IOException, StorageManagerException {
-		final int position = convertEntryToPosition(entry);
+		
+		final SSTableBlockIndex sparseIndex = blockIndex;
+		
+		if(sparseIndex != null) {
+			final int blockNumber = getBlockForEntry(sparseIndex, entry);
+			final SSTableBlock block = sstableReader.readBlock(sparseIndex.getBlockPosition(blockNumber));
+			
+			if(block == null) {
+				return null;
+			}
+			
+			return block.getTuple((int) (entry - sparseIndex.getFirstEntry(blockNumber)));
+		}
+		
+		final long position = convertEntryToPosition(entry);
 		return sstableReader.getTupleAtPosition(position);
 	}
+	
+	/**
+	 * Get the block that contains the entry
+	 * @param sparseIndex
+	 * @param entry
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	protected int getBlockForEntry(final SSTableBlockIndex sparseIndex, final long entry) 
+			throws StorageManagerException {
+		
+		final int blockNumber = sparseIndex.getBlockForEntry(entry);
+		
+		if(blockNumber == -1) {
+			throw new StorageManagerException("Requesting wrong entry: " + entry + " of " 
+					+ sparseIndex.getNumberOfEntries());
+		}
+		
+		return blockNumber;
+	}
 
 	/**
 	 * Convert the index entry to index file position
 	 * @param entry
 	 * @return
 	 */
-	protected synchronized int convertEntryToPosition(final long entry) {
+	protected long convertEntryToPosition(final long entry) {
+		
+		final SegmentedMappedFile mappedMemory = memory;
 		
 		// Memory was unmapped
-		if(memory == null) {
+		if(mappedMemory == null) {
 			return -1;
 		}
 		
 		final byte[] magicBytes = getMagicBytes();
+		final long entryOffset = (entry * indexEntryBytes) + magicBytes.length;
+		
+		if(indexEntryBytes == SSTableConst.INDEX_ENTRY_BYTES) {
+			return mappedMemory.getInt(entryOffset);
+		}
 		
-		memory.position((int) ((entry * SSTableConst.INDEX_ENTRY_BYTES) + magicBytes.length));
-		int position = memory.getInt();
-		return position;
+		return mappedMemory.getLong(entryOffset);
 	}
 
 	/**
@@ -161,6 +377,13 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 	 * @return
 	 */
 	public int getNumberOfEntries() {
+		
+		final SSTableBlockIndex sparseIndex = blockIndex;
+		
+		if(sparseIndex != null) {
+			return sparseIndex.getNumberOfEntries();
+		}
+		
 		try {
 			if(fileChannel == null) {
 				logger.warn("getNumberOfEntries() called on closed sstableindexreader for relation: {}", name);
@@ -169,7 +392,7 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 			
 			final byte[] magicBytes = getMagicBytes();
 			
-			return (int) ((fileChannel.size() - magicBytes.length) / SSTableConst.INDEX_ENTRY_BYTES);
+			return (int) ((fileChannel.size() - magicBytes.length) / indexEntryBytes);
 		} catch (IOException e) {
 			logger.error("IO Exception while reading from index", e);
 		}
@@ -186,7 +409,8 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 	}
 	
 	/**
-	 * Iterate over the tuples in the sstable
+	 * Iterate over the tuples in the sstable, the iterator 
+	 * bypasses the node wide cache
 	 */
 	@Override
 	public Iterator<Tuple> iterator() {
@@ -196,6 +420,16 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 			protected int entry = 0;
 			protected int lastEntry = getNumberOfEntries() - 1;
 			
+			/**
+			 * The current block of the iterator (block format only)
+			 */
+			protected SSTableBlock block = null;
+			
+			/**
+			 * The first entry of the current block
+			 */
+			protected int blockFirstEntry = 0;
+			
 			@Override
 			public boolean hasNext() {
 				return entry <= lastEntry;
@@ -209,16 +443,44 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 				}
 				
 				try {
-					final Tuple tuple = sstableReader.getTupleAtPosition(convertEntryToPosition(entry));
+					final Tuple tuple = getTupleForEntry();
 					entry++;
 					return tuple;
-				} catch (StorageManagerException e) {
+				} catch (StorageManagerException | IOException e) {
 					logger.error("Got exception while iterating (requesting entry " + (entry - 1) + " of " + lastEntry + ")", e);
 				}
 								
 				return null;
 			}
 
+			/**
+			 * Read the tuple for the current entry, blocks are decoded 
+			 * only once per iterator
+			 * 
+			 * @return
+			 * @throws StorageManagerException
+			 * @throws IOException
+			 */
+			protected Tuple getTupleForEntry() throws StorageManagerException, IOException {
+				final SSTableBlockIndex sparseIndex = blockIndex;
+				
+				if(sparseIndex == null) {
+					return sstableReader.getTupleAtPosition(convertEntryToPosition(entry), false);
+				}
+				
+				if(block == null || entry >= blockFirstEntry + block.getTuplesInBlock()) {
+					final int blockNumber = getBlockForEntry(sparseIndex, entry);
+					block = sstableReader.readBlock(sparseIndex.getBlockPosition(blockNumber), false);
+					blockFirstEntry = sparseIndex.getFirstEntry(blockNumber);
+					
+					if(block == null) {
+						return null;
+					}
+				}
+				
+				return block.getTuple(entry - blockFirstEntry);
+			}
+
 			@Override
 			public void remove() {
 				throw new IllegalStateException("Remove is not supported");
@@ -226,6 +488,110 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 		};
 	}
 	
+	/**
+	 * Get the first index entry with a key that is equal or greater than 
+	 * the given key
+	 * 
+	 * @param key
+	 * @return the entry or the number of entries, if all keys are smaller
+	 * @throws StorageManagerException
+	 */
+	public int getFirstEntryNotLessThan(final String key) throws StorageManagerException {
+		
+		int firstEntry = 0;
+		int lastEntry = getNumberOfEntries();
+		
+		try {
+			// Binary search for the lower bound
+			while(firstEntry < lastEntry) {
+				final int curEntry = (firstEntry + lastEntry) >>> 1;
+				final String curEntryValue = getKeyForIndexEntry(curEntry);
+				
+				if(curEntryValue.compareTo(key) < 0) {
+					firstEntry = curEntry + 1;
+				} else {
+					lastEntry = curEntry;
+				}
+			}
+		} catch (IOException e) {
+			throw new StorageManagerException("Error while reading index file", e);
+		}
+		
+		return firstEntry;
+	}
+	
+	/**
+	 * Iterate over the encoded tuples of the entries [firstEntry, endEntry). The 
+	 * tuples are not decoded and the node wide cache is bypassed. 
+	 * 
+	 * @param firstEntry
+	 * @param endEntry
+	 * @return the iterator, each buffer contains the tuple between position and limit
+	 */
+	public Iterator<ByteBuffer> getEncodedTuples(final int firstEntry, final int endEntry) {
+		
+		return new Iterator<ByteBuffer>() {
+
+			protected int entry = firstEntry;
+			
+			/**
+			 * The current block of the iterator (block format only)
+			 */
+			protected SSTableBlock block = null;
+			
+			/**
+			 * The first entry of the current block
+			 */
+			protected int blockFirstEntry = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return entry < endEntry;
+			}
+
+			@Override
+			public ByteBuffer next() {
+				
+				if(entry >= endEntry) {
+					throw new IllegalStateException("Requesting wrong position: " + entry + " of " + endEntry);
+				}
+				
+				try {
+					final ByteBuffer encodedTuple = getEncodedTupleForEntry();
+					entry++;
+					return encodedTuple;
+				} catch (StorageManagerException e) {
+					throw new IllegalStateException("Unable to read entry " + entry + " of " + name, e);
+				}
+			}
+			
+			/**
+			 * Read the encoded tuple for the current entry
+			 * @return
+			 * @throws StorageManagerException
+			 */
+			protected ByteBuffer getEncodedTupleForEntry() throws StorageManagerException {
+				final SSTableBlockIndex sparseIndex = blockIndex;
+				
+				if(sparseIndex == null) {
+					return sstableReader.getEncodedTupleAtPosition(convertEntryToPosition(entry));
+				}
+				
+				if(block == null || entry >= blockFirstEntry + block.getTuplesInBlock()) {
+					final int blockNumber = getBlockForEntry(sparseIndex, entry);
+					block = sstableReader.readBlock(sparseIndex.getBlockPosition(blockNumber), false);
+					blockFirstEntry = sparseIndex.getFirstEntry(blockNumber);
+					
+					if(block == null) {
+						throw new StorageManagerException("Unable to read block " + blockNumber + " of " + name);
+					}
+				}
+				
+				return block.getEncodedTuple(entry - blockFirstEntry);
+			}
+		};
+	}
+	
 	/**
 	 * Get a iterator for all predicate matching tuples
 	 * @param predicate
@@ -251,8 +617,33 @@ public class SSTableKeyIndexReader extends AbstractTableReader implements Iterab
 		return new File(filename);
 	}
 
+	public SSTableKeySampleIndex getKeySampleIndex() {
+		return keySampleIndex;
+	}
+
+	public void setKeySampleIndex(final SSTableKeySampleIndex keySampleIndex) {
+		this.keySampleIndex = keySampleIndex;
+	}
+	
+	/**
+	 * Is the index a sparse block index
+	 * @return
+	 */
+	public boolean isBlockFormat() {
+		return blockIndex != null;
+	}
+
 	@Override
 	protected byte[] getMagicBytes() {
-		return SSTableConst.MAGIC_BYTES_INDEX;
+		
+		if(blockIndex != null) {
+			return SSTableConst.MAGIC_BYTES_BLOCK_INDEX;
+		}
+		
+		if(indexEntryBytes == SSTableConst.INDEX_ENTRY_BYTES) {
+			return SSTableConst.MAGIC_BYTES_INDEX;
+		}
+		
+		return SSTableConst.MAGIC_BYTES_INDEX_LONG;
 	}
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ package org.bboxdb.storage.sstable.reader;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.SSTableName;
@@ -26,12 +27,59 @@ import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.SSTableHelper;
 import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.storage.sstable.block.BlockCompressionCodec;
+import org.bboxdb.storage.sstable.block.BlockCompressionCodecFactory;
+import org.bboxdb.storage.sstable.block.SSTableBlock;
 import org.bboxdb.util.io.DataEncoderHelper;
+import org.bboxdb.util.io.SegmentedMappedFile;
+
+import com.google.common.hash.Hashing;
 
 public class SSTableReader extends AbstractTableReader {
+	
+	/**
+	 * Is the table stored in the block format?
+	 */
+	protected boolean blockFormat;
+	
+	/**
+	 * The last read block. Sequential reads (e.g., iterators) 
+	 * often request the same block multiple times.
+	 */
+	protected volatile SSTableBlock lastReadBlock;
+	
+	/**
+	 * The node wide cache for decoded tuples, keys and blocks
+	 */
+	protected final SSTableCache cache;
 
 	public SSTableReader(final String directory, final SSTableName tablename, final int tablenumer) throws StorageManagerException {
 		super(directory, tablename, tablenumer);
+		this.blockFormat = false;
+		this.cache = SSTableCache.getInstance();
+	}
+	
+	@Override
+	public void init() {
+		// Elements of an older file with the same name and number
+		cache.invalidateTable(name, tablebumber);
+		super.init();
+	}
+	
+	/**
+	 * Validate the file and detect the format of the table
+	 */
+	@Override
+	protected void validateFile() throws StorageManagerException {
+		
+		if(hasMagicBytes(SSTableConst.MAGIC_BYTES_BLOCK)) {
+			validateBlockFormatVersion(SSTableConst.MAGIC_BYTES_BLOCK);
+			blockFormat = true;
+			return;
+		}
+		
+		blockFormat = false;
+		super.validateFile();
 	}
 	
 	/**
@@ -40,14 +88,29 @@ public class SSTableReader extends AbstractTableReader {
 	 * @return the tuple or null	
 	 * @throws StorageManagerException 
 	 */
-	public synchronized Tuple scanForTuple(final String key) throws StorageManagerException {
+	public Tuple scanForTuple(final String key) throws StorageManagerException {
 		logger.info("Scanning table " + tablebumber + " for " + key);
+		
+		if(blockFormat) {
+			return scanBlocksForTuple(key);
+		}
 
 		try {
-			resetPosition();
+			final SegmentedMappedFile mappedMemory = memory;
+			
+			// The memory was unmapped
+			if(mappedMemory == null) {
+				logger.warn("Scan request to unmapped memory for relation: " + name);
+				return null;
+			}
+			
+			long position = getMagicBytes().length;
 			
-			while(memory.hasRemaining()) {
-				final Tuple tuple = TupleHelper.decodeTuple(memory);
+			while(position < mappedMemory.size()) {
+				final int tupleLength = getEncodedTupleLength(mappedMemory, position);
+				final ByteBuffer view = mappedMemory.getView(position, tupleLength);
+				final Tuple tuple = TupleHelper.decodeTuple(view);
+				position = position + tupleLength;
 
 				// The keys are stored in lexicographical order. If the
 				// next key of the sstable is greater then our search key,
@@ -68,32 +131,131 @@ public class SSTableReader extends AbstractTableReader {
 		return null;
 	}
 	
+	/**
+	 * Scan all blocks of the SSTable for the tuple
+	 * @param key
+	 * @return the tuple or null
+	 * @throws StorageManagerException
+	 */
+	protected Tuple scanBlocksForTuple(final String key) throws StorageManagerException {
+		
+		try {
+			final SegmentedMappedFile mappedMemory = memory;
+			
+			// The memory was unmapped
+			if(mappedMemory == null) {
+				logger.warn("Scan request to unmapped memory for relation: " + name);
+				return null;
+			}
+			
+			long blockPosition = getFirstBlockPosition();
+			
+			while(blockPosition < mappedMemory.size()) {
+				final SSTableBlock block = readBlock(blockPosition);
+				
+				if(block == null) {
+					return null;
+				}
+				
+				for(int i = 0; i < block.getTuplesInBlock(); i++) {
+					final String tupleKey = block.getKey(i);
+					
+					// The keys are stored in lexicographical order
+					if(tupleKey.compareTo(key) > 0) {
+						return null;
+					}
+					
+					if(tupleKey.equals(key)) {
+						return block.getTuple(i);
+					}
+				}
+				
+				// The compressed length is stored after the codec and the uncompressed length
+				final int compressedLength = mappedMemory.getInt(blockPosition 
+						+ 1 + DataEncoderHelper.INT_BYTES);
+				
+				blockPosition = blockPosition + SSTableConst.BLOCK_HEADER_BYTES + compressedLength;
+			}
+		} catch (IOException e) {
+			throw new StorageManagerException(e);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Get tuple at the given position
+	 * 
+	 * @param position
+	 * @return The tuple
+	 * @throws StorageManagerException
+	 */
+	public Tuple getTupleAtPosition(final long position) throws StorageManagerException {
+		return getTupleAtPosition(position, true);
+	}
+	
 	/**
 	 * Get tuple at the given position
 	 * 
 	 * @param position
+	 * @param useCache - use the node wide cache, full scans should 
+	 *                   not replace the cached elements
 	 * @return The tuple
 	 * @throws StorageManagerException
 	 */
-	public synchronized Tuple getTupleAtPosition(int position) throws StorageManagerException {
+	public Tuple getTupleAtPosition(final long position, final boolean useCache) 
+			throws StorageManagerException {
+		
+		if(useCache) {
+			final Tuple cachedTuple = cache.getTuple(name, tablebumber, position);
+			
+			if(cachedTuple != null) {
+				return cachedTuple;
+			}
+		}
 		
 		try {
+			final SegmentedMappedFile mappedMemory = memory;
+			
 			// The memory was unmapped
-			if(memory == null) {
+			if(mappedMemory == null) {
 				logger.warn("Read request to unmapped memory for relation: " + name);
 				return null;
 			}
 			
-			memory.position(position);
+			final int tupleLength = getEncodedTupleLength(mappedMemory, position);
+			final ByteBuffer view = mappedMemory.getView(position, tupleLength);
+			final Tuple tuple = TupleHelper.decodeTuple(view);
 			
-			return TupleHelper.decodeTuple(memory);
-		} catch (Exception e) {
-			try {
-				throw new StorageManagerException("Exception while decoding Position: " + position +  " Size "  + fileChannel.size(), e);
-			} catch (IOException e1) {
-				throw new StorageManagerException(e);
+			if(useCache) {
+				cache.putTuple(name, tablebumber, position, tuple);
 			}
+			
+			return tuple;
+		} catch (Exception e) {
+			throw new StorageManagerException("Exception while decoding Position: " + position 
+					+ " Size "  + getSize(), e);
+		}
+	}
+	
+	/**
+	 * Get the encoded tuple at the given position without decoding it. 
+	 * The cache is not used. 
+	 * 
+	 * @param position
+	 * @return the tuple between position and limit of the buffer
+	 * @throws StorageManagerException
+	 */
+	public ByteBuffer getEncodedTupleAtPosition(final long position) throws StorageManagerException {
+		final SegmentedMappedFile mappedMemory = memory;
+		
+		// The memory was unmapped
+		if(mappedMemory == null) {
+			throw new StorageManagerException("Read request to unmapped memory for relation: " + name);
 		}
+		
+		final int tupleLength = getEncodedTupleLength(mappedMemory, position);
+		return mappedMemory.getView(position, tupleLength);
 	}
 	
 	/**
@@ -101,23 +263,167 @@ public class SSTableReader extends AbstractTableReader {
 	 * @return
 	 * @throws IOException 
 	 */
-	public synchronized String decodeOnlyKeyFromTupleAtPosition(final int position) throws IOException {
+	public String decodeOnlyKeyFromTupleAtPosition(final long position) throws IOException {
 		
-		memory.position(position);
+		final String cachedKey = cache.getKey(name, tablebumber, position);
+		
+		if(cachedKey != null) {
+			return cachedKey;
+		}
+		
+		final SegmentedMappedFile mappedMemory = memory;
+		
+		// The memory was unmapped
+		if(mappedMemory == null) {
+			throw new IOException("Read request to unmapped memory for relation: " + name);
+		}
 		
-		final short keyLength = memory.getShort();
+		final short keyLength = mappedMemory.getShort(position);
 
-		final int sizeToSkip = DataEncoderHelper.INT_BYTES          // BBOX-Length
+		final int sizeToSkip = DataEncoderHelper.SHORT_BYTES        // Key-Length
+				+ DataEncoderHelper.INT_BYTES                       // BBOX-Length
 				+ DataEncoderHelper.INT_BYTES 						// Data-Length
 				+ DataEncoderHelper.LONG_BYTES						// Version Timestamp
 				+ DataEncoderHelper.LONG_BYTES;						// Received Timetamp		
 		
-		memory.position(memory.position() + sizeToSkip);
-		
 		final byte[] keyBytes = new byte[keyLength];
-		memory.get(keyBytes, 0, keyBytes.length);
+		mappedMemory.get(position + sizeToSkip, keyBytes);
+		
+		final String key = new String(keyBytes);
+		cache.putKey(name, tablebumber, position, key);
+		
+		return key;
+	}
+	
+	/**
+	 * Get the length of the encoded tuple at the given position
+	 * @param position
+	 * @return the length or -1, if the memory was unmapped
+	 */
+	public int getEncodedTupleLength(final long position) {
+		final SegmentedMappedFile mappedMemory = memory;
+		
+		if(mappedMemory == null) {
+			return -1;
+		}
 		
-		return new String(keyBytes);
+		return getEncodedTupleLength(mappedMemory, position);
+	}
+	
+	/**
+	 * Get the length of the encoded tuple at the given position
+	 * @param mappedMemory
+	 * @param position
+	 * @return
+	 */
+	protected int getEncodedTupleLength(final SegmentedMappedFile mappedMemory, final long position) {
+		final ByteBuffer header = mappedMemory.getView(position, TupleHelper.TUPLE_HEADER_SIZE);
+		return TupleHelper.getEncodedTupleLength(header, header.position());
+	}
+	
+	/**
+	 * Read, verify and decompress the block at the given position
+	 * 
+	 * @param blockPosition
+	 * @return the block or null, if the memory was unmapped
+	 * @throws StorageManagerException
+	 */
+	public SSTableBlock readBlock(final long blockPosition) throws StorageManagerException {
+		return readBlock(blockPosition, true);
+	}
+	
+	/**
+	 * Read, verify and decompress the block at the given position
+	 * 
+	 * @param blockPosition
+	 * @param useCache - use the node wide cache, full scans should 
+	 *                   not replace the cached elements
+	 * @return the block or null, if the memory was unmapped
+	 * @throws StorageManagerException
+	 */
+	public SSTableBlock readBlock(final long blockPosition, final boolean useCache) 
+			throws StorageManagerException {
+		
+		final SSTableBlock lastBlock = lastReadBlock;
+		
+		if(lastBlock != null && lastBlock.getBlockPosition() == blockPosition) {
+			return lastBlock;
+		}
+		
+		if(useCache) {
+			final SSTableBlock cachedBlock = cache.getBlock(name, tablebumber, blockPosition);
+			
+			if(cachedBlock != null) {
+				lastReadBlock = cachedBlock;
+				return cachedBlock;
+			}
+		}
+		
+		final SegmentedMappedFile mappedMemory = memory;
+		
+		// The memory was unmapped
+		if(mappedMemory == null) {
+			logger.warn("Block read request to unmapped memory for relation: " + name);
+			return null;
+		}
+		
+		try {
+			final ByteBuffer header = mappedMemory.getView(blockPosition, SSTableConst.BLOCK_HEADER_BYTES);
+			
+			final byte codecId = header.get();
+			final int uncompressedLength = header.getInt();
+			final int compressedLength = header.getInt();
+			final int expectedChecksum = header.getInt();
+			
+			final byte[] compressedData = new byte[compressedLength];
+			mappedMemory.get(blockPosition + SSTableConst.BLOCK_HEADER_BYTES, compressedData);
+			
+			final int checksum = Hashing.crc32c().hashBytes(compressedData).asInt();
+			
+			if(checksum != expectedChecksum) {
+				throw new StorageManagerException("Checksum mismatch in block at position " 
+						+ blockPosition + " of " + file);
+			}
+			
+			final BlockCompressionCodec codec = BlockCompressionCodecFactory.getCodecForId(codecId);
+			final byte[] uncompressedData = new byte[uncompressedLength];
+			codec.decompress(compressedData, compressedLength, uncompressedData);
+			
+			final SSTableBlock block = new SSTableBlock(blockPosition, uncompressedData);
+			lastReadBlock = block;
+			
+			if(useCache) {
+				cache.putBlock(name, tablebumber, block);
+			}
+			
+			return block;
+		} catch (IOException | RuntimeException e) {
+			throw new StorageManagerException("Exception while reading block at position: " 
+					+ blockPosition + " of " + file, e);
+		}
+	}
+	
+	/**
+	 * Get the position of the first block
+	 * @return
+	 */
+	protected long getFirstBlockPosition() {
+		return SSTableConst.MAGIC_BYTES_BLOCK.length + DataEncoderHelper.SHORT_BYTES;
+	}
+	
+	/**
+	 * Is the table stored in the block format
+	 * @return
+	 */
+	public boolean isBlockFormat() {
+		return blockFormat;
+	}
+	
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		lastReadBlock = null;
+		cache.invalidateTable(name, tablebumber);
 	}
 	
 	/**
@@ -126,7 +432,7 @@ public class SSTableReader extends AbstractTableReader {
 	@Override
 	public String toString() {
 		return "SSTableReader [tablebumber=" + tablebumber + ", name=" + name
-				+ ", directory=" + directory + "]";
+				+ ", directory=" + directory + ", blockFormat=" + blockFormat + "]";
 	}
 
 	@Override
@@ -145,6 +451,11 @@ public class SSTableReader extends AbstractTableReader {
 
 	@Override
 	protected byte[] getMagicBytes() {
+		
+		if(blockFormat) {
+			return SSTableConst.MAGIC_BYTES_BLOCK;
+		}
+		
 		return SSTableConst.MAGIC_BYTES;
 	}
 }
@@ -20,6 +20,7 @@ package org.bboxdb.storage.sstable.spatialindex;
 import java.io.Closeable;
 import java.io.RandomAccessFile;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.BoundingBox;
@@ -44,4 +45,18 @@ public interface SpatialIndexReader extends Closeable {
 	 * @return
 	 */
 	public List<SpatialIndexEntry> getEntriesForRegion(final BoundingBox boundingBox) throws StorageManagerException;
+	
+	/**
+	 * Find the entries for the given region and pass their values to the consumer
+	 * @param boundingBox
+	 * @param consumer
+	 * @throws StorageManagerException
+	 */
+	public default void getEntriesForRegion(final BoundingBox boundingBox, final IntConsumer consumer) 
+			throws StorageManagerException {
+		
+		for(final SpatialIndexEntry entry : getEntriesForRegion(boundingBox)) {
+			consumer.accept((int) entry.getValue());
+		}
+	}
 }
@@ -32,6 +32,12 @@ public abstract class AbstractRTreeReader implements SpatialIndexReader {
 	 */
 	protected int maxNodeSize;
 	
+	/**
+	 * Are the child node pointers 64 bit file positions (false for 
+	 * indexes with 32 bit pointers, written by older versions)
+	 */
+	protected boolean longChildNodePointers;
+	
 	/**
 	 * Get the max node size for the index
 	 * @return
@@ -41,21 +47,33 @@ public abstract class AbstractRTreeReader implements SpatialIndexReader {
 	}
 	
 	/**
-	 * Validate the magic bytes of a stream
+	 * Validate the magic bytes of a stream and determine the size of the child
+	 * node pointers. Afterwards, the stream is positioned behind the magic bytes.
 	 * 
-	 * @return a InputStream or null
 	 * @throws StorageManagerException
 	 * @throws IOException 
 	 */
 	protected void validateStream(final RandomAccessFile randomAccessFile) throws IOException, StorageManagerException {
 		
+		final long startPosition = randomAccessFile.getFilePointer();
+		
 		// Validate file - read the magic from the beginning
-		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX.length];
-		randomAccessFile.readFully(magicBytes, 0, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX.length);
+		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_LONG.length];
+		randomAccessFile.readFully(magicBytes, 0, magicBytes.length);
 
-		if(! Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX)) {
+		if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_LONG)) {
+			longChildNodePointers = true;
+			return;
+		}
+		
+		final byte[] shortMagicBytes = Arrays.copyOf(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX.length);
+		
+		if(! Arrays.equals(shortMagicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX)) {
 			throw new StorageManagerException("Spatial index file does not contain the magic bytes");
 		}
+		
+		longChildNodePointers = false;
+		randomAccessFile.seek(startPosition + shortMagicBytes.length);
 	}
 	
 }
@@ -19,8 +19,10 @@ package org.bboxdb.storage.sstable.spatialindex.rtree;
 
 import java.io.RandomAccessFile;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.BoundingBox;
@@ -64,6 +66,11 @@ public class RTreeBuilder implements SpatialIndexBuilder {
 	 * The size of the magic nodes in bytes
 	 */
 	public final static int MAGIC_VALUE_SIZE = 4;
+	
+	/**
+	 * The pointer for a non existing child node (64 bit child node pointers)
+	 */
+	public final static long CHILD_NODE_POINTER_NOT_EXISTING = -1;
 
 	public RTreeBuilder() {
 		this(DEFAULT_NODE_SIZE);
@@ -88,8 +95,17 @@ public class RTreeBuilder implements SpatialIndexBuilder {
 		rTreeSerializer.writeToStream(randomAccessFile);
 	}
 
+	/**
+	 * Insert the elements into the tree. An empty tree is built with 
+	 * STR packing, elements for a non empty tree are inserted one by one.
+	 */
 	@Override
 	public boolean bulkInsert(final List<SpatialIndexEntry> elements) {
+		
+		if(rootNode.getSize() == 0 && maxNodeSize > 1) {
+			return packedBulkLoad(elements);
+		}
+		
 		boolean result = true;
 
 		for(final SpatialIndexEntry entry : elements) {
@@ -103,6 +119,65 @@ public class RTreeBuilder implements SpatialIndexBuilder {
 		return result;
 	}
 
+	/**
+	 * Build the tree bottom up from the STR packed elements. The leaf 
+	 * nodes are completely filled and all leafs are on the same level.
+	 * 
+	 * @param elements
+	 * @return
+	 */
+	protected boolean packedBulkLoad(final List<SpatialIndexEntry> elements) {
+		
+		final List<SpatialIndexEntry> validElements = elements
+				.stream()
+				.filter(e -> e.getBoundingBox() != null)
+				.filter(e -> e.getBoundingBox() != BoundingBox.EMPTY_BOX)
+				.collect(Collectors.toList());
+		
+		if(validElements.isEmpty()) {
+			return elements.isEmpty();
+		}
+		
+		// Leaf nodes
+		final SortTileRecursivePacker<SpatialIndexEntry> entryPacker 
+			= new SortTileRecursivePacker<>(maxNodeSize);
+		
+		List<RTreeDirectoryNode> level = new ArrayList<>();
+		
+		for(final List<SpatialIndexEntry> group : entryPacker.pack(validElements)) {
+			final RTreeDirectoryNode node = nodeFactory.buildDirectoryNode();
+			node.getIndexEntries().addAll(group);
+			node.updateBoundingBox();
+			level.add(node);
+		}
+		
+		// Directory nodes
+		final SortTileRecursivePacker<RTreeDirectoryNode> nodePacker 
+			= new SortTileRecursivePacker<>(maxNodeSize);
+		
+		while(level.size() > 1) {
+			final List<RTreeDirectoryNode> parentLevel = new ArrayList<>();
+			
+			for(final List<RTreeDirectoryNode> group : nodePacker.pack(level)) {
+				final RTreeDirectoryNode node = nodeFactory.buildDirectoryNode();
+				
+				for(final RTreeDirectoryNode child : group) {
+					node.addDirectoryNodeChild(child);
+					child.setParentNode(node);
+				}
+				
+				node.updateBoundingBox();
+				parentLevel.add(node);
+			}
+			
+			level = parentLevel;
+		}
+		
+		rootNode = level.get(0);
+		
+		return validElements.size() == elements.size();
+	}
+
 	/**
 	 * Insert the given RTreeSpatialIndexEntry into the tree
 	 * @param entry
@@ -348,6 +423,14 @@ public class RTreeBuilder implements SpatialIndexBuilder {
 		}
 	}
 
+	/**
+	 * Get the root node of the tree
+	 * @return
+	 */
+	public RTreeDirectoryNode getRootNode() {
+		return rootNode;
+	}
+	
 	/**
 	 * Get the maximal node size
 	 * @return
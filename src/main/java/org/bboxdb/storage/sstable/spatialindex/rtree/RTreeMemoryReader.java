@@ -43,7 +43,7 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 	 * 
 	 * Parent node -> Child Pointer
 	 */
-	protected Queue<Entry<RTreeDirectoryNode, Integer>> childToReadQueue = new LinkedTransferQueue<>();
+	protected Queue<Entry<RTreeDirectoryNode, Long>> childToReadQueue = new LinkedTransferQueue<>();
 	
 	
 	public RTreeMemoryReader() {
@@ -68,7 +68,7 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 			readDirectoryNode(randomAccessFile, null);
 						
 			while(! childToReadQueue.isEmpty()) {
-				final Entry<RTreeDirectoryNode, Integer> element = childToReadQueue.remove();
+				final Entry<RTreeDirectoryNode, Long> element = childToReadQueue.remove();
 				readDirectoryNode(randomAccessFile, element.getKey());
 			}
 			
@@ -127,18 +127,32 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 			throws IOException {
 
 		final byte[] followingByte = new byte[RTreeBuilder.MAGIC_VALUE_SIZE];
+		final byte[] pointerBytes = new byte[DataEncoderHelper.LONG_BYTES];
 
 		for(int i = 0; i < maxNodeSize; i++) {
-			randomAccessFile.readFully(followingByte, 0, followingByte.length);
+			final long childPointer;
 			
-			if(! Arrays.equals(followingByte, RTreeBuilder.MAGIC_CHILD_NODE_NOT_EXISTING)) {
-				final int childPointer = DataEncoderHelper.readIntFromByte(followingByte);
+			if(longChildNodePointers) {
+				randomAccessFile.readFully(pointerBytes, 0, pointerBytes.length);
+				childPointer = DataEncoderHelper.readLongFromByte(pointerBytes);
+				
+				if(childPointer == RTreeBuilder.CHILD_NODE_POINTER_NOT_EXISTING) {
+					continue;
+				}
+			} else {
+				randomAccessFile.readFully(followingByte, 0, followingByte.length);
+				
+				if(Arrays.equals(followingByte, RTreeBuilder.MAGIC_CHILD_NODE_NOT_EXISTING)) {
+					continue;
+				}
 				
-				// Add the pointer for later decoding
-				childToReadQueue.add(
-						new AbstractMap.SimpleImmutableEntry<RTreeDirectoryNode, Integer>(node, childPointer)
-				);
-			} 
+				childPointer = DataEncoderHelper.readIntFromByte(followingByte);
+			}
+			
+			// Add the pointer for later decoding
+			childToReadQueue.add(
+					new AbstractMap.SimpleImmutableEntry<RTreeDirectoryNode, Long>(node, childPointer)
+			);
 		}
 	}
 
@@ -46,12 +46,12 @@ public class RTreeSerializer {
 	/**
 	 * The node start position
 	 */
-	protected final Map<RTreeDirectoryNode, Integer> nodeStartPosition = new HashMap<>();
+	protected final Map<RTreeDirectoryNode, Long> nodeStartPosition = new HashMap<>();
 
 	/**
 	 * The node start child nodes position
 	 */
-	protected final Map<RTreeDirectoryNode, Integer> nodeFixedEndPosition = new HashMap<>();
+	protected final Map<RTreeDirectoryNode, Long> nodeFixedEndPosition = new HashMap<>();
 
 	/**
 	 * The nodes queue
@@ -65,7 +65,9 @@ public class RTreeSerializer {
 	}
 
 	/**
-	 * Serialize the tree to the file
+	 * Serialize the tree to the file. The child node pointers are 64 bit 
+	 * file positions, so the index can grow beyond 2 GB.
+	 * 
 	 * @param randomAccessFile
 	 * @throws StorageManagerException
 	 */
@@ -75,7 +77,7 @@ public class RTreeSerializer {
 		
 		try {
 			// Write the magic bytes
-			randomAccessFile.write(SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX);
+			randomAccessFile.write(SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_LONG);
 
 			// Write the tree configuration
 			final ByteBuffer nodeSizeBytes = DataEncoderHelper.intToByteBuffer(maxNodeSize);
@@ -106,8 +108,8 @@ public class RTreeSerializer {
 			randomAccessFile.seek(nodeFixedEndPosition.get(node));
 			
 			for(final RTreeDirectoryNode child : node.getDirectoryNodeChilds()) {
-				final Integer childNodePosition = nodeStartPosition.get(child);
-				final ByteBuffer childNodePointer = DataEncoderHelper.intToByteBuffer(childNodePosition);
+				final long childNodePosition = nodeStartPosition.get(child);
+				final ByteBuffer childNodePointer = DataEncoderHelper.longToByteBuffer(childNodePosition);
 				
 				// Override node pointer placeholder
 				randomAccessFile.write(childNodePointer.array());
@@ -126,7 +128,7 @@ public class RTreeSerializer {
 			throws IOException {
 
 		// Node data
-		nodeStartPosition.put(node, (int) randomAccessFile.getFilePointer());
+		nodeStartPosition.put(node, randomAccessFile.getFilePointer());
 		final ByteBuffer nodeIdBytes = DataEncoderHelper.intToByteBuffer(node.getNodeId());
 		randomAccessFile.write(nodeIdBytes.array());
 		
@@ -138,7 +140,7 @@ public class RTreeSerializer {
 
 		// Write entry nodes
 		writeEntryNodes(randomAccessFile, node);
-		nodeFixedEndPosition.put(node, (int) randomAccessFile.getFilePointer());
+		nodeFixedEndPosition.put(node, randomAccessFile.getFilePointer());
 
 		// Write directory nodes
 		addDirectoryNodesToQueue(randomAccessFile, node);		
@@ -174,13 +176,16 @@ public class RTreeSerializer {
 			final RTreeDirectoryNode node) throws IOException {
 		
 		final List<RTreeDirectoryNode> directoryNodeChilds = node.getDirectoryNodeChilds();
+		final ByteBuffer notExistingPointer 
+			= DataEncoderHelper.longToByteBuffer(RTreeBuilder.CHILD_NODE_POINTER_NOT_EXISTING);
+		
 		for(int i = 0; i < maxNodeSize; i++) {
 			if(i < directoryNodeChilds.size()) {
 				nodesQueue.addFirst(directoryNodeChilds.get(i));
 			}
 			
 			// Existing pointer will be written in a second step
-			randomAccessFile.write(RTreeBuilder.MAGIC_CHILD_NODE_NOT_EXISTING);
+			randomAccessFile.write(notExistingPointer.array());
 		}
 	}
 	
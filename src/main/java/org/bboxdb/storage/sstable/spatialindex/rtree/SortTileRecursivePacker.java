@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.sstable.spatialindex.BoundingBoxEntity;
+
+/**
+ * Sort-Tile-Recursive (STR) packing. The entries are sorted by the center 
+ * of the first dimension and cut into slabs, each slab is sorted and cut 
+ * by the next dimension. The entries of the last dimension are packed 
+ * into groups of the max node size.
+ */
+public class SortTileRecursivePacker<T extends BoundingBoxEntity> {
+	
+	/**
+	 * The max size of a node
+	 */
+	protected final int maxNodeSize;
+
+	public SortTileRecursivePacker(final int maxNodeSize) {
+		
+		if(maxNodeSize < 2) {
+			throw new IllegalArgumentException("Unable to pack nodes with max node size: " 
+					+ maxNodeSize);
+		}
+		
+		this.maxNodeSize = maxNodeSize;
+	}
+	
+	/**
+	 * Pack the entries into groups of at most max node size entries
+	 * @param entries
+	 * @return
+	 */
+	protected List<List<T>> pack(final List<T> entries) {
+		final int dimensions = entries
+				.stream()
+				.mapToInt(e -> e.getBoundingBox().getDimension())
+				.max()
+				.orElse(0);
+		
+		final List<List<T>> result = new ArrayList<>();
+		packSlab(new ArrayList<>(entries), 0, dimensions, result);
+		
+		return result;
+	}
+
+	/**
+	 * Pack the entries of the slab, beginning with the given dimension
+	 * @param entries
+	 * @param dimension
+	 * @param dimensions
+	 * @param result
+	 */
+	protected void packSlab(final List<T> entries, final int dimension, final int dimensions, 
+			final List<List<T>> result) {
+		
+		entries.sort(Comparator.comparingDouble(e -> getCenter(e.getBoundingBox(), dimension)));
+		
+		// Last dimension, build the groups
+		if(dimension >= dimensions - 1 || entries.size() <= maxNodeSize) {
+			for(int i = 0; i < entries.size(); i = i + maxNodeSize) {
+				final int end = Math.min(i + maxNodeSize, entries.size());
+				result.add(new ArrayList<>(entries.subList(i, end)));
+			}
+			
+			return;
+		}
+		
+		final int nodes = (int) Math.ceil((double) entries.size() / maxNodeSize);
+		final int slabs = (int) Math.ceil(Math.pow(nodes, 1.0 / (dimensions - dimension)));
+		final int slabSize = maxNodeSize * (int) Math.ceil((double) nodes / slabs);
+		
+		for(int i = 0; i < entries.size(); i = i + slabSize) {
+			final int end = Math.min(i + slabSize, entries.size());
+			packSlab(new ArrayList<>(entries.subList(i, end)), dimension + 1, dimensions, result);
+		}
+	}
+	
+	/**
+	 * Get the center of the bounding box in the given dimension
+	 * @param boundingBox
+	 * @param dimension
+	 * @return
+	 */
+	protected static double getCenter(final BoundingBox boundingBox, final int dimension) {
+		
+		if(dimension >= boundingBox.getDimension()) {
+			return 0;
+		}
+		
+		return (boundingBox.getCoordinateLow(dimension) + boundingBox.getCoordinateHigh(dimension)) / 2.0;
+	}
+}
@@ -19,30 +19,37 @@ package org.bboxdb.storage.sstable.spatialindex.rtree.mmf;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.LinkedTransferQueue;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
 
 import org.bboxdb.misc.Const;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
 import org.bboxdb.storage.sstable.spatialindex.rtree.AbstractRTreeReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
 import org.bboxdb.util.io.DataEncoderHelper;
-import org.bboxdb.util.io.UnsafeMemoryHelper;
+import org.bboxdb.util.io.SegmentedMappedFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reader for a memory mapped r-tree. The nodes are read with absolute 
+ * offsets from the mapped buffer, so concurrent queries don't need 
+ * to be synchronized. The file is mapped in segments, so the index 
+ * can be larger than 2 GB.
+ */
 public class RTreeMMFReader extends AbstractRTreeReader {
 
 	/**
 	 * The mapped memory
 	 */
-	private MappedByteBuffer memory;
+	private volatile SegmentedMappedFile memory;
 	
 	/**
 	 * The file channel
@@ -52,12 +59,42 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 	/**
 	 * The position of the first node
 	 */
-	private int firstNodePos;
+	private long firstNodePos;
+	
+	/**
+	 * The size of the mapped segments
+	 */
+	private final int segmentSize;
+	
+	/**
+	 * The marker for a following index entry
+	 */
+	private final static int CHILD_NODE_FOLLOWING 
+		= DataEncoderHelper.readIntFromByte(RTreeBuilder.MAGIC_CHILD_NODE_FOLLOWING);
+	
+	/**
+	 * The marker for a non existing index entry or child node
+	 */
+	private final static int CHILD_NODE_NOT_EXISTING 
+		= DataEncoderHelper.readIntFromByte(RTreeBuilder.MAGIC_CHILD_NODE_NOT_EXISTING);
+	
+	/**
+	 * The initial size of the node stack
+	 */
+	private final static int INITIAL_STACK_SIZE = 64;
 	
 	/**
 	 * The Logger
 	 */
 	private final static Logger logger = LoggerFactory.getLogger(RTreeMMFReader.class);
+	
+	public RTreeMMFReader() {
+		this(SSTableConst.MAPPED_SEGMENT_SIZE);
+	}
+	
+	public RTreeMMFReader(final int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
 
 	@Override
 	public void readFromFile(final RandomAccessFile randomAccessFile) 
@@ -67,12 +104,10 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 			validateStream(randomAccessFile);
 			maxNodeSize = DataEncoderHelper.readIntFromDataInput(randomAccessFile);
 			
-			firstNodePos = (int) randomAccessFile.getFilePointer();
+			firstNodePos = randomAccessFile.getFilePointer();
 			
 			fileChannel = randomAccessFile.getChannel();
-			final long size = fileChannel.size();
-			memory = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
-			memory.order(Const.APPLICATION_BYTE_ORDER);
+			memory = SegmentedMappedFile.mapFile(fileChannel, segmentSize, Const.APPLICATION_BYTE_ORDER);
 		} catch (IOException e) {
 			throw new StorageManagerException(e);
 		}
@@ -81,9 +116,11 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 	@Override
 	public void close() {
 		
-		if(memory != null) {
-			UnsafeMemoryHelper.unmapMemory(memory);
+		final SegmentedMappedFile mappedMemory = memory;
+		
+		if(mappedMemory != null) {
 			memory = null;
+			mappedMemory.unmap();
 		}
 		
 		if(fileChannel != null) {
@@ -97,39 +134,175 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 	}
 
 	@Override
-	public synchronized List<SpatialIndexEntry> getEntriesForRegion(final BoundingBox boundingBox) 
+	public List<SpatialIndexEntry> getEntriesForRegion(final BoundingBox boundingBox) 
 			throws StorageManagerException {
 		
 		final List<SpatialIndexEntry> resultList = new ArrayList<>();
-		final Queue<Integer> readTasks = new LinkedTransferQueue<>();
-		readTasks.add(firstNodePos);
 		
-		try {
+		queryIndex(boundingBox, (mappedMemory, value, boxPosition, boxLength) -> {
+			final double[] values = new double[boxLength / DataEncoderHelper.DOUBLE_BYTES];
+			
+			for(int i = 0; i < values.length; i++) {
+				values[i] = mappedMemory.getDouble(boxPosition + (long) i * DataEncoderHelper.DOUBLE_BYTES);
+			}
+			
+			resultList.add(new SpatialIndexEntry(new BoundingBox(values), value));
+		});
+		
+		return resultList;
+	}
+	
+	/**
+	 * Find the values of the entries for the given region. Only the values 
+	 * are passed to the consumer, no entry or bounding box is decoded.
+	 */
+	@Override
+	public void getEntriesForRegion(final BoundingBox boundingBox, final IntConsumer consumer) 
+			throws StorageManagerException {
+		
+		queryIndex(boundingBox, (mappedMemory, value, boxPosition, boxLength) -> consumer.accept(value));
+	}
+	
+	/**
+	 * Traverse the nodes that overlap the bounding box. The node positions 
+	 * are kept on a long stack, the bounding boxes are compared on the 
+	 * mapped memory.
+	 * 
+	 * @param boundingBox
+	 * @param entryHandler
+	 * @throws StorageManagerException
+	 */
+	protected void queryIndex(final BoundingBox boundingBox, final EntryHandler entryHandler) 
+			throws StorageManagerException {
+		
+		final SegmentedMappedFile mappedMemory = memory;
+		
+		if(mappedMemory == null) {
+			throw new StorageManagerException("Query on a closed spatial index");
+		}
+		
+		if(boundingBox == null) {
+			return;
+		}
+		
+		final int childPointerSize = longChildNodePointers 
+				? DataEncoderHelper.LONG_BYTES : DataEncoderHelper.INT_BYTES;
+		
+		long[] stack = new long[INITIAL_STACK_SIZE];
+		int stackSize = 0;
+		stack[stackSize++] = firstNodePos;
+		
+		while(stackSize > 0) {
+			final long nodePosition = stack[--stackSize];
+			
+			// Skip the node id
+			final int nodeBoxLength = mappedMemory.getInt(nodePosition + DataEncoderHelper.INT_BYTES);
+			final long nodeBoxPosition = nodePosition + 2 * DataEncoderHelper.INT_BYTES;
 			
-			while(! readTasks.isEmpty()) {
+			if(! overlaps(boundingBox, mappedMemory, nodeBoxPosition, nodeBoxLength)) {
+				continue;
+			}
+			
+			long position = nodeBoxPosition + nodeBoxLength;
 			
-				final int position = readTasks.remove();
-				memory.position(position);
-				final DirectoryNode directoryNode = new DirectoryNode();
-				directoryNode.initFromByteBuffer(memory, maxNodeSize);
+			// Index entries
+			for(int i = 0; i < maxNodeSize; i++) {
+				final int marker = mappedMemory.getInt(position);
+				position = position + DataEncoderHelper.INT_BYTES;
 				
-				if(directoryNode.getBoundingBox().overlaps(boundingBox)) {
-					readTasks.addAll(directoryNode.getChildNodes());
+				if(marker == CHILD_NODE_FOLLOWING) {
+					final int value = mappedMemory.getInt(position);
+					final int boxLength = mappedMemory.getInt(position + DataEncoderHelper.INT_BYTES);
+					final long boxPosition = position + 2 * DataEncoderHelper.INT_BYTES;
 					
-					final List<SpatialIndexEntry> foundEntries = 
-						directoryNode.getIndexEntries()
-						.stream()
-						.filter(e -> e.getBoundingBox().overlaps(boundingBox))
-						.collect(Collectors.toList());
+					if(overlaps(boundingBox, mappedMemory, boxPosition, boxLength)) {
+						entryHandler.handleEntry(mappedMemory, value, boxPosition, boxLength);
+					}
 					
-					resultList.addAll(foundEntries);
+					position = boxPosition + boxLength;
+				} else if(marker != CHILD_NODE_NOT_EXISTING) {
+					throw new StorageManagerException("Unknown node type following: " + marker 
+							+ " at position " + position);
 				}
 			}
 			
-			return resultList;
-		} catch (IOException e) {
-			throw new StorageManagerException(e);
+			// Child node pointer
+			for(int i = 0; i < maxNodeSize; i++) {
+				final long childPointer = readChildPointer(mappedMemory, position);
+				position = position + childPointerSize;
+				
+				if(childPointer < 0) {
+					continue;
+				}
+				
+				if(stackSize == stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				
+				stack[stackSize++] = childPointer;
+			}
+		}
+	}
+	
+	/**
+	 * Read the child node pointer at the given position
+	 * @param mappedMemory
+	 * @param position
+	 * @return the pointer or -1, if the child node does not exist
+	 */
+	protected long readChildPointer(final SegmentedMappedFile mappedMemory, final long position) {
+		
+		if(longChildNodePointers) {
+			return mappedMemory.getLong(position);
+		}
+		
+		final int childPointer = mappedMemory.getInt(position);
+		
+		if(childPointer == CHILD_NODE_NOT_EXISTING) {
+			return RTreeBuilder.CHILD_NODE_POINTER_NOT_EXISTING;
 		}
+		
+		return childPointer;
+	}
+	
+	/**
+	 * Test if the encoded bounding box overlaps the query box. The box is compared 
+	 * on the mapped segment, only a box that crosses a segment boundary is copied.
+	 * 
+	 * @param boundingBox
+	 * @param mappedMemory
+	 * @param boxPosition
+	 * @param boxLength
+	 * @return
+	 */
+	protected boolean overlaps(final BoundingBox boundingBox, final SegmentedMappedFile mappedMemory, 
+			final long boxPosition, final int boxLength) {
+		
+		final ByteBuffer segment = mappedMemory.getSegmentForRegion(boxPosition, boxLength);
+		
+		if(segment != null) {
+			return boundingBox.overlaps(segment, mappedMemory.getOffset(boxPosition), boxLength);
+		}
+		
+		final ByteBuffer view = mappedMemory.getView(boxPosition, boxLength);
+		return boundingBox.overlaps(view, view.position(), boxLength);
+	}
+	
+	/**
+	 * Handler for the matching index entries
+	 */
+	@FunctionalInterface
+	protected interface EntryHandler {
+		
+		/**
+		 * Handle the index entry
+		 * @param mappedMemory
+		 * @param value
+		 * @param boxPosition - the position of the encoded bounding box
+		 * @param boxLength - the length of the encoded bounding box
+		 */
+		public void handleEntry(final SegmentedMappedFile mappedMemory, final int value, 
+				final long boxPosition, final int boxLength);
 	}
 
 }
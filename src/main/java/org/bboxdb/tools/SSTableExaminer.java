@@ -18,12 +18,11 @@
 package org.bboxdb.tools;
 
 import java.io.IOException;
-import java.nio.BufferUnderflowException;
 
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
-import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
 import org.bboxdb.storage.sstable.reader.SSTableReader;
@@ -101,12 +100,16 @@ public class SSTableExaminer implements Runnable {
 			throws StorageManagerException {
 		
 		System.out.println("Step3: Seach via index");
-		int pos = ssTableIndexReader.getPositionForTuple(examineKey);
-		System.out.println("Got index pos: " + pos);
+		final int entry = ssTableIndexReader.getEntryForTuple(examineKey);
+		System.out.println("Got index entry: " + entry);
 		
 		// Tuple found
-		if(pos != -1) {
-			System.out.println(ssTableReader.getTupleAtPosition(pos));
+		if(entry != -1) {
+			try {
+				System.out.println(ssTableIndexReader.getTupleForIndexEntry(entry));
+			} catch (IOException e) {
+				throw new StorageManagerException(e);
+			}
 		}
 	}
 
@@ -126,23 +129,30 @@ public class SSTableExaminer implements Runnable {
 	/**
 	 * Perform a full table scan
 	 * @param ssTableReader
-	 * @throws IOException
+	 * @throws StorageManagerException
 	 */
 	protected void fullTableScan(final SSTableReader ssTableReader)
-			throws IOException {
+			throws StorageManagerException {
 		
 		System.out.println("Step1: Looping over SSTable and searching for key: " + examineKey);
-		while(true) {
-			try {
-				final Tuple tuple = TupleHelper.decodeTuple(ssTableReader.getMemory());
-				if(tuple.getKey().equals(examineKey)) {
-					System.out.println(tuple);
-				}
-				
-			} catch (BufferUnderflowException e) {
-				// Loop until the buffer is empty
-				break;
+		
+		// The blocks of the block format can only be decoded via the reader
+		if(ssTableReader.isBlockFormat()) {
+			System.out.println("SSTable is stored in the block format, skipping raw scan");
+			return;
+		}
+		
+		long position = SSTableConst.MAGIC_BYTES.length;
+		
+		// Loop until the end of the file is reached
+		while(position < ssTableReader.getSize()) {
+			final Tuple tuple = ssTableReader.getTupleAtPosition(position);
+			
+			if(tuple.getKey().equals(examineKey)) {
+				System.out.println(tuple);
 			}
+			
+			position = position + ssTableReader.getEncodedTupleLength(position);
 		}
 	}
 	
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.tools.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.storage.entity.BoundingBox;
+
+import com.google.common.base.Stopwatch;
+
+public class BenchmarkBoundingBoxPerformance implements Runnable {
+
+	/**
+	 * The amount of boxes
+	 */
+	protected final int boxes;
+	
+	/**
+	 * The dimensions of the bounding boxes
+	 */
+	protected final int dimensions;
+	
+	/**
+	 * The amount of rounds over all boxes
+	 */
+	protected final int rounds;
+	
+	/**
+	 * The random generator, a fixed seed makes the runs comparable
+	 */
+	protected final Random random = new Random(4711);
+	
+	/**
+	 * Prevents the elimination of the benchmarked code
+	 */
+	protected long blackhole = 0;
+
+	public BenchmarkBoundingBoxPerformance(final int boxes, final int dimensions, final int rounds) {
+		this.boxes = boxes;
+		this.dimensions = dimensions;
+		this.rounds = rounds;
+	}
+
+	@Override
+	public void run() {
+		final List<BoundingBox> boundingBoxes = new ArrayList<>(boxes);
+		final List<byte[]> encodedBoxes = new ArrayList<>(boxes);
+		
+		for(int i = 0; i < boxes; i++) {
+			final BoundingBox boundingBox = getRandomBox(100);
+			boundingBoxes.add(boundingBox);
+			encodedBoxes.add(boundingBox.toByteArray());
+		}
+		
+		final BoundingBox queryBox = getRandomBox(5000);
+		final ByteBuffer encodedBuffer = getEncodedBuffer(encodedBoxes);
+		final int boxLength = encodedBoxes.get(0).length;
+		
+		// Warm up
+		runDecode(encodedBoxes);
+		runOverlap(boundingBoxes, queryBox);
+		runEncodedOverlap(encodedBuffer, boxLength, queryBox);
+		
+		final long decodeTime = runDecode(encodedBoxes);
+		final long overlapTime = runOverlap(boundingBoxes, queryBox);
+		final long encodedOverlapTime = runEncodedOverlap(encodedBuffer, boxLength, queryBox);
+		
+		final long operations = (long) boxes * rounds;
+		
+		System.out.format("%d\t%d\t%d\t%d\t%d\t%d\n", boxes, dimensions, 
+				getOperationsPerSecond(operations, decodeTime),
+				getOperationsPerSecond(operations, overlapTime),
+				getOperationsPerSecond(operations, encodedOverlapTime),
+				blackhole);
+	}
+
+	/**
+	 * Decode the boxes
+	 * @param encodedBoxes
+	 * @return the needed time in ms
+	 */
+	protected long runDecode(final List<byte[]> encodedBoxes) {
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		
+		for(int round = 0; round < rounds; round++) {
+			for(final byte[] encodedBox : encodedBoxes) {
+				blackhole = blackhole + BoundingBox.fromByteArray(encodedBox).getDimension();
+			}
+		}
+		
+		return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Test the boxes for overlapping with the query box
+	 * @param boundingBoxes
+	 * @param queryBox
+	 * @return the needed time in ms
+	 */
+	protected long runOverlap(final List<BoundingBox> boundingBoxes, final BoundingBox queryBox) {
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		
+		for(int round = 0; round < rounds; round++) {
+			for(final BoundingBox boundingBox : boundingBoxes) {
+				if(queryBox.overlaps(boundingBox)) {
+					blackhole++;
+				}
+			}
+		}
+		
+		return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Test the encoded boxes for overlapping with the query box
+	 * @param encodedBuffer
+	 * @param boxLength
+	 * @param queryBox
+	 * @return the needed time in ms
+	 */
+	protected long runEncodedOverlap(final ByteBuffer encodedBuffer, final int boxLength, 
+			final BoundingBox queryBox) {
+		
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		
+		for(int round = 0; round < rounds; round++) {
+			for(int i = 0; i < boxes; i++) {
+				if(queryBox.overlaps(encodedBuffer, i * boxLength, boxLength)) {
+					blackhole++;
+				}
+			}
+		}
+		
+		return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Copy the encoded boxes into one buffer
+	 * @param encodedBoxes
+	 * @return
+	 */
+	protected ByteBuffer getEncodedBuffer(final List<byte[]> encodedBoxes) {
+		final int totalLength = encodedBoxes.stream().mapToInt(b -> b.length).sum();
+		final ByteBuffer encodedBuffer = ByteBuffer.allocateDirect(totalLength);
+		encodedBuffer.order(Const.APPLICATION_BYTE_ORDER);
+		encodedBoxes.forEach(b -> encodedBuffer.put(b));
+		return encodedBuffer;
+	}
+	
+	/**
+	 * Get the operations per second
+	 * @param operations
+	 * @param timeInMs
+	 * @return
+	 */
+	protected long getOperationsPerSecond(final long operations, final long timeInMs) {
+		return operations * 1000 / Math.max(1, timeInMs);
+	}
+	
+	/**
+	 * Get a random box with the given max extent
+	 * @param maxExtent
+	 * @return
+	 */
+	protected BoundingBox getRandomBox(final int maxExtent) {
+		final double[] values = new double[dimensions * 2];
+		
+		for(int d = 0; d < dimensions; d++) {
+			final double begin = random.nextInt(10000);
+			values[2 * d] = begin;
+			values[2 * d + 1] = begin + random.nextInt(maxExtent) + 1;
+		}
+		
+		return new BoundingBox(values);
+	}
+
+	/* ====================================================
+	 * Main
+	 * ====================================================
+	 */
+	public static void main(final String[] args) {
+		final int[] dimensions = {2, 3, 4, 6, 8};
+		
+		System.out.println("#Boxes\tDimensions\tDecode (ops/s)\tOverlap (ops/s)\tEncoded overlap (ops/s)\tResults");
+		
+		for(final int dimension : dimensions) {
+			final BenchmarkBoundingBoxPerformance benchmark 
+				= new BenchmarkBoundingBoxPerformance(100000, dimension, 100);
+			benchmark.run();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.tools.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeDirectoryNode;
+
+import com.google.common.base.Stopwatch;
+
+public class BenchmarkRTreeBuildPerformance implements Runnable {
+
+	/**
+	 * The amount of entries in the tree
+	 */
+	protected final int entriesInTree;
+	
+	/**
+	 * The dimensions of the bounding boxes
+	 */
+	protected final int dimensions;
+	
+	/**
+	 * The amount of queries
+	 */
+	protected final int queries;
+	
+	/**
+	 * The random generator, a fixed seed makes the runs comparable
+	 */
+	protected final Random random = new Random(4711);
+
+	public BenchmarkRTreeBuildPerformance(final int entriesInTree, final int dimensions, final int queries) {
+		this.entriesInTree = entriesInTree;
+		this.dimensions = dimensions;
+		this.queries = queries;
+	}
+
+	@Override
+	public void run() {
+		final List<SpatialIndexEntry> entries = new ArrayList<>(entriesInTree);
+		
+		for(int i = 0; i < entriesInTree; i++) {
+			entries.add(new SpatialIndexEntry(getRandomBox(10), i));
+		}
+		
+		final List<BoundingBox> queryBoxes = new ArrayList<>(queries);
+		
+		for(int i = 0; i < queries; i++) {
+			queryBoxes.add(getRandomBox(100));
+		}
+		
+		// Build the tree with single inserts
+		final Stopwatch insertWatch = Stopwatch.createStarted();
+		final RTreeBuilder insertTree = new RTreeBuilder();
+		entries.forEach(e -> insertTree.insert(e));
+		final long insertTime = insertWatch.elapsed(TimeUnit.MILLISECONDS);
+		
+		// Build the tree with STR packing
+		final Stopwatch bulkWatch = Stopwatch.createStarted();
+		final RTreeBuilder bulkTree = new RTreeBuilder();
+		bulkTree.bulkInsert(entries);
+		final long bulkTime = bulkWatch.elapsed(TimeUnit.MILLISECONDS);
+		
+		printResult("insert", insertTime, insertTree, queryBoxes);
+		printResult("str", bulkTime, bulkTree, queryBoxes);
+	}
+
+	/**
+	 * Execute the queries and print the result
+	 * @param method
+	 * @param buildTime
+	 * @param tree
+	 * @param queryBoxes
+	 */
+	protected void printResult(final String method, final long buildTime, final RTreeBuilder tree, 
+			final List<BoundingBox> queryBoxes) {
+		
+		long visitedNodes = 0;
+		long results = 0;
+		
+		final Stopwatch queryWatch = Stopwatch.createStarted();
+		
+		for(final BoundingBox queryBox : queryBoxes) {
+			results = results + tree.getEntriesForRegion(queryBox).size();
+		}
+		
+		final long queryTime = queryWatch.elapsed(TimeUnit.MILLISECONDS);
+		
+		for(final BoundingBox queryBox : queryBoxes) {
+			visitedNodes = visitedNodes + countVisitedNodes(tree.getRootNode(), queryBox);
+		}
+		
+		System.out.format("%d\t%d\t%s\t%d\t%d\t%d\t%d\n", entriesInTree, dimensions, method, 
+				buildTime, queryTime, visitedNodes / queryBoxes.size(), results);
+	}
+	
+	/**
+	 * Count the nodes that are visited by a query
+	 * @param node
+	 * @param queryBox
+	 * @return
+	 */
+	protected long countVisitedNodes(final RTreeDirectoryNode node, final BoundingBox queryBox) {
+		long visitedNodes = 1;
+		
+		for(final RTreeDirectoryNode child : node.getDirectoryNodeChilds()) {
+			if(child.getBoundingBox().overlaps(queryBox)) {
+				visitedNodes = visitedNodes + countVisitedNodes(child, queryBox);
+			}
+		}
+		
+		return visitedNodes;
+	}
+	
+	/**
+	 * Get a random box with the given max extent
+	 * @param maxExtent
+	 * @return
+	 */
+	protected BoundingBox getRandomBox(final int maxExtent) {
+		final double[] values = new double[dimensions * 2];
+		
+		for(int d = 0; d < dimensions; d++) {
+			final double begin = random.nextInt(10000);
+			values[2 * d] = begin;
+			values[2 * d + 1] = begin + random.nextInt(maxExtent) + 1;
+		}
+		
+		return new BoundingBox(values);
+	}
+
+	/* ====================================================
+	 * Main
+	 * ====================================================
+	 */
+	public static void main(final String[] args) {
+		final int[] entryAmount = {10000, 100000, 500000};
+		final int[] dimensions = {2, 3};
+		
+		System.out.println("#Entries\tDimensions\tMethod\tBuild time (ms)\tQuery time (ms)\tVisited nodes/query\tResults");
+		
+		for(final int entries : entryAmount) {
+			for(final int dimension : dimensions) {
+				final BenchmarkRTreeBuildPerformance benchmark 
+					= new BenchmarkRTreeBuildPerformance(entries, dimension, 1000);
+				benchmark.run();
+			}
+		}
+	}
+}
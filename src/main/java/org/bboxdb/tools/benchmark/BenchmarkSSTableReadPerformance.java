@@ -0,0 +1,216 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.tools.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+import org.bboxdb.util.io.FileUtil;
+
+import com.google.common.base.Stopwatch;
+
+public class BenchmarkSSTableReadPerformance implements Runnable {
+
+	/**
+	 * The amount of tuples in the SSTable
+	 */
+	protected final int tuplesInTable;
+	
+	/**
+	 * The amount of key reads per thread
+	 */
+	protected final int readsPerThread;
+	
+	/**
+	 * The amount of reader threads
+	 */
+	protected final int[] readerThreads;
+
+	/**
+	 * The storage directory
+	 */
+	protected final String storageDirectory;
+	
+	/**
+	 * The name of the benchmark table
+	 */
+	protected final static SSTableName TABLE = new SSTableName("3_benchmarkgroup3_readtable");
+	
+	/**
+	 * The number of the benchmark table
+	 */
+	protected final static int TABLE_NUMBER = 1;
+
+	public BenchmarkSSTableReadPerformance(final int tuplesInTable, final int readsPerThread, 
+			final int[] readerThreads) {
+		
+		this.tuplesInTable = tuplesInTable;
+		this.readsPerThread = readsPerThread;
+		this.readerThreads = readerThreads;
+		this.storageDirectory = BBoxDBConfigurationManager.getConfiguration().getStorageDirectories().get(0);
+	}
+
+	@Override
+	public void run() {
+		try {
+			writeSSTable();
+			
+			final SSTableFacade facade = new SSTableFacade(storageDirectory, TABLE, TABLE_NUMBER);
+			facade.init();
+			
+			System.out.println("#Tuples\tThreads\tReads\tTime (ms)\tReads/s");
+
+			for(final int threads : readerThreads) {
+				runReadBenchmark(facade, threads);
+			}
+			
+			facade.shutdown();
+		} catch (Exception e) {
+			System.err.println("Got an exception: " + e);
+			e.printStackTrace();
+			System.exit(-1);
+		} finally {
+			deleteSSTableDirectory();
+		}
+	}
+
+	/**
+	 * Write the SSTable for the benchmark
+	 * @throws StorageManagerException
+	 */
+	protected void writeSSTable() throws StorageManagerException {
+		deleteSSTableDirectory();
+		
+		final File relationDirectory = new File(SSTableHelper.getSSTableDir(storageDirectory, TABLE));
+		relationDirectory.mkdirs();
+		
+		final List<Tuple> tuples = new ArrayList<>(tuplesInTable);
+		
+		for(int i = 0; i < tuplesInTable; i++) {
+			final String key = getKeyForTuple(i);
+			final BoundingBox boundingBox = new BoundingBox((double) i, (double) i + 1);
+			tuples.add(new Tuple(key, boundingBox, "abcdef".getBytes()));
+		}
+		
+		// SSTables are written in key order
+		Collections.sort(tuples);
+		
+		try (final SSTableWriter writer = new SSTableWriter(storageDirectory, TABLE, 
+				TABLE_NUMBER, tuplesInTable)) {
+			
+			writer.open();
+			writer.addData(tuples);
+		}
+	}
+	
+	/**
+	 * Read random keys from the SSTable with the given amount of threads
+	 * @param facade
+	 * @param threads
+	 * @throws Exception
+	 */
+	protected void runReadBenchmark(final SSTableFacade facade, final int threads) throws Exception {
+		final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		final List<Future<Integer>> futures = new ArrayList<>();
+		
+		final Stopwatch stopWatch = Stopwatch.createStarted();
+		
+		for(int thread = 0; thread < threads; thread++) {
+			futures.add(executorService.submit(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				int foundTuples = 0;
+				
+				for(int i = 0; i < readsPerThread; i++) {
+					final String key = getKeyForTuple(random.nextInt(tuplesInTable));
+					
+					if(facade.get(key) != null) {
+						foundTuples++;
+					}
+				}
+				
+				return foundTuples;
+			}));
+		}
+		
+		for(final Future<Integer> future : futures) {
+			final int foundTuples = future.get();
+			
+			if(foundTuples != readsPerThread) {
+				System.err.println("Not all tuples found: " + foundTuples + " / " + readsPerThread);
+			}
+		}
+		
+		final long elapsedMs = Math.max(1, stopWatch.elapsed(TimeUnit.MILLISECONDS));
+		final long totalReads = (long) threads * readsPerThread;
+		
+		System.out.format("%d\t%d\t%d\t%d\t%d\n", tuplesInTable, threads, totalReads, 
+				elapsedMs, (totalReads * 1000) / elapsedMs);
+		
+		executorService.shutdown();
+	}
+	
+	/**
+	 * Get the key for the tuple with the given number
+	 * @param number
+	 * @return
+	 */
+	protected String getKeyForTuple(final int number) {
+		return "key_" + number;
+	}
+	
+	/**
+	 * Remove the SSTable directory of the benchmark
+	 */
+	protected void deleteSSTableDirectory() {
+		final File relationDirectory = new File(SSTableHelper.getSSTableDir(storageDirectory, TABLE));
+		
+		if(relationDirectory.exists()) {
+			FileUtil.deleteRecursive(relationDirectory.toPath());
+		}
+	}
+
+	/* ====================================================
+	 * Main
+	 * ====================================================
+	 */
+	public static void main(final String[] args) {
+		final int[] tupleAmount = {10000, 100000, 1000000};
+		final int[] readerThreads = {1, 2, 4, 8, 16};
+		
+		for(final int tuples : tupleAmount) {
+			final BenchmarkSSTableReadPerformance benchmark 
+				= new BenchmarkSSTableReadPerformance(tuples, 100000, readerThreads);
+			benchmark.run();
+		}
+	}
+}
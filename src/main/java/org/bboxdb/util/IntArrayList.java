@@ -0,0 +1,125 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A growing list of primitive int values. The list can be used as 
+ * a consumer for the values of a query.
+ */
+public class IntArrayList implements IntConsumer {
+
+	/**
+	 * The values
+	 */
+	protected int[] values;
+	
+	/**
+	 * The number of stored values
+	 */
+	protected int size;
+	
+	/**
+	 * The default capacity
+	 */
+	protected final static int DEFAULT_CAPACITY = 16;
+	
+	public IntArrayList() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public IntArrayList(final int capacity) {
+		this.values = new int[Math.max(1, capacity)];
+		this.size = 0;
+	}
+	
+	/**
+	 * Sort the values in ascending order
+	 */
+	public void sort() {
+		Arrays.sort(values, 0, size);
+	}
+	
+	/**
+	 * Append the value to the list
+	 * @param value
+	 */
+	public void add(final int value) {
+		if(size == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		
+		values[size++] = value;
+	}
+	
+	@Override
+	public void accept(final int value) {
+		add(value);
+	}
+	
+	/**
+	 * Get the value at the given index
+	 * @param index
+	 * @return
+	 */
+	public int get(final int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " requested, size is " + size);
+		}
+		
+		return values[index];
+	}
+	
+	/**
+	 * Get the number of values
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Is the list empty
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Remove all values
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Copy the values into a new array
+	 * @return
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public String toString() {
+		return "IntArrayList [size=" + size + ", values=" + Arrays.toString(toArray()) + "]";
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A set of strings that stores only a 128 bit fingerprint of each string. The 
+ * fingerprints are kept in primitive arrays (open addressing), so the set needs 
+ * 16 bytes per entry (plus the free slots) regardless of the length of the 
+ * strings. Different strings with the same fingerprint are considered equal, 
+ * the probability for this is negligible.
+ */
+public class KeyFingerprintSet {
+	
+	/**
+	 * The high bits of the fingerprints
+	 */
+	protected long[] high;
+	
+	/**
+	 * The low bits of the fingerprints (0/0 marks a free slot)
+	 */
+	protected long[] low;
+	
+	/**
+	 * The number of stored fingerprints
+	 */
+	protected int size;
+	
+	/**
+	 * The default capacity
+	 */
+	protected final static int DEFAULT_CAPACITY = 1024;
+	
+	/**
+	 * The hash function for the fingerprints
+	 */
+	protected final static HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+	public KeyFingerprintSet() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public KeyFingerprintSet(final int capacity) {
+		final int slots = Integer.highestOneBit(Math.max(16, capacity * 2) - 1) << 1;
+		this.high = new long[slots];
+		this.low = new long[slots];
+		this.size = 0;
+	}
+	
+	/**
+	 * Add the key to the set
+	 * 
+	 * @param key
+	 * @return true if the key was not contained in the set
+	 */
+	public boolean add(final String key) {
+		final ByteBuffer fingerprint = getFingerprint(key);
+		final long fingerprintHigh = fingerprint.getLong();
+		final long fingerprintLow = fixLow(fingerprintHigh, fingerprint.getLong());
+		
+		final int slot = findSlot(fingerprintHigh, fingerprintLow);
+		
+		if(! isFree(slot)) {
+			return false;
+		}
+		
+		high[slot] = fingerprintHigh;
+		low[slot] = fingerprintLow;
+		size++;
+		
+		// Keep the load factor below 0.5
+		if(size * 2 > high.length) {
+			grow();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Is the key contained in the set?
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public boolean contains(final String key) {
+		final ByteBuffer fingerprint = getFingerprint(key);
+		final long fingerprintHigh = fingerprint.getLong();
+		final long fingerprintLow = fixLow(fingerprintHigh, fingerprint.getLong());
+		
+		return ! isFree(findSlot(fingerprintHigh, fingerprintLow));
+	}
+	
+	/**
+	 * Get the number of stored keys
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Calculate the fingerprint of the key
+	 * 
+	 * @param key
+	 * @return
+	 */
+	protected ByteBuffer getFingerprint(final String key) {
+		final byte[] hash = HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asBytes();
+		return ByteBuffer.wrap(hash);
+	}
+	
+	/**
+	 * The fingerprint 0/0 is used to mark free slots
+	 * 
+	 * @param fingerprintHigh
+	 * @param fingerprintLow
+	 * @return
+	 */
+	protected long fixLow(final long fingerprintHigh, final long fingerprintLow) {
+		if(fingerprintHigh == 0 && fingerprintLow == 0) {
+			return 1;
+		}
+		
+		return fingerprintLow;
+	}
+	
+	/**
+	 * Find the slot of the fingerprint or the free slot for it
+	 * 
+	 * @param fingerprintHigh
+	 * @param fingerprintLow
+	 * @return
+	 */
+	protected int findSlot(final long fingerprintHigh, final long fingerprintLow) {
+		final int mask = high.length - 1;
+		int slot = (int) fingerprintLow & mask;
+		
+		while(! isFree(slot)) {
+			if(high[slot] == fingerprintHigh && low[slot] == fingerprintLow) {
+				return slot;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Is the slot free?
+	 * 
+	 * @param slot
+	 * @return
+	 */
+	protected boolean isFree(final int slot) {
+		return high[slot] == 0 && low[slot] == 0;
+	}
+	
+	/**
+	 * Double the number of slots
+	 */
+	protected void grow() {
+		final long[] oldHigh = high;
+		final long[] oldLow = low;
+		
+		high = new long[oldHigh.length * 2];
+		low = new long[oldLow.length * 2];
+		
+		for(int i = 0; i < oldHigh.length; i++) {
+			if(oldHigh[i] == 0 && oldLow[i] == 0) {
+				continue;
+			}
+			
+			final int slot = findSlot(oldHigh[i], oldLow[i]);
+			high[slot] = oldHigh[i];
+			low[slot] = oldLow[i];
+		}
+	}
+}
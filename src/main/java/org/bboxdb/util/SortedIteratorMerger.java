@@ -19,10 +19,9 @@ package org.bboxdb.util;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 
 /**
@@ -30,6 +29,12 @@ import java.util.Objects;
  * list of elements. Duplicates are eleminated according the 
  * duplicateResolver
  * 
+ * The iterators are organized in a binary min heap, ordered by their current 
+ * element and on equal elements by the position of the iterator in the 
+ * input list. Each element costs O(log k) comparisons for k iterators. 
+ * The duplicates of an element are passed to the duplicateResolver in the 
+ * order of the input list.
+ * 
  * @author kristofnidzwetzki
  *
  * @param <E>
@@ -37,10 +42,24 @@ import java.util.Objects;
 public class SortedIteratorMerger<E> implements Iterable<E> {
 
 	/**
-	 * The iterator map, contains all iterators and the
-	 * last fetched element
+	 * The iterators
+	 */
+	protected final Iterator<E>[] iterators;
+	
+	/**
+	 * The last fetched element of each iterator
 	 */
-	protected final Map<Iterator<E>, E> iteratorElementMap;
+	protected final E[] currentElements;
+	
+	/**
+	 * The heap with the numbers of the non exhausted iterators 
+	 */
+	protected final int[] heap;
+	
+	/**
+	 * The number of iterators in the heap
+	 */
+	protected int heapSize;
 	
 	/**
 	 * The element comperator
@@ -51,12 +70,23 @@ public class SortedIteratorMerger<E> implements Iterable<E> {
 	 * The duplicate resolver
 	 */
 	protected final DuplicateResolver<E> duplicateResolver;
+	
+	/**
+	 * The list with the duplicates for the current element
+	 */
+	protected final List<E> unconsumedDuplicates;
+	
+	/**
+	 * The position of the next unconsumed duplicate
+	 */
+	protected int duplicatePosition;
 
 	/**
 	 * The amount of read elements
 	 */
 	protected int readElements = 0;
 
+	@SuppressWarnings("unchecked")
 	public SortedIteratorMerger(final List<Iterator<E>> iteratorList, 
 			final Comparator<? super E> elementComperator,
 			final DuplicateResolver<E> duplicateResolver) {
@@ -64,109 +94,179 @@ public class SortedIteratorMerger<E> implements Iterable<E> {
 		this.elementComperator = Objects.requireNonNull(elementComperator);
 		this.duplicateResolver = Objects.requireNonNull(duplicateResolver);
 		Objects.requireNonNull(iteratorList);
-
-		iteratorElementMap = new HashMap<>();
 		
-		for(final Iterator<E> iterator : iteratorList) {
-			iteratorElementMap.put(iterator, null);
-			refreshIterator(iterator);
-		}		
+		final int numberOfIterators = iteratorList.size();
+		
+		this.iterators = iteratorList.toArray(new Iterator[numberOfIterators]);
+		this.currentElements = (E[]) new Object[numberOfIterators];
+		this.heap = new int[numberOfIterators];
+		this.heapSize = 0;
+		this.unconsumedDuplicates = new ArrayList<>();
+		this.duplicatePosition = 0;
+
+		for(int iteratorNumber = 0; iteratorNumber < numberOfIterators; iteratorNumber++) {
+			if(refreshIterator(iteratorNumber) != null) {
+				heap[heapSize] = iteratorNumber;
+				heapSize++;
+				siftUp(heapSize - 1);
+			}
+		}
 	}
 	
 	/**
-	 * Refresh the specified iterator
-	 * @param iterator
+	 * Refresh the specified iterator, a null element marks the end of the iterator
+	 * @param iteratorNumber
 	 */
-	protected E refreshIterator(final Iterator<E> iterator) {
+	protected E refreshIterator(final int iteratorNumber) {
+		
+		final Iterator<E> iterator = iterators[iteratorNumber];
 		
 		if(! iterator.hasNext()) {
-			iteratorElementMap.put(iterator, null);
+			currentElements[iteratorNumber] = null;
 			return null;
 		}
 		
 		final E element = iterator.next();
 		readElements++;
 		
-		iteratorElementMap.put(iterator, element);
+		currentElements[iteratorNumber] = element;
 		
 		return element;
 	}
+	
+	/**
+	 * Compare the iterators by their current element and on equal 
+	 * elements by their number
+	 * @param iteratorNumber1
+	 * @param iteratorNumber2
+	 * @return
+	 */
+	protected int compareIterators(final int iteratorNumber1, final int iteratorNumber2) {
+		final int result = elementComperator.compare(currentElements[iteratorNumber1], 
+				currentElements[iteratorNumber2]);
+		
+		if(result != 0) {
+			return result;
+		}
+		
+		return Integer.compare(iteratorNumber1, iteratorNumber2);
+	}
+	
+	/**
+	 * Move the heap entry at the given position up
+	 * @param position
+	 */
+	protected void siftUp(int position) {
+		final int iteratorNumber = heap[position];
+		
+		while(position > 0) {
+			final int parent = (position - 1) >>> 1;
+			
+			if(compareIterators(iteratorNumber, heap[parent]) >= 0) {
+				break;
+			}
+			
+			heap[position] = heap[parent];
+			position = parent;
+		}
+		
+		heap[position] = iteratorNumber;
+	}
+	
+	/**
+	 * Move the heap entry at the given position down
+	 * @param position
+	 */
+	protected void siftDown(int position) {
+		final int iteratorNumber = heap[position];
+		final int half = heapSize >>> 1;
+		
+		while(position < half) {
+			int child = (position << 1) + 1;
+			final int right = child + 1;
+			
+			if(right < heapSize && compareIterators(heap[right], heap[child]) < 0) {
+				child = right;
+			}
+			
+			if(compareIterators(iteratorNumber, heap[child]) <= 0) {
+				break;
+			}
+			
+			heap[position] = heap[child];
+			position = child;
+		}
+		
+		heap[position] = iteratorNumber;
+	}
+	
+	/**
+	 * Move the current element of the top iterator to the duplicate list and 
+	 * restore the heap
+	 */
+	protected void consumeTopElement() {
+		final int iteratorNumber = heap[0];
+		unconsumedDuplicates.add(currentElements[iteratorNumber]);
+		
+		if(refreshIterator(iteratorNumber) == null) {
+			heapSize--;
+			
+			if(heapSize == 0) {
+				return;
+			}
+			
+			heap[0] = heap[heapSize];
+		}
+		
+		siftDown(0);
+	}
+	
+	/**
+	 * Collect all duplicates of the lowest element and pass them to the 
+	 * duplicate resolver
+	 */
+	protected void fetchNextDuplicates() {
+		unconsumedDuplicates.clear();
+		duplicatePosition = 0;
+		
+		final E lowestElement = currentElements[heap[0]];
+		
+		// The duplicates are on top of the heap until all are consumed 
+		do {
+			consumeTopElement();
+		} while(heapSize > 0 
+				&& elementComperator.compare(currentElements[heap[0]], lowestElement) == 0);
+		
+		assert (! unconsumedDuplicates.isEmpty());
+		duplicateResolver.handleDuplicates(unconsumedDuplicates);
+		assert (! unconsumedDuplicates.isEmpty());
+	}
 
 	@Override
 	public Iterator<E> iterator() {
 		return new Iterator<E>() {
-			
-			/**
-			 * The list with unconsumed duplicates for the current key
-			 */
-			final List<E> unconsumedDuplicates = new ArrayList<E>();
 
 			@Override
 			public boolean hasNext() {
-				
-				if(! unconsumedDuplicates.isEmpty()) {
-					return true;
-				}
-				
-				// Any new values left?
-				return iteratorElementMap.values()
-						.stream()
-						.anyMatch(e -> Objects.nonNull(e));
+				return duplicatePosition < unconsumedDuplicates.size() || heapSize > 0;
 			}
 
 			@Override
 			public E next() {
 				
-				assert (hasNext() == true);
-				
 				// Consume the duplicates first 
-				if(! unconsumedDuplicates.isEmpty()) {
-					return unconsumedDuplicates.remove(0);
-				}
-				
-				final E lowestElement = iteratorElementMap
-						.values()
-						.stream()
-						.filter(e -> Objects.nonNull(e))
-						.min(elementComperator)
-						.orElse(null);
-				
-				assert (lowestElement != null);
-				
-				for(final Iterator<E> iteratorToCheck : iteratorElementMap.keySet()) {
-					E element = iteratorElementMap.get(iteratorToCheck);
+				if(duplicatePosition >= unconsumedDuplicates.size()) {
 					
-					// Move the searched element from the iterator list to the result list
-					while(belongsElementToCurrentKey(lowestElement, element)) {	
-						unconsumedDuplicates.add(element);
-						element = refreshIterator(iteratorToCheck);
+					if(heapSize == 0) {
+						throw new NoSuchElementException("All iterators are exhausted");
 					}
+					
+					fetchNextDuplicates();
 				}
 				
-				assert (! unconsumedDuplicates.isEmpty());
-				duplicateResolver.handleDuplicates(unconsumedDuplicates);
-				assert (! unconsumedDuplicates.isEmpty());
-				
-				
-				return unconsumedDuplicates.remove(0);				
-			}
-
-			/**
-			 * Belongs the given element to the current key
-			 * @param lowestElement
-			 * @param element
-			 * @return
-			 */
-			protected boolean belongsElementToCurrentKey(final E lowestElement, final E element) {
-				if(element == null) {
-					return false;
-				}
-						
-				if(elementComperator.compare(element, lowestElement) == 0) {
-					return true;
-				}
-				
-				return false;
+				final E element = unconsumedDuplicates.get(duplicatePosition);
+				duplicatePosition++;
+				return element;
 			}
 		};
 	}
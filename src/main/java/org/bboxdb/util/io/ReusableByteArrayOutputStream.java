@@ -0,0 +1,75 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.util.io;
+
+import java.io.ByteArrayOutputStream;
+
+public class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+	/**
+	 * The max size of the buffer that is kept on reset
+	 */
+	protected final int maxRetainedSize;
+	
+	/**
+	 * The initial size of the buffer
+	 */
+	protected final int initialSize;
+
+	public ReusableByteArrayOutputStream(final int initialSize, final int maxRetainedSize) {
+		super(initialSize);
+		this.initialSize = initialSize;
+		this.maxRetainedSize = maxRetainedSize;
+	}
+	
+	/**
+	 * Get the internal buffer without copying it. Only the 
+	 * first size() bytes are valid.
+	 * 
+	 * @return
+	 */
+	public byte[] getBuffer() {
+		return buf;
+	}
+	
+	/**
+	 * Discard all bytes after the given size
+	 * 
+	 * @param size
+	 */
+	public synchronized void truncate(final int size) {
+		if(size < 0 || size > count) {
+			throw new IllegalArgumentException("Invalid size " + size + " stream has " + count + " bytes");
+		}
+		
+		count = size;
+	}
+	
+	/**
+	 * Reset the stream, buffers that have grown above the max 
+	 * retained size are released.
+	 */
+	@Override
+	public synchronized void reset() {
+		super.reset();
+		
+		if(buf.length > maxRetainedSize) {
+			buf = new byte[initialSize];
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.util.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class SegmentedMappedFile {
+	
+	/**
+	 * The mapped segments of the file
+	 */
+	protected final MappedByteBuffer[] segments;
+	
+	/**
+	 * The size of a segment
+	 */
+	protected final int segmentSize;
+	
+	/**
+	 * The size of the file
+	 */
+	protected final long size;
+	
+	/**
+	 * The byte order
+	 */
+	protected final ByteOrder byteOrder;
+
+	protected SegmentedMappedFile(final MappedByteBuffer[] segments, final int segmentSize, 
+			final long size, final ByteOrder byteOrder) {
+		
+		this.segments = segments;
+		this.segmentSize = segmentSize;
+		this.size = size;
+		this.byteOrder = byteOrder;
+	}
+	
+	/**
+	 * Map the whole file read only into memory. A MappedByteBuffer can not
+	 * address more than 2 GB, so the file is mapped in multiple segments.
+	 * 
+	 * @param fileChannel
+	 * @param segmentSize
+	 * @param byteOrder
+	 * @return
+	 * @throws IOException
+	 */
+	public static SegmentedMappedFile mapFile(final FileChannel fileChannel, final int segmentSize, 
+			final ByteOrder byteOrder) throws IOException {
+		
+		final long size = fileChannel.size();
+		final int numberOfSegments = (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+		final MappedByteBuffer[] segments = new MappedByteBuffer[numberOfSegments];
+		
+		for(int i = 0; i < numberOfSegments; i++) {
+			final long segmentStart = (long) i * segmentSize;
+			final long segmentLength = Math.min(segmentSize, size - segmentStart);
+			segments[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+			segments[i].order(byteOrder);
+		}
+		
+		return new SegmentedMappedFile(segments, segmentSize, size, byteOrder);
+	}
+	
+	/**
+	 * Get a view of the given region of the file. The view is positioned at
+	 * the start of the region and its limit is set to the end of the region.
+	 * 
+	 * If the region is located in one segment, the view shares the content 
+	 * with the mapped memory. Otherwise, the region is copied onto the heap.
+	 * 
+	 * @param position
+	 * @param length
+	 * @return
+	 */
+	public ByteBuffer getView(final long position, final int length) {
+		checkRegion(position, length);
+		
+		final MappedByteBuffer segment = segments[getSegment(position)];
+		final int offset = getOffset(position);
+		
+		if(offset + length <= segment.limit()) {
+			final ByteBuffer view = segment.duplicate();
+			view.order(byteOrder);
+			view.limit(offset + length);
+			view.position(offset);
+			return view;
+		}
+		
+		final byte[] regionBytes = new byte[length];
+		get(position, regionBytes);
+		
+		final ByteBuffer view = ByteBuffer.wrap(regionBytes);
+		view.order(byteOrder);
+		return view;
+	}
+	
+	/**
+	 * Get the mapped segment that contains the whole region. The region starts 
+	 * at getOffset(position) in the segment. The segment is shared and has to 
+	 * be read with absolute offsets, no view is created.
+	 * 
+	 * @param position
+	 * @param length
+	 * @return the segment or null, if the region crosses a segment boundary
+	 */
+	public ByteBuffer getSegmentForRegion(final long position, final int length) {
+		checkRegion(position, length);
+		
+		final MappedByteBuffer segment = segments[getSegment(position)];
+		
+		if(getOffset(position) + length <= segment.limit()) {
+			return segment;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Read the double at the given position
+	 * @param position
+	 * @return
+	 */
+	public double getDouble(final long position) {
+		return Double.longBitsToDouble(getLong(position));
+	}
+	
+	/**
+	 * Copy the bytes at the given position into the target
+	 * @param position
+	 * @param target
+	 */
+	public void get(final long position, final byte[] target) {
+		checkRegion(position, target.length);
+		
+		long readPosition = position;
+		int copiedBytes = 0;
+		
+		while(copiedBytes < target.length) {
+			final ByteBuffer segment = segments[getSegment(readPosition)].duplicate();
+			final int offset = getOffset(readPosition);
+			final int chunkSize = Math.min(target.length - copiedBytes, segment.limit() - offset);
+			
+			segment.position(offset);
+			segment.get(target, copiedBytes, chunkSize);
+			
+			copiedBytes = copiedBytes + chunkSize;
+			readPosition = readPosition + chunkSize;
+		}
+	}
+	
+	/**
+	 * Read the byte at the given position
+	 * @param position
+	 * @return
+	 */
+	public byte get(final long position) {
+		checkRegion(position, 1);
+		return segments[getSegment(position)].get(getOffset(position));
+	}
+	
+	/**
+	 * Read the short at the given position
+	 * @param position
+	 * @return
+	 */
+	public short getShort(final long position) {
+		final MappedByteBuffer segment = segments[getSegment(position)];
+		final int offset = getOffset(position);
+		
+		if(offset + DataEncoderHelper.SHORT_BYTES <= segment.limit()) {
+			return segment.getShort(offset);
+		}
+		
+		return getView(position, DataEncoderHelper.SHORT_BYTES).getShort();
+	}
+	
+	/**
+	 * Read the integer at the given position
+	 * @param position
+	 * @return
+	 */
+	public int getInt(final long position) {
+		final MappedByteBuffer segment = segments[getSegment(position)];
+		final int offset = getOffset(position);
+		
+		if(offset + DataEncoderHelper.INT_BYTES <= segment.limit()) {
+			return segment.getInt(offset);
+		}
+		
+		return getView(position, DataEncoderHelper.INT_BYTES).getInt();
+	}
+	
+	/**
+	 * Read the long at the given position
+	 * @param position
+	 * @return
+	 */
+	public long getLong(final long position) {
+		final MappedByteBuffer segment = segments[getSegment(position)];
+		final int offset = getOffset(position);
+		
+		if(offset + DataEncoderHelper.LONG_BYTES <= segment.limit()) {
+			return segment.getLong(offset);
+		}
+		
+		return getView(position, DataEncoderHelper.LONG_BYTES).getLong();
+	}
+	
+	/**
+	 * Check the requested region
+	 * @param position
+	 * @param length
+	 */
+	protected void checkRegion(final long position, final int length) {
+		if(position < 0 || length < 0 || position + length > size) {
+			throw new IndexOutOfBoundsException("Requested region " + position + " / " + length 
+					+ " is outside of the file (size " + size + ")");
+		}
+	}
+	
+	/**
+	 * Get the segment for the position
+	 * @param position
+	 * @return
+	 */
+	protected int getSegment(final long position) {
+		return (int) (position / segmentSize);
+	}
+	
+	/**
+	 * Get the offset of the position in the segment
+	 * @param position
+	 * @return
+	 */
+	public int getOffset(final long position) {
+		return (int) (position % segmentSize);
+	}
+	
+	/**
+	 * Unmap all segments
+	 */
+	public void unmap() {
+		for(final MappedByteBuffer segment : segments) {
+			UnsafeMemoryHelper.unmapMemory(segment);
+		}
+	}
+	
+	/**
+	 * Get the size of the mapped file
+	 * @return
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * Get the number of segments
+	 * @return
+	 */
+	public int getNumberOfSegments() {
+		return segments.length;
+	}
+
+	/**
+	 * Get the segment size
+	 * @return
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+}
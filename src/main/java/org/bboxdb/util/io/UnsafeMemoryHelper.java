@@ -79,6 +79,20 @@ public class UnsafeMemoryHelper {
 		}
 	}
 
+	/**
+	 * Release the memory of the given direct byte buffer
+	 * @param buffer
+	 */
+	public static void freeDirectMemory(final ByteBuffer buffer) {
+		if(buffer == null) {
+			return;
+		}
+		
+		if(buffer.isDirect() && directMemoryUnmapperAvailable) {
+			((DirectBuffer) buffer).cleaner().clean();
+		}
+	}
+
 	/**
 	 * Get the number of mapped segments
 	 * @return
@@ -17,13 +17,22 @@
  *******************************************************************************/
 package org.bboxdb;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bboxdb.network.client.future.OperationFuture;
 import org.bboxdb.network.client.future.OperationFutureImpl;
 import org.bboxdb.network.client.future.TupleListFuture;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.queryprocessor.CloseableIterator;
+import org.bboxdb.util.KeyFingerprintSet;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -193,4 +202,128 @@ public class TestFuture {
 		Assert.assertTrue(tupleListFuture.isCompleteResult(0));
 		Assert.assertTrue(tupleListFuture.isCompleteResult(1));
 	}
+	
+	/**
+	 * Test the stream iterator with duplicates in the results
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testTupleStreamIteratorDuplicates() throws InterruptedException {
+		final TupleListFuture tupleListFuture = new TupleListFuture(2);
+		
+		final Tuple tuple1 = new Tuple("1", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		final Tuple tuple3 = new Tuple("3", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		
+		tupleListFuture.setOperationResult(0, Arrays.asList(tuple1, tuple2));
+		tupleListFuture.setOperationResult(1, Arrays.asList(tuple2, tuple3, tuple1));
+		tupleListFuture.setCompleteResult(0, true);
+		tupleListFuture.setCompleteResult(1, true);
+		tupleListFuture.fireCompleteEvent();
+		
+		int tuples = 0;
+		for(final Tuple tuple : tupleListFuture) {
+			Assert.assertNotNull(tuple);
+			tuples++;
+		}
+		
+		Assert.assertEquals(3, tuples);
+	}
+	
+	/**
+	 * Test the stream iterator with a single result, that contains a key twice
+	 * @throws Exception 
+	 */
+	@Test
+	public void testTupleStreamIteratorSingleResult() throws Exception {
+		final TupleListFuture tupleListFuture = new TupleListFuture(1);
+		final Tuple tuple1 = new Tuple("1", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		tupleListFuture.setOperationResult(0, Arrays.asList(tuple1, tuple2, tuple1));
+		tupleListFuture.setCompleteResult(0, true);
+		tupleListFuture.fireCompleteEvent();
+		
+		final CloseableIterator<Tuple> iterator = tupleListFuture.streamIterator();
+		Assert.assertTrue(iterator.hasNext());
+		Assert.assertEquals(tuple1, iterator.next());
+		Assert.assertEquals(tuple2, iterator.next());
+		Assert.assertFalse(iterator.hasNext());
+		iterator.close();
+	}
+	
+	/**
+	 * Test the stream iterator with duplicates in the last active result
+	 * @throws Exception 
+	 */
+	@Test
+	public void testTupleStreamIteratorDuplicatesInLastResult() throws Exception {
+		final TupleListFuture tupleListFuture = new TupleListFuture(2);
+		
+		final Tuple tuple1 = new Tuple("1", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		final Tuple tuple3 = new Tuple("3", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		
+		// The first result is exhausted before the duplicates of the second result are read
+		tupleListFuture.setOperationResult(0, Arrays.asList(tuple1));
+		tupleListFuture.setOperationResult(1, Arrays.asList(tuple2, tuple3, tuple2, tuple1, tuple3));
+		tupleListFuture.setCompleteResult(0, true);
+		tupleListFuture.setCompleteResult(1, true);
+		tupleListFuture.fireCompleteEvent();
+		
+		final CloseableIterator<Tuple> iterator = tupleListFuture.streamIterator();
+		final List<String> keys = new ArrayList<>();
+		
+		while(iterator.hasNext()) {
+			keys.add(iterator.next().getKey());
+		}
+		
+		iterator.close();
+		
+		Assert.assertEquals(3, keys.size());
+		Assert.assertEquals(3, new HashSet<>(keys).size());
+	}
+	
+	/**
+	 * Test the key fingerprint set
+	 */
+	@Test
+	public void testKeyFingerprintSet() {
+		final KeyFingerprintSet keyFingerprintSet = new KeyFingerprintSet(4);
+		Assert.assertEquals(0, keyFingerprintSet.size());
+		Assert.assertFalse(keyFingerprintSet.contains("key1"));
+		
+		for(int i = 0; i < 1000; i++) {
+			Assert.assertTrue(keyFingerprintSet.add("key" + i));
+		}
+		
+		for(int i = 0; i < 1000; i++) {
+			Assert.assertFalse(keyFingerprintSet.add("key" + i));
+			Assert.assertTrue(keyFingerprintSet.contains("key" + i));
+		}
+		
+		Assert.assertEquals(1000, keyFingerprintSet.size());
+		Assert.assertFalse(keyFingerprintSet.contains("key1000"));
+	}
+	
+	/**
+	 * Test the complete callbacks
+	 */
+	@Test
+	public void testCompleteCallback() {
+		final OperationFutureImpl<Object> future = new OperationFutureImpl<Object>(2);
+		final AtomicInteger calls = new AtomicInteger(0);
+		
+		future.addCompleteCallback(() -> calls.incrementAndGet());
+		Assert.assertEquals(0, calls.get());
+		
+		future.futures.get(0).fireCompleteEvent();
+		Assert.assertEquals(0, calls.get());
+		
+		future.futures.get(1).fireCompleteEvent();
+		Assert.assertEquals(1, calls.get());
+		
+		// Future is already complete, the callback is executed immediately
+		future.addCompleteCallback(() -> calls.incrementAndGet());
+		Assert.assertEquals(2, calls.get());
+	}
 }
@@ -17,8 +17,12 @@
  *******************************************************************************/
 package org.bboxdb.distribution;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableName;
@@ -217,4 +221,86 @@ public class TestRegionIdMapper {
 		final List<SSTableName> mappingResult = regionIdMapper.getAllLocalTables(DEFAULT_SSTABLE_NAME);
 		Assert.assertEquals(3, mappingResult.size());
 	}
+	
+	/**
+	 * Split the box recursively like the KD-tree and collect the leaf boxes
+	 * @param box
+	 * @param level
+	 * @param low
+	 * @param high
+	 * @param result
+	 */
+	protected void splitBox(final BoundingBox box, final int level, final double low, 
+			final double high, final List<BoundingBox> result) {
+		
+		if(level == 0) {
+			result.add(box);
+			return;
+		}
+		
+		final int dimension = level % 2;
+		final double split = (low + high) / 2;
+		
+		splitBox(box.splitAndGetLeft(split, dimension, true), level - 1, low, split, result);
+		splitBox(box.splitAndGetRight(split, dimension, false), level - 1, split, high, result);
+	}
+	
+	/**
+	 * Compare the spatial index with a linear scan over many regions
+	 */
+	@Test
+	public void testManyMappings() {
+		final RegionIdMapper regionIdMapper = new RegionIdMapper();
+		final List<BoundingBox> boxes = new ArrayList<>();
+		splitBox(BoundingBox.createFullCoveringDimensionBoundingBox(2), 10, 0, 1000, boxes);
+		Assert.assertEquals(1024, boxes.size());
+		
+		for(int i = 0; i < boxes.size(); i++) {
+			final DistributionRegion region = new DistributionRegion(DEFAULT_SSTABLE_NAME.getDistributionGroupObject(), null);
+			region.setRegionId(i);
+			region.setConveringBox(boxes.get(i));
+			regionIdMapper.addMapping(region);
+		}
+		
+		// Remove every second region
+		for(int i = 0; i < boxes.size(); i = i + 2) {
+			Assert.assertTrue(regionIdMapper.removeMapping(i));
+		}
+		
+		Assert.assertFalse(regionIdMapper.removeMapping(0));
+		Assert.assertEquals(512, regionIdMapper.getAllRegionIds().size());
+
+		final Random random = new Random(42);
+		
+		for(int query = 0; query < 500; query++) {
+			final double x = random.nextDouble() * 1200 - 100;
+			final double y = random.nextDouble() * 1200 - 100;
+			final double size = random.nextDouble() * 100;
+			final BoundingBox queryBox = new BoundingBox(x, x + size, y, y + size);
+			
+			final Set<Integer> expected = new HashSet<>();
+			for(int i = 1; i < boxes.size(); i = i + 2) {
+				if(boxes.get(i).overlaps(queryBox)) {
+					expected.add(i);
+				}
+			}
+			
+			final Collection<Integer> result = regionIdMapper.getRegionIdsForRegion(queryBox);
+			Assert.assertEquals(expected.size(), result.size());
+			Assert.assertEquals(expected, new HashSet<>(result));
+			Assert.assertEquals(expected.size(), 
+					regionIdMapper.getAllLocalTables(DEFAULT_SSTABLE_NAME, queryBox).size());
+		}
+		
+		// Query on the split position
+		final BoundingBox splitQuery = new BoundingBox(500d, 500d, 250d, 250d);
+		final Set<Integer> expected = new HashSet<>();
+		for(int i = 1; i < boxes.size(); i = i + 2) {
+			if(boxes.get(i).overlaps(splitQuery)) {
+				expected.add(i);
+			}
+		}
+		
+		Assert.assertEquals(expected, new HashSet<>(regionIdMapper.getRegionIdsForRegion(splitQuery)));
+	}
 }
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.bboxdb.distribution.DistributionRegion;
+import org.bboxdb.distribution.RegionIdMapper;
+import org.bboxdb.distribution.RegionIdMapperInstanceManager;
+import org.bboxdb.misc.BBoxDBConfiguration;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.network.client.BBoxDBClient;
+import org.bboxdb.network.client.BBoxDBException;
+import org.bboxdb.network.client.future.EmptyResultFuture;
+import org.bboxdb.network.client.future.TupleListFuture;
+import org.bboxdb.network.server.NetworkConnectionService;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.queryprocessor.CloseableIterator;
+import org.bboxdb.storage.registry.StorageRegistry;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TestNIONetworkTransport {
+
+	/**
+	 * The storage registry
+	 */
+	protected static StorageRegistry storageRegistry;
+	
+	/**
+	 * The network connection service
+	 */
+	protected static NetworkConnectionService networkConnectionService;
+	
+	/**
+	 * The port of the configuration
+	 */
+	protected static int oldListenPort;
+	
+	/**
+	 * The transport setting of the configuration
+	 */
+	protected static boolean oldNonBlockingIO;
+	
+	/**
+	 * The port for the test
+	 */
+	protected final static int TEST_PORT = 50599;
+	
+	/**
+	 * The name of the test relation
+	 */
+	protected final static SSTableName TEST_RELATION = new SSTableName("2_niogroup_abc");
+	
+	@BeforeClass
+	public static void init() throws Exception {
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		oldListenPort = configuration.getNetworkListenPort();
+		oldNonBlockingIO = configuration.isNetworkNonBlockingIO();
+		configuration.setNetworkListenPort(TEST_PORT);
+		configuration.setNetworkNonBlockingIO(true);
+		
+		storageRegistry = new StorageRegistry();
+		storageRegistry.init();
+		storageRegistry.deleteTable(TEST_RELATION.cloneWithDifferntRegionId(1));
+		
+		// Map the whole space to a local region
+		final RegionIdMapper regionIdMapper 
+			= RegionIdMapperInstanceManager.getInstance(TEST_RELATION.getDistributionGroupObject());
+		final DistributionRegion region = DistributionRegion.createRootElement(TEST_RELATION.getDistributionGroupObject());
+		region.setRegionId(1);
+		region.setConveringBox(BoundingBox.createFullCoveringDimensionBoundingBox(2));
+		regionIdMapper.addMapping(region);
+		
+		networkConnectionService = new NetworkConnectionService(storageRegistry);
+		networkConnectionService.init();
+		
+		// Wait some time to let the server socket start
+		Thread.sleep(1000);
+	}
+	
+	@AfterClass
+	public static void shutdown() throws Exception {
+		if(networkConnectionService != null) {
+			networkConnectionService.shutdown();
+			networkConnectionService = null;
+		}
+		
+		RegionIdMapperInstanceManager.getInstance(TEST_RELATION.getDistributionGroupObject()).clear();
+
+		if(storageRegistry != null) {
+			storageRegistry.shutdown();
+			storageRegistry = null;
+		}
+		
+		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
+		configuration.setNetworkListenPort(oldListenPort);
+		configuration.setNetworkNonBlockingIO(oldNonBlockingIO);
+	}
+	
+	/**
+	 * Connect to the server
+	 * @return
+	 */
+	protected BBoxDBClient connectToServer() {
+		final BBoxDBClient bboxDBClient = new BBoxDBClient(new InetSocketAddress("127.0.0.1", TEST_PORT));
+		Assert.assertTrue(bboxDBClient.connect());
+		return bboxDBClient;
+	}
+	
+	/**
+	 * Test connect, keep alive and disconnect 
+	 * @throws InterruptedException 
+	 * @throws ExecutionException 
+	 */
+	@Test
+	public void testConnectAndKeepAlive() throws InterruptedException, ExecutionException {
+		final BBoxDBClient bboxDBClient = connectToServer();
+		Assert.assertEquals(NetworkConnectionState.NETWORK_CONNECTION_OPEN, bboxDBClient.getConnectionState());
+		
+		for(int i = 0; i < 10; i++) {
+			final EmptyResultFuture result = bboxDBClient.sendKeepAlivePackage();
+			result.waitForAll();
+			Assert.assertFalse(result.isFailed());
+		}
+		
+		bboxDBClient.disconnect();
+		Assert.assertEquals(NetworkConnectionState.NETWORK_CONNECTION_CLOSED, bboxDBClient.getConnectionState());
+	}
+	
+	/**
+	 * Test many parallel connections
+	 * @throws InterruptedException 
+	 * @throws ExecutionException 
+	 */
+	@Test
+	public void testManyConnections() throws InterruptedException, ExecutionException {
+		final List<BBoxDBClient> clients = new ArrayList<>();
+		
+		for(int i = 0; i < 50; i++) {
+			clients.add(connectToServer());
+		}
+		
+		final List<EmptyResultFuture> results = new ArrayList<>();
+		
+		for(final BBoxDBClient client : clients) {
+			results.add(client.sendKeepAlivePackage());
+		}
+		
+		for(final EmptyResultFuture result : results) {
+			result.waitForAll();
+			Assert.assertFalse(result.isFailed());
+		}
+		
+		clients.forEach(c -> c.disconnect());
+	}
+	
+	/**
+	 * Test insert and query with paging
+	 * @throws InterruptedException 
+	 * @throws ExecutionException 
+	 * @throws BBoxDBException 
+	 * @throws StorageManagerException 
+	 */
+	@Test
+	public void testInsertAndQuery() throws InterruptedException, ExecutionException, 
+		BBoxDBException, StorageManagerException {
+		
+		final int tuples = 500;
+		final BBoxDBClient bboxDBClient = connectToServer();
+		bboxDBClient.setPagingEnabled(true);
+		bboxDBClient.setTuplesPerPage((short) 50);
+		
+		final List<EmptyResultFuture> insertResults = new ArrayList<>();
+		
+		for(int i = 0; i < tuples; i++) {
+			final BoundingBox boundingBox = new BoundingBox((double) i, (double) i + 1, 1d, 2d);
+			final Tuple tuple = new Tuple(Integer.toString(i), boundingBox, "abc".getBytes());
+			insertResults.add(bboxDBClient.insertTuple(TEST_RELATION.getFullname(), tuple));
+		}
+		
+		for(final EmptyResultFuture insertResult : insertResults) {
+			insertResult.waitForAll();
+			Assert.assertFalse(insertResult.isFailed());
+		}
+		
+		final TupleListFuture keyResult = bboxDBClient.queryKey(TEST_RELATION.getFullname(), "10");
+		keyResult.waitForAll();
+		Assert.assertFalse(keyResult.isFailed());
+		Assert.assertEquals(1, Lists.newArrayList(keyResult.iterator()).size());
+		
+		final BoundingBox queryBox = new BoundingBox(-1d, (double) tuples + 1, 0d, 3d);
+		final TupleListFuture queryResult = bboxDBClient.queryBoundingBox(TEST_RELATION.getFullname(), queryBox);
+		queryResult.waitForAll();
+		Assert.assertFalse(queryResult.isFailed());
+		Assert.assertEquals(tuples, Lists.newArrayList(queryResult.iterator()).size());
+		
+		bboxDBClient.disconnect();
+	}
+	
+	/**
+	 * Stream a paged query result and close the iterator before all pages are read
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamAndCancelQuery() throws Exception {
+		
+		final int tuples = 500;
+		final BBoxDBClient bboxDBClient = connectToServer();
+		bboxDBClient.setPagingEnabled(true);
+		bboxDBClient.setTuplesPerPage((short) 50);
+		
+		final List<EmptyResultFuture> insertResults = new ArrayList<>();
+		
+		for(int i = 0; i < tuples; i++) {
+			final BoundingBox boundingBox = new BoundingBox((double) i, (double) i + 1, 1d, 2d);
+			final Tuple tuple = new Tuple("stream_" + i, boundingBox, "abc".getBytes());
+			insertResults.add(bboxDBClient.insertTuple(TEST_RELATION.getFullname(), tuple));
+		}
+		
+		for(final EmptyResultFuture insertResult : insertResults) {
+			insertResult.waitForAll();
+			Assert.assertFalse(insertResult.isFailed());
+		}
+		
+		final BoundingBox queryBox = new BoundingBox(-1d, (double) tuples + 1, 0d, 3d);
+		
+		// Read only the first pages
+		final TupleListFuture partialResult = bboxDBClient.queryBoundingBox(TEST_RELATION.getFullname(), queryBox);
+		partialResult.waitForAll();
+		Assert.assertFalse(partialResult.isFailed());
+		
+		final CloseableIterator<Tuple> partialIterator = partialResult.streamIterator();
+		for(int i = 0; i < 75; i++) {
+			Assert.assertTrue(partialIterator.hasNext());
+			Assert.assertNotNull(partialIterator.next());
+		}
+		partialIterator.close();
+		Assert.assertFalse(partialIterator.hasNext());
+		
+		// The connection is usable after the query is canceled
+		final TupleListFuture queryResult = bboxDBClient.queryBoundingBox(TEST_RELATION.getFullname(), queryBox);
+		queryResult.waitForAll();
+		Assert.assertFalse(queryResult.isFailed());
+		
+		final CloseableIterator<Tuple> iterator = queryResult.streamIterator();
+		int readTuples = 0;
+		while(iterator.hasNext()) {
+			iterator.next();
+			readTuples++;
+		}
+		iterator.close();
+		Assert.assertTrue(readTuples >= tuples);
+		
+		bboxDBClient.disconnect();
+	}
+}
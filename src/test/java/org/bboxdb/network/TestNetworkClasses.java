@@ -30,6 +30,8 @@ import org.apache.commons.compress.utils.IOUtils;
 import org.bboxdb.distribution.membership.DistributedInstance;
 import org.bboxdb.misc.Const;
 import org.bboxdb.network.capabilities.PeerCapabilities;
+import org.bboxdb.network.compression.CompressionBatch;
+import org.bboxdb.network.compression.NetworkCompressionCodecFactory;
 import org.bboxdb.network.client.SequenceNumberGenerator;
 import org.bboxdb.network.packages.NetworkPackage;
 import org.bboxdb.network.packages.PackageEncodeException;
@@ -42,6 +44,7 @@ import org.bboxdb.network.packages.request.DeleteTupleRequest;
 import org.bboxdb.network.packages.request.DisconnectRequest;
 import org.bboxdb.network.packages.request.HelloRequest;
 import org.bboxdb.network.packages.request.InsertTupleRequest;
+import org.bboxdb.network.packages.request.InsertTuplesBatchRequest;
 import org.bboxdb.network.packages.request.KeepAliveRequest;
 import org.bboxdb.network.packages.request.ListTablesRequest;
 import org.bboxdb.network.packages.request.NextPageRequest;
@@ -60,6 +63,7 @@ import org.bboxdb.network.routing.RoutingHop;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.TupleHelper;
 import org.bboxdb.util.MicroSecondTimestampProvider;
 import org.junit.Assert;
 import org.junit.Test;
@@ -205,6 +209,45 @@ public class TestNetworkClasses {
 		Assert.assertEquals(insertPackage, decodedPackage);
 	}
 	
+	/**
+	 * The the encoding and decoding of an insert tuples batch package
+	 * @throws IOException 
+	 * @throws PackageEncodeException 
+	 */
+	@Test
+	public void encodeAndDecodeInsertTuplesBatch() throws IOException, PackageEncodeException {
+		final List<Tuple> tuples = new ArrayList<>();
+		tuples.add(new Tuple("key", BoundingBox.EMPTY_BOX, "abc".getBytes(), 12));
+		tuples.add(new Tuple("key2", new BoundingBox(1.3244343224, 232.232333343, 34324.343, 343243.0), "def".getBytes(), 14));
+		tuples.add(new Tuple("key3", new BoundingBox(1d, 2d), "".getBytes(), 16));
+
+		final short sequenceNumber = sequenceNumberGenerator.getNextSequenceNummber();
+
+		final List<RoutingHop> routingList = Arrays.asList(new RoutingHop(new DistributedInstance("127.0.0.1:8080"), Arrays.asList(1, 2)));
+		final RoutingHeader routingHeader = new RoutingHeader((short) 0, routingList);
+		
+		final InsertTuplesBatchRequest insertPackage = new InsertTuplesBatchRequest(sequenceNumber, 
+				routingHeader, new SSTableName("test"), tuples);
+		
+		byte[] encodedVersion = networkPackageToByte(insertPackage);
+		Assert.assertNotNull(encodedVersion);
+
+		final ByteBuffer bb = NetworkPackageDecoder.encapsulateBytes(encodedVersion);
+		final InsertTuplesBatchRequest decodedPackage = InsertTuplesBatchRequest.decodeTuple(bb);
+				
+		Assert.assertEquals(tuples, decodedPackage.getTuples());
+		Assert.assertEquals(insertPackage.getTable(), decodedPackage.getTable());
+		Assert.assertEquals(routingHeader, decodedPackage.getRoutingHeader());
+		Assert.assertEquals(insertPackage, decodedPackage);
+		
+		// Empty batch
+		final InsertTuplesBatchRequest emptyPackage = new InsertTuplesBatchRequest(sequenceNumber, 
+				new RoutingHeader(false), new SSTableName("test"), new ArrayList<>());
+		
+		final ByteBuffer emptyBuffer = NetworkPackageDecoder.encapsulateBytes(networkPackageToByte(emptyPackage));
+		Assert.assertEquals(emptyPackage, InsertTuplesBatchRequest.decodeTuple(emptyBuffer));
+	}
+	
 	/**
 	 * The the encoding and decoding of an insert tuple package
 	 * @throws IOException 
@@ -824,6 +867,33 @@ public class TestNetworkClasses {
 		Assert.assertEquals(singleTupleResponse.getTuple(), responseDecoded.getTuple());		
 	}
 
+	/**
+	 * Try to encode and decode the single tuple response with a tuple in the storage format
+	 * @throws PackageEncodeException 
+	 * @throws IOException 
+	 */
+	@Test
+	public void testSingleStoredTupleResponse() throws PackageEncodeException, IOException {
+		final String tablename = "table1";
+		final Tuple tuple = new Tuple("abc", new BoundingBox(1d, 2d, 3d, 4d), "databytes".getBytes());
+		final byte[] storedBytes = TupleHelper.tupleToBytes(tuple);
+		final Tuple storedTuple = TupleHelper.decodeTuple(ByteBuffer.wrap(storedBytes));
+		Assert.assertNotNull(storedTuple.getEncodedTuple());
+		
+		final TupleResponse singleTupleResponse = new TupleResponse((short) 4, tablename, storedTuple);
+		final byte[] encodedPackage = networkPackageToByte(singleTupleResponse);
+		
+		// The tuple is written without decoding it
+		Assert.assertNotNull(storedTuple.getEncodedTuple());
+		Assert.assertArrayEquals(networkPackageToByte(new TupleResponse((short) 4, tablename, tuple)), 
+				encodedPackage);
+		
+		final ByteBuffer bb = NetworkPackageDecoder.encapsulateBytes(encodedPackage);
+		final TupleResponse responseDecoded = TupleResponse.decodePackage(bb);
+		Assert.assertEquals(tablename, responseDecoded.getTable());
+		Assert.assertEquals(tuple, responseDecoded.getTuple());		
+	}
+
 	/**
 	 * Test the decoding and the encoding of an compressed request package
 	 * @throws IOException
@@ -965,6 +1035,139 @@ public class TestNetworkClasses {
 		Assert.assertTrue(decodedPackage.getPeerCapabilities().hasGZipCompression());
 	}
 	
+	/**
+	 * Test the compression codecs with a batch of encoded packages
+	 * @throws IOException
+	 * @throws PackageEncodeException 
+	 */
+	@Test
+	public void testCompressionCodecsRequest() throws IOException, PackageEncodeException {
+		final RoutingHeader routingHeader = new RoutingHeader(false);
+		final byte[] data = new byte[10000];
+		Arrays.fill(data, (byte) 'a');
+		final Tuple tuple = new Tuple("key", new BoundingBox(1d, 2d, 3d, 4d), data, 12);
+
+		final List<Byte> compressionTypes = Arrays.asList(NetworkConst.COMPRESSION_TYPE_GZIP, 
+				NetworkConst.COMPRESSION_TYPE_LZ4, NetworkConst.COMPRESSION_TYPE_ZSTD);
+		
+		for(final byte compressionType : compressionTypes) {
+			final short sequenceNumber = sequenceNumberGenerator.getNextSequenceNummber();
+			final InsertTupleRequest insertPackage = new InsertTupleRequest(sequenceNumber, 
+					routingHeader, new SSTableName("test"), tuple);
+			
+			final CompressionBatch compressionBatch = new CompressionBatch();
+			Assert.assertTrue(compressionBatch.isEmpty());
+			Assert.assertFalse(compressionBatch.addPackage(insertPackage));
+			Assert.assertEquals(1, compressionBatch.getPackageCount());
+			
+			final byte[] uncompressedPackage = networkPackageToByte(insertPackage);
+			Assert.assertEquals(uncompressedPackage.length, compressionBatch.getPendingBytes());
+			
+			final CompressionEnvelopeRequest compressionPackage 
+				= new CompressionEnvelopeRequest(compressionType, compressionBatch);
+			final byte[] encodedVersion = networkPackageToByte(compressionPackage);
+			Assert.assertTrue(encodedVersion.length < uncompressedPackage.length);
+			
+			compressionBatch.reset();
+			Assert.assertTrue(compressionBatch.isEmpty());
+			Assert.assertEquals(0, compressionBatch.getPendingBytes());
+	
+			final ByteBuffer bb = NetworkPackageDecoder.encapsulateBytes(encodedVersion);
+			final InputStream uncompressedByteStream = CompressionEnvelopeRequest.decodePackage(bb);
+			final byte[] uncompressedBytes = IOUtils.toByteArray(uncompressedByteStream);
+			Assert.assertArrayEquals(uncompressedPackage, uncompressedBytes);
+			
+			final ByteBuffer uncompressedByteBuffer = NetworkPackageDecoder.encapsulateBytes(uncompressedBytes);
+			final InsertTupleRequest decodedPackage = InsertTupleRequest.decodeTuple(uncompressedByteBuffer);
+			Assert.assertEquals(insertPackage, decodedPackage);
+		}
+	}
+	
+	/**
+	 * Test the compression codecs with a response envelope
+	 * @throws IOException
+	 * @throws PackageEncodeException 
+	 */
+	@Test
+	public void testCompressionCodecsResponse() throws IOException, PackageEncodeException {
+		final Tuple tuple = new Tuple("abc", BoundingBox.EMPTY_BOX, "databytes".getBytes());
+		final TupleResponse singleTupleResponse = new TupleResponse((short) 4, "table1", tuple);
+
+		final List<Byte> compressionTypes = Arrays.asList(NetworkConst.COMPRESSION_TYPE_LZ4, 
+				NetworkConst.COMPRESSION_TYPE_ZSTD);
+		
+		for(final byte compressionType : compressionTypes) {
+			final CompressionEnvelopeResponse compressionEnvelopeResponse 
+				= new CompressionEnvelopeResponse(compressionType, Arrays.asList(singleTupleResponse));
+			final byte[] encodedPackage = networkPackageToByte(compressionEnvelopeResponse);
+			
+			final ByteBuffer bb = NetworkPackageDecoder.encapsulateBytes(encodedPackage);
+			final InputStream uncompressedByteStream = CompressionEnvelopeResponse.decodePackage(bb);
+			final byte[] uncompressedBytes = IOUtils.toByteArray(uncompressedByteStream);
+			final ByteBuffer uncompressedByteBuffer = NetworkPackageDecoder.encapsulateBytes(uncompressedBytes);
+	
+			final TupleResponse responseDecoded = TupleResponse.decodePackage(uncompressedByteBuffer);
+			Assert.assertEquals(singleTupleResponse.getTable(), responseDecoded.getTable());
+			Assert.assertEquals(singleTupleResponse.getTuple(), responseDecoded.getTuple());
+		}
+	}
+	
+	/**
+	 * Test the full compression batch
+	 * @throws PackageEncodeException
+	 */
+	@Test
+	public void testCompressionBatchFull() throws PackageEncodeException {
+		final Tuple tuple = new Tuple("key", BoundingBox.EMPTY_BOX, 
+				new byte[NetworkConst.MAX_COMPRESSION_BATCH_BYTES], 12);
+		
+		final InsertTupleRequest insertPackage = new InsertTupleRequest(
+				sequenceNumberGenerator.getNextSequenceNummber(), 
+				new RoutingHeader(false), new SSTableName("test"), tuple);
+		
+		final CompressionBatch compressionBatch = new CompressionBatch();
+		Assert.assertFalse(compressionBatch.isFlushNeeded());
+		Assert.assertTrue(compressionBatch.addPackage(insertPackage));
+		Assert.assertTrue(compressionBatch.isFlushNeeded());
+		
+		compressionBatch.reset();
+		Assert.assertFalse(compressionBatch.isFlushNeeded());
+	}
+	
+	/**
+	 * Test the negotiation of the compression codec
+	 */
+	@Test
+	public void testCompressionNegotiation() {
+		final PeerCapabilities clientCapabilities = new PeerCapabilities();
+		Assert.assertEquals(NetworkConst.COMPRESSION_TYPE_NONE, 
+				NetworkCompressionCodecFactory.getCompressionType(clientCapabilities));
+
+		NetworkCompressionCodecFactory.setSupportedCodecs(clientCapabilities);
+		Assert.assertTrue(clientCapabilities.hasGZipCompression());
+		Assert.assertTrue(clientCapabilities.hasLZ4Compression());
+		Assert.assertTrue(clientCapabilities.hasZstdCompression());
+		
+		Assert.assertEquals(NetworkConst.COMPRESSION_TYPE_LZ4, 
+				NetworkCompressionCodecFactory.getCompressionType(clientCapabilities));
+		
+		Assert.assertEquals(NetworkConst.COMPRESSION_TYPE_ZSTD, 
+				NetworkCompressionCodecFactory.selectCompressionType(clientCapabilities, 
+						Arrays.asList("unknown", "zstd", "gzip")));
+		
+		clientCapabilities.clearLZ4Compression();
+		clientCapabilities.clearZstdCompression();
+		Assert.assertFalse(clientCapabilities.hasLZ4Compression());
+		Assert.assertFalse(clientCapabilities.hasZstdCompression());
+		
+		Assert.assertEquals(NetworkConst.COMPRESSION_TYPE_GZIP, 
+				NetworkCompressionCodecFactory.getCompressionType(clientCapabilities));
+		
+		Assert.assertEquals(NetworkConst.COMPRESSION_TYPE_NONE, 
+				NetworkCompressionCodecFactory.selectCompressionType(clientCapabilities, 
+						Arrays.asList("lz4")));
+	}
+	
 	/**
 	 * The the encoding and decoding of a keep alive package
 	 * @throws IOException 
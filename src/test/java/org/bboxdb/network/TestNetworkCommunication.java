@@ -18,6 +18,7 @@
 package org.bboxdb.network;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
@@ -248,6 +249,47 @@ public class TestNetworkCommunication {
 		NetworkQueryHelper.testBoundingBoxQuery(bboxDBClient);
 	}
 	
+	/**
+	 * Insert multiple tuples with one request and query them
+	 * @throws ExecutionException 
+	 * @throws InterruptedException 
+	 * @throws BBoxDBException 
+	 */
+	@Test
+	public void testInsertTuplesBatch() throws InterruptedException, ExecutionException, BBoxDBException {
+		final String distributionGroup = "2_testgroup"; 
+		final String table = distributionGroup + "_relation9998";
+		
+		final BBoxDBClient bboxDBClient = connectToServer();
+		
+		// Delete distribution group
+		final EmptyResultFuture resultDelete = bboxDBClient.deleteDistributionGroup(distributionGroup);
+		resultDelete.waitForAll();
+		Assert.assertFalse(resultDelete.isFailed());
+		
+		// Create distribution group
+		final EmptyResultFuture resultCreate = bboxDBClient.createDistributionGroup(distributionGroup, REPLICATION_FACTOR);
+		resultCreate.waitForAll();
+		Assert.assertFalse(resultCreate.isFailed());
+		
+		final List<Tuple> tuples = new ArrayList<>();
+		
+		for(int i = 0; i < 100; i++) {
+			tuples.add(new Tuple(Integer.toString(i), new BoundingBox((double) i, i + 1d, 0d, 1d), "abc".getBytes()));
+		}
+		
+		final EmptyResultFuture insertResult = bboxDBClient.insertTuples(table, tuples);
+		insertResult.waitForAll();
+		Assert.assertFalse(insertResult.isFailed());
+		Assert.assertTrue(insertResult.isDone());
+		
+		bboxDBClient.setPagingEnabled(false);
+		final TupleListFuture future = bboxDBClient.queryBoundingBox(table, new BoundingBox(-10d, 200d, -10d, 10d));
+		future.waitForAll();
+		final List<Tuple> resultList = Lists.newArrayList(future.iterator());		
+		Assert.assertEquals(100, resultList.size());
+	}
+	
 	/**
 	 * Insert some tuples and request it via paging
 	 * @throws ExecutionException 
@@ -388,6 +430,8 @@ public class TestNetworkCommunication {
 			Assert.assertTrue(bboxDBClient.getClientCapabilities().hasGZipCompression());
 		} else {
 			bboxDBClient.getClientCapabilities().clearGZipCompression();
+			bboxDBClient.getClientCapabilities().clearLZ4Compression();
+			bboxDBClient.getClientCapabilities().clearZstdCompression();
 			Assert.assertFalse(bboxDBClient.getClientCapabilities().hasGZipCompression());
 		}
 		
@@ -396,10 +440,12 @@ public class TestNetworkCommunication {
 		Assert.assertTrue(result);
 		Assert.assertTrue(bboxDBClient.isConnected());
 		
+		// The server selects lz4 if the client supports it
 		if(compressPackages()) { 
-			Assert.assertTrue(bboxDBClient.getConnectionCapabilities().hasGZipCompression());
+			Assert.assertTrue(bboxDBClient.getConnectionCapabilities().hasLZ4Compression());
 		} else {
 			Assert.assertFalse(bboxDBClient.getConnectionCapabilities().hasGZipCompression());
+			Assert.assertFalse(bboxDBClient.getConnectionCapabilities().hasLZ4Compression());
 		}
 		
 		return bboxDBClient;
@@ -30,6 +30,7 @@ import org.bboxdb.network.packages.PackageEncodeException;
 import org.bboxdb.network.routing.RoutingHeader;
 import org.bboxdb.network.routing.RoutingHeaderParser;
 import org.bboxdb.network.routing.RoutingHop;
+import org.bboxdb.network.routing.WriteAcknowledgeLevel;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -242,4 +243,28 @@ public class TestRoutingHeader {
 		Assert.assertTrue(routingHeader.reachedFinalInstance());
 	}
 	
+	/**
+	 * Test the required acknowledges of the write levels
+	 */
+	@Test
+	public void testWriteAcknowledgeLevel() {
+		Assert.assertEquals(WriteAcknowledgeLevel.ONE, WriteAcknowledgeLevel.fromName("one"));
+		Assert.assertEquals(WriteAcknowledgeLevel.QUORUM, WriteAcknowledgeLevel.fromName(" Quorum "));
+		Assert.assertEquals(WriteAcknowledgeLevel.ALL, WriteAcknowledgeLevel.fromName("ALL"));
+		
+		Assert.assertEquals(1, WriteAcknowledgeLevel.ONE.getRequiredAcknowledges(3));
+		Assert.assertEquals(1, WriteAcknowledgeLevel.QUORUM.getRequiredAcknowledges(1));
+		Assert.assertEquals(2, WriteAcknowledgeLevel.QUORUM.getRequiredAcknowledges(2));
+		Assert.assertEquals(2, WriteAcknowledgeLevel.QUORUM.getRequiredAcknowledges(3));
+		Assert.assertEquals(3, WriteAcknowledgeLevel.QUORUM.getRequiredAcknowledges(4));
+		Assert.assertEquals(3, WriteAcknowledgeLevel.ALL.getRequiredAcknowledges(3));
+	}
+	
+	/**
+	 * Test an unknown write level
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testWriteAcknowledgeLevelUnknown() {
+		WriteAcknowledgeLevel.fromName("two");
+	}
 }
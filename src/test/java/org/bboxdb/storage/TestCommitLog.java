@@ -0,0 +1,296 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.storage.commitlog.CommitLog;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.memtable.ArrayMemtable;
+import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCommitLog {
+	
+	/**
+	 * The table name for the tests
+	 */
+	protected final static SSTableName TEST_RELATION = new SSTableName("2_testgroup1_relation1");
+	
+	/**
+	 * The directory of the commit log
+	 */
+	protected File directory;
+	
+	@Before
+	public void before() throws IOException {
+		directory = Files.createTempDirectory("commitlog").toFile();
+	}
+	
+	@After
+	public void after() {
+		final File[] files = directory.listFiles();
+		
+		if(files != null) {
+			for(final File file : files) {
+				file.delete();
+			}
+		}
+		
+		directory.delete();
+	}
+	
+	/**
+	 * Get a new memtable
+	 * @return
+	 */
+	protected Memtable getMemtable() {
+		final Memtable memtable = new ArrayMemtable(TEST_RELATION, 1000, 1024 * 1024);
+		memtable.init();
+		return memtable;
+	}
+	
+	/**
+	 * Get the segment files in the directory
+	 * @return
+	 */
+	protected List<File> getSegmentFiles() {
+		final List<File> segments = new ArrayList<>();
+		
+		for(final File file : directory.listFiles()) {
+			if(SSTableHelper.isFileNameCommitLogSegment(file.getName())) {
+				segments.add(file);
+			}
+		}
+		
+		return segments;
+	}
+	
+	/**
+	 * Replay the commit log in the directory
+	 * @param replayedTuples
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	protected CommitLog replayCommitLog(final List<Tuple> replayedTuples) throws StorageManagerException {
+		final CommitLog commitLog = new CommitLog(directory, 1024 * 1024, 10, 1024 * 1024);
+		commitLog.init();
+		
+		commitLog.replay((timestamp, ssTableName, tuple) -> {
+			Assert.assertEquals(TEST_RELATION, ssTableName);
+			synchronized (replayedTuples) {
+				replayedTuples.add(tuple);
+			}
+		});
+		
+		return commitLog;
+	}
+
+	/**
+	 * Write some tuples and replay the unflushed tuples
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testAppendAndReplay() throws StorageManagerException {
+		final CommitLog commitLog = new CommitLog(directory, 1024 * 1024, 10, 1024 * 1024);
+		commitLog.init();
+		final Memtable memtable = getMemtable();
+		
+		final List<Tuple> writtenTuples = new ArrayList<>();
+		
+		for(int i = 0; i < 100; i++) {
+			final Tuple tuple = new Tuple(Integer.toString(i), new BoundingBox(1d, 2d), "abc".getBytes());
+			writtenTuples.add(tuple);
+			final long position = commitLog.append(TEST_RELATION, tuple, memtable);
+			commitLog.awaitSync(position);
+		}
+		
+		final DeletedTuple deletedTuple = new DeletedTuple("1", 1234);
+		writtenTuples.add(deletedTuple);
+		commitLog.awaitSync(commitLog.append(TEST_RELATION, deletedTuple, memtable));
+		
+		// The memtable is not flushed, the segment is kept
+		commitLog.shutdown();
+		Assert.assertEquals(1, getSegmentFiles().size());
+		
+		final List<Tuple> replayedTuples = new ArrayList<>();
+		final CommitLog commitLog2 = replayCommitLog(replayedTuples);
+		
+		Assert.assertEquals(writtenTuples, replayedTuples);
+		Assert.assertTrue(replayedTuples.get(100) instanceof DeletedTuple);
+		Assert.assertTrue(commitLog2.getNewestReplayedTimestamp(TEST_RELATION) > 0);
+		Assert.assertEquals(0, commitLog2.getNewestReplayedTimestamp(new SSTableName("2_testgroup1_relation2")));
+		
+		// The replayed segment is deleted, only the new segment exists
+		Assert.assertEquals(1, getSegmentFiles().size());
+		commitLog2.shutdown();
+		Assert.assertEquals(0, getSegmentFiles().size());
+	}
+	
+	/**
+	 * Test the segment rotation and the deletion of flushed segments
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testSegmentRotationAndTruncation() throws StorageManagerException {
+		final CommitLog commitLog = new CommitLog(directory, 1024, 0, 0);
+		commitLog.init();
+		
+		final Memtable memtable1 = getMemtable();
+		final Memtable memtable2 = getMemtable();
+		
+		for(int i = 0; i < 100; i++) {
+			final Tuple tuple = new Tuple(Integer.toString(i), new BoundingBox(1d, 2d), "abc".getBytes());
+			commitLog.awaitSync(commitLog.append(TEST_RELATION, tuple, memtable1));
+		}
+		
+		final int segmentsMemtable1 = commitLog.getNumberOfSegments();
+		Assert.assertTrue(segmentsMemtable1 > 1);
+		
+		for(int i = 0; i < 10; i++) {
+			final Tuple tuple = new Tuple(Integer.toString(i), new BoundingBox(1d, 2d), "def".getBytes());
+			commitLog.awaitSync(commitLog.append(TEST_RELATION, tuple, memtable2));
+		}
+		
+		commitLog.memtableFlushed(memtable1);
+		Assert.assertTrue(commitLog.getNumberOfSegments() < segmentsMemtable1);
+		Assert.assertEquals(commitLog.getNumberOfSegments(), getSegmentFiles().size());
+		
+		commitLog.memtableFlushed(memtable2);
+		Assert.assertEquals(1, commitLog.getNumberOfSegments());
+		
+		commitLog.shutdown();
+		Assert.assertEquals(0, getSegmentFiles().size());
+	}
+	
+	/**
+	 * Test the replay of a segment with an incomplete record at the end
+	 * @throws StorageManagerException
+	 * @throws IOException 
+	 */
+	@Test
+	public void testReplayIncompleteRecord() throws StorageManagerException, IOException {
+		final CommitLog commitLog = new CommitLog(directory, 1024 * 1024, 0, 0);
+		commitLog.init();
+		final Memtable memtable = getMemtable();
+		
+		for(int i = 0; i < 10; i++) {
+			final Tuple tuple = new Tuple(Integer.toString(i), new BoundingBox(1d, 2d), "abc".getBytes());
+			commitLog.append(TEST_RELATION, tuple, memtable);
+		}
+		
+		commitLog.shutdown();
+		
+		// Simulate a partial written record
+		final File segment = getSegmentFiles().get(0);
+		try (final FileOutputStream outputStream = new FileOutputStream(segment, true)) {
+			outputStream.write(new byte[] {0, 0, 1, 0, 1, 2, 3, 4, 5});
+		}
+		
+		final List<Tuple> replayedTuples = new ArrayList<>();
+		final CommitLog commitLog2 = replayCommitLog(replayedTuples);
+		Assert.assertEquals(10, replayedTuples.size());
+		commitLog2.shutdown();
+	}
+	
+	/**
+	 * Test the replay of a segment with a corrupted record length, the
+	 * length exceeds the size of the segment
+	 * @throws StorageManagerException
+	 * @throws IOException 
+	 */
+	@Test
+	public void testReplayInvalidRecordLength() throws StorageManagerException, IOException {
+		final CommitLog commitLog = new CommitLog(directory, 1024 * 1024, 0, 0);
+		commitLog.init();
+		final Memtable memtable = getMemtable();
+		
+		for(int i = 0; i < 10; i++) {
+			final Tuple tuple = new Tuple(Integer.toString(i), new BoundingBox(1d, 2d), "abc".getBytes());
+			commitLog.append(TEST_RELATION, tuple, memtable);
+		}
+		
+		commitLog.shutdown();
+		
+		// A huge record length (in both byte orders) and a few bytes of payload
+		final File segment = getSegmentFiles().get(0);
+		try (final FileOutputStream outputStream = new FileOutputStream(segment, true)) {
+			outputStream.write(new byte[] {0x7F, -1, -1, 0x7F, 0, 0, 0, 0, 1, 2, 3, 4, 5});
+		}
+		
+		final List<Tuple> replayedTuples = new ArrayList<>();
+		final CommitLog commitLog2 = replayCommitLog(replayedTuples);
+		Assert.assertEquals(10, replayedTuples.size());
+		commitLog2.shutdown();
+	}
+	
+	/**
+	 * Test the group commit with concurrent writers
+	 * @throws Exception 
+	 */
+	@Test(timeout=60000)
+	public void testGroupCommit() throws Exception {
+		final CommitLog commitLog = new CommitLog(directory, 64 * 1024, 5, 16 * 1024);
+		commitLog.init();
+		final Memtable memtable = getMemtable();
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<?>> futures = new ArrayList<>();
+		
+		for(int thread = 0; thread < 4; thread++) {
+			final int threadNumber = thread;
+			futures.add(executor.submit(() -> {
+				for(int i = 0; i < 250; i++) {
+					final String key = threadNumber + "_" + i;
+					final Tuple tuple = new Tuple(key, new BoundingBox(1d, 2d), "abc".getBytes());
+					commitLog.awaitSync(commitLog.append(TEST_RELATION, tuple, memtable));
+				}
+				return null;
+			}));
+		}
+		
+		for(final Future<?> future : futures) {
+			future.get();
+		}
+		
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		commitLog.shutdown();
+		
+		final List<Tuple> replayedTuples = new ArrayList<>();
+		final CommitLog commitLog2 = replayCommitLog(replayedTuples);
+		Assert.assertEquals(1000, replayedTuples.size());
+		commitLog2.shutdown();
+	}
+}
@@ -18,55 +18,79 @@
 package org.bboxdb.storage;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bboxdb.PersonEntity;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleTimestampType;
+import org.bboxdb.storage.memtable.ArrayMemtable;
 import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.SkipListMemtable;
 import org.bboxdb.storage.queryprocessor.predicate.NewerAsVersionTimePredicate;
 import org.bboxdb.storage.queryprocessor.predicate.Predicate;
 import org.bboxdb.storage.queryprocessor.predicate.PredicateFilterIterator;
 import org.bboxdb.util.MicroSecondTimestampProvider;
 import org.bboxdb.util.ObjectSerializer;
-import org.junit.AfterClass;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
+@RunWith(Parameterized.class)
 public class TestMemtable {
 	
-	protected static Memtable memtable;
+	/**
+	 * The memtable implementation to test
+	 */
+	protected final Class<? extends Memtable> memtableClass;
 	
-	@BeforeClass
-	public static void init() {
-		
-		if(memtable != null) {
-			memtable.shutdown();
-		}
+	/**
+	 * The memtable
+	 */
+	protected Memtable memtable;
+	
+	public TestMemtable(final Class<? extends Memtable> memtableClass) {
+		this.memtableClass = memtableClass;
+	}
+	
+	@Parameters
+	public static Collection<Object[]> getMemtableImplementations() {
+		return Arrays.asList(new Object[][] {
+			{ArrayMemtable.class}, 
+			{SkipListMemtable.class}
+		});
+	}
+	
+	@Before
+	public void init() throws Exception {
+		memtable = memtableClass
+				.getConstructor(SSTableName.class, int.class, long.class)
+				.newInstance(new SSTableName("3_mygroup_test"), 1000, 10000);
 		
-		memtable = new Memtable(new SSTableName("3_mygroup_test"), 1000, 10000);
 		memtable.init();
 		memtable.acquire();
 	}
 	
-	@AfterClass
-	public static void shutdown() {
+	@After
+	public void shutdown() {
 		memtable.release();
 		memtable.shutdown();
 	}
 	
-	@Before
-	public void reinit() {
-		memtable.clear();
-	}
-	
 	/**
 	 * Test insert1
 	 * @throws Exception
@@ -265,7 +289,8 @@ public class TestMemtable {
 	 * @throws StorageManagerException 
 	 */
 	@Test
-	public void testEmptyCall() throws StorageManagerException {
+	public void testEmptyCall() throws Exception {
+		shutdown();
 		init();
 		Assert.assertTrue(memtable.isEmpty());
 		memtable.clear();
@@ -301,6 +326,49 @@ public class TestMemtable {
 		Assert.assertEquals(tupleList2.size(), 0);
 	}
 	
+	/**
+	 * Test that the most recent version is returned for updated keys
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testGetMostRecentVersion() throws StorageManagerException {
+		final Tuple createdTuple1 = new Tuple("1", null, "abc".getBytes(), 10);
+		memtable.put(createdTuple1);
+		
+		final Tuple createdTuple2 = new Tuple("1", null, "def".getBytes(), 30);
+		memtable.put(createdTuple2);
+		
+		final Tuple createdTuple3 = new Tuple("1", null, "ghi".getBytes(), 20);
+		memtable.put(createdTuple3);
+		
+		final Tuple createdTuple4 = new Tuple("10", null, "jkl".getBytes(), 40);
+		memtable.put(createdTuple4);
+		
+		Assert.assertEquals(createdTuple2, memtable.get("1"));
+		Assert.assertEquals(createdTuple4, memtable.get("10"));
+		Assert.assertEquals(null, memtable.get("0"));
+		Assert.assertEquals(null, memtable.get("2"));
+	}
+	
+	/**
+	 * Test that the sorted tuple iterator is sorted by key
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testSortedIterator() throws StorageManagerException {
+		for(int i = 100; i > 0; i--) {
+			memtable.put(new Tuple(Integer.toString(i), null, "abc".getBytes()));
+		}
+		
+		final List<Tuple> tupleList = memtable.getSortedTupleList();
+		Assert.assertEquals(100, tupleList.size());
+		Assert.assertEquals(100, Iterators.size(memtable.getSortedTupleIterator()));
+		
+		for(int i = 1; i < tupleList.size(); i++) {
+			Assert.assertTrue(tupleList.get(i - 1).getKey().compareTo(tupleList.get(i).getKey()) < 0);
+		}
+	}
+	
 	/**
 	 * Test newest and oldest timestamp
 	 * @throws StorageManagerException
@@ -322,4 +390,99 @@ public class TestMemtable {
 		Assert.assertEquals(500, memtable.getNewestTupleVersionTimestamp());
 	}
 	
+	/**
+	 * Test the covering bounding box
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testCoveringBoundingBox() throws StorageManagerException {
+		Assert.assertEquals(BoundingBox.EMPTY_BOX, memtable.getCoveringBoundingBox());
+		
+		memtable.put(new Tuple("1", new BoundingBox(1.0, 2.0, 1.0, 2.0), "abc".getBytes()));
+		Assert.assertEquals(new BoundingBox(1.0, 2.0, 1.0, 2.0), memtable.getCoveringBoundingBox());
+		
+		memtable.put(new Tuple("2", new BoundingBox(-1.0, 1.5, 3.0, 4.0), "abc".getBytes()));
+		Assert.assertEquals(new BoundingBox(-1.0, 2.0, 1.0, 4.0), memtable.getCoveringBoundingBox());
+		
+		// Deleted tuples don't change the covering box
+		memtable.delete("3", 10);
+		Assert.assertEquals(new BoundingBox(-1.0, 2.0, 1.0, 4.0), memtable.getCoveringBoundingBox());
+		
+		memtable.clear();
+		Assert.assertEquals(BoundingBox.EMPTY_BOX, memtable.getCoveringBoundingBox());
+	}
+	
+	/**
+	 * Test the time index of the memtable
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testTimeIndex() throws StorageManagerException {
+		for(int i = 0; i < 200; i++) {
+			memtable.put(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "abc".getBytes(), i, 1000 - i));
+		}
+		
+		final List<Tuple> newerVersions = Lists.newArrayList(
+				memtable.getAllTuplesNewerAs(TupleTimestampType.VERSION, 149));
+		
+		Assert.assertEquals(50, newerVersions.size());
+		newerVersions.forEach(t -> Assert.assertTrue(t.getVersionTimestamp() > 149));
+		
+		final List<Tuple> newerInserted = Lists.newArrayList(
+				memtable.getAllTuplesNewerAs(TupleTimestampType.INSERTED, 990));
+		
+		Assert.assertEquals(10, newerInserted.size());
+		newerInserted.forEach(t -> Assert.assertTrue(t.getReceivedTimestamp() > 990));
+		
+		Assert.assertFalse(memtable.getAllTuplesNewerAs(TupleTimestampType.VERSION, 500).hasNext());
+		
+		memtable.clear();
+		Assert.assertFalse(memtable.getAllTuplesNewerAs(TupleTimestampType.VERSION, -1).hasNext());
+	}
+	
+	/**
+	 * Test concurrent puts, the memtable stores exactly max entries tuples
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentTryPut() throws Exception {
+		final int threads = 4;
+		final int tuplesPerThread = 300;
+		final AtomicInteger storedTuples = new AtomicInteger(0);
+		final List<Thread> writer = new ArrayList<>();
+		
+		for(int thread = 0; thread < threads; thread++) {
+			final int threadNumber = thread;
+			
+			writer.add(new Thread(() -> {
+				for(int i = 0; i < tuplesPerThread; i++) {
+					final Tuple tuple = new Tuple(threadNumber + "_" + i, 
+							new BoundingBox(1.0, 2.0, 1.0, 2.0), "abc".getBytes());
+					
+					try {
+						if(memtable.tryPut(tuple)) {
+							storedTuples.incrementAndGet();
+						}
+					} catch (StorageManagerException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}));
+		}
+		
+		writer.forEach(Thread::start);
+		
+		for(final Thread thread : writer) {
+			thread.join();
+		}
+		
+		Assert.assertEquals(memtable.getMaxEntries(), storedTuples.get());
+		Assert.assertEquals(memtable.getMaxEntries(), memtable.getTotalEntries());
+		Assert.assertEquals(memtable.getMaxEntries(), Lists.newArrayList(memtable.iterator()).size());
+		
+		final Iterator<Tuple> bboxIterator = memtable.getAllTuplesInBoundingBox(
+				new BoundingBox(0.0, 5.0, 0.0, 5.0));
+		Assert.assertEquals(memtable.getMaxEntries(), Iterators.size(bboxIterator));
+	}
+
 }
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.memtable.OffHeapMemtable;
+import org.bboxdb.storage.memtable.OffHeapSlabAllocator;
+import org.bboxdb.storage.sstable.TupleHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+
+public class TestOffHeapMemtable {
+	
+	/**
+	 * The memtable
+	 */
+	protected OffHeapMemtable memtable;
+	
+	@Before
+	public void init() {
+		memtable = new OffHeapMemtable(new SSTableName("3_mygroup_test"), 1000, 100000);
+		memtable.init();
+		memtable.acquire();
+	}
+	
+	@After
+	public void shutdown() {
+		memtable.release();
+		memtable.clear();
+		memtable.shutdown();
+	}
+	
+	/**
+	 * Test insert and read
+	 * @throws Exception
+	 */
+	@Test
+	public void testInsertElements() throws Exception {
+		final Tuple tuple = new Tuple("1", new BoundingBox(1d, 2d), "abc".getBytes());
+		memtable.put(tuple);
+		
+		Assert.assertEquals(tuple, memtable.get("1"));
+		Assert.assertEquals(null, memtable.get("2"));
+		Assert.assertEquals(1, memtable.getTotalEntries());
+		Assert.assertEquals(tuple, memtable.getTupleAtPosition(0));
+	}
+	
+	/**
+	 * Test that the most recent version is returned
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetMostRecentVersion() throws Exception {
+		final Tuple tuple1 = new Tuple("1", new BoundingBox(1d, 2d), "abc".getBytes(), 10);
+		final Tuple tuple2 = new Tuple("1", new BoundingBox(1d, 2d), "def".getBytes(), 30);
+		final Tuple tuple3 = new Tuple("1", new BoundingBox(1d, 2d), "ghi".getBytes(), 20);
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+		
+		Assert.assertEquals(tuple2, memtable.get("1"));
+		Assert.assertEquals(10, memtable.getOldestTupleVersionTimestamp());
+		Assert.assertEquals(30, memtable.getNewestTupleVersionTimestamp());
+		
+		memtable.delete("1", 40);
+		Assert.assertTrue(memtable.get("1") instanceof DeletedTuple);
+	}
+	
+	/**
+	 * Test the sorted iterators
+	 * @throws Exception
+	 */
+	@Test
+	public void testSortedIterators() throws Exception {
+		for(int i = 100; i > 0; i--) {
+			memtable.put(new Tuple(Integer.toString(i), new BoundingBox(1d, 2d), "abc".getBytes()));
+		}
+		
+		// Update one tuple
+		final Tuple updatedTuple = new Tuple("50", new BoundingBox(1d, 2d), "def".getBytes());
+		memtable.put(updatedTuple);
+		
+		final List<Tuple> tupleList = memtable.getSortedTupleList();
+		Assert.assertEquals(100, tupleList.size());
+		Assert.assertTrue(tupleList.contains(updatedTuple));
+
+		for(int i = 1; i < tupleList.size(); i++) {
+			Assert.assertTrue(tupleList.get(i - 1).getKey().compareTo(tupleList.get(i).getKey()) < 0);
+		}
+		
+		// The encoded tuples are equal to the decoded tuples
+		final Iterator<ByteBuffer> encodedIterator = memtable.getSortedEncodedTupleIterator();
+		
+		for(final Tuple tuple : tupleList) {
+			final ByteBuffer encodedTuple = encodedIterator.next();
+			Assert.assertEquals(tuple, TupleHelper.decodeTuple(encodedTuple));
+			Assert.assertFalse(encodedTuple.hasRemaining());
+		}
+		
+		Assert.assertFalse(encodedIterator.hasNext());
+		Assert.assertEquals(101, Iterators.size(memtable.iterator()));
+	}
+	
+	/**
+	 * Test the lookup of tuples that are stored in different slabs
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetFromMultipleSlabs() throws Exception {
+		final OffHeapMemtable memtable2 = new OffHeapMemtable(new SSTableName("3_mygroup_test"), 1000, 
+				10 * OffHeapSlabAllocator.DEFAULT_SLAB_SIZE);
+		memtable2.init();
+		Assert.assertTrue(memtable2.acquire());
+		
+		final byte[] data = new byte[10000];
+		
+		for(int i = 0; i < 300; i++) {
+			memtable2.put(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, data, 10));
+		}
+		
+		// An older version does not replace the newer version
+		final Tuple updatedTuple = new Tuple("150", BoundingBox.EMPTY_BOX, "def".getBytes(), 20);
+		memtable2.put(updatedTuple);
+		memtable2.put(new Tuple("150", BoundingBox.EMPTY_BOX, "ghi".getBytes(), 15));
+		
+		Assert.assertTrue(memtable2.getAllocatedBytes() > OffHeapSlabAllocator.DEFAULT_SLAB_SIZE);
+		
+		for(int i = 0; i < 300; i++) {
+			final Tuple tuple = memtable2.get(Integer.toString(i));
+			Assert.assertEquals(Integer.toString(i), tuple.getKey());
+		}
+		
+		Assert.assertEquals(updatedTuple, memtable2.get("150"));
+		Assert.assertEquals(null, memtable2.get("300"));
+		Assert.assertEquals(300, memtable2.getSortedTupleList().size());
+		Assert.assertTrue(memtable2.getSortedTupleList().contains(updatedTuple));
+		
+		memtable2.release();
+		memtable2.deleteOnClose();
+	}
+	
+	/**
+	 * Test the bounding box query
+	 * @throws Exception
+	 */
+	@Test
+	public void testBoundingBoxQuery() throws Exception {
+		final Tuple tuple1 = new Tuple("1", new BoundingBox(1d, 2d), "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", new BoundingBox(10d, 20d), "def".getBytes());
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		
+		final Iterator<Tuple> iterator = memtable.getAllTuplesInBoundingBox(new BoundingBox(0d, 5d));
+		Assert.assertEquals(tuple1, iterator.next());
+		Assert.assertFalse(iterator.hasNext());
+	}
+	
+	/**
+	 * Test the off heap memory accounting
+	 * @throws Exception
+	 */
+	@Test
+	public void testMemoryAccounting() throws Exception {
+		Assert.assertTrue(memtable.isEmpty());
+		Assert.assertEquals(0, memtable.getSize());
+		final long allocatedSlabs = OffHeapSlabAllocator.getTotalAllocatedSlabs();
+		
+		final Tuple tuple = new Tuple("1", new BoundingBox(1d, 2d), "abc".getBytes());
+		memtable.put(tuple);
+		
+		Assert.assertFalse(memtable.isEmpty());
+		Assert.assertEquals(TupleHelper.tupleToBytes(tuple).length, memtable.getSize());
+		Assert.assertEquals(OffHeapSlabAllocator.DEFAULT_SLAB_SIZE, memtable.getAllocatedBytes());
+		Assert.assertEquals(allocatedSlabs + 1, OffHeapSlabAllocator.getTotalAllocatedSlabs());
+		
+		memtable.clear();
+		
+		Assert.assertTrue(memtable.isEmpty());
+		Assert.assertEquals(0, memtable.getSize());
+		Assert.assertEquals(0, memtable.getAllocatedBytes());
+		Assert.assertEquals(allocatedSlabs, OffHeapSlabAllocator.getTotalAllocatedSlabs());
+		Assert.assertEquals(null, memtable.get("1"));
+	}
+	
+	/**
+	 * Test memtable overflow
+	 * @throws Exception
+	 */
+	@Test(expected=StorageManagerException.class)
+	public void testBigInsert() throws Exception {	
+		for(int i = 0; i < memtable.getMaxEntries() + 1; i++) {
+			memtable.put(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "abc".getBytes()));
+		}
+	}
+	
+	/**
+	 * The off heap memory is released after the last reader is done
+	 * @throws Exception
+	 */
+	@Test
+	public void testReleaseAfterLastReader() throws Exception {
+		final OffHeapMemtable memtable2 = new OffHeapMemtable(new SSTableName("3_mygroup_test"), 1000, 100000);
+		memtable2.init();
+		
+		Assert.assertTrue(memtable2.acquire());
+		memtable2.put(new Tuple("1", new BoundingBox(1d, 2d), "abc".getBytes()));
+		
+		// A second reader
+		Assert.assertTrue(memtable2.acquire());
+		
+		memtable2.deleteOnClose();
+		Assert.assertFalse(memtable2.acquire());
+		
+		memtable2.release();
+		Assert.assertTrue(memtable2.getAllocatedBytes() > 0);
+		Assert.assertEquals(1, Iterators.size(memtable2.iterator()));
+		
+		// The last reader frees the memory
+		memtable2.release();
+		Assert.assertEquals(0, memtable2.getAllocatedBytes());
+		Assert.assertFalse(memtable2.acquire());
+	}
+
+}
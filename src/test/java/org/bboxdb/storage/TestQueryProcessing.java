@@ -17,15 +17,26 @@
  *******************************************************************************/
 package org.bboxdb.storage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.bboxdb.network.client.BBoxDBException;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.queryprocessor.CloseableIterator;
+import org.bboxdb.storage.queryprocessor.ParallelQueryIterator;
 import org.bboxdb.storage.queryprocessor.QueryProcessor;
+import org.bboxdb.storage.queryprocessor.queryplan.BoundingBoxAndTimeQueryPlan;
 import org.bboxdb.storage.queryprocessor.queryplan.BoundingBoxQueryPlan;
+import org.bboxdb.storage.queryprocessor.queryplan.FullTableScanQueryPlan;
+import org.bboxdb.storage.queryprocessor.queryplan.NewerAsVersionTimeQueryPlan;
 import org.bboxdb.storage.queryprocessor.queryplan.QueryPlan;
 import org.bboxdb.storage.registry.StorageRegistry;
 import org.bboxdb.storage.sstable.SSTableManager;
@@ -209,4 +220,430 @@ public class TestQueryProcessing {
 		Assert.assertTrue(resultList.contains(tuple3));
 	}	
 
+	/** 
+	 * BBox query - storages without overlapping tuples are pruned
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	@Test
+	public void testBBoxQueryPruning() throws StorageManagerException, RejectedException {
+		
+		storageRegistry.deleteTable(TABLE);
+		final SSTableManager storageManager = storageRegistry.getSSTableManager(TABLE);
+
+		final Tuple tuple1 = new Tuple("1", new BoundingBox(1.0, 2.0, 1.0, 2.0), "value".getBytes());
+		final Tuple tuple2 = new Tuple("2", new BoundingBox(10.0, 12.0, 10.0, 12.0), "value2".getBytes());
+		final Tuple tuple3 = new Tuple("3", new BoundingBox(-5.0, -4.0, -5.0, -4.0), "value3".getBytes());
+
+		storageManager.put(tuple1);
+		storageManager.initNewMemtable();
+		storageManager.put(tuple2);
+		storageManager.initNewMemtable();
+		storageManager.put(tuple3);
+		
+		final BoundingBox queryBoundingBox = new BoundingBox(0.0, 5.0, 0.0, 5.0);
+		final QueryPlan queryPlan = new BoundingBoxQueryPlan(queryBoundingBox);
+
+		final QueryProcessor queryProcessor = new QueryProcessor(queryPlan, storageManager);
+		final CloseableIterator<Tuple> iterator = queryProcessor.iterator();
+		
+		final List<Tuple> resultList = Lists.newArrayList(iterator);
+		
+		Assert.assertEquals(1, resultList.size());
+		Assert.assertTrue(resultList.contains(tuple1));
+		Assert.assertEquals(2, queryProcessor.getNumberOfPrunedStorages());
+		Assert.assertEquals(1, queryProcessor.getNumberOfQueriedStorages());
+	}
+	
+	/** 
+	 * BBox and time query - storages with older tuples are pruned
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	@Test
+	public void testBBoxAndTimeQueryPruning() throws StorageManagerException, RejectedException {
+		
+		storageRegistry.deleteTable(TABLE);
+		final SSTableManager storageManager = storageRegistry.getSSTableManager(TABLE);
+
+		final Tuple tuple1 = new Tuple("1", new BoundingBox(1.0, 2.0, 1.0, 2.0), "value".getBytes(), 10);
+		final Tuple tuple2 = new Tuple("2", new BoundingBox(1.5, 2.5, 1.5, 2.5), "value2".getBytes(), 100);
+
+		storageManager.put(tuple1);
+		storageManager.initNewMemtable();
+		storageManager.put(tuple2);
+		
+		final BoundingBox queryBoundingBox = new BoundingBox(0.0, 5.0, 0.0, 5.0);
+		final QueryPlan queryPlan = new BoundingBoxAndTimeQueryPlan(queryBoundingBox, 50);
+
+		final QueryProcessor queryProcessor = new QueryProcessor(queryPlan, storageManager);
+		final CloseableIterator<Tuple> iterator = queryProcessor.iterator();
+		
+		final List<Tuple> resultList = Lists.newArrayList(iterator);
+		
+		Assert.assertEquals(1, resultList.size());
+		Assert.assertTrue(resultList.contains(tuple2));
+		Assert.assertEquals(1, queryProcessor.getNumberOfPrunedStorages());
+		Assert.assertEquals(1, queryProcessor.getNumberOfQueriedStorages());
+	}
+
+	/**
+	 * Version time query - the versions of the storages are merged
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	@Test
+	public void testVersionTimeQueryMerge() throws StorageManagerException, RejectedException {
+		
+		storageRegistry.deleteTable(TABLE);
+		final SSTableManager storageManager = storageRegistry.getSSTableManager(TABLE);
+
+		final Tuple tuple1 = new Tuple("1", BoundingBox.EMPTY_BOX, "value1".getBytes(), 60);
+		final Tuple tuple2 = new Tuple("2", BoundingBox.EMPTY_BOX, "value2".getBytes(), 70);
+		final Tuple tuple3 = new Tuple("1", BoundingBox.EMPTY_BOX, "value3".getBytes(), 80);
+		final Tuple tuple4 = new Tuple("3", BoundingBox.EMPTY_BOX, "value4".getBytes(), 10);
+		final Tuple tuple5 = new Tuple("2", BoundingBox.EMPTY_BOX, "value5".getBytes(), 90);
+
+		storageManager.put(tuple1);
+		storageManager.put(tuple2);
+		storageManager.initNewMemtable();
+		storageManager.put(tuple3);
+		storageManager.put(tuple4);
+		storageManager.initNewMemtable();
+		storageManager.put(tuple5);
+		
+		final QueryPlan queryPlan = new NewerAsVersionTimeQueryPlan(50);
+		Assert.assertTrue(queryPlan.isVersionResolvableByMerge());
+
+		final QueryProcessor queryProcessor = new QueryProcessor(queryPlan, storageManager);
+		final CloseableIterator<Tuple> iterator = queryProcessor.iterator();
+		
+		final List<Tuple> resultList = Lists.newArrayList(iterator);
+		
+		// The result is sorted by key and contains only the newest versions
+		Assert.assertEquals(Arrays.asList(tuple3, tuple5), resultList);
+	}
+	
+	/**
+	 * Full table scan - the versions of the storages are merged
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	@Test
+	public void testFullTableScanQuery() throws StorageManagerException, RejectedException {
+		
+		storageRegistry.deleteTable(TABLE);
+		final SSTableManager storageManager = storageRegistry.getSSTableManager(TABLE);
+		
+		for(int i = 0; i < 100; i++) {
+			storageManager.put(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "value".getBytes(), 1));
+			
+			if(i % 10 == 0) {
+				storageManager.initNewMemtable();
+			}
+		}
+		
+		// Update every second key
+		for(int i = 0; i < 100; i = i + 2) {
+			storageManager.put(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "update".getBytes(), 2));
+		}
+		
+		final QueryProcessor queryProcessor = new QueryProcessor(new FullTableScanQueryPlan(), storageManager);
+		final CloseableIterator<Tuple> iterator = queryProcessor.iterator();
+		
+		final List<Tuple> resultList = Lists.newArrayList(iterator);
+		Assert.assertEquals(100, resultList.size());
+		
+		for(final Tuple tuple : resultList) {
+			final int key = Integer.parseInt(tuple.getKey());
+			final String expectedValue = (key % 2 == 0) ? "update" : "value";
+			Assert.assertEquals(expectedValue, new String(tuple.getDataBytes()));
+		}
+	}
+	
+	/** 
+	 * BBox query with more tuples than a version resolve batch
+	 * @throws StorageManagerException
+	 * @throws RejectedException 
+	 */
+	@Test
+	public void testBBoxQueryBatches() throws StorageManagerException, RejectedException {
+		
+		storageRegistry.deleteTable(TABLE);
+		final SSTableManager storageManager = storageRegistry.getSSTableManager(TABLE);
+		
+		for(int i = 0; i < 2500; i++) {
+			final double pos = (double) i;
+			storageManager.put(new Tuple(Integer.toString(i), new BoundingBox(pos, pos + 1, pos, pos + 1), 
+					"value".getBytes(), 1));
+		}
+		
+		storageManager.initNewMemtable();
+		
+		// Newer versions for every third key
+		for(int i = 0; i < 2500; i = i + 3) {
+			final double pos = (double) i;
+			storageManager.put(new Tuple(Integer.toString(i), new BoundingBox(pos, pos + 1, pos, pos + 1), 
+					"update".getBytes(), 2));
+		}
+		
+		final BoundingBox queryBoundingBox = new BoundingBox(0.0, 5000.0, 0.0, 5000.0);
+		final QueryPlan queryPlan = new BoundingBoxQueryPlan(queryBoundingBox);
+		Assert.assertFalse(queryPlan.isVersionResolvableByMerge());
+		
+		final QueryProcessor queryProcessor = new QueryProcessor(queryPlan, storageManager);
+		final CloseableIterator<Tuple> iterator = queryProcessor.iterator();
+		
+		final Set<String> keys = new HashSet<>();
+		
+		while(iterator.hasNext()) {
+			final Tuple tuple = iterator.next();
+			Assert.assertTrue(keys.add(tuple.getKey()));
+			
+			final int key = Integer.parseInt(tuple.getKey());
+			final String expectedValue = (key % 3 == 0) ? "update" : "value";
+			Assert.assertEquals(expectedValue, new String(tuple.getDataBytes()));
+		}
+		
+		Assert.assertEquals(2500, keys.size());
+	}
+
+	/**
+	 * Get the tables for the parallel query tests
+	 * @param tuplesPerTable
+	 * @return
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 */
+	protected List<SSTableManager> getParallelQueryTables(final int tuplesPerTable) 
+			throws StorageManagerException, RejectedException {
+		
+		final List<SSTableManager> storageManagers = new ArrayList<>();
+		
+		for(int table = 1; table <= 4; table++) {
+			final SSTableName tableName = new SSTableName("2_junitgroup_table1_" + table);
+			storageRegistry.deleteTable(tableName);
+			final SSTableManager storageManager = storageRegistry.getSSTableManager(tableName);
+			
+			for(int i = 0; i < tuplesPerTable; i++) {
+				final double pos = (double) i;
+				final Tuple tuple = new Tuple(table + "_" + i, new BoundingBox(pos, pos + 1, pos, pos + 1), 
+						"value".getBytes());
+				storageManager.put(tuple);
+			}
+			
+			storageManagers.add(storageManager);
+		}
+		
+		return storageManagers;
+	}
+	
+	/**
+	 * Query multiple tables in parallel
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testParallelBBoxQuery() throws StorageManagerException, RejectedException, InterruptedException {
+		final List<SSTableManager> storageManagers = getParallelQueryTables(1000);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		final BoundingBox queryBoundingBox = new BoundingBox(0.0, 99.5, 0.0, 99.5);
+		final QueryPlan queryPlan = new BoundingBoxQueryPlan(queryBoundingBox);
+		
+		// Small queue, the producers have to be suspended and resumed
+		final ParallelQueryIterator iterator = new ParallelQueryIterator(queryPlan, 
+				storageManagers, executor, 10);
+		
+		final Set<String> keys = new HashSet<>();
+		
+		while(iterator.hasNext()) {
+			Assert.assertTrue(keys.add(iterator.next().getKey()));
+		}
+		
+		iterator.close();
+		
+		Assert.assertEquals(4 * 100, keys.size());
+		Assert.assertTrue(keys.contains("3_99"));
+		Assert.assertFalse(keys.contains("3_100"));
+		Assert.assertEquals(0, iterator.getUnfinishedProducers());
+		
+		executor.shutdown();
+		
+		for(final SSTableManager storageManager : storageManagers) {
+			storageRegistry.deleteTable(storageManager.getSSTableName());
+		}
+	}
+	
+	/**
+	 * Close a parallel query before all tuples are read
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testParallelBBoxQueryClose() throws StorageManagerException, RejectedException, InterruptedException {
+		final List<SSTableManager> storageManagers = getParallelQueryTables(1000);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		final BoundingBox queryBoundingBox = new BoundingBox(0.0, 2000.0, 0.0, 2000.0);
+		final QueryPlan queryPlan = new BoundingBoxQueryPlan(queryBoundingBox);
+		
+		final ParallelQueryIterator iterator = new ParallelQueryIterator(queryPlan, 
+				storageManagers, executor, 10);
+		
+		for(int i = 0; i < 50; i++) {
+			Assert.assertTrue(iterator.hasNext());
+			iterator.next();
+		}
+		
+		iterator.close();
+		Assert.assertFalse(iterator.hasNext());
+		
+		// All producers release their tables
+		while(iterator.getUnfinishedProducers() > 0) {
+			Thread.sleep(10);
+		}
+		
+		executor.shutdown();
+		
+		for(final SSTableManager storageManager : storageManagers) {
+			storageRegistry.deleteTable(storageManager.getSSTableName());
+		}
+	}
+	
+	/**
+	 * The failure of a producer is thrown to the consumer
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testParallelQueryProducerFailure() throws StorageManagerException, RejectedException, InterruptedException {
+		final List<SSTableManager> storageManagers = getParallelQueryTables(100);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		final SSTableName failingTable = storageManagers.get(2).getSSTableName();
+		
+		final BoundingBox queryBoundingBox = new BoundingBox(0.0, 2000.0, 0.0, 2000.0);
+		final QueryPlan queryPlan = new BoundingBoxQueryPlan(queryBoundingBox) {
+			@Override
+			public Iterator<Tuple> execute(final ReadOnlyTupleStorage readOnlyTupleStorage) {
+				if(failingTable.equals(readOnlyTupleStorage.getSStableName())) {
+					throw new IllegalArgumentException("Test failure");
+				}
+				
+				return super.execute(readOnlyTupleStorage);
+			}
+		};
+		
+		final ParallelQueryIterator iterator = new ParallelQueryIterator(queryPlan, 
+				storageManagers, executor, 10);
+		
+		try {
+			while(iterator.hasNext()) {
+				iterator.next();
+			}
+			
+			Assert.fail("Partial result is returned without an exception");
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		
+		// The failure is thrown again
+		try {
+			iterator.hasNext();
+			Assert.fail("Exception expected");
+		} catch(IllegalStateException e) {
+			// Expected
+		}
+		
+		iterator.close();
+		
+		while(iterator.getUnfinishedProducers() > 0) {
+			Thread.sleep(10);
+		}
+		
+		executor.shutdown();
+		
+		for(final SSTableManager storageManager : storageManagers) {
+			storageRegistry.deleteTable(storageManager.getSSTableName());
+		}
+	}
+	
+	/**
+	 * A producer that can't be submitted to the executor fails the query
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 */
+	@Test(timeout=60000, expected=IllegalStateException.class)
+	public void testParallelQueryRejectedProducer() throws StorageManagerException, RejectedException {
+		final List<SSTableManager> storageManagers = getParallelQueryTables(10);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		executor.shutdown();
+		
+		final QueryPlan queryPlan = new BoundingBoxQueryPlan(new BoundingBox(0.0, 2000.0, 0.0, 2000.0));
+		
+		final ParallelQueryIterator iterator = new ParallelQueryIterator(queryPlan, 
+				storageManagers, executor, 10);
+		
+		try {
+			iterator.hasNext();
+		} finally {
+			iterator.close();
+			
+			for(final SSTableManager storageManager : storageManagers) {
+				storageRegistry.deleteTable(storageManager.getSSTableName());
+			}
+		}
+	}
+	
+	/**
+	 * An interrupted consumer fails the query instead of truncating the result
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testParallelQueryInterrupted() throws StorageManagerException, RejectedException, InterruptedException {
+		final List<SSTableManager> storageManagers = getParallelQueryTables(10);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		final QueryPlan queryPlan = new BoundingBoxQueryPlan(new BoundingBox(0.0, 2000.0, 0.0, 2000.0));
+		
+		final ParallelQueryIterator iterator = new ParallelQueryIterator(queryPlan, 
+				storageManagers, executor, 10);
+		
+		Thread.currentThread().interrupt();
+		
+		try {
+			iterator.hasNext();
+			Assert.fail("Exception expected");
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(e.getCause() instanceof InterruptedException);
+		}
+		
+		// The interrupt flag is restored
+		Assert.assertTrue(Thread.interrupted());
+		
+		// The failure is thrown again
+		try {
+			iterator.hasNext();
+			Assert.fail("Exception expected");
+		} catch(IllegalStateException e) {
+			// Expected
+		}
+		
+		iterator.close();
+		
+		while(iterator.getUnfinishedProducers() > 0) {
+			Thread.sleep(10);
+		}
+		
+		executor.shutdown();
+		
+		for(final SSTableManager storageManager : storageManagers) {
+			storageRegistry.deleteTable(storageManager.getSSTableName());
+		}
+	}
 }
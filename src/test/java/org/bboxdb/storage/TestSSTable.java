@@ -17,8 +17,14 @@
  *******************************************************************************/
 package org.bboxdb.storage;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.bboxdb.misc.BBoxDBConfigurationManager;
@@ -26,15 +32,24 @@ import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.SSTableName;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleTimestampType;
+import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.SSTableKeySampleIndex;
 import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.TupleHelper;
+import org.bboxdb.storage.sstable.block.DeflateCompressionCodec;
+import org.bboxdb.storage.sstable.block.NoCompressionCodec;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
 import org.bboxdb.storage.sstable.reader.SSTableReader;
+import org.bboxdb.util.io.DataEncoderHelper;
 import org.bboxdb.util.io.FileUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 public class TestSSTable {
 	
 	/**
@@ -123,6 +138,459 @@ public class TestSSTable {
 		Assert.assertEquals(tupleList.size(), tupleCounter);
 	}
 
+	/**
+	 * Test writing encoded tuples
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteEncodedTuples() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+	
+		final List<Tuple> tupleList = createTupleList();
+		final List<ByteBuffer> encodedTupleList = new ArrayList<>();
+		
+		for(final Tuple tuple : tupleList) {
+			encodedTupleList.add(ByteBuffer.wrap(TupleHelper.tupleToBytes(tuple)));
+		}
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, EXPECTED_TUPLES);
+		ssTableWriter.open();
+		ssTableWriter.addEncodedData(encodedTupleList.iterator());
+		ssTableWriter.close();
+		
+		final SSTableReader sstableReader = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		sstableReader.init();
+		final SSTableKeyIndexReader ssTableIndexReader = new SSTableKeyIndexReader(sstableReader);
+		ssTableIndexReader.init();
+		
+		int tupleCounter = 0;
+		
+		for(Tuple tuple : ssTableIndexReader) {
+			Assert.assertEquals(tupleList.get(tupleCounter), tuple);
+			tupleCounter++;
+		}
+		
+		Assert.assertEquals(tupleList.size(), tupleCounter);
+		
+		ssTableIndexReader.shutdown();
+		sstableReader.shutdown();
+	}
+
+	/**
+	 * Test the block format
+	 * @throws Exception
+	 */
+	@Test
+	public void testBlockFormat() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		
+		for(int i = 0; i < 1000; i++) {
+			final BoundingBox boundingBox = new BoundingBox((double) i, (double) i + 1);
+			tupleList.add(new Tuple(String.format("%05d", i), boundingBox, "abcdefabcdef".getBytes()));
+		}
+		
+		tupleList.add(new DeletedTuple("99999"));
+		
+		// Write the same data in the row and in the block format
+		final SSTableWriter rowWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				tupleList.size(), null);
+		rowWriter.open();
+		rowWriter.addData(tupleList);
+		rowWriter.close();
+		
+		final int blockSize = BBoxDBConfigurationManager.getConfiguration().getStorageSSTableBlockSize();
+		BBoxDBConfigurationManager.getConfiguration().setStorageSSTableBlockSize(1024);
+		
+		final SSTableWriter blockWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 2, 
+				tupleList.size(), new DeflateCompressionCodec());
+		
+		BBoxDBConfigurationManager.getConfiguration().setStorageSSTableBlockSize(blockSize);
+		
+		blockWriter.open();
+		blockWriter.addData(tupleList);
+		blockWriter.close();
+		
+		Assert.assertTrue(blockWriter.getSstableFile().length() < rowWriter.getSstableFile().length());
+		Assert.assertTrue(blockWriter.getSstableIndexFile().length() < rowWriter.getSstableIndexFile().length());
+		
+		final SSTableFacade facade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 2);
+		facade.init();
+		facade.acquire();
+		
+		Assert.assertTrue(facade.getSsTableReader().isBlockFormat());
+		Assert.assertTrue(facade.getSsTableKeyIndexReader().isBlockFormat());
+		Assert.assertEquals(tupleList.size(), facade.getSsTableKeyIndexReader().getNumberOfEntries());
+		
+		// Iterator
+		int tupleCounter = 0;
+		for(final Tuple tuple : facade.getSsTableKeyIndexReader()) {
+			Assert.assertEquals(tupleList.get(tupleCounter), tuple);
+			tupleCounter++;
+		}
+		Assert.assertEquals(tupleList.size(), tupleCounter);
+		
+		// Key and position based access
+		for(int i = 0; i < tupleList.size(); i++) {
+			final Tuple tuple = tupleList.get(i);
+			Assert.assertEquals(tuple, facade.get(tuple.getKey()));
+			Assert.assertEquals(tuple, facade.getTupleAtPosition(i));
+		}
+		
+		Assert.assertNull(facade.get("0"));
+		Assert.assertNull(facade.get("00100a"));
+		Assert.assertNull(facade.get("abc"));
+		
+		// Full scan
+		Assert.assertEquals(tupleList.get(500), facade.getSsTableReader().scanForTuple("00500"));
+		Assert.assertNull(facade.getSsTableReader().scanForTuple("00500a"));
+		
+		// Spatial index
+		final BoundingBox queryBox = new BoundingBox(10.5d, 11.5d);
+		int spatialResults = 0;
+		
+		for(final Iterator<Tuple> iterator = facade.getAllTuplesInBoundingBox(queryBox); iterator.hasNext(); ) {
+			final Tuple tuple = iterator.next();
+			Assert.assertTrue(tuple.getBoundingBox().overlaps(queryBox));
+			spatialResults++;
+		}
+		
+		Assert.assertEquals(2, spatialResults);
+		
+		facade.release();
+		facade.shutdown();
+	}
+	
+	/**
+	 * Test the detection of damaged blocks
+	 * @throws Exception
+	 */
+	@Test(expected=StorageManagerException.class)
+	public void testBlockChecksum() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+	
+		final List<Tuple> tupleList = createTupleList();
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				EXPECTED_TUPLES, new NoCompressionCodec());
+		ssTableWriter.open();
+		ssTableWriter.addData(tupleList);
+		final File sstableFile = ssTableWriter.getSstableFile();
+		ssTableWriter.close();
+		
+		// Change the last byte of the data of the first block
+		try (final RandomAccessFile file = new RandomAccessFile(sstableFile, "rw")) {
+			final long position = file.length() - 1;
+			file.seek(position);
+			final int value = file.read();
+			file.seek(position);
+			file.write(value ^ 0xff);
+		}
+		
+		final SSTableReader sstableReader = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		sstableReader.init();
+		
+		try {
+			sstableReader.readBlock(SSTableConst.MAGIC_BYTES_BLOCK.length + 2);
+		} finally {
+			sstableReader.shutdown();
+		}
+	}
+
+	/**
+	 * Test reading tables that are mapped in multiple segments
+	 * @throws Exception
+	 */
+	@Test
+	public void testSegmentedMapping() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		
+		for(int i = 0; i < 500; i++) {
+			final BoundingBox boundingBox = new BoundingBox((double) i, (double) i + 1);
+			tupleList.add(new Tuple(String.format("%05d", i), boundingBox, "abcdef".getBytes()));
+		}
+		
+		final SSTableWriter rowWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				tupleList.size(), null);
+		rowWriter.open();
+		rowWriter.addData(tupleList);
+		rowWriter.close();
+		
+		final int blockSize = BBoxDBConfigurationManager.getConfiguration().getStorageSSTableBlockSize();
+		BBoxDBConfigurationManager.getConfiguration().setStorageSSTableBlockSize(512);
+		
+		final SSTableWriter blockWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 2, 
+				tupleList.size(), new DeflateCompressionCodec());
+		
+		BBoxDBConfigurationManager.getConfiguration().setStorageSSTableBlockSize(blockSize);
+		
+		blockWriter.open();
+		blockWriter.addData(tupleList);
+		blockWriter.close();
+		
+		for(int tableNumber = 1; tableNumber <= 2; tableNumber++) {
+			
+			// Use small segments, so that tuples and blocks span multiple segments
+			final SSTableReader sstableReader = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, tableNumber) {{
+				segmentSize = 97;
+			}};
+			sstableReader.init();
+			
+			final SSTableKeyIndexReader ssTableIndexReader = new SSTableKeyIndexReader(sstableReader) {{
+				segmentSize = 16;
+			}};
+			ssTableIndexReader.init();
+			
+			Assert.assertTrue(sstableReader.getMemory().getNumberOfSegments() > 1);
+			Assert.assertTrue(ssTableIndexReader.getMemory().getNumberOfSegments() > 1);
+			Assert.assertEquals(tupleList.size(), ssTableIndexReader.getNumberOfEntries());
+			
+			int tupleCounter = 0;
+			for(final Tuple tuple : ssTableIndexReader) {
+				Assert.assertEquals(tupleList.get(tupleCounter), tuple);
+				tupleCounter++;
+			}
+			Assert.assertEquals(tupleList.size(), tupleCounter);
+			
+			for(int i = 0; i < tupleList.size(); i++) {
+				final Tuple tuple = tupleList.get(i);
+				final int entry = ssTableIndexReader.getEntryForTuple(tuple.getKey());
+				Assert.assertEquals(i, entry);
+				Assert.assertEquals(tuple, ssTableIndexReader.getTupleForIndexEntry(entry));
+			}
+			
+			Assert.assertEquals(tupleList.get(321), sstableReader.scanForTuple("00321"));
+			Assert.assertNull(sstableReader.scanForTuple("00321a"));
+			
+			ssTableIndexReader.shutdown();
+			sstableReader.shutdown();
+		}
+	}
+	
+	/**
+	 * Test reading an index with 32 bit positions
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadIntIndex() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = createTupleList();
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				EXPECTED_TUPLES, null);
+		ssTableWriter.open();
+		ssTableWriter.addData(tupleList);
+		final File sstableIndexFile = ssTableWriter.getSstableIndexFile();
+		ssTableWriter.close();
+		
+		// Convert the index into the 32 bit format
+		final byte[] longIndex = Files.readAllBytes(sstableIndexFile.toPath());
+		final ByteBuffer longIndexBuffer = ByteBuffer.wrap(longIndex);
+		longIndexBuffer.position(SSTableConst.MAGIC_BYTES_INDEX_LONG.length);
+		
+		final ByteArrayOutputStream intIndex = new ByteArrayOutputStream();
+		intIndex.write(SSTableConst.MAGIC_BYTES_INDEX);
+		
+		while(longIndexBuffer.hasRemaining()) {
+			intIndex.write(DataEncoderHelper.intToByteBuffer((int) longIndexBuffer.getLong()).array());
+		}
+		
+		Files.write(sstableIndexFile.toPath(), intIndex.toByteArray());
+		
+		final SSTableReader sstableReader = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		sstableReader.init();
+		final SSTableKeyIndexReader ssTableIndexReader = new SSTableKeyIndexReader(sstableReader);
+		ssTableIndexReader.init();
+		
+		Assert.assertEquals(tupleList.size(), ssTableIndexReader.getNumberOfEntries());
+		
+		int tupleCounter = 0;
+		for(final Tuple tuple : ssTableIndexReader) {
+			Assert.assertEquals(tupleList.get(tupleCounter), tuple);
+			tupleCounter++;
+		}
+		Assert.assertEquals(tupleList.size(), tupleCounter);
+		
+		Assert.assertEquals(tupleList.get(2), sstableReader.getTupleAtPosition(
+				ssTableIndexReader.getPositionForTuple(tupleList.get(2).getKey())));
+		
+		ssTableIndexReader.shutdown();
+		sstableReader.shutdown();
+	}
+	
+	/**
+	 * Test the lookup with the key samples
+	 * @throws Exception
+	 */
+	@Test
+	public void testKeySamples() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		
+		for(int i = 0; i < 1000; i++) {
+			tupleList.add(new Tuple(String.format("%05d", i * 2), BoundingBox.EMPTY_BOX, "abc".getBytes()));
+		}
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				tupleList.size(), null);
+		ssTableWriter.open();
+		ssTableWriter.addData(tupleList);
+		ssTableWriter.close();
+		
+		final File keySampleFile = new File(SSTableHelper.getSSTableKeySampleFilename(
+				STORAGE_DIRECTORY, TEST_RELATION, 1));
+		Assert.assertTrue(keySampleFile.exists());
+		
+		final SSTableFacade facade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		facade.init();
+		facade.acquire();
+		
+		final SSTableKeyIndexReader indexReader = facade.getSsTableKeyIndexReader();
+		final SSTableKeySampleIndex keySamples = indexReader.getKeySampleIndex();
+		Assert.assertNotNull(keySamples);
+		Assert.assertEquals(SSTableConst.KEY_SAMPLE_INTERVAL, keySamples.getInterval());
+		Assert.assertEquals(16, keySamples.getNumberOfSamples());
+		
+		for(int i = 0; i < tupleList.size(); i++) {
+			final Tuple tuple = tupleList.get(i);
+			Assert.assertEquals(i, indexReader.getEntryForTuple(tuple.getKey()));
+			Assert.assertEquals(tuple, facade.get(tuple.getKey()));
+			
+			// Keys between the stored keys
+			Assert.assertEquals(-1, indexReader.getEntryForTuple(String.format("%05d", i * 2 + 1)));
+		}
+		
+		Assert.assertEquals(-1, indexReader.getEntryForTuple(""));
+		Assert.assertEquals(-1, indexReader.getEntryForTuple("0"));
+		Assert.assertEquals(-1, indexReader.getEntryForTuple("99999"));
+		Assert.assertEquals(-1, indexReader.getEntryForTuple("000000"));
+		
+		// Same results without the samples
+		indexReader.setKeySampleIndex(null);
+		Assert.assertEquals(123, indexReader.getEntryForTuple(tupleList.get(123).getKey()));
+		Assert.assertEquals(-1, indexReader.getEntryForTuple("00001"));
+		
+		facade.release();
+		facade.deleteOnClose();
+		Assert.assertFalse(keySampleFile.exists());
+	}
+	
+	/**
+	 * Test the time index
+	 * @throws Exception
+	 */
+	@Test
+	public void testTimeIndex() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		
+		for(int i = 0; i < 1000; i++) {
+			tupleList.add(new Tuple(String.format("%05d", i), BoundingBox.EMPTY_BOX, 
+					"abc".getBytes(), (i * 7) % 1000, 5000 - i));
+		}
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 10);
+		ssTableWriter.open();
+		ssTableWriter.addData(tupleList);
+		ssTableWriter.close();
+		
+		final File timeIndexFile = new File(SSTableHelper.getSSTableTimeIndexFilename(
+				STORAGE_DIRECTORY, TEST_RELATION, 1));
+		Assert.assertTrue(timeIndexFile.exists());
+		
+		final SSTableFacade facade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		facade.init();
+		facade.acquire();
+		
+		final List<Tuple> newerVersions = Lists.newArrayList(
+				facade.getAllTuplesNewerAs(TupleTimestampType.VERSION, 899));
+		
+		Assert.assertEquals(100, newerVersions.size());
+		newerVersions.forEach(t -> Assert.assertTrue(t.getVersionTimestamp() > 899));
+		
+		final List<Tuple> newerInserted = Lists.newArrayList(
+				facade.getAllTuplesNewerAs(TupleTimestampType.INSERTED, 4990));
+		
+		Assert.assertEquals(10, newerInserted.size());
+		newerInserted.forEach(t -> Assert.assertTrue(t.getReceivedTimestamp() > 4990));
+		
+		Assert.assertFalse(facade.getAllTuplesNewerAs(TupleTimestampType.VERSION, 1000).hasNext());
+		Assert.assertEquals(1000, Lists.newArrayList(
+				facade.getAllTuplesNewerAs(TupleTimestampType.VERSION, -1)).size());
+		
+		facade.release();
+		facade.deleteOnClose();
+		Assert.assertFalse(timeIndexFile.exists());
+	}
+	
+	/**
+	 * Test the key samples with keys that are sorted differently 
+	 * in UTF-16 and UTF-8
+	 * @throws Exception
+	 */
+	@Test
+	public void testKeySamplesNonAsciiKeys() throws Exception {
+		final List<String> keys = new ArrayList<>();
+		
+		for(int i = 0; i < 10; i++) {
+			keys.add("a" + i);
+			keys.add("\u00e4" + i);
+			keys.add("\u20ac" + i);
+			keys.add("\ud83d\ude00" + i);
+			keys.add("\ue000" + i);
+			keys.add("\uffff" + i);
+		}
+		
+		keys.sort(String::compareTo);
+		
+		final File keySampleFile = File.createTempFile("ksmp", ".tmp");
+		keySampleFile.deleteOnExit();
+		
+		try (final FileOutputStream fos = new FileOutputStream(keySampleFile)) {
+			SSTableKeySampleIndex.writeToStream(fos, 1, keys);
+		}
+		
+		final SSTableKeySampleIndex keySamples = SSTableKeySampleIndex.readFromFile(keySampleFile);
+		Assert.assertEquals(keys.size(), keySamples.getNumberOfSamples());
+		
+		for(int i = 0; i < keys.size(); i++) {
+			Assert.assertEquals(i, keySamples.getFirstEntryForKey(keys.get(i)));
+		}
+		
+		Assert.assertEquals(-1, keySamples.getFirstEntryForKey(""));
+		Assert.assertEquals(keys.size() - 1, keySamples.getFirstEntryForKey("\uffff\uffff"));
+		Assert.assertEquals(keys.indexOf("\u20ac9"), keySamples.getFirstEntryForKey("\ud83d"));
+		
+		keySampleFile.delete();
+	}
+
 	/**
 	 * Helper method for creating some test tuples
 	 * 
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2017 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.entity.SSTableName;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.block.SSTableBlock;
+import org.bboxdb.storage.sstable.reader.SSTableCache;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+import org.bboxdb.util.io.FileUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSSTableCache {
+	
+	/**
+	 * The directory for the output
+	 */
+	protected static final String STORAGE_DIRECTORY = BBoxDBConfigurationManager.getConfiguration().getStorageDirectories().get(0);
+	
+	/**
+	 * The name of the test relation
+	 */
+	protected final static SSTableName TEST_RELATION = new SSTableName("1_testgroup1_relation4");
+
+	/**
+	 * Test the put and get methods
+	 */
+	@Test
+	public void testPutAndGet() {
+		final SSTableCache cache = new SSTableCache(1024 * 1024);
+		final Tuple tuple = new Tuple("abc", BoundingBox.EMPTY_BOX, "abc".getBytes());
+		final SSTableBlock block = new SSTableBlock(20, new byte[] {0, 0, 0, 0});
+		
+		Assert.assertTrue(cache.isEnabled());
+		Assert.assertNull(cache.getTuple(TEST_RELATION, 1, 10));
+		Assert.assertEquals(1, cache.getMissCount());
+		
+		cache.putTuple(TEST_RELATION, 1, 10, tuple);
+		cache.putKey(TEST_RELATION, 1, 10, "abc");
+		cache.putBlock(TEST_RELATION, 1, block);
+		
+		Assert.assertEquals(tuple, cache.getTuple(TEST_RELATION, 1, 10));
+		Assert.assertEquals("abc", cache.getKey(TEST_RELATION, 1, 10));
+		Assert.assertEquals(block, cache.getBlock(TEST_RELATION, 1, 20));
+		Assert.assertEquals(3, cache.getHitCount());
+		
+		// Other table number, other position or other type
+		Assert.assertNull(cache.getTuple(TEST_RELATION, 2, 10));
+		Assert.assertNull(cache.getTuple(TEST_RELATION, 1, 11));
+		Assert.assertNull(cache.getKey(TEST_RELATION, 1, 20));
+		Assert.assertEquals(4, cache.getMissCount());
+		Assert.assertEquals(3, cache.getNumberOfElements());
+	}
+	
+	/**
+	 * Test the invalidation of a table
+	 */
+	@Test
+	public void testInvalidateTable() {
+		final SSTableCache cache = new SSTableCache(1024 * 1024);
+		
+		for(int i = 0; i < 10; i++) {
+			cache.putKey(TEST_RELATION, 1, i, Integer.toString(i));
+			cache.putKey(TEST_RELATION, 2, i, Integer.toString(i));
+		}
+		
+		Assert.assertEquals(20, cache.getNumberOfElements());
+		Assert.assertEquals(2, cache.getNumberOfTables());
+		
+		cache.invalidateTable(TEST_RELATION, 1);
+		Assert.assertEquals(10, cache.getNumberOfElements());
+		Assert.assertEquals(1, cache.getNumberOfTables());
+		
+		// Unknown table
+		cache.invalidateTable(TEST_RELATION, 3);
+		Assert.assertEquals(10, cache.getNumberOfElements());
+		
+		for(int i = 0; i < 10; i++) {
+			Assert.assertNull(cache.getKey(TEST_RELATION, 1, i));
+			Assert.assertEquals(Integer.toString(i), cache.getKey(TEST_RELATION, 2, i));
+		}
+		
+		cache.clear();
+		Assert.assertEquals(0, cache.getNumberOfElements());
+		Assert.assertEquals(0, cache.getNumberOfTables());
+	}
+	
+	/**
+	 * Test the size bound of the cache
+	 */
+	@Test
+	public void testEviction() {
+		final SSTableCache cache = new SSTableCache(16 * 1024);
+		
+		for(int i = 0; i < 100; i++) {
+			cache.putBlock(TEST_RELATION, 1, new SSTableBlock(i, new byte[1024]));
+		}
+		
+		Assert.assertTrue(cache.getNumberOfElements() < 16);
+		Assert.assertTrue(cache.getEvictionCount() > 0);
+		Assert.assertEquals(100, cache.getNumberOfElements() + cache.getEvictionCount());
+		
+		// Evicted elements are removed from the keys of the table
+		cache.invalidateTable(TEST_RELATION, 1);
+		Assert.assertEquals(0, cache.getNumberOfElements());
+		Assert.assertEquals(0, cache.getNumberOfTables());
+	}
+	
+	/**
+	 * Test the disabled cache
+	 */
+	@Test
+	public void testDisabledCache() {
+		final SSTableCache cache = new SSTableCache(0);
+		
+		Assert.assertFalse(cache.isEnabled());
+		cache.putKey(TEST_RELATION, 1, 1, "abc");
+		Assert.assertNull(cache.getKey(TEST_RELATION, 1, 1));
+		Assert.assertEquals(0, cache.getNumberOfElements());
+	}
+	
+	/**
+	 * Test the cache usage of the facade and the invalidation 
+	 * of a rewritten table
+	 * @throws Exception 
+	 */
+	@Test
+	public void testFacadeUsesCache() throws Exception {
+		final SSTableCache cache = SSTableCache.getInstance();
+		Assert.assertTrue(cache.isEnabled());
+		
+		writeTable(createTupleList("value1"));
+		
+		final SSTableFacade facade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		facade.init();
+		facade.acquire();
+		
+		Assert.assertEquals("value1", new String(facade.get("5").getDataBytes()));
+		final long hits = cache.getHitCount();
+		Assert.assertEquals("value1", new String(facade.get("5").getDataBytes()));
+		Assert.assertTrue(cache.getHitCount() > hits);
+		
+		facade.release();
+		facade.shutdown();
+		
+		// Same table name and number, new content
+		writeTable(createTupleList("value2"));
+		
+		final SSTableFacade facade2 = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		facade2.init();
+		facade2.acquire();
+		Assert.assertEquals("value2", new String(facade2.get("5").getDataBytes()));
+		facade2.release();
+		facade2.shutdown();
+	}
+
+	/**
+	 * Write the tuples into table 1 of the test relation
+	 * @param tupleList
+	 * @throws Exception
+	 */
+	protected void writeTable(final List<Tuple> tupleList) throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, tupleList.size());
+		ssTableWriter.open();
+		ssTableWriter.addData(tupleList);
+		ssTableWriter.close();
+	}
+	
+	/**
+	 * Create a list of tuples with the given value
+	 * @param value
+	 * @return
+	 */
+	protected List<Tuple> createTupleList(final String value) {
+		final List<Tuple> tupleList = new ArrayList<Tuple>();
+		
+		for(int i = 0; i < 10; i++) {
+			tupleList.add(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, value.getBytes()));
+		}
+		
+		return tupleList;
+	}
+}
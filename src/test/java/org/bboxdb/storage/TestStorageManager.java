@@ -17,6 +17,10 @@
  *******************************************************************************/
 package org.bboxdb.storage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.bboxdb.PersonEntity;
 import org.bboxdb.network.client.BBoxDBException;
 import org.bboxdb.storage.entity.BoundingBox;
@@ -94,6 +98,24 @@ public class TestStorageManager {
 		Assert.assertEquals(tuple2, storageManager.get("1"));
 	}
 	
+	@Test
+	public void testInsertElementsBatch() throws Exception {
+		final List<Tuple> tuples = new ArrayList<>();
+		
+		for(int i = 0; i < 100; i++) {
+			tuples.add(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "abc".getBytes()));
+		}
+		
+		// Second version of key 1
+		final Tuple tuple = new Tuple("1", BoundingBox.EMPTY_BOX, "def".getBytes());
+		tuples.add(tuple);
+		
+		storageManager.put(tuples);
+		
+		Assert.assertEquals(tuples.get(50), storageManager.get("50"));
+		Assert.assertEquals(tuple, storageManager.get("1"));
+	}
+	
 	@Test
 	public void testInsertAndReadPerson() throws Exception {
 		final PersonEntity person1 = new PersonEntity("Jan", "Jansen", 30);
@@ -245,4 +267,47 @@ public class TestStorageManager {
 	protected int getNumberOfTuplesForBigInsert() {
 		return 1000000;
 	}
+	
+	/**
+	 * Test concurrent puts with multiple memtable switches, no tuple is lost
+	 * @throws Exception
+	 */
+	@Test(timeout=120000)
+	public void testConcurrentPut() throws Exception {
+		final int threads = 8;
+		final int tuplesPerThread = 5000;
+		final List<Thread> writer = new ArrayList<>();
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		
+		for(int thread = 0; thread < threads; thread++) {
+			final int threadNumber = thread;
+			
+			writer.add(new Thread(() -> {
+				try {
+					for(int i = 0; i < tuplesPerThread; i++) {
+						storageManager.put(new Tuple(threadNumber + "_" + i, 
+								BoundingBox.EMPTY_BOX, "abc".getBytes()));
+					}
+				} catch (Exception e) {
+					failure.set(e);
+				}
+			}));
+		}
+		
+		writer.forEach(Thread::start);
+		
+		for(final Thread thread : writer) {
+			thread.join();
+		}
+		
+		Assert.assertNull(failure.get());
+		
+		for(int thread = 0; thread < threads; thread++) {
+			for(int i = 0; i < tuplesPerThread; i++) {
+				final String key = thread + "_" + i;
+				Assert.assertNotNull("Tuple is lost: " + key, storageManager.get(key));
+			}
+		}
+	}
+
 }
@@ -21,7 +21,9 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bboxdb.misc.BBoxDBConfigurationManager;
 import org.bboxdb.network.client.BBoxDBException;
@@ -33,7 +35,14 @@ import org.bboxdb.storage.registry.StorageRegistry;
 import org.bboxdb.storage.sstable.SSTableHelper;
 import org.bboxdb.storage.sstable.SSTableManager;
 import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.block.BlockCompressionCodec;
+import org.bboxdb.storage.sstable.block.DeflateCompressionCodec;
+import org.bboxdb.storage.sstable.compact.LeveledMergeStrategy;
+import org.bboxdb.storage.sstable.compact.MergeTask;
+import org.bboxdb.storage.sstable.compact.MergeTaskType;
 import org.bboxdb.storage.sstable.compact.SSTableCompactor;
+import org.bboxdb.storage.sstable.compact.SizeTieredMergeStrategy;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
 import org.bboxdb.storage.sstable.reader.SSTableReader;
 import org.junit.AfterClass;
@@ -167,7 +176,7 @@ public class TestTableCompactor {
 		
 		// Check the consistency of the index
 		for(int i = 1; i < 500; i++) {
-			int pos = ssTableIndexReader.getPositionForTuple(Integer.toString(i));
+			long pos = ssTableIndexReader.getPositionForTuple(Integer.toString(i));
 			Assert.assertTrue(pos != -1);
 		}
 		
@@ -355,6 +364,202 @@ public class TestTableCompactor {
 		return ssTableIndexReader;
 	}
 	
+	@Test
+	public void testCompactBlockAndRowFormat() throws StorageManagerException {
+		final List<Tuple> tupleList1 = new ArrayList<Tuple>();
+		for(int i = 0; i < 100; i = i + 2) {
+			tupleList1.add(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "abc".getBytes()));
+		}
+		final SSTableKeyIndexReader reader1 = addTuplesToFileAndGetReader(tupleList1, 1, 
+				new DeflateCompressionCodec());
+		
+		final List<Tuple> tupleList2 = new ArrayList<Tuple>();
+		for(int i = 1; i < 100; i = i + 2) {
+			tupleList2.add(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "def".getBytes()));
+		}
+		final SSTableKeyIndexReader reader2 = addTuplesToFileAndGetReader(tupleList2, 2, null);
+		
+		Assert.assertTrue(reader1.isBlockFormat());
+		Assert.assertFalse(reader2.isBlockFormat());
+		
+		final SSTableKeyIndexReader ssTableIndexReader = exectuteCompactAndGetReader(reader1, reader2, false);
+		
+		final List<Tuple> expectedTuples = new ArrayList<>(tupleList1);
+		expectedTuples.addAll(tupleList2);
+		Collections.sort(expectedTuples);
+		
+		int counter = 0;
+		for(final Tuple tuple : ssTableIndexReader) {
+			Assert.assertEquals(expectedTuples.get(counter), tuple);
+			counter++;
+		}
+		
+		Assert.assertEquals(expectedTuples.size(), counter);
+	}
+	
+	/**
+	 * Test the compaction with multiple key ranges
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testCompactParallelKeyRanges() throws StorageManagerException {
+		final List<Tuple> tupleList1 = new ArrayList<Tuple>();
+		for(int i = 0; i < 2000; i++) {
+			tupleList1.add(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "abc".getBytes(), 1));
+		}
+		final SSTableKeyIndexReader reader1 = addTuplesToFileAndGetReader(tupleList1, 1, 
+				new DeflateCompressionCodec());
+		
+		// Newer versions for every third key and deleted tuples for every fifth key
+		final List<Tuple> tupleList2 = new ArrayList<Tuple>();
+		for(int i = 0; i < 2000; i++) {
+			if(i % 3 == 0) {
+				tupleList2.add(new Tuple(Integer.toString(i), BoundingBox.EMPTY_BOX, "def".getBytes(), 2));
+			} else if(i % 5 == 0) {
+				tupleList2.add(new DeletedTuple(Integer.toString(i), 2));
+			}
+		}
+		final SSTableKeyIndexReader reader2 = addTuplesToFileAndGetReader(tupleList2, 2, null);
+		
+		storageRegistry.deleteTable(TEST_RELATION);
+		final SSTableManager storageManager = storageRegistry.getSSTableManager(TEST_RELATION);
+		
+		final SSTableCompactor compactor = new SSTableCompactor(storageManager, Arrays.asList(reader1, reader2));
+		compactor.setMajorCompaction(true);
+		compactor.setCompactionThreads(4);
+		compactor.setMinEntriesPerRange(100);
+		compactor.executeCompactation();
+		
+		Assert.assertTrue(compactor.isSuccessfullyFinished());
+		Assert.assertEquals(4, compactor.getNumberOfKeyRanges());
+		Assert.assertEquals(4, compactor.getResultList().size());
+		Assert.assertEquals(tupleList1.size() + tupleList2.size(), compactor.getReadTuples());
+		Assert.assertTrue(compactor.getWrittenBytes() > 0);
+		
+		final List<String> keys = new ArrayList<>();
+		
+		for(final SSTableWriter writer : compactor.getResultList()) {
+			final SSTableReader reader = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, writer.getTablenumber());
+			reader.init();
+			final SSTableKeyIndexReader ssTableIndexReader = new SSTableKeyIndexReader(reader);
+			ssTableIndexReader.init();
+			
+			for(final Tuple tuple : ssTableIndexReader) {
+				final int keyNumber = Integer.parseInt(tuple.getKey());
+				final String expectedData = (keyNumber % 3 == 0) ? "def" : "abc";
+				Assert.assertFalse(tuple instanceof DeletedTuple);
+				Assert.assertEquals(expectedData, new String(tuple.getDataBytes()));
+				keys.add(tuple.getKey());
+			}
+			
+			ssTableIndexReader.shutdown();
+			reader.shutdown();
+		}
+		
+		// The ranges are disjoint and sorted
+		final List<String> expectedKeys = new ArrayList<>();
+		for(int i = 0; i < 2000; i++) {
+			if(i % 3 == 0 || i % 5 != 0) {
+				expectedKeys.add(Integer.toString(i));
+			}
+		}
+		Collections.sort(expectedKeys);
+		
+		Assert.assertEquals(expectedKeys, keys);
+		Assert.assertEquals(expectedKeys.size(), compactor.getWrittenTuples());
+	}
+	
+	/**
+	 * Test the size tiered merge strategy
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testSizeTieredMergeStrategy() throws StorageManagerException {
+		final Map<Integer, Long> tableSizes = new HashMap<>();
+		final long megabyte = 1024 * 1024;
+		
+		// 2 big tables and 5 small tables
+		tableSizes.put(1, 500 * megabyte);
+		tableSizes.put(2, 600 * megabyte);
+		for(int i = 3; i <= 7; i++) {
+			tableSizes.put(i, megabyte);
+		}
+		
+		final List<SSTableFacade> facades = createFacades(tableSizes);
+		
+		final SizeTieredMergeStrategy mergeStrategy = new SizeTieredMergeStrategy() {
+			@Override
+			protected long getTableSize(final SSTableFacade facade) {
+				return tableSizes.get(facade.getTablebumber());
+			}
+		};
+		
+		final MergeTask mergeTask = mergeStrategy.getMergeTask(facades);
+		Assert.assertEquals(MergeTaskType.MINNOR, mergeTask.getTaskType());
+		Assert.assertEquals(facades.subList(2, 7), mergeTask.getCompactTables());
+		
+		// Not enough tables in a bucket
+		final MergeTask mergeTask2 = mergeStrategy.getMergeTask(facades.subList(0, 4));
+		Assert.assertEquals(MergeTaskType.UNKNOWN, mergeTask2.getTaskType());
+	}
+	
+	/**
+	 * Test the leveled merge strategy
+	 * @throws StorageManagerException
+	 */
+	@Test
+	public void testLeveledMergeStrategy() throws StorageManagerException {
+		final Map<Integer, Long> tableSizes = new HashMap<>();
+		final long megabyte = 1024 * 1024;
+		
+		// One table in level 2 and 6 tables in level 0
+		tableSizes.put(1, 100 * megabyte);
+		for(int i = 2; i <= 7; i++) {
+			tableSizes.put(i, megabyte);
+		}
+		
+		final List<SSTableFacade> facades = createFacades(tableSizes);
+		
+		final LeveledMergeStrategy mergeStrategy = new LeveledMergeStrategy() {
+			@Override
+			protected long getTableSize(final SSTableFacade facade) {
+				return tableSizes.get(facade.getTablebumber());
+			}
+		};
+		
+		// Level 0 is full, level 1 is empty
+		final MergeTask mergeTask = mergeStrategy.getMergeTask(facades);
+		Assert.assertEquals(MergeTaskType.MINNOR, mergeTask.getTaskType());
+		Assert.assertEquals(facades.subList(1, 7), mergeTask.getCompactTables());
+		
+		// Level 0 is not full
+		final MergeTask mergeTask2 = mergeStrategy.getMergeTask(facades.subList(0, 4));
+		Assert.assertEquals(MergeTaskType.UNKNOWN, mergeTask2.getTaskType());
+	}
+	
+	/**
+	 * Create a facade for each table number
+	 * @param tableSizes
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	protected List<SSTableFacade> createFacades(final Map<Integer, Long> tableSizes) 
+			throws StorageManagerException {
+		
+		final List<SSTableFacade> facades = new ArrayList<>();
+		
+		for(final Integer tableNumber : tableSizes.keySet()) {
+			final List<Tuple> tupleList = new ArrayList<Tuple>();
+			tupleList.add(new Tuple(Integer.toString(tableNumber), BoundingBox.EMPTY_BOX, "abc".getBytes()));
+			addTuplesToFileAndGetReader(tupleList, tableNumber);
+			facades.add(new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, tableNumber));
+		}
+		
+		facades.sort((f1, f2) -> Integer.compare(f1.getTablebumber(), f2.getTablebumber()));
+		
+		return facades;
+	}
+	
 	/**
 	 * Write the tuplelist into a SSTable and return a reader for this table
 	 * 
@@ -365,10 +570,43 @@ public class TestTableCompactor {
 	 */
 	protected SSTableKeyIndexReader addTuplesToFileAndGetReader(final List<Tuple> tupleList, int number)
 			throws StorageManagerException {
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, number, EXPECTED_TUPLES);
+		return writeTuplesAndGetReader(tupleList, ssTableWriter);
+	}
+	
+	/**
+	 * Write the tuplelist into a SSTable with the given block codec and return a 
+	 * reader for this table
+	 * 
+	 * @param tupleList
+	 * @param number
+	 * @param blockCodec
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	protected SSTableKeyIndexReader addTuplesToFileAndGetReader(final List<Tuple> tupleList, int number,
+			final BlockCompressionCodec blockCodec) throws StorageManagerException {
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, number, 
+				EXPECTED_TUPLES, blockCodec);
+		return writeTuplesAndGetReader(tupleList, ssTableWriter);
+	}
 
+	/**
+	 * Write the tuplelist with the writer and return a reader for this table
+	 * 
+	 * @param tupleList
+	 * @param ssTableWriter
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	protected SSTableKeyIndexReader writeTuplesAndGetReader(final List<Tuple> tupleList,
+			final SSTableWriter ssTableWriter) throws StorageManagerException {
+		
 		Collections.sort(tupleList);
+		final int number = ssTableWriter.getTablenumber();
 		
-		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, number, EXPECTED_TUPLES);
 		ssTableWriter.open();
 		ssTableWriter.addData(tupleList);
 		ssTableWriter.close();
@@ -128,7 +128,59 @@ public class TestTupleHelper {
 		final Tuple readTuple2 = TupleHelper.decodeTuple(bb);
 		Assert.assertEquals(tuple, readTuple2);
 	}
-
 	
+	/**
+	 * Test the lazy decoding of a stored tuple
+	 * @throws IOException
+	 */
+	@Test
+	public void decodeStoredTupleLazy() throws IOException {
+		final Tuple tuple = new Tuple("abc", new BoundingBox(1.0, 2.0, 3.0, 4.0), "def".getBytes());
+		final byte[] bytes = TupleHelper.tupleToBytes(tuple);
+		
+		// Two tuples in one buffer
+		final ByteBuffer bb = ByteBuffer.allocate(2 * bytes.length);
+		bb.put(bytes);
+		bb.put(bytes);
+		bb.flip();
+		
+		final Tuple readTuple1 = TupleHelper.decodeTuple(bb);
+		Assert.assertEquals(bytes.length, bb.position());
+		final Tuple readTuple2 = TupleHelper.decodeTuple(bb);
+		Assert.assertEquals(0, bb.remaining());
+		
+		Assert.assertEquals("abc", readTuple1.getKey());
+		Assert.assertEquals(tuple.getVersionTimestamp(), readTuple1.getVersionTimestamp());
+		Assert.assertEquals(tuple.getReceivedTimestamp(), readTuple1.getReceivedTimestamp());
+		Assert.assertEquals(tuple.getSize(), readTuple1.getSize());
+		Assert.assertArrayEquals(bytes, readTuple1.getEncodedTuple());
+		Assert.assertArrayEquals(tuple.getBoundingBoxBytes(), readTuple1.getBoundingBoxBytes());
+
+		// Decoding the bounding box keeps the encoded tuple
+		Assert.assertEquals(tuple.getBoundingBox(), readTuple1.getBoundingBox());
+		Assert.assertNotNull(readTuple1.getEncodedTuple());
+		
+		// Writing the encoded tuple produces the same bytes
+		Assert.assertArrayEquals(bytes, TupleHelper.tupleToBytes(readTuple1));
+		
+		// Decoding the data drops the encoded tuple
+		Assert.assertArrayEquals(tuple.getDataBytes(), readTuple1.getDataBytes());
+		Assert.assertNull(readTuple1.getEncodedTuple());
+		Assert.assertArrayEquals(bytes, TupleHelper.tupleToBytes(readTuple1));
+		
+		Assert.assertEquals(tuple, readTuple1);
+		Assert.assertEquals(tuple, readTuple2);
+		Assert.assertEquals(tuple.hashCode(), readTuple2.hashCode());
+	}
 	
+	/**
+	 * Decode a truncated tuple
+	 * @throws IOException
+	 */
+	@Test(expected=IOException.class)
+	public void decodeTruncatedTuple() throws IOException {
+		final Tuple tuple = new Tuple("abc", new BoundingBox(1.0, 2.0, 3.0, 4.0), "def".getBytes());
+		final byte[] bytes = TupleHelper.tupleToBytes(tuple);
+		TupleHelper.decodeTuple(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+	}
 }
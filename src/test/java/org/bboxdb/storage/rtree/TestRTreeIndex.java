@@ -24,13 +24,17 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.bboxdb.misc.Const;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
 import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeDirectoryNode;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -144,6 +148,102 @@ public class TestRTreeIndex {
 		index.testCovering();		
 	}
 	
+	/**
+	 * Test the index built by single inserts
+	 */
+	@Test
+	public void testBoxQuery2dSingleInsert() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2);
+		
+		final RTreeBuilder index = new RTreeBuilder();
+		tupleList.forEach(e -> index.insert(e));
+		
+		index.testCovering();
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test the node packing of the bulk load
+	 */
+	@Test
+	public void testBulkLoadPacking() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(3);
+		
+		final RTreeBuilder index = new RTreeBuilder(16);
+		Assert.assertTrue(index.bulkInsert(tupleList));
+		index.testCovering();
+		
+		// All leafs on the same level, all nodes respect the max node size
+		final List<RTreeDirectoryNode> leafs = new ArrayList<>();
+		final Set<Integer> leafLevels = new HashSet<>();
+		collectLeafs(index.getRootNode(), 0, 16, leafs, leafLevels);
+		
+		Assert.assertEquals(1, leafLevels.size());
+		Assert.assertEquals((int) Math.ceil(tupleList.size() / 16.0), leafs.size());
+		
+		final int entries = leafs.stream().mapToInt(l -> l.getIndexEntries().size()).sum();
+		Assert.assertEquals(tupleList.size(), entries);
+		
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test the insert into a bulk loaded tree
+	 */
+	@Test
+	public void testInsertAfterBulkLoad() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2);
+		final List<SpatialIndexEntry> bulkList = tupleList.subList(0, tupleList.size() / 2);
+		final List<SpatialIndexEntry> insertList = tupleList.subList(tupleList.size() / 2, tupleList.size());
+		
+		final RTreeBuilder index = new RTreeBuilder();
+		index.bulkInsert(bulkList);
+		index.bulkInsert(insertList);
+		
+		index.testCovering();
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test the bulk load with invalid and without entries
+	 */
+	@Test
+	public void testBulkLoadInvalidEntries() {
+		final RTreeBuilder index = new RTreeBuilder();
+		Assert.assertTrue(index.bulkInsert(new ArrayList<>()));
+		
+		final List<SpatialIndexEntry> tupleList = new ArrayList<>(RTreeTestHelper.getEntryList());
+		tupleList.add(new SpatialIndexEntry(BoundingBox.EMPTY_BOX, 11));
+		Assert.assertFalse(index.bulkInsert(tupleList));
+		
+		RTreeTestHelper.queryIndex(RTreeTestHelper.getEntryList(), index);
+	}
+	
+	/**
+	 * Collect the leaf nodes of the tree
+	 * @param node
+	 * @param level
+	 * @param maxNodeSize
+	 * @param leafs
+	 * @param leafLevels
+	 */
+	protected void collectLeafs(final RTreeDirectoryNode node, final int level, final int maxNodeSize,
+			final List<RTreeDirectoryNode> leafs, final Set<Integer> leafLevels) {
+		
+		Assert.assertTrue(node.getSize() <= maxNodeSize);
+		
+		if(node.isLeafNode()) {
+			leafs.add(node);
+			leafLevels.add(level);
+			return;
+		}
+		
+		for(final RTreeDirectoryNode child : node.getDirectoryNodeChilds()) {
+			Assert.assertEquals(node, child.getParentNode());
+			collectLeafs(child, level + 1, maxNodeSize, leafs, leafLevels);
+		}
+	}
+	
 	/**
 	 * Test the decoding an encoding of an rtree entry
 	 * @throws IOException 
@@ -1,7 +1,28 @@
 package org.bboxdb.storage.rtree;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.BoundingBox;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
 import org.bboxdb.storage.sstable.spatialindex.rtree.AbstractRTreeReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
 import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader;
+import org.bboxdb.util.IntArrayList;
+import org.junit.Assert;
+import org.junit.Test;
 
 public class TestRTreeMMFDeserializer extends TestRTreeMemoryDeserializer {
 
@@ -9,5 +30,176 @@ public class TestRTreeMMFDeserializer extends TestRTreeMemoryDeserializer {
 	protected AbstractRTreeReader getRTreeReader() {
 		return new RTreeMMFReader();
 	}
+	
+	/**
+	 * Write the entries into a file and open the file with the reader
+	 * @param tupleList
+	 * @return
+	 * @throws IOException
+	 * @throws StorageManagerException
+	 * @throws InterruptedException
+	 */
+	protected AbstractRTreeReader writeAndReadIndex(final List<SpatialIndexEntry> tupleList) 
+			throws IOException, StorageManagerException, InterruptedException {
+		
+		return writeAndReadIndex(tupleList, getRTreeReader());
+	}
+	
+	/**
+	 * Write the entries into a file and open the file with the given reader
+	 * @param tupleList
+	 * @param indexRead
+	 * @return
+	 * @throws IOException
+	 * @throws StorageManagerException
+	 * @throws InterruptedException
+	 */
+	protected AbstractRTreeReader writeAndReadIndex(final List<SpatialIndexEntry> tupleList, 
+			final AbstractRTreeReader indexRead) 
+					throws IOException, StorageManagerException, InterruptedException {
+		
+		final SpatialIndexBuilder index = new RTreeBuilder();
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		return indexRead;
+	}
+	
+	/**
+	 * Get the expected values for the query
+	 * @param tupleList
+	 * @param queryBox
+	 * @return
+	 */
+	protected Set<Long> getExpectedValues(final List<SpatialIndexEntry> tupleList, 
+			final BoundingBox queryBox) {
+		
+		return tupleList.stream()
+			.filter(e -> e.getBoundingBox().overlaps(queryBox))
+			.map(e -> e.getValue())
+			.collect(Collectors.toCollection(TreeSet::new));
+	}
+	
+	/**
+	 * Test the query with a consumer for the values
+	 * @throws StorageManagerException 
+	 * @throws IOException 
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testQueryWithConsumer() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2);
+		final AbstractRTreeReader indexRead = writeAndReadIndex(tupleList);
+		
+		final List<BoundingBox> queryBoxes = new ArrayList<>();
+		queryBoxes.add(new BoundingBox(-100d, 100d, -100d, 100d));
+		queryBoxes.add(new BoundingBox(500d, 500d, 0d, 1000d));
+		queryBoxes.add(new BoundingBox(5000d, 6000d, 5000d, 6000d));
+		queryBoxes.add(new BoundingBox(0d, 100d));
+		queryBoxes.add(BoundingBox.EMPTY_BOX);
+		queryBoxes.add(tupleList.get(0).getBoundingBox());
+		
+		for(final BoundingBox queryBox : queryBoxes) {
+			final Set<Long> expected = getExpectedValues(tupleList, queryBox);
+			
+			final IntArrayList values = new IntArrayList();
+			indexRead.getEntriesForRegion(queryBox, values);
+			Assert.assertEquals(expected.size(), values.size());
+			
+			final Set<Long> consumerResult = new TreeSet<>();
+			for(int i = 0; i < values.size(); i++) {
+				consumerResult.add((long) values.get(i));
+			}
+			
+			Assert.assertEquals(expected, consumerResult);
+			
+			final List<SpatialIndexEntry> resultList = indexRead.getEntriesForRegion(queryBox);
+			Assert.assertEquals(expected.size(), resultList.size());
+			
+			for(final SpatialIndexEntry entry : resultList) {
+				final SpatialIndexEntry insertedEntry = tupleList.get((int) entry.getValue());
+				Assert.assertEquals(insertedEntry.getBoundingBox(), entry.getBoundingBox());
+			}
+		}
+		
+		indexRead.close();
+	}
+	
+	/**
+	 * Test concurrent queries on the same reader
+	 * @throws Exception 
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentQueries() throws Exception {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2);
+		final AbstractRTreeReader indexRead = writeAndReadIndex(tupleList);
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<Boolean>> results = new ArrayList<>();
+		
+		for(int thread = 0; thread < 4; thread++) {
+			final int offset = thread;
+			
+			results.add(executor.submit(() -> {
+				for(int i = offset; i < tupleList.size(); i = i + 4) {
+					final SpatialIndexEntry entry = tupleList.get(i);
+					final BoundingBox queryBox = entry.getBoundingBox();
+					final IntArrayList values = new IntArrayList();
+					indexRead.getEntriesForRegion(queryBox, values);
+					
+					if(values.size() != getExpectedValues(tupleList, queryBox).size()) {
+						return false;
+					}
+				}
+				return true;
+			}));
+		}
+		
+		for(final Future<Boolean> result : results) {
+			Assert.assertTrue(result.get());
+		}
+		
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		indexRead.close();
+	}
+	
+	/**
+	 * Test the query on an index that is mapped in many small segments, 
+	 * nodes and bounding boxes cross the segment boundaries
+	 * @throws StorageManagerException 
+	 * @throws IOException 
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testQuerySmallSegments() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2);
+		final AbstractRTreeReader indexRead = writeAndReadIndex(tupleList, new RTreeMMFReader(4099));
+		
+		for(int i = 0; i < tupleList.size(); i = i + 10) {
+			final BoundingBox queryBox = tupleList.get(i).getBoundingBox();
+			final Set<Long> expected = getExpectedValues(tupleList, queryBox);
+			
+			final List<SpatialIndexEntry> resultList = indexRead.getEntriesForRegion(queryBox);
+			Assert.assertEquals(expected.size(), resultList.size());
+			
+			for(final SpatialIndexEntry entry : resultList) {
+				Assert.assertTrue(expected.contains(entry.getValue()));
+				Assert.assertEquals(tupleList.get((int) entry.getValue()).getBoundingBox(), 
+						entry.getBoundingBox());
+			}
+		}
+		
+		indexRead.close();
+	}
 
 }
@@ -17,10 +17,12 @@
  *******************************************************************************/
 package org.bboxdb.tools;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.bboxdb.misc.Const;
 import org.bboxdb.storage.entity.BoundingBox;
 import org.junit.Assert;
 import org.junit.Test;
@@ -542,4 +544,84 @@ public class TestBoundingBox {
 		Assert.assertEquals(125.0, boundingBox2.calculateEnlargement(boundingBox3), EQUALS_DELTA);
 
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Test the enlargement with negative coordinates
+	 */
+	@Test
+	public void testEnlargementNegative() {
+		final BoundingBox boundingBox1 = new BoundingBox(-10d, -9d, -10d, -9d);	
+		final BoundingBox boundingBox2 = new BoundingBox(-8d, -7d, -10d, -9d);	
+
+		Assert.assertEquals(2.0, boundingBox1.calculateEnlargement(boundingBox2), EQUALS_DELTA);
+		
+		final BoundingBox coveringBox = BoundingBox.getCoveringBox(boundingBox1, boundingBox2);
+		Assert.assertEquals(-7.0, coveringBox.getCoordinateHigh(0), EQUALS_DELTA);
+		Assert.assertEquals(-9.0, coveringBox.getCoordinateHigh(1), EQUALS_DELTA);
+	}
+	
+	/**
+	 * Test the decoding of a box from a part of a byte array
+	 */
+	@Test
+	public void testDecodeWithOffset() {
+		final BoundingBox boundingBox = new BoundingBox(1d, 2d, 3d, 4d, 5d, 6d);
+		final byte[] encodedBox = boundingBox.toByteArray();
+		
+		final byte[] buffer = new byte[encodedBox.length + 7];
+		System.arraycopy(encodedBox, 0, buffer, 3, encodedBox.length);
+		
+		Assert.assertEquals(boundingBox, BoundingBox.fromByteArray(encodedBox));
+		Assert.assertEquals(boundingBox, BoundingBox.fromByteArray(buffer, 3, encodedBox.length));
+	}
+	
+	/**
+	 * Test the overlapping with an encoded box
+	 */
+	@Test
+	public void testOverlapEncodedBox() {
+		final BoundingBox boundingBox1 = new BoundingBox(0d, 1d, 0d, 1d);
+		final BoundingBox boundingBox2 = new BoundingBox(1d, 2d, 1d, 2d);
+		final BoundingBox boundingBox3 = new BoundingBox(1.5d, 2d, 1d, 2d);
+		final BoundingBox boundingBox4 = new BoundingBox(0d, 1d, 0d, 1d, 0d, 1d);
+		
+		final byte[] encodedBox = boundingBox1.toByteArray();
+		final ByteBuffer buffer = ByteBuffer.allocate(encodedBox.length + 4);
+		buffer.order(Const.APPLICATION_BYTE_ORDER);
+		buffer.putInt(0);
+		buffer.put(encodedBox);
+		
+		for(final BoundingBox boundingBox : new BoundingBox[] {boundingBox2, boundingBox3, boundingBox4}) {
+			Assert.assertEquals(boundingBox.overlaps(boundingBox1), 
+					boundingBox.overlaps(buffer, 4, encodedBox.length));
+		}
+		
+		Assert.assertTrue(BoundingBox.EMPTY_BOX.overlaps(buffer, 4, encodedBox.length));
+		
+		// Open intervals
+		final BoundingBox leftBox = boundingBox2.splitAndGetLeft(1.5, 0, false);
+		final BoundingBox rightBox = boundingBox2.splitAndGetRight(1.5, 0, false);
+		Assert.assertTrue(leftBox.overlaps(buffer, 4, encodedBox.length));
+		Assert.assertFalse(rightBox.overlaps(buffer, 4, encodedBox.length));
+		Assert.assertFalse(leftBox.overlaps(rightBox));
+		Assert.assertFalse(boundingBox3.overlaps(leftBox));
+	}
+	
+	/**
+	 * Test equals and hashcode of boxes with open intervals
+	 */
+	@Test
+	public void testEqualsOpenIntervals() {
+		final BoundingBox boundingBox = new BoundingBox(0d, 2d, 0d, 2d);
+		final BoundingBox leftBox1 = boundingBox.splitAndGetLeft(1, 0, false);
+		final BoundingBox leftBox2 = boundingBox.splitAndGetLeft(1, 0, false);
+		final BoundingBox leftBox3 = boundingBox.splitAndGetLeft(1, 0, true);
+		
+		Assert.assertEquals(leftBox1, leftBox2);
+		Assert.assertEquals(leftBox1.hashCode(), leftBox2.hashCode());
+		Assert.assertNotEquals(leftBox1, leftBox3);
+		Assert.assertEquals(new BoundingBox(0d, 1d, 0d, 2d), leftBox3);
+		Assert.assertFalse(leftBox1.isCovering(leftBox3));
+		Assert.assertTrue(leftBox3.isCovering(leftBox1));
+	}
+}
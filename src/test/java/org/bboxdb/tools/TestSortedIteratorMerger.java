@@ -202,5 +202,99 @@ public class TestSortedIteratorMerger {
 		Assert.assertTrue(resultList.contains("geh"));
 		Assert.assertEquals(7, mergeIterator.getReadElements());
 	}
+	
+	/**
+	 * Test the merge of many lists with duplicates
+	 */
+	@Test
+	public void testManyLists() {
+		final List<Iterator<String>> iterators = new ArrayList<>();
+		
+		// Iterator i contains all multiples of i
+		for(int i = 1; i <= 10; i++) {
+			final List<String> list = new ArrayList<>();
+			
+			for(int element = 0; element < 100; element = element + i) {
+				list.add(String.format("%03d", element));
+			}
+			
+			iterators.add(list.iterator());
+		}
+		
+		final SortedIteratorMerger<String> mergeIterator = new SortedIteratorMerger<String>(
+				iterators, STRING_COMPARATOR, FIRST_ELEMENT_DUPLICATE_RESOLVER);
+		
+		final List<String> resultList = Lists.newArrayList(mergeIterator);
+		Assert.assertEquals(100, resultList.size());
+		
+		for(int i = 0; i < 100; i++) {
+			Assert.assertEquals(String.format("%03d", i), resultList.get(i));
+		}
+	}
+	
+	/**
+	 * The duplicates are passed to the resolver in the order of the input list
+	 */
+	@Test
+	public void testDuplicateOrder() {
+		final Comparator<String> firstCharComparator = (e1, e2) -> Character.compare(e1.charAt(0), e2.charAt(0));
+		final List<String> list1 = Arrays.asList("a1", "b1");
+		final List<String> list2 = Arrays.asList("a2", "a3", "b2");
+		final List<String> list3 = Arrays.asList("a4", "c3");
+
+		final SortedIteratorMerger<String> mergeIterator = new SortedIteratorMerger<String>(
+				Arrays.asList(list1.iterator(), list2.iterator(), list3.iterator()), 
+				firstCharComparator, 
+				DEFAULT_DUPLICATE_RESOLVER);
+		
+		final List<String> resultList = Lists.newArrayList(mergeIterator);
+		Assert.assertEquals(Arrays.asList("a1", "a2", "a3", "a4", "b1", "b2", "c3"), resultList);
+	}
+	
+	/**
+	 * Measure the throughput of the merger with 2 - 64 input lists
+	 */
+	@Test(timeout=60000)
+	public void testThroughput() {
+		final int totalElements = 1000000;
+		
+		for(int numberOfLists = 2; numberOfLists <= 64; numberOfLists = numberOfLists * 2) {
+			final int elementsPerList = totalElements / numberOfLists;
+			final List<Iterator<Integer>> iterators = new ArrayList<>();
+			
+			// Interleaved lists, list i contains the elements i, i + numberOfLists, ...
+			for(int list = 0; list < numberOfLists; list++) {
+				final List<Integer> elements = new ArrayList<>(elementsPerList);
+				
+				for(int i = 0; i < elementsPerList; i++) {
+					elements.add(i * numberOfLists + list);
+				}
+				
+				iterators.add(elements.iterator());
+			}
+			
+			final SortedIteratorMerger<Integer> mergeIterator = new SortedIteratorMerger<Integer>(
+					iterators, Integer::compare, (e) -> {});
+			
+			final long start = System.nanoTime();
+			
+			int lastElement = -1;
+			int readElements = 0;
+			
+			for(final Integer element : mergeIterator) {
+				Assert.assertTrue(element > lastElement);
+				lastElement = element;
+				readElements++;
+			}
+			
+			final long executionTime = Math.max(1, System.nanoTime() - start);
+			
+			Assert.assertEquals(elementsPerList * numberOfLists, readElements);
+			
+			System.out.format("Merged %d lists: %d elements in %d ms (%.0f elements/s)%n", 
+					numberOfLists, readElements, executionTime / 1000000, 
+					readElements / (executionTime / 1000000000.0));
+		}
+	}
 
 }